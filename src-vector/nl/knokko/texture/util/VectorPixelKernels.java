@@ -0,0 +1,184 @@
+package nl.knokko.texture.util;
+
+import java.nio.ByteOrder;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The PixelKernels implementation that uses the (incubating) JDK Vector API. This class can only be loaded
+ * when the jdk.incubator.vector module is available, so it should only be obtained via PixelKernels.get().
+ * It is kept in its own source root (src-vector), which is only compiled when the Vector API is wanted.
+ * The float kernels process 8 bytes (2 RGBA pixels) per vector and perform exactly the same float
+ * operations as ScalarPixelKernels, so both give the same results. Pixels that don't fill an entire vector
+ * are handled by the scalar kernels.
+ * @author knokko
+ *
+ */
+public class VectorPixelKernels extends PixelKernels {
+	
+	private static final VectorSpecies<Byte> BYTE_8 = ByteVector.SPECIES_64;
+	private static final VectorSpecies<Byte> BYTE_32 = ByteVector.SPECIES_256;
+	private static final VectorSpecies<Integer> INT_8 = IntVector.SPECIES_256;
+	private static final VectorSpecies<Float> FLOAT_8 = FloatVector.SPECIES_256;
+	
+	/** Copies the alpha of both RGBA pixels to all 4 lanes of that pixel */
+	private static final VectorShuffle<Float> ALPHA_SHUFFLE = VectorShuffle.fromValues(FLOAT_8, 3, 3, 3, 3, 7, 7, 7, 7);
+	private static final VectorMask<Float> ALPHA_MASK = VectorMask.fromValues(FLOAT_8,
+			false, false, false, true, false, false, false, true);
+	
+	/** Swaps the red and blue byte of each RGBA pixel, which turns it into a little endian ARGB int */
+	private static final VectorShuffle<Byte> SWAP_RED_BLUE = VectorShuffle.fromOp(BYTE_32,
+			lane -> lane % 4 == 3 ? lane : lane - lane % 4 + 2 - lane % 4);
+	/** Turns 8 RGB pixels into 8 little endian ARGB ints (except for the alpha, which needs ALPHA_BYTES) */
+	private static final VectorShuffle<Byte> RGB_TO_BGRA = VectorShuffle.fromOp(BYTE_32,
+			lane -> lane % 4 == 3 ? 0 : 3 * (lane / 4) + 2 - lane % 4);
+	private static final VectorMask<Byte> ALPHA_BYTES = VectorMask.fromLong(BYTE_32, 0x88888888L);
+	
+	/** The reinterpretation of bytes as ints only matches the ARGB layout on little endian machines */
+	private static final boolean LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+	
+	private final ScalarPixelKernels scalar = new ScalarPixelKernels();
+	
+	@Override
+	public String name() {
+		return "vector";
+	}
+	
+	private static FloatVector loadFloats(byte[] data, int index) {
+		IntVector signed = (IntVector) ByteVector.fromArray(BYTE_8, data, index).castShape(INT_8, 0);
+		return (FloatVector) signed.and(0xFF).convert(VectorOperators.I2F, 0);
+	}
+	
+	/**
+	 * Rounds the values (which must be in the range 0 to 255) like ScalarPixelKernels.round and stores them
+	 * as bytes
+	 */
+	private static void storeBytes(FloatVector values, byte[] data, int index) {
+		IntVector rounded = values.add(ScalarPixelKernels.ROUND_MAGIC).reinterpretAsInts();
+		((ByteVector) rounded.castShape(BYTE_8, 0)).intoArray(data, index);
+	}
+
+	@Override
+	public void fillSpan(byte[] data, int index, int pixels, int bytesPerPixel,
+			byte red, byte green, byte blue, byte alpha) {
+		int vectorPixels = BYTE_32.length();
+		if (pixels >= vectorPixels) {
+			
+			// bytesPerPixel vectors together contain exactly vectorPixels pixels
+			byte[] pattern = new byte[vectorPixels * bytesPerPixel];
+			scalar.fillSpan(pattern, 0, vectorPixels, bytesPerPixel, red, green, blue, alpha);
+			ByteVector[] vectors = new ByteVector[bytesPerPixel];
+			for (int vectorIndex = 0; vectorIndex < bytesPerPixel; vectorIndex++)
+				vectors[vectorIndex] = ByteVector.fromArray(BYTE_32, pattern, vectorIndex * vectorPixels);
+			
+			int boundIndex = index + (pixels - pixels % vectorPixels) * bytesPerPixel;
+			for (; index < boundIndex; index += pattern.length)
+				for (int vectorIndex = 0; vectorIndex < bytesPerPixel; vectorIndex++)
+					vectors[vectorIndex].intoArray(data, index + vectorIndex * vectorPixels);
+			pixels %= vectorPixels;
+		}
+		scalar.fillSpan(data, index, pixels, bytesPerPixel, red, green, blue, alpha);
+	}
+
+	@Override
+	public void blendSpan(byte[] data, int index, int pixels, int bytesPerPixel,
+			byte red, byte green, byte blue, byte alpha) {
+		float lineFactor = (alpha & 0xFF) / 255f;
+		float[] lineColors = new float[8 * bytesPerPixel];
+		for (int lane = 0; lane < lineColors.length; lane++) {
+			int component = lane % bytesPerPixel;
+			byte value = component == 0 ? red : component == 1 ? green : component == 2 ? blue : 0;
+			lineColors[lane] = (value & 0xFF) * lineFactor;
+		}
+		
+		if (bytesPerPixel == 4) {
+			FloatVector lineColor = FloatVector.fromArray(FLOAT_8, lineColors, 0);
+			int boundIndex = index + (pixels - pixels % 2) * 4;
+			for (; index < boundIndex; index += 8) {
+				FloatVector old = loadFloats(data, index);
+				FloatVector oldFactor = old.rearrange(ALPHA_SHUFFLE).div(255f);
+				FloatVector factorSum = oldFactor.add(lineFactor);
+				FloatVector color = old.mul(oldFactor).add(lineColor).div(factorSum);
+				FloatVector newAlpha = factorSum.mul(255f).min(255f);
+				storeBytes(color.blend(newAlpha, ALPHA_MASK), data, index);
+			}
+			pixels %= 2;
+		} else {
+			
+			// 3 vectors contain exactly 8 RGB pixels, and all old pixels are opaque
+			FloatVector[] lineColor = new FloatVector[3];
+			for (int vectorIndex = 0; vectorIndex < 3; vectorIndex++)
+				lineColor[vectorIndex] = FloatVector.fromArray(FLOAT_8, lineColors, 8 * vectorIndex);
+			float factorSum = lineFactor + 1f;
+			int boundIndex = index + (pixels - pixels % 8) * 3;
+			for (; index < boundIndex; index += 24) {
+				for (int vectorIndex = 0; vectorIndex < 3; vectorIndex++) {
+					int vectorStart = index + 8 * vectorIndex;
+					FloatVector old = loadFloats(data, vectorStart);
+					storeBytes(old.add(lineColor[vectorIndex]).div(factorSum), data, vectorStart);
+				}
+			}
+			pixels %= 8;
+		}
+		scalar.blendSpan(data, index, pixels, bytesPerPixel, red, green, blue, alpha);
+	}
+
+	@Override
+	public void multiplyChannels(byte[] source, int sourceIndex, float[] dest, int destIndex,
+			int pixels, boolean alpha) {
+		int boundSourceIndex = sourceIndex + (pixels - pixels % 2) * 4;
+		for (; sourceIndex < boundSourceIndex; sourceIndex += 8, destIndex += 8) {
+			FloatVector values = loadFloats(source, sourceIndex);
+			if (alpha) {
+				FloatVector factor = values.rearrange(ALPHA_SHUFFLE).div(255f);
+				values.mul(factor).blend(values, ALPHA_MASK).intoArray(dest, destIndex);
+			} else {
+				values.blend(255f, ALPHA_MASK).intoArray(dest, destIndex);
+			}
+		}
+		scalar.multiplyChannels(source, sourceIndex, dest, destIndex, pixels % 2, alpha);
+	}
+
+	@Override
+	public void packARGB(byte[] source, int sourceIndex, int bytesPerPixel, int[] dest, int destIndex,
+			int pixels) {
+		if (LITTLE_ENDIAN) {
+			int vectorPixels = INT_8.length();
+			
+			// The RGB loop loads 32 bytes but only uses 24 of them, so it must stay away from the end of source
+			while (pixels >= vectorPixels && sourceIndex + BYTE_32.length() <= source.length) {
+				ByteVector bytes = ByteVector.fromArray(BYTE_32, source, sourceIndex);
+				if (bytesPerPixel == 4)
+					bytes = bytes.rearrange(SWAP_RED_BLUE);
+				else
+					bytes = bytes.rearrange(RGB_TO_BGRA).blend((byte) 255, ALPHA_BYTES);
+				bytes.reinterpretAsInts().intoArray(dest, destIndex);
+				sourceIndex += vectorPixels * bytesPerPixel;
+				destIndex += vectorPixels;
+				pixels -= vectorPixels;
+			}
+		}
+		scalar.packARGB(source, sourceIndex, bytesPerPixel, dest, destIndex, pixels);
+	}
+
+	@Override
+	public void unpackARGB(int[] source, int sourceIndex, byte[] dest, int destIndex, int bytesPerPixel,
+			int pixels) {
+		if (LITTLE_ENDIAN && bytesPerPixel == 4) {
+			int vectorPixels = INT_8.length();
+			int boundSourceIndex = sourceIndex + pixels - pixels % vectorPixels;
+			for (; sourceIndex < boundSourceIndex; sourceIndex += vectorPixels, destIndex += 4 * vectorPixels) {
+				IntVector.fromArray(INT_8, source, sourceIndex).reinterpretAsBytes()
+						.rearrange(SWAP_RED_BLUE).intoArray(dest, destIndex);
+			}
+			pixels %= vectorPixels;
+		}
+		scalar.unpackARGB(source, sourceIndex, dest, destIndex, bytesPerPixel, pixels);
+	}
+}
@@ -0,0 +1,120 @@
+package nl.knokko.texture.builder;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The auxiliary channels of a texture builder. These are extra planes of per-pixel data (for instance a
+ * height map or a roughness map) that are stored next to the colors of the texture. Every channel has a name
+ * and is stored as a primitive array of width * height elements in row-major order, so the value of pixel
+ * (x,y) is at index y * width + x.
+ * <p>
+ * Channels are created on first access. A channel can be stored as byte[], int[] or float[], but the same
+ * name can't be used for different types.
+ * @author knokko
+ *
+ */
+public class AuxiliaryChannels {
+	
+	/**
+	 * The height channel, stored as byte[]. MaterialDrawer.drawGrassWithHeightChannel writes to this channel.
+	 */
+	public static final String HEIGHT = "height";
+	
+	/**
+	 * The roughness channel, stored as byte[] (0 is perfectly smooth and -1 is as rough as possible)
+	 */
+	public static final String ROUGHNESS = "roughness";
+	
+	/**
+	 * The material id channel, stored as int[]
+	 */
+	public static final String MATERIAL_ID = "materialId";
+	
+	/**
+	 * The signed distance field channel, stored as float[]. DistanceField.writeChannel writes to this channel.
+	 */
+	public static final String SDF = "sdf";
+	
+	private final int width, height;
+	private final Map<String, Object> channels = new ConcurrentHashMap<>();
+	
+	public AuxiliaryChannels(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+	
+	/**
+	 * Gets the byte channel with the given name, or creates it if it doesn't exist yet
+	 * @param name The name of the channel
+	 * @return The array with the values of the channel (changes to it will be visible to other users)
+	 * @throws IllegalStateException If a channel with the given name exists, but isn't a byte channel
+	 */
+	public byte[] bytes(String name) {
+		return get(name, byte[].class);
+	}
+	
+	/**
+	 * Gets the int channel with the given name, or creates it if it doesn't exist yet
+	 * @param name The name of the channel
+	 * @return The array with the values of the channel (changes to it will be visible to other users)
+	 * @throws IllegalStateException If a channel with the given name exists, but isn't an int channel
+	 */
+	public int[] ints(String name) {
+		return get(name, int[].class);
+	}
+	
+	/**
+	 * Gets the float channel with the given name, or creates it if it doesn't exist yet
+	 * @param name The name of the channel
+	 * @return The array with the values of the channel (changes to it will be visible to other users)
+	 * @throws IllegalStateException If a channel with the given name exists, but isn't a float channel
+	 */
+	public float[] floats(String name) {
+		return get(name, float[].class);
+	}
+	
+	private <T> T get(String name, Class<T> type) {
+		Object channel = channels.computeIfAbsent(name, key -> {
+			int size = width * height;
+			if (type == byte[].class)
+				return new byte[size];
+			if (type == int[].class)
+				return new int[size];
+			return new float[size];
+		});
+		if (channel.getClass() != type)
+			throw new IllegalStateException("Channel " + name + " is a " + channel.getClass().getSimpleName()
+					+ " channel, not a " + type.getSimpleName() + " channel");
+		return type.cast(channel);
+	}
+	
+	public boolean has(String name) {
+		return channels.containsKey(name);
+	}
+	
+	/**
+	 * Removes the channel with the given name, if it exists
+	 * @param name The name of the channel to remove
+	 */
+	public void remove(String name) {
+		channels.remove(name);
+	}
+	
+	/**
+	 * @return The names of all channels that currently exist, in alphabetical order
+	 */
+	public Set<String> names() {
+		return new TreeSet<>(channels.keySet());
+	}
+	
+	public int width() {
+		return width;
+	}
+	
+	public int height() {
+		return height;
+	}
+}
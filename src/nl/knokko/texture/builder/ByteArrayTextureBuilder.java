@@ -24,34 +24,69 @@
 package nl.knokko.texture.builder;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.Arrays;
 
 import nl.knokko.texture.builder.drawing.*;
 import nl.knokko.texture.color.*;
+import nl.knokko.texture.util.Parallel;
+import nl.knokko.texture.util.PixelKernels;
 
 public class ByteArrayTextureBuilder implements TextureBuilder {
+	
+	/**
+	 * Creates a texture builder with a copy of the pixels of the given image.
+	 * @param image The image to copy
+	 * @param useAlpha Whether the texture builder should have an alpha channel. If false, the alpha of the
+	 * image will be ignored
+	 * @return The new texture builder
+	 */
+	public static ByteArrayTextureBuilder fromImage(BufferedImage image, boolean useAlpha) {
+		int width = image.getWidth();
+		int height = image.getHeight();
+		ByteArrayTextureBuilder texture = new ByteArrayTextureBuilder(width, height, useAlpha);
+		int[] argb = image.getRGB(0, 0, width, height, null, 0, width);
+		PixelKernels.get().unpackARGB(argb, 0, texture.data, texture.offset, useAlpha ? 4 : 3, width * height);
+		return texture;
+	}
 
 	protected final byte[] data;
 	
+	/** The index in data of the red component of pixel (0,0) */
+	protected final int offset;
+	
 	protected final int width, height;
 	protected final boolean hasAlpha;
 	
-	protected final GeometryDrawer geometry;
-	protected final MaterialDrawer materials;
-	protected final AverageDrawer average;
-	protected final DecayingDrawer decaying;
+	/*
+	 * The drawers are only created when they are needed, since many textures are only used to copy pixels.
+	 * They are null until the first call of their getter, so subclasses should use geometry(), materials(),
+	 * average() and decaying() rather than reading these fields directly.
+	 */
+	protected volatile GeometryDrawer geometry;
+	protected volatile MaterialDrawer materials;
+	protected volatile AverageDrawer average;
+	protected volatile DecayingDrawer decaying;
+	private final Object drawerLock = new Object();
+	
+	private AuxiliaryChannels auxiliary;
 
 	public ByteArrayTextureBuilder(int width, int height, boolean useAlpha) {
+		this(width, height, useAlpha, new byte[width * height * (useAlpha ? 4 : 3)], 0);
+	}
+	
+	/**
+	 * Constructs a texture builder that stores its pixels in the given part of data, starting at offset. This
+	 * allows multiple texture builders to share 1 array, like the layers of a LayeredTextureBuilder.
+	 */
+	protected ByteArrayTextureBuilder(int width, int height, boolean useAlpha, byte[] data, int offset) {
+		if (offset < 0 || offset + (long) width * height * (useAlpha ? 4 : 3) > data.length)
+			throw new IllegalArgumentException("The data array is too small for this texture");
 		this.width = width;
 		this.height = height;
 		this.hasAlpha = useAlpha;
-		
-		data = new byte[width * height * (useAlpha ? 4 : 3)];
-		
-		geometry = new GeometryDrawer(this);
-		materials = new MaterialDrawer(this);
-		average = new AverageDrawer(this);
-		decaying = new DecayingDrawer(this);
+		this.data = data;
+		this.offset = offset;
 	}
 	
 	@Override
@@ -69,29 +104,59 @@ public class ByteArrayTextureBuilder implements TextureBuilder {
 		return hasAlpha;
 	}
 	
+	/**
+	 * Creates all drawers if they haven't been created yet. The drawers are small, and drawers like
+	 * MaterialDrawer use the other drawers anyway, so they are created together.
+	 */
+	private void createDrawers() {
+		synchronized (drawerLock) {
+			if (geometry == null) {
+				geometry = new GeometryDrawer(this);
+				materials = new MaterialDrawer(this);
+				average = new AverageDrawer(this);
+				decaying = new DecayingDrawer(this);
+			}
+		}
+	}
+	
 	@Override
 	public GeometryDrawer geometry() {
+		if (geometry == null)
+			createDrawers();
 		return geometry;
 	}
 	
 	@Override
 	public MaterialDrawer materials() {
+		if (materials == null)
+			createDrawers();
 		return materials;
 	}
 	
 	@Override
 	public AverageDrawer average() {
+		if (average == null)
+			createDrawers();
 		return average;
 	}
 	
 	@Override
 	public DecayingDrawer decaying() {
+		if (decaying == null)
+			createDrawers();
 		return decaying;
 	}
 	
+	@Override
+	public synchronized AuxiliaryChannels auxiliary() {
+		if (auxiliary == null)
+			auxiliary = new AuxiliaryChannels(width, height);
+		return auxiliary;
+	}
+	
 	@Override
 	public void setPixel(int x, int y, byte red, byte green, byte blue, byte alpha) {
-		int index = (y * width + x) * (hasAlpha ? 4 : 3);
+		int index = offset + (y * width + x) * (hasAlpha ? 4 : 3);
 		data[index] = red;
 		data[index + 1] = green;
 		data[index + 2] = blue;
@@ -101,53 +166,96 @@ public class ByteArrayTextureBuilder implements TextureBuilder {
 	
 	@Override
 	public byte getRed(int x, int y) {
-		return data[(y * width + x) * (hasAlpha ? 4 : 3)];
+		return data[offset + (y * width + x) * (hasAlpha ? 4 : 3)];
 	}
 	
 	@Override
 	public byte getGreen(int x, int y) {
-		return data[(y * width + x) * (hasAlpha ? 4 : 3) + 1];
+		return data[offset + (y * width + x) * (hasAlpha ? 4 : 3) + 1];
 	}
 	
 	@Override
 	public byte getBlue(int x, int y) {
-		return data[(y * width + x) * (hasAlpha ? 4 : 3) + 2];
+		return data[offset + (y * width + x) * (hasAlpha ? 4 : 3) + 2];
 	}
 	
 	@Override
 	public byte getAlpha(int x, int y) {
 		if (hasAlpha)
-			return data[(y * width + x) * (hasAlpha ? 4 : 3) + 3];
+			return data[offset + (y * width + x) * (hasAlpha ? 4 : 3) + 3];
 		else
 			return (byte) 255;
 	}
 	
 	@Override
 	public Color getPixel(int x, int y) {
-		int index = (y * width + x) * (hasAlpha ? 4 : 3);
+		int index = offset + (y * width + x) * (hasAlpha ? 4 : 3);
 		return hasAlpha ? SimpleRGBAColor.fromBytes(data[index], data[index + 1], data[index + 2], data[index + 3])
 				: SimpleRGBColor.fromBytes(data[index], data[index + 1], data[index + 2]);
 	}
 	
+	@Override
+	public void getRowRGBA(int minX, int maxX, int y, byte[] dest, int destIndex) {
+		if (hasAlpha) {
+			System.arraycopy(data, offset + (y * width + minX) * 4, dest, destIndex, (maxX - minX + 1) * 4);
+		} else {
+			int dataIndex = offset + (y * width + minX) * 3;
+			int boundDestIndex = destIndex + (maxX - minX + 1) * 4;
+			while (destIndex < boundDestIndex) {
+				dest[destIndex++] = data[dataIndex++];
+				dest[destIndex++] = data[dataIndex++];
+				dest[destIndex++] = data[dataIndex++];
+				dest[destIndex++] = (byte) 255;
+			}
+		}
+	}
+	
+	@Override
+	public void setRowRGBA(int minX, int maxX, int y, byte[] source, int sourceIndex) {
+		if (hasAlpha) {
+			System.arraycopy(source, sourceIndex, data, offset + (y * width + minX) * 4, (maxX - minX + 1) * 4);
+		} else {
+			int dataIndex = offset + (y * width + minX) * 3;
+			int boundDataIndex = dataIndex + (maxX - minX + 1) * 3;
+			while (dataIndex < boundDataIndex) {
+				data[dataIndex++] = source[sourceIndex++];
+				data[dataIndex++] = source[sourceIndex++];
+				data[dataIndex++] = source[sourceIndex++];
+				sourceIndex++;
+			}
+		}
+	}
+	
+	@Override
+	public void fillSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		int bytesPerPixel = hasAlpha ? 4 : 3;
+		PixelKernels.get().fillSpan(data, offset + (y * width + minX) * bytesPerPixel, maxX - minX + 1, bytesPerPixel,
+				red, green, blue, alpha);
+	}
+	
+	@Override
+	public void blendSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		int bytesPerPixel = hasAlpha ? 4 : 3;
+		PixelKernels.get().blendSpan(data, offset + (y * width + minX) * bytesPerPixel, maxX - minX + 1, bytesPerPixel,
+				red, green, blue, alpha);
+	}
+	
 	@Override
 	public BufferedImage createBufferedImage() {
 		BufferedImage image = new BufferedImage(width, height,
 				hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				int dataIndex = (hasAlpha ? 4 : 3) * (y * width + x);
-				int alpha = hasAlpha ? data[dataIndex + 3] : 255;
-				image.setRGB(x, y,((alpha & 0xFF) << 24) |
-		                ((data[dataIndex] & 0xFF) << 16) |
-		                ((data[dataIndex + 1] & 0xFF) << 8)  |
-		                ((data[dataIndex + 2] & 0xFF) << 0));
-			}
-		}
+		
+		// Write directly into the pixel array of the image rather than calling setRGB for every pixel
+		int[] imageData = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		int bytesPerPixel = hasAlpha ? 4 : 3;
+		Parallel.forEachBand(0, height - 1, width, (minY, maxY) -> PixelKernels.get().packARGB(
+				data, offset + minY * width * bytesPerPixel, bytesPerPixel, imageData, minY * width, (maxY - minY + 1) * width
+		));
 		return image;
 	}
 
 	@Override
 	public byte[] createArrrayRGBA() {
-		return Arrays.copyOf(data, data.length);
+		return Arrays.copyOfRange(data, offset, offset + width * height * (hasAlpha ? 4 : 3));
 	}
 }
\ No newline at end of file
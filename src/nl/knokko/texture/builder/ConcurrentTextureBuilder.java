@@ -0,0 +1,232 @@
+package nl.knokko.texture.builder;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.locks.ReentrantLock;
+
+import nl.knokko.texture.builder.drawing.*;
+import nl.knokko.texture.color.Color;
+import nl.knokko.texture.util.Parallel;
+
+/**
+ * A texture builder that allows multiple threads to draw on another texture builder at the same time, for
+ * instance different decoration passes in different regions of a large ByteArrayTextureBuilder.
+ * <p>
+ * The texture is divided into square tiles, and every tile is guarded by 1 of a fixed number of locks (the
+ * tiles share the locks in a striped way). Operations that read pixels and then change them (blendSpan and
+ * the read-modify-write operations that the drawers run via modifyRegion) hold the locks of all tiles that
+ * they touch, so 2 threads can never blend over the same pixel at the same time. The locks are always
+ * acquired in the same order, so this can't cause deadlocks.
+ * <p>
+ * Opaque writes (setPixel, setRowRGBA and fillSpan) and reads don't use the locks, because they don't
+ * depend on the current pixel values. Threads that write opaque colors to the same pixels at the same time
+ * simply race like they would on any other texture builder, and a read of a pixel that is being blended
+ * can give the old or the new value of each component.
+ * <p>
+ * Nested calls of modifyRegion (or blendSpan inside modifyRegion) are allowed, as long as the inner
+ * region lies inside the outer region. Drawer operations inside modifyRegion are allowed as well: work that
+ * the drawers would normally split over multiple threads is done on the calling thread instead, since the
+ * other threads would wait for the locks that the calling thread holds.
+ * @author knokko
+ *
+ */
+public class ConcurrentTextureBuilder implements TextureBuilder {
+	
+	public static final int DEFAULT_TILE_SIZE = 64;
+	
+	/** The number of locks, which must be at most 64 since the locks of a region are collected in a long */
+	private static final int NUM_STRIPES = 64;
+	
+	protected final TextureBuilder delegate;
+	protected final int width, height;
+	
+	private final int tileSize, tilesX;
+	private final ReentrantLock[] stripes = new ReentrantLock[NUM_STRIPES];
+	
+	protected final GeometryDrawer geometry;
+	protected final MaterialDrawer materials;
+	protected final AverageDrawer average;
+	protected final DecayingDrawer decaying;
+	
+	/**
+	 * @param delegate The texture builder that will store the pixels
+	 * @param tileSize The width and height of the tiles
+	 */
+	public ConcurrentTextureBuilder(TextureBuilder delegate, int tileSize) {
+		if (tileSize <= 0)
+			throw new IllegalArgumentException("The tile size must be positive, but is " + tileSize);
+		this.delegate = delegate;
+		this.width = delegate.width();
+		this.height = delegate.height();
+		this.tileSize = tileSize;
+		this.tilesX = (width + tileSize - 1) / tileSize;
+		for (int index = 0; index < NUM_STRIPES; index++)
+			stripes[index] = new ReentrantLock();
+		
+		geometry = new GeometryDrawer(this);
+		materials = new MaterialDrawer(this);
+		average = new AverageDrawer(this);
+		decaying = new DecayingDrawer(this);
+	}
+	
+	public ConcurrentTextureBuilder(TextureBuilder delegate) {
+		this(delegate, DEFAULT_TILE_SIZE);
+	}
+	
+	/**
+	 * @return The texture builder that stores the pixels of this texture builder
+	 */
+	public TextureBuilder getDelegate() {
+		return delegate;
+	}
+	
+	/**
+	 * @return A bit mask with the stripes that guard the tiles of the region
+	 */
+	private long stripesOf(int minX, int minY, int maxX, int maxY) {
+		int minTileX = Math.max(minX, 0) / tileSize;
+		int minTileY = Math.max(minY, 0) / tileSize;
+		int maxTileX = Math.min(maxX, width - 1) / tileSize;
+		int maxTileY = Math.min(maxY, height - 1) / tileSize;
+		if (maxTileX < minTileX || maxTileY < minTileY)
+			return 0;
+		if ((long) (maxTileX - minTileX + 1) * (maxTileY - minTileY + 1) >= NUM_STRIPES)
+			return -1L;
+		long mask = 0;
+		for (int tileY = minTileY; tileY <= maxTileY; tileY++)
+			for (int tileX = minTileX; tileX <= maxTileX; tileX++)
+				mask |= 1L << ((tileY * tilesX + tileX) & (NUM_STRIPES - 1));
+		return mask;
+	}
+	
+	private void lock(long mask) {
+		for (long remaining = mask; remaining != 0; remaining &= remaining - 1)
+			stripes[Long.numberOfTrailingZeros(remaining)].lock();
+	}
+	
+	private void unlock(long mask) {
+		for (long remaining = mask; remaining != 0; remaining &= remaining - 1)
+			stripes[Long.numberOfTrailingZeros(remaining)].unlock();
+	}
+	
+	@Override
+	public void modifyRegion(int minX, int minY, int maxX, int maxY, Runnable action) {
+		long mask = stripesOf(minX, minY, maxX, maxY);
+		lock(mask);
+		try {
+			Parallel.runSequentially(action);
+		} finally {
+			unlock(mask);
+		}
+	}
+	
+	@Override
+	public void blendSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		long mask = stripesOf(minX, y, maxX, y);
+		lock(mask);
+		try {
+			delegate.blendSpan(minX, maxX, y, red, green, blue, alpha);
+		} finally {
+			unlock(mask);
+		}
+	}
+	
+	@Override
+	public boolean supportsParallelWrites() {
+		return delegate.supportsParallelWrites();
+	}
+	
+	@Override
+	public int width() {
+		return width;
+	}
+	
+	@Override
+	public int height() {
+		return height;
+	}
+	
+	@Override
+	public boolean useAlpha() {
+		return delegate.useAlpha();
+	}
+	
+	@Override
+	public GeometryDrawer geometry() {
+		return geometry;
+	}
+	
+	@Override
+	public MaterialDrawer materials() {
+		return materials;
+	}
+	
+	@Override
+	public AverageDrawer average() {
+		return average;
+	}
+	
+	@Override
+	public DecayingDrawer decaying() {
+		return decaying;
+	}
+	
+	@Override
+	public AuxiliaryChannels auxiliary() {
+		return delegate.auxiliary();
+	}
+	
+	@Override
+	public void setPixel(int x, int y, byte red, byte green, byte blue, byte alpha) {
+		delegate.setPixel(x, y, red, green, blue, alpha);
+	}
+	
+	@Override
+	public void setRowRGBA(int minX, int maxX, int y, byte[] source, int sourceIndex) {
+		delegate.setRowRGBA(minX, maxX, y, source, sourceIndex);
+	}
+	
+	@Override
+	public void fillSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		delegate.fillSpan(minX, maxX, y, red, green, blue, alpha);
+	}
+	
+	@Override
+	public byte getRed(int x, int y) {
+		return delegate.getRed(x, y);
+	}
+	
+	@Override
+	public byte getGreen(int x, int y) {
+		return delegate.getGreen(x, y);
+	}
+	
+	@Override
+	public byte getBlue(int x, int y) {
+		return delegate.getBlue(x, y);
+	}
+	
+	@Override
+	public byte getAlpha(int x, int y) {
+		return delegate.getAlpha(x, y);
+	}
+	
+	@Override
+	public Color getPixel(int x, int y) {
+		return delegate.getPixel(x, y);
+	}
+	
+	@Override
+	public void getRowRGBA(int minX, int maxX, int y, byte[] dest, int destIndex) {
+		delegate.getRowRGBA(minX, maxX, y, dest, destIndex);
+	}
+	
+	@Override
+	public BufferedImage createBufferedImage() {
+		return delegate.createBufferedImage();
+	}
+	
+	@Override
+	public byte[] createArrrayRGBA() {
+		return delegate.createArrrayRGBA();
+	}
+}
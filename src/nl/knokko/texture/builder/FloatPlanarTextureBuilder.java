@@ -0,0 +1,308 @@
+package nl.knokko.texture.builder;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import nl.knokko.texture.builder.drawing.*;
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * A planar texture builder (see PlanarTextureBuilder) that stores every color component as a float, where 0
+ * is the minimum intensity and 1 is the maximum intensity of a byte color. Values larger than 1 are allowed
+ * (for HDR colors), but they are clamped by the byte get methods, createBufferedImage and createArrrayRGBA.
+ * Blending in this texture doesn't round after every step, so it is more accurate when many colors are
+ * drawn on top of each other.
+ * @author knokko
+ *
+ */
+public class FloatPlanarTextureBuilder implements FloatTextureBuilder {
+	
+	/**
+	 * Creates a float planar copy of the given texture.
+	 */
+	public static FloatPlanarTextureBuilder fromTexture(TextureBuilder source) {
+		FloatPlanarTextureBuilder texture = new FloatPlanarTextureBuilder(source.width(), source.height(), source.useAlpha());
+		byte[] row = new byte[4 * source.width()];
+		for (int y = 0; y < source.height(); y++) {
+			source.getRowRGBA(0, source.width() - 1, y, row, 0);
+			texture.setRowRGBA(0, source.width() - 1, y, row, 0);
+		}
+		return texture;
+	}
+	
+	protected final float[] red, green, blue, alpha;
+	
+	protected final int width, height;
+	
+	protected final GeometryDrawer geometry;
+	protected final MaterialDrawer materials;
+	protected final AverageDrawer average;
+	protected final DecayingDrawer decaying;
+	
+	private AuxiliaryChannels auxiliary;
+	
+	/**
+	 * Constructs a float planar texture builder that uses the given planes, without copying them.
+	 * @param width The width of the texture
+	 * @param height The height of the texture
+	 * @param red The red plane, containing width * height floats, row by row
+	 * @param green The green plane
+	 * @param blue The blue plane
+	 * @param alpha The alpha plane, or null if the texture doesn't have an alpha channel
+	 */
+	public FloatPlanarTextureBuilder(int width, int height, float[] red, float[] green, float[] blue, float[] alpha) {
+		for (float[] plane : new float[][] { red, green, blue, alpha }) {
+			if (plane != null && plane.length != width * height)
+				throw new IllegalArgumentException("The length of a plane is " + plane.length + ", but the texture has " + width * height + " pixels");
+		}
+		this.width = width;
+		this.height = height;
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+		this.alpha = alpha;
+		
+		geometry = new GeometryDrawer(this);
+		materials = new MaterialDrawer(this);
+		average = new AverageDrawer(this);
+		decaying = new DecayingDrawer(this);
+	}
+	
+	public FloatPlanarTextureBuilder(int width, int height, boolean useAlpha) {
+		this(width, height, new float[width * height], new float[width * height], new float[width * height],
+				useAlpha ? new float[width * height] : null);
+	}
+	
+	@Override
+	public int width() {
+		return width;
+	}
+	
+	@Override
+	public int height() {
+		return height;
+	}
+	
+	@Override
+	public boolean useAlpha() {
+		return alpha != null;
+	}
+	
+	@Override
+	public GeometryDrawer geometry() {
+		return geometry;
+	}
+	
+	@Override
+	public MaterialDrawer materials() {
+		return materials;
+	}
+	
+	@Override
+	public AverageDrawer average() {
+		return average;
+	}
+	
+	@Override
+	public DecayingDrawer decaying() {
+		return decaying;
+	}
+	
+	@Override
+	public synchronized AuxiliaryChannels auxiliary() {
+		if (auxiliary == null)
+			auxiliary = new AuxiliaryChannels(width, height);
+		return auxiliary;
+	}
+	
+	/**
+	 * Gets the plane of the given channel. The plane is not copied, so changes to it will be visible in this
+	 * texture.
+	 * @param channel PlanarTextureBuilder.RED, GREEN, BLUE or ALPHA
+	 * @return The plane, or null if the channel is ALPHA and this texture doesn't have an alpha channel
+	 */
+	public float[] plane(int channel) {
+		switch (channel) {
+		case PlanarTextureBuilder.RED: return red;
+		case PlanarTextureBuilder.GREEN: return green;
+		case PlanarTextureBuilder.BLUE: return blue;
+		case PlanarTextureBuilder.ALPHA: return alpha;
+		default: throw new IllegalArgumentException("Invalid channel: " + channel);
+		}
+	}
+	
+	public float[] redPlane() {
+		return red;
+	}
+	
+	public float[] greenPlane() {
+		return green;
+	}
+	
+	public float[] bluePlane() {
+		return blue;
+	}
+	
+	/**
+	 * @return The alpha plane, or null if this texture doesn't have an alpha channel
+	 */
+	public float[] alphaPlane() {
+		return alpha;
+	}
+	
+	@Override
+	public float getRedF(int x, int y) {
+		return red[y * width + x];
+	}
+	
+	@Override
+	public float getGreenF(int x, int y) {
+		return green[y * width + x];
+	}
+	
+	@Override
+	public float getBlueF(int x, int y) {
+		return blue[y * width + x];
+	}
+	
+	@Override
+	public float getAlphaF(int x, int y) {
+		return alpha != null ? alpha[y * width + x] : 1f;
+	}
+	
+	@Override
+	public void setPixelF(int x, int y, float red, float green, float blue, float alpha) {
+		int index = y * width + x;
+		this.red[index] = red;
+		this.green[index] = green;
+		this.blue[index] = blue;
+		if (this.alpha != null)
+			this.alpha[index] = alpha;
+	}
+	
+	private static float toFloat(byte value) {
+		return (value & 0xFF) / 255f;
+	}
+	
+	private static byte toByte(float value) {
+		return PixelRows.toByte(value * 255f);
+	}
+	
+	@Override
+	public void setPixel(int x, int y, byte red, byte green, byte blue, byte alpha) {
+		setPixelF(x, y, toFloat(red), toFloat(green), toFloat(blue), toFloat(alpha));
+	}
+	
+	@Override
+	public byte getRed(int x, int y) {
+		return toByte(getRedF(x, y));
+	}
+	
+	@Override
+	public byte getGreen(int x, int y) {
+		return toByte(getGreenF(x, y));
+	}
+	
+	@Override
+	public byte getBlue(int x, int y) {
+		return toByte(getBlueF(x, y));
+	}
+	
+	@Override
+	public byte getAlpha(int x, int y) {
+		return toByte(getAlphaF(x, y));
+	}
+	
+	@Override
+	public void getRowRGBA(int minX, int maxX, int y, byte[] dest, int destIndex) {
+		int boundIndex = y * width + maxX;
+		for (int index = y * width + minX; index <= boundIndex; index++) {
+			dest[destIndex++] = toByte(red[index]);
+			dest[destIndex++] = toByte(green[index]);
+			dest[destIndex++] = toByte(blue[index]);
+			dest[destIndex++] = alpha != null ? toByte(alpha[index]) : (byte) 255;
+		}
+	}
+	
+	@Override
+	public void setRowRGBA(int minX, int maxX, int y, byte[] source, int sourceIndex) {
+		int boundIndex = y * width + maxX;
+		for (int index = y * width + minX; index <= boundIndex; index++) {
+			red[index] = toFloat(source[sourceIndex++]);
+			green[index] = toFloat(source[sourceIndex++]);
+			blue[index] = toFloat(source[sourceIndex++]);
+			if (alpha != null)
+				alpha[index] = toFloat(source[sourceIndex]);
+			sourceIndex++;
+		}
+	}
+	
+	@Override
+	public void fillSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		int fromIndex = y * width + minX;
+		int toIndex = y * width + maxX + 1;
+		Arrays.fill(this.red, fromIndex, toIndex, toFloat(red));
+		Arrays.fill(this.green, fromIndex, toIndex, toFloat(green));
+		Arrays.fill(this.blue, fromIndex, toIndex, toFloat(blue));
+		if (this.alpha != null)
+			Arrays.fill(this.alpha, fromIndex, toIndex, toFloat(alpha));
+	}
+	
+	/**
+	 * Blends like PixelKernels.blendSpan, but without rounding the result to bytes
+	 */
+	@Override
+	public void blendSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		float lineFactor = toFloat(alpha);
+		float lineRed = toFloat(red) * lineFactor;
+		float lineGreen = toFloat(green) * lineFactor;
+		float lineBlue = toFloat(blue) * lineFactor;
+		int boundIndex = y * width + maxX;
+		for (int index = y * width + minX; index <= boundIndex; index++) {
+			float oldFactor = this.alpha != null ? this.alpha[index] : 1f;
+			float factorSum = lineFactor + oldFactor;
+			this.red[index] = (lineRed + this.red[index] * oldFactor) / factorSum;
+			this.green[index] = (lineGreen + this.green[index] * oldFactor) / factorSum;
+			this.blue[index] = (lineBlue + this.blue[index] * oldFactor) / factorSum;
+			if (this.alpha != null)
+				this.alpha[index] = Math.min(factorSum, 1f);
+		}
+	}
+	
+	/**
+	 * Creates an interleaved copy of this texture, where all components are rounded to bytes.
+	 */
+	public ByteArrayTextureBuilder toByteArrayTextureBuilder() {
+		ByteArrayTextureBuilder result = new ByteArrayTextureBuilder(width, height, alpha != null);
+		System.arraycopy(createArrrayRGBA(), 0, result.data, 0, result.data.length);
+		return result;
+	}
+	
+	@Override
+	public BufferedImage createBufferedImage() {
+		BufferedImage image = new BufferedImage(width, height,
+				alpha != null ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		int[] imageData = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		for (int index = 0; index < imageData.length; index++) {
+			int a = alpha != null ? toByte(alpha[index]) & 0xFF : 255;
+			imageData[index] = a << 24 | (toByte(red[index]) & 0xFF) << 16 | (toByte(green[index]) & 0xFF) << 8
+					| (toByte(blue[index]) & 0xFF);
+		}
+		return image;
+	}
+	
+	@Override
+	public byte[] createArrrayRGBA() {
+		int bytesPerPixel = alpha != null ? 4 : 3;
+		byte[] result = new byte[width * height * bytesPerPixel];
+		for (int index = 0, resultIndex = 0; index < red.length; index++, resultIndex += bytesPerPixel) {
+			result[resultIndex] = toByte(red[index]);
+			result[resultIndex + 1] = toByte(green[index]);
+			result[resultIndex + 2] = toByte(blue[index]);
+			if (alpha != null)
+				result[resultIndex + 3] = toByte(alpha[index]);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,36 @@
+package nl.knokko.texture.builder;
+
+/**
+ * A texture builder that stores its colors as floats rather than bytes. Drawers that blend colors (like
+ * DecayingDrawer) use these methods when they are available, so that repeated blending doesn't lose
+ * precision by rounding to bytes after every step. The color components are normally in the range 0 to 1,
+ * but implementations may allow larger values (for HDR colors).
+ * @author knokko
+ *
+ */
+public interface FloatTextureBuilder extends TextureBuilder {
+	
+	float getRedF(int x, int y);
+	
+	float getGreenF(int x, int y);
+	
+	float getBlueF(int x, int y);
+	
+	/**
+	 * @return The alpha component of the pixel at (x, y), or 1 if this texture doesn't use alpha
+	 */
+	float getAlphaF(int x, int y);
+	
+	/**
+	 * Sets the color of the pixel at (x, y). If this texture doesn't use alpha, the alpha will be ignored.
+	 */
+	void setPixelF(int x, int y, float red, float green, float blue, float alpha);
+	
+	/**
+	 * Converts a red, green or blue byte component (like those of Color) to the float representation of this
+	 * texture. By default, this is simply the component divided by 255.
+	 */
+	default float componentToFloat(byte component) {
+		return (component & 0xFF) / 255f;
+	}
+}
@@ -0,0 +1,288 @@
+package nl.knokko.texture.builder;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import nl.knokko.texture.builder.drawing.*;
+import nl.knokko.texture.color.SRGB;
+import nl.knokko.texture.util.Parallel;
+import nl.knokko.texture.util.PixelKernels;
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * A texture builder that stores the colors as linear light intensities in floats (4 per pixel, RGBA). All
+ * blending (by DecayingDrawer and the transparent lines of GeometryDrawer) happens on these linear floats,
+ * so there is no rounding or sRGB conversion after every blend. Intensities larger than 1 are allowed.
+ * <p>
+ * The byte methods of TextureBuilder convert from and to sRGB using the lookup tables of SRGB. To export
+ * the texture, use createBufferedImage or toByteArrayTextureBuilder with a ToneMapping, which converts all
+ * pixels at once (in parallel).
+ * @author knokko
+ *
+ */
+public class HdrTextureBuilder implements FloatTextureBuilder {
+	
+	protected final float[] data;
+	
+	protected final int width, height;
+	protected final boolean hasAlpha;
+	
+	protected final GeometryDrawer geometry;
+	protected final MaterialDrawer materials;
+	protected final AverageDrawer average;
+	protected final DecayingDrawer decaying;
+	
+	private AuxiliaryChannels auxiliary;
+	
+	public HdrTextureBuilder(int width, int height, boolean useAlpha) {
+		this.width = width;
+		this.height = height;
+		this.hasAlpha = useAlpha;
+		
+		// Just like ByteArrayTextureBuilder, all pixels start black, and transparent if alpha is used
+		data = new float[4 * width * height];
+		if (!useAlpha)
+			for (int index = 3; index < data.length; index += 4)
+				data[index] = 1f;
+		
+		geometry = new GeometryDrawer(this);
+		materials = new MaterialDrawer(this);
+		average = new AverageDrawer(this);
+		decaying = new DecayingDrawer(this);
+	}
+	
+	@Override
+	public int width() {
+		return width;
+	}
+	
+	@Override
+	public int height() {
+		return height;
+	}
+	
+	@Override
+	public boolean useAlpha() {
+		return hasAlpha;
+	}
+	
+	@Override
+	public GeometryDrawer geometry() {
+		return geometry;
+	}
+	
+	@Override
+	public MaterialDrawer materials() {
+		return materials;
+	}
+	
+	@Override
+	public AverageDrawer average() {
+		return average;
+	}
+	
+	@Override
+	public DecayingDrawer decaying() {
+		return decaying;
+	}
+	
+	@Override
+	public synchronized AuxiliaryChannels auxiliary() {
+		if (auxiliary == null)
+			auxiliary = new AuxiliaryChannels(width, height);
+		return auxiliary;
+	}
+	
+	/**
+	 * @return The linear RGBA floats of this texture, row by row. This is the array of this texture, not a copy.
+	 */
+	public float[] getData() {
+		return data;
+	}
+	
+	/**
+	 * @return The linear red intensity of the pixel at (x, y)
+	 */
+	@Override
+	public float getRedF(int x, int y) {
+		return data[4 * (y * width + x)];
+	}
+	
+	@Override
+	public float getGreenF(int x, int y) {
+		return data[4 * (y * width + x) + 1];
+	}
+	
+	@Override
+	public float getBlueF(int x, int y) {
+		return data[4 * (y * width + x) + 2];
+	}
+	
+	@Override
+	public float getAlphaF(int x, int y) {
+		return data[4 * (y * width + x) + 3];
+	}
+	
+	/**
+	 * Sets the linear intensities of the pixel at (x, y)
+	 */
+	@Override
+	public void setPixelF(int x, int y, float red, float green, float blue, float alpha) {
+		int index = 4 * (y * width + x);
+		data[index] = red;
+		data[index + 1] = green;
+		data[index + 2] = blue;
+		if (hasAlpha)
+			data[index + 3] = alpha;
+	}
+	
+	/**
+	 * Converts the sRGB encoded component to linear light
+	 */
+	@Override
+	public float componentToFloat(byte component) {
+		return SRGB.toLinear(component);
+	}
+	
+	@Override
+	public void setPixel(int x, int y, byte red, byte green, byte blue, byte alpha) {
+		setPixelF(x, y, SRGB.toLinear(red), SRGB.toLinear(green), SRGB.toLinear(blue), (alpha & 0xFF) / 255f);
+	}
+	
+	@Override
+	public byte getRed(int x, int y) {
+		return SRGB.fromLinear(getRedF(x, y));
+	}
+	
+	@Override
+	public byte getGreen(int x, int y) {
+		return SRGB.fromLinear(getGreenF(x, y));
+	}
+	
+	@Override
+	public byte getBlue(int x, int y) {
+		return SRGB.fromLinear(getBlueF(x, y));
+	}
+	
+	@Override
+	public byte getAlpha(int x, int y) {
+		return PixelRows.toByte(getAlphaF(x, y) * 255f);
+	}
+	
+	@Override
+	public void getRowRGBA(int minX, int maxX, int y, byte[] dest, int destIndex) {
+		int boundIndex = 4 * (y * width + maxX);
+		for (int index = 4 * (y * width + minX); index <= boundIndex; index += 4) {
+			dest[destIndex++] = SRGB.fromLinear(data[index]);
+			dest[destIndex++] = SRGB.fromLinear(data[index + 1]);
+			dest[destIndex++] = SRGB.fromLinear(data[index + 2]);
+			dest[destIndex++] = PixelRows.toByte(data[index + 3] * 255f);
+		}
+	}
+	
+	@Override
+	public void setRowRGBA(int minX, int maxX, int y, byte[] source, int sourceIndex) {
+		int boundIndex = 4 * (y * width + maxX);
+		for (int index = 4 * (y * width + minX); index <= boundIndex; index += 4) {
+			data[index] = SRGB.toLinear(source[sourceIndex++]);
+			data[index + 1] = SRGB.toLinear(source[sourceIndex++]);
+			data[index + 2] = SRGB.toLinear(source[sourceIndex++]);
+			if (hasAlpha)
+				data[index + 3] = (source[sourceIndex] & 0xFF) / 255f;
+			sourceIndex++;
+		}
+	}
+	
+	@Override
+	public void fillSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		float linearRed = SRGB.toLinear(red);
+		float linearGreen = SRGB.toLinear(green);
+		float linearBlue = SRGB.toLinear(blue);
+		float alphaF = hasAlpha ? (alpha & 0xFF) / 255f : 1f;
+		int boundIndex = 4 * (y * width + maxX);
+		for (int index = 4 * (y * width + minX); index <= boundIndex; index += 4) {
+			data[index] = linearRed;
+			data[index + 1] = linearGreen;
+			data[index + 2] = linearBlue;
+			data[index + 3] = alphaF;
+		}
+	}
+	
+	/**
+	 * Blends like PixelKernels.blendSpan, but on linear intensities and without rounding
+	 */
+	@Override
+	public void blendSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		float lineFactor = (alpha & 0xFF) / 255f;
+		float lineRed = SRGB.toLinear(red) * lineFactor;
+		float lineGreen = SRGB.toLinear(green) * lineFactor;
+		float lineBlue = SRGB.toLinear(blue) * lineFactor;
+		int boundIndex = 4 * (y * width + maxX);
+		for (int index = 4 * (y * width + minX); index <= boundIndex; index += 4) {
+			float oldFactor = data[index + 3];
+			float factorSum = lineFactor + oldFactor;
+			data[index] = (lineRed + data[index] * oldFactor) / factorSum;
+			data[index + 1] = (lineGreen + data[index + 1] * oldFactor) / factorSum;
+			data[index + 2] = (lineBlue + data[index + 2] * oldFactor) / factorSum;
+			if (hasAlpha)
+				data[index + 3] = Math.min(factorSum, 1f);
+		}
+	}
+	
+	/**
+	 * Tone maps and sRGB encodes the pixels from index (inclusive) to boundIndex (exclusive) into ARGB ints
+	 */
+	private void exportARGB(int index, int boundIndex, ToneMapping toneMapping, float exposure, int[] dest, int destIndex) {
+		for (; index < boundIndex; index += 4) {
+			int alpha = hasAlpha ? PixelRows.toByte(data[index + 3] * 255f) & 0xFF : 255;
+			int red = SRGB.fromLinear(toneMapping.map(Math.max(0f, data[index] * exposure))) & 0xFF;
+			int green = SRGB.fromLinear(toneMapping.map(Math.max(0f, data[index + 1] * exposure))) & 0xFF;
+			int blue = SRGB.fromLinear(toneMapping.map(Math.max(0f, data[index + 2] * exposure))) & 0xFF;
+			dest[destIndex++] = alpha << 24 | red << 16 | green << 8 | blue;
+		}
+	}
+	
+	/**
+	 * Creates an image of this texture by multiplying all intensities by exposure, tone mapping them and
+	 * encoding them to sRGB.
+	 */
+	public BufferedImage createBufferedImage(ToneMapping toneMapping, float exposure) {
+		BufferedImage image = new BufferedImage(width, height,
+				hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		int[] imageData = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		Parallel.forEachBand(0, height - 1, width, (minY, maxY) -> exportARGB(
+				4 * minY * width, 4 * (maxY + 1) * width, toneMapping, exposure, imageData, minY * width
+		));
+		return image;
+	}
+	
+	/**
+	 * Creates an image of this texture, clamping all intensities larger than 1
+	 */
+	@Override
+	public BufferedImage createBufferedImage() {
+		return createBufferedImage(ToneMapping.CLAMP, 1f);
+	}
+	
+	/**
+	 * Creates an 8-bit copy of this texture by multiplying all intensities by exposure, tone mapping them and
+	 * encoding them to sRGB.
+	 */
+	public ByteArrayTextureBuilder toByteArrayTextureBuilder(ToneMapping toneMapping, float exposure) {
+		ByteArrayTextureBuilder result = new ByteArrayTextureBuilder(width, height, hasAlpha);
+		int bytesPerPixel = hasAlpha ? 4 : 3;
+		Parallel.forEachBand(0, height - 1, width, (minY, maxY) -> {
+			int[] row = new int[width];
+			for (int y = minY; y <= maxY; y++) {
+				exportARGB(4 * y * width, 4 * (y + 1) * width, toneMapping, exposure, row, 0);
+				PixelKernels.get().unpackARGB(row, 0, result.data, y * width * bytesPerPixel, bytesPerPixel, width);
+			}
+		});
+		return result;
+	}
+	
+	@Override
+	public byte[] createArrrayRGBA() {
+		return toByteArrayTextureBuilder(ToneMapping.CLAMP, 1f).data;
+	}
+}
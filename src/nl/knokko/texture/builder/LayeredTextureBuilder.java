@@ -0,0 +1,173 @@
+package nl.knokko.texture.builder;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.Parallel;
+
+/**
+ * Stores multiple layers of the same size in 1 contiguous byte array, for instance the frames of an animated
+ * texture or the layers of a texture array. Every layer can be drawn on with its own TextureBuilder view,
+ * and the layers can be generated in parallel with the generate method.
+ * <p>
+ * The layers are stored one after another, and every layer is stored like a ByteArrayTextureBuilder (RGB or
+ * RGBA, row by row). This is also the layout that texture array uploads expect, and it means that the whole
+ * array can be seen as 1 tall texture with the layers below each other (see asStrip), which is the usual
+ * layout of animated texture files.
+ * @author knokko
+ *
+ */
+public class LayeredTextureBuilder {
+	
+	/**
+	 * Decodes the result of createDeltaEncoding
+	 * @param deltas The encoded layers, which will not be modified
+	 * @return A layered texture builder with the decoded layers
+	 */
+	public static LayeredTextureBuilder fromDeltaEncoding(int width, int height, boolean useAlpha, int numLayers, byte[] deltas) {
+		LayeredTextureBuilder result = new LayeredTextureBuilder(width, height, useAlpha, numLayers);
+		if (deltas.length != result.data.length)
+			throw new IllegalArgumentException("The deltas have length " + deltas.length + ", but should have length " + result.data.length);
+		
+		// Every layer depends on the previous layer, so split the work by rows instead of by layers
+		int rowSize = width * result.bytesPerPixel;
+		int layerSize = result.layerSize;
+		Parallel.forEachBand(0, height - 1, width * numLayers, (minY, maxY) -> {
+			int start = minY * rowSize;
+			int bound = (maxY + 1) * rowSize;
+			System.arraycopy(deltas, start, result.data, start, bound - start);
+			for (int layer = 1; layer < numLayers; layer++) {
+				int layerStart = layer * layerSize;
+				for (int index = layerStart + start; index < layerStart + bound; index++)
+					result.data[index] = (byte) (deltas[index] + result.data[index - layerSize]);
+			}
+		});
+		return result;
+	}
+	
+	protected final byte[] data;
+	protected final int width, height;
+	protected final boolean hasAlpha;
+	
+	private final int bytesPerPixel, layerSize;
+	private final ByteArrayTextureBuilder[] layers;
+	private ByteArrayTextureBuilder strip;
+	
+	/**
+	 * Constructs a layered texture builder where all layers are black (and transparent if useAlpha is true)
+	 * @param numLayers The number of layers (or frames)
+	 */
+	public LayeredTextureBuilder(int width, int height, boolean useAlpha, int numLayers) {
+		this.width = width;
+		this.height = height;
+		this.hasAlpha = useAlpha;
+		this.bytesPerPixel = useAlpha ? 4 : 3;
+		long totalSize = (long) width * height * bytesPerPixel * numLayers;
+		if (numLayers <= 0 || totalSize > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Can't create " + numLayers + " layers of " + width + "x" + height);
+		this.layerSize = width * height * bytesPerPixel;
+		this.data = new byte[(int) totalSize];
+		this.layers = new ByteArrayTextureBuilder[numLayers];
+		for (int layer = 0; layer < numLayers; layer++)
+			layers[layer] = new ByteArrayTextureBuilder(width, height, useAlpha, data, layer * layerSize);
+	}
+	
+	public int width() {
+		return width;
+	}
+	
+	public int height() {
+		return height;
+	}
+	
+	public boolean useAlpha() {
+		return hasAlpha;
+	}
+	
+	public int numLayers() {
+		return layers.length;
+	}
+	
+	/**
+	 * @return The texture builder of the layer with the given index. Drawing on it changes the data of this
+	 * layered texture builder.
+	 */
+	public TextureBuilder layer(int index) {
+		return layers[index];
+	}
+	
+	/**
+	 * @return A texture builder with the size of width by height * numLayers that shows all layers below each
+	 * other. It uses the same data as the layers, so drawing on it changes the layers.
+	 */
+	public synchronized TextureBuilder asStrip() {
+		if (strip == null)
+			strip = new ByteArrayTextureBuilder(width, height * layers.length, hasAlpha, data, 0);
+		return strip;
+	}
+	
+	/**
+	 * @return The data of all layers, one after another. This is the array of this layered texture builder,
+	 * not a copy.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+	
+	/**
+	 * @return The number of bytes per layer in the data
+	 */
+	public int getLayerSize() {
+		return layerSize;
+	}
+	
+	/**
+	 * Generates all layers in parallel. The generator must be able to handle multiple layers at the same time,
+	 * and should only change the layer that it gets.
+	 */
+	public void generate(LayerGenerator generator) {
+		Measurement measurement = Metrics.start("LayeredTextureBuilder.generate");
+		IntStream.range(0, layers.length).parallel().forEach(layer -> generator.generate(layers[layer], layer));
+		measurement.end((long) width * height * layers.length);
+	}
+	
+	/**
+	 * Creates a delta encoding of the layers: the first layer is stored as it is, and every other layer is
+	 * stored as the bytewise difference with the previous layer (modulo 256). Animation frames that differ only
+	 * a little from the previous frame become mostly zeros, which compress much better (for instance with
+	 * Deflater). Use fromDeltaEncoding to decode it.
+	 * @return The encoded layers, which has the same length as getData()
+	 */
+	public byte[] createDeltaEncoding() {
+		Measurement measurement = Metrics.start("LayeredTextureBuilder.createDeltaEncoding");
+		byte[] deltas = new byte[data.length];
+		System.arraycopy(data, 0, deltas, 0, layerSize);
+		IntStream.range(1, layers.length).parallel().forEach(layer -> {
+			int start = layer * layerSize;
+			for (int index = start; index < start + layerSize; index++)
+				deltas[index] = (byte) (data[index] - data[index - layerSize]);
+		});
+		measurement.end((long) width * height * layers.length);
+		return deltas;
+	}
+	
+	/**
+	 * @return A copy of the data of the layer with the given index, like layer(index).createArrrayRGBA()
+	 */
+	public byte[] createLayerArray(int index) {
+		return Arrays.copyOfRange(data, index * layerSize, (index + 1) * layerSize);
+	}
+	
+	@FunctionalInterface
+	public static interface LayerGenerator {
+		
+		/**
+		 * Draws the layer (or frame) with the given index
+		 * @param layer The texture builder of the layer
+		 * @param index The index of the layer
+		 */
+		void generate(TextureBuilder layer, int index);
+	}
+}
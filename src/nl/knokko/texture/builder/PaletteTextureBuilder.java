@@ -0,0 +1,349 @@
+package nl.knokko.texture.builder;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+
+import nl.knokko.texture.builder.drawing.*;
+import nl.knokko.texture.color.*;
+
+/**
+ * A texture builder that stores 1 byte per pixel: an index into a palette of at most 256 colors. This uses
+ * 3 or 4 times less memory than a ByteArrayTextureBuilder, which is useful for textures with few distinct
+ * colors (like brick patterns). The createBufferedImage method of this class creates an indexed image, so
+ * saving it as PNG gives an indexed PNG.
+ * <p>
+ * Colors that are drawn on this texture builder are added to the palette until it is full. After that, new
+ * colors are replaced by the nearest color in the palette. To convert an existing texture with many colors,
+ * use ColorQuantizer instead.
+ * <p>
+ * Since the palette index of a color depends on the order in which the colors are drawn, this texture builder
+ * doesn't support parallel writes: the drawers and filters write its rows on the calling thread, so the
+ * same seed always gives the same palette and the same texture.
+ * @author knokko
+ *
+ */
+public class PaletteTextureBuilder implements TextureBuilder {
+	
+	public static final int MAX_PALETTE_SIZE = 256;
+	
+	/** The mask of the hash table that maps colors to palette indices */
+	private static final int TABLE_MASK = 511;
+	
+	protected final byte[] indices;
+	
+	protected final int width, height;
+	protected final boolean hasAlpha;
+	
+	/** The palette colors, packed as RGBA ints */
+	protected final int[] palette = new int[MAX_PALETTE_SIZE];
+	protected int paletteSize;
+	
+	/** Open addressing hash table from color to palette index + 1 (0 means empty) */
+	private final int[] tableColors = new int[TABLE_MASK + 1];
+	private final short[] tableIndices = new short[TABLE_MASK + 1];
+	
+	protected final GeometryDrawer geometry;
+	protected final MaterialDrawer materials;
+	protected final AverageDrawer average;
+	protected final DecayingDrawer decaying;
+	
+	private AuxiliaryChannels auxiliary;
+	
+	/**
+	 * Constructs a palette texture builder with the given indices and palette. The indices array will be used
+	 * directly, so changes to it will be visible in the texture.
+	 * @param width The width of the texture
+	 * @param height The height of the texture
+	 * @param useAlpha Whether the texture has an alpha channel. If false, the alpha of the palette colors will
+	 * be ignored
+	 * @param indices The palette index of each pixel, row by row
+	 * @param palette The palette colors, packed as RGBA ints (red in the most significant byte)
+	 * @param paletteSize The number of colors in the palette, at most 256
+	 */
+	public PaletteTextureBuilder(int width, int height, boolean useAlpha, byte[] indices, int[] palette,
+			int paletteSize) {
+		if (indices.length != width * height)
+			throw new IllegalArgumentException("There are " + indices.length + " indices, but the texture has " + width * height + " pixels");
+		if (paletteSize < 1 || paletteSize > MAX_PALETTE_SIZE)
+			throw new IllegalArgumentException("The palette size must be between 1 and 256, but is " + paletteSize);
+		this.width = width;
+		this.height = height;
+		this.hasAlpha = useAlpha;
+		this.indices = indices;
+		
+		// The palette may contain duplicate colors, but indexOf will always return the first one
+		for (int index = 0; index < paletteSize; index++) {
+			int rgba = useAlpha ? palette[index] : palette[index] | 0xFF;
+			this.palette[index] = rgba;
+			int slot = findSlot(rgba);
+			if (tableIndices[slot] == 0) {
+				tableColors[slot] = rgba;
+				tableIndices[slot] = (short) (index + 1);
+			}
+		}
+		this.paletteSize = paletteSize;
+	
+		geometry = new GeometryDrawer(this);
+		materials = new MaterialDrawer(this);
+		average = new AverageDrawer(this);
+		decaying = new DecayingDrawer(this);
+	}
+	
+	/**
+	 * Constructs a palette texture builder where all pixels are black (and transparent if useAlpha is true),
+	 * just like a new ByteArrayTextureBuilder.
+	 */
+	public PaletteTextureBuilder(int width, int height, boolean useAlpha) {
+		this(width, height, useAlpha, new byte[width * height], new int[] { 0 }, 1);
+	}
+	
+	@Override
+	public int width() {
+		return width;
+	}
+	
+	@Override
+	public int height() {
+		return height;
+	}
+	
+	@Override
+	public boolean useAlpha() {
+		return hasAlpha;
+	}
+	
+	@Override
+	public GeometryDrawer geometry() {
+		return geometry;
+	}
+	
+	@Override
+	public MaterialDrawer materials() {
+		return materials;
+	}
+	
+	@Override
+	public AverageDrawer average() {
+		return average;
+	}
+	
+	@Override
+	public DecayingDrawer decaying() {
+		return decaying;
+	}
+	
+	@Override
+	public boolean supportsParallelWrites() {
+		return false;
+	}
+	
+	@Override
+	public synchronized AuxiliaryChannels auxiliary() {
+		if (auxiliary == null)
+			auxiliary = new AuxiliaryChannels(width, height);
+		return auxiliary;
+	}
+	
+	/**
+	 * @return The number of colors in the palette
+	 */
+	public synchronized int paletteSize() {
+		return paletteSize;
+	}
+	
+	/**
+	 * @return A copy of the palette, packed as RGBA ints
+	 */
+	public synchronized int[] getPalette() {
+		return Arrays.copyOf(palette, paletteSize);
+	}
+	
+	/**
+	 * @return The palette index of each pixel, row by row. This is the array of this texture builder, not a copy.
+	 */
+	public byte[] getIndices() {
+		return indices;
+	}
+	
+	public int getIndex(int x, int y) {
+		return indices[y * width + x] & 0xFF;
+	}
+	
+	public void setIndex(int x, int y, int paletteIndex) {
+		indices[y * width + x] = (byte) paletteIndex;
+	}
+	
+	private static int pack(byte red, byte green, byte blue, byte alpha) {
+		return (red & 0xFF) << 24 | (green & 0xFF) << 16 | (blue & 0xFF) << 8 | (alpha & 0xFF);
+	}
+	
+	/**
+	 * @return The slot of the color in the hash table, or the empty slot where it should be inserted
+	 */
+	private int findSlot(int rgba) {
+		int slot = hash(rgba);
+		while (tableIndices[slot] != 0 && tableColors[slot] != rgba)
+			slot = (slot + 1) & TABLE_MASK;
+		return slot;
+	}
+	
+	private int addColor(int rgba) {
+		int slot = findSlot(rgba);
+		if (tableIndices[slot] != 0)
+			return tableIndices[slot] - 1;
+		if (paletteSize == MAX_PALETTE_SIZE)
+			return nearestIndex(rgba);
+		palette[paletteSize] = rgba;
+		tableColors[slot] = rgba;
+		tableIndices[slot] = (short) (paletteSize + 1);
+		return paletteSize++;
+	}
+	
+	private static int hash(int rgba) {
+		int hash = rgba * 0x9E3779B1;
+		return (hash ^ hash >>> 16) & TABLE_MASK;
+	}
+	
+	private int nearestIndex(int rgba) {
+		int bestIndex = 0;
+		int bestDistance = Integer.MAX_VALUE;
+		for (int index = 0; index < paletteSize; index++) {
+			int distance = 0;
+			for (int shift = 0; shift < 32; shift += 8) {
+				int difference = (rgba >>> shift & 0xFF) - (palette[index] >>> shift & 0xFF);
+				distance += difference * difference;
+			}
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				bestIndex = index;
+			}
+		}
+		return bestIndex;
+	}
+	
+	/**
+	 * Finds the palette index of the given color. If the color is not in the palette yet, it will be added. If
+	 * the palette is full, the index of the nearest palette color will be returned.
+	 * @return The palette index
+	 */
+	public synchronized int indexOf(byte red, byte green, byte blue, byte alpha) {
+		return addColor(pack(red, green, blue, hasAlpha ? alpha : (byte) 255));
+	}
+	
+	@Override
+	public void setPixel(int x, int y, byte red, byte green, byte blue, byte alpha) {
+		indices[y * width + x] = (byte) indexOf(red, green, blue, alpha);
+	}
+	
+	@Override
+	public void fillSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		int rowStart = y * width;
+		Arrays.fill(indices, rowStart + minX, rowStart + maxX + 1, (byte) indexOf(red, green, blue, alpha));
+	}
+	
+	@Override
+	public void setRowRGBA(int minX, int maxX, int y, byte[] source, int sourceIndex) {
+		int index = y * width + minX;
+		int boundIndex = index + maxX - minX + 1;
+		synchronized (this) {
+			for (; index < boundIndex; index++, sourceIndex += 4) {
+				byte alpha = hasAlpha ? source[sourceIndex + 3] : (byte) 255;
+				indices[index] = (byte) addColor(pack(source[sourceIndex], source[sourceIndex + 1], source[sourceIndex + 2], alpha));
+			}
+		}
+	}
+	
+	private int colorAt(int x, int y) {
+		return palette[indices[y * width + x] & 0xFF];
+	}
+	
+	@Override
+	public byte getRed(int x, int y) {
+		return (byte) (colorAt(x, y) >>> 24);
+	}
+	
+	@Override
+	public byte getGreen(int x, int y) {
+		return (byte) (colorAt(x, y) >>> 16);
+	}
+	
+	@Override
+	public byte getBlue(int x, int y) {
+		return (byte) (colorAt(x, y) >>> 8);
+	}
+	
+	@Override
+	public byte getAlpha(int x, int y) {
+		return (byte) colorAt(x, y);
+	}
+	
+	@Override
+	public Color getPixel(int x, int y) {
+		int rgba = colorAt(x, y);
+		return SimpleRGBAColor.fromBytes((byte) (rgba >>> 24), (byte) (rgba >>> 16), (byte) (rgba >>> 8), (byte) rgba);
+	}
+	
+	@Override
+	public void getRowRGBA(int minX, int maxX, int y, byte[] dest, int destIndex) {
+		int index = y * width + minX;
+		int boundIndex = index + maxX - minX + 1;
+		for (; index < boundIndex; index++) {
+			int rgba = palette[indices[index] & 0xFF];
+			dest[destIndex++] = (byte) (rgba >>> 24);
+			dest[destIndex++] = (byte) (rgba >>> 16);
+			dest[destIndex++] = (byte) (rgba >>> 8);
+			dest[destIndex++] = (byte) rgba;
+		}
+	}
+	
+	/**
+	 * @return An IndexColorModel with the palette of this texture
+	 */
+	public synchronized IndexColorModel createColorModel() {
+		byte[] reds = new byte[paletteSize];
+		byte[] greens = new byte[paletteSize];
+		byte[] blues = new byte[paletteSize];
+		byte[] alphas = new byte[paletteSize];
+		for (int index = 0; index < paletteSize; index++) {
+			reds[index] = (byte) (palette[index] >>> 24);
+			greens[index] = (byte) (palette[index] >>> 16);
+			blues[index] = (byte) (palette[index] >>> 8);
+			alphas[index] = (byte) palette[index];
+		}
+		if (hasAlpha)
+			return new IndexColorModel(8, paletteSize, reds, greens, blues, alphas);
+		else
+			return new IndexColorModel(8, paletteSize, reds, greens, blues);
+	}
+	
+	/**
+	 * Creates an indexed image (BufferedImage.TYPE_BYTE_INDEXED) with the palette of this texture. When it is
+	 * saved as PNG, it will be stored as indexed PNG.
+	 */
+	@Override
+	public BufferedImage createBufferedImage() {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, createColorModel());
+		byte[] imageData = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		System.arraycopy(indices, 0, imageData, 0, indices.length);
+		return image;
+	}
+	
+	@Override
+	public byte[] createArrrayRGBA() {
+		int bytesPerPixel = hasAlpha ? 4 : 3;
+		byte[] result = new byte[width * height * bytesPerPixel];
+		int resultIndex = 0;
+		for (byte index : indices) {
+			int rgba = palette[index & 0xFF];
+			result[resultIndex] = (byte) (rgba >>> 24);
+			result[resultIndex + 1] = (byte) (rgba >>> 16);
+			result[resultIndex + 2] = (byte) (rgba >>> 8);
+			if (hasAlpha)
+				result[resultIndex + 3] = (byte) rgba;
+			resultIndex += bytesPerPixel;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,264 @@
+package nl.knokko.texture.builder;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import nl.knokko.texture.builder.drawing.*;
+import nl.knokko.texture.color.*;
+
+/**
+ * A texture builder that stores every color channel in its own array (plane), rather than interleaving the
+ * channels like ByteArrayTextureBuilder does. This is faster for operations that only need some of the
+ * channels (like alpha masks) or that process every channel separately. The planes can be accessed directly
+ * with the plane methods, without copying them.
+ * @author knokko
+ *
+ */
+public class PlanarTextureBuilder implements TextureBuilder {
+	
+	public static final int RED = 0;
+	public static final int GREEN = 1;
+	public static final int BLUE = 2;
+	public static final int ALPHA = 3;
+	
+	/**
+	 * Creates a planar copy of the given texture.
+	 */
+	public static PlanarTextureBuilder fromTexture(TextureBuilder source) {
+		PlanarTextureBuilder texture = new PlanarTextureBuilder(source.width(), source.height(), source.useAlpha());
+		byte[] row = new byte[4 * source.width()];
+		for (int y = 0; y < source.height(); y++) {
+			source.getRowRGBA(0, source.width() - 1, y, row, 0);
+			texture.setRowRGBA(0, source.width() - 1, y, row, 0);
+		}
+		return texture;
+	}
+	
+	protected final byte[] red, green, blue, alpha;
+	
+	protected final int width, height;
+	
+	protected final GeometryDrawer geometry;
+	protected final MaterialDrawer materials;
+	protected final AverageDrawer average;
+	protected final DecayingDrawer decaying;
+	
+	private AuxiliaryChannels auxiliary;
+	
+	/**
+	 * Constructs a planar texture builder that uses the given planes, without copying them.
+	 * @param width The width of the texture
+	 * @param height The height of the texture
+	 * @param red The red plane, containing width * height bytes, row by row
+	 * @param green The green plane
+	 * @param blue The blue plane
+	 * @param alpha The alpha plane, or null if the texture doesn't have an alpha channel
+	 */
+	public PlanarTextureBuilder(int width, int height, byte[] red, byte[] green, byte[] blue, byte[] alpha) {
+		for (byte[] plane : new byte[][] { red, green, blue, alpha }) {
+			if (plane != null && plane.length != width * height)
+				throw new IllegalArgumentException("The length of a plane is " + plane.length + ", but the texture has " + width * height + " pixels");
+		}
+		this.width = width;
+		this.height = height;
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+		this.alpha = alpha;
+		
+		geometry = new GeometryDrawer(this);
+		materials = new MaterialDrawer(this);
+		average = new AverageDrawer(this);
+		decaying = new DecayingDrawer(this);
+	}
+	
+	public PlanarTextureBuilder(int width, int height, boolean useAlpha) {
+		this(width, height, new byte[width * height], new byte[width * height], new byte[width * height],
+				useAlpha ? new byte[width * height] : null);
+	}
+	
+	@Override
+	public int width() {
+		return width;
+	}
+	
+	@Override
+	public int height() {
+		return height;
+	}
+	
+	@Override
+	public boolean useAlpha() {
+		return alpha != null;
+	}
+	
+	@Override
+	public GeometryDrawer geometry() {
+		return geometry;
+	}
+	
+	@Override
+	public MaterialDrawer materials() {
+		return materials;
+	}
+	
+	@Override
+	public AverageDrawer average() {
+		return average;
+	}
+	
+	@Override
+	public DecayingDrawer decaying() {
+		return decaying;
+	}
+	
+	@Override
+	public synchronized AuxiliaryChannels auxiliary() {
+		if (auxiliary == null)
+			auxiliary = new AuxiliaryChannels(width, height);
+		return auxiliary;
+	}
+	
+	/**
+	 * Gets the plane of the given channel. The plane is not copied, so changes to it will be visible in this
+	 * texture.
+	 * @param channel RED, GREEN, BLUE or ALPHA
+	 * @return The plane, or null if the channel is ALPHA and this texture doesn't have an alpha channel
+	 */
+	public byte[] plane(int channel) {
+		switch (channel) {
+		case RED: return red;
+		case GREEN: return green;
+		case BLUE: return blue;
+		case ALPHA: return alpha;
+		default: throw new IllegalArgumentException("Invalid channel: " + channel);
+		}
+	}
+	
+	public byte[] redPlane() {
+		return red;
+	}
+	
+	public byte[] greenPlane() {
+		return green;
+	}
+	
+	public byte[] bluePlane() {
+		return blue;
+	}
+	
+	/**
+	 * @return The alpha plane, or null if this texture doesn't have an alpha channel
+	 */
+	public byte[] alphaPlane() {
+		return alpha;
+	}
+	
+	@Override
+	public void setPixel(int x, int y, byte red, byte green, byte blue, byte alpha) {
+		int index = y * width + x;
+		this.red[index] = red;
+		this.green[index] = green;
+		this.blue[index] = blue;
+		if (this.alpha != null)
+			this.alpha[index] = alpha;
+	}
+	
+	@Override
+	public byte getRed(int x, int y) {
+		return red[y * width + x];
+	}
+	
+	@Override
+	public byte getGreen(int x, int y) {
+		return green[y * width + x];
+	}
+	
+	@Override
+	public byte getBlue(int x, int y) {
+		return blue[y * width + x];
+	}
+	
+	@Override
+	public byte getAlpha(int x, int y) {
+		return alpha != null ? alpha[y * width + x] : (byte) 255;
+	}
+	
+	@Override
+	public Color getPixel(int x, int y) {
+		int index = y * width + x;
+		return alpha != null ? SimpleRGBAColor.fromBytes(red[index], green[index], blue[index], alpha[index])
+				: SimpleRGBColor.fromBytes(red[index], green[index], blue[index]);
+	}
+	
+	@Override
+	public void getRowRGBA(int minX, int maxX, int y, byte[] dest, int destIndex) {
+		int boundIndex = y * width + maxX;
+		for (int index = y * width + minX; index <= boundIndex; index++) {
+			dest[destIndex++] = red[index];
+			dest[destIndex++] = green[index];
+			dest[destIndex++] = blue[index];
+			dest[destIndex++] = alpha != null ? alpha[index] : (byte) 255;
+		}
+	}
+	
+	@Override
+	public void setRowRGBA(int minX, int maxX, int y, byte[] source, int sourceIndex) {
+		int boundIndex = y * width + maxX;
+		for (int index = y * width + minX; index <= boundIndex; index++) {
+			red[index] = source[sourceIndex++];
+			green[index] = source[sourceIndex++];
+			blue[index] = source[sourceIndex++];
+			if (alpha != null)
+				alpha[index] = source[sourceIndex];
+			sourceIndex++;
+		}
+	}
+	
+	@Override
+	public void fillSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		int fromIndex = y * width + minX;
+		int toIndex = y * width + maxX + 1;
+		Arrays.fill(this.red, fromIndex, toIndex, red);
+		Arrays.fill(this.green, fromIndex, toIndex, green);
+		Arrays.fill(this.blue, fromIndex, toIndex, blue);
+		if (this.alpha != null)
+			Arrays.fill(this.alpha, fromIndex, toIndex, alpha);
+	}
+	
+	/**
+	 * Creates an interleaved copy of this texture.
+	 */
+	public ByteArrayTextureBuilder toByteArrayTextureBuilder() {
+		ByteArrayTextureBuilder result = new ByteArrayTextureBuilder(width, height, alpha != null);
+		System.arraycopy(createArrrayRGBA(), 0, result.data, 0, result.data.length);
+		return result;
+	}
+	
+	@Override
+	public BufferedImage createBufferedImage() {
+		BufferedImage image = new BufferedImage(width, height,
+				alpha != null ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		int[] imageData = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		for (int index = 0; index < imageData.length; index++) {
+			int a = alpha != null ? alpha[index] & 0xFF : 255;
+			imageData[index] = a << 24 | (red[index] & 0xFF) << 16 | (green[index] & 0xFF) << 8 | (blue[index] & 0xFF);
+		}
+		return image;
+	}
+	
+	@Override
+	public byte[] createArrrayRGBA() {
+		int bytesPerPixel = alpha != null ? 4 : 3;
+		byte[] result = new byte[width * height * bytesPerPixel];
+		for (int index = 0, resultIndex = 0; index < red.length; index++, resultIndex += bytesPerPixel) {
+			result[resultIndex] = red[index];
+			result[resultIndex + 1] = green[index];
+			result[resultIndex + 2] = blue[index];
+			if (alpha != null)
+				result[resultIndex + 3] = alpha[index];
+		}
+		return result;
+	}
+}
@@ -9,6 +9,8 @@ import javax.imageio.ImageIO;
 import nl.knokko.texture.builder.drawing.*;
 import nl.knokko.texture.color.Color;
 import nl.knokko.texture.color.SimpleRGBAColor;
+import nl.knokko.texture.util.BufferPool;
+import nl.knokko.texture.util.PixelKernels;
 
 public interface TextureBuilder {
 	
@@ -26,6 +28,11 @@ public interface TextureBuilder {
 	
 	DecayingDrawer decaying();
 	
+	/**
+	 * @return The auxiliary channels (like height and roughness) of this texture
+	 */
+	AuxiliaryChannels auxiliary();
+	
 	void setPixel(int x, int y, byte red, byte green, byte blue, byte alpha);
 	
 	default void setPixel(int x, int y, byte red, byte green, byte blue) {
@@ -48,6 +55,87 @@ public interface TextureBuilder {
 		return SimpleRGBAColor.fromBytes(getRed(x, y), getGreen(x, y), getBlue(x, y), getAlpha(x, y));
 	}
 	
+	/**
+	 * Copies the pixels from (minX,y) to (maxX,y) into dest, using 4 bytes per pixel in RGBA order. If this
+	 * texture doesn't use alpha, all alpha bytes will be 255. Implementations should override this method
+	 * if they can do it faster than calling the get methods for every pixel.
+	 * @param minX The x-coordinate of the first pixel to copy
+	 * @param maxX The x-coordinate of the last pixel to copy
+	 * @param y The y-coordinate of the row to copy from
+	 * @param dest The array to copy the pixels into
+	 * @param destIndex The index in dest where the red component of the first pixel should be stored
+	 */
+	default void getRowRGBA(int minX, int maxX, int y, byte[] dest, int destIndex) {
+		for (int x = minX; x <= maxX; x++) {
+			dest[destIndex++] = getRed(x, y);
+			dest[destIndex++] = getGreen(x, y);
+			dest[destIndex++] = getBlue(x, y);
+			dest[destIndex++] = getAlpha(x, y);
+		}
+	}
+	
+	/**
+	 * Copies pixels from source to the pixels from (minX,y) to (maxX,y). The source should contain 4 bytes per
+	 * pixel in RGBA order. If this texture doesn't use alpha, the alpha bytes will be ignored. Implementations
+	 * should override this method if they can do it faster than calling setPixel for every pixel.
+	 * @param minX The x-coordinate of the first pixel to change
+	 * @param maxX The x-coordinate of the last pixel to change
+	 * @param y The y-coordinate of the row to change
+	 * @param source The array containing the new pixel values
+	 * @param sourceIndex The index in source of the red component of the first pixel
+	 */
+	default void setRowRGBA(int minX, int maxX, int y, byte[] source, int sourceIndex) {
+		for (int x = minX; x <= maxX; x++) {
+			setPixel(x, y, source[sourceIndex], source[sourceIndex + 1], source[sourceIndex + 2], source[sourceIndex + 3]);
+			sourceIndex += 4;
+		}
+	}
+	
+	/**
+	 * Sets all pixels from (minX,y) to (maxX,y) to the given color (without blending). Implementations should
+	 * override this method if they can do it faster than calling setPixel for every pixel.
+	 */
+	default void fillSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		for (int x = minX; x <= maxX; x++)
+			setPixel(x, y, red, green, blue, alpha);
+	}
+	
+	/**
+	 * Blends the given color over all pixels from (minX,y) to (maxX,y), like
+	 * GeometryDrawer.drawHorizontalLine does with transparent colors (see PixelKernels.blendSpan).
+	 * Implementations should override this method if they can do it without copying the row.
+	 * @param alpha The alpha of the color to blend, must not be 0
+	 */
+	default void blendSpan(int minX, int maxX, int y, byte red, byte green, byte blue, byte alpha) {
+		int pixels = maxX - minX + 1;
+		byte[] row = BufferPool.borrowBytes(4 * pixels);
+		getRowRGBA(minX, maxX, y, row, 0);
+		PixelKernels.get().blendSpan(row, 0, pixels, 4, red, green, blue, alpha);
+		setRowRGBA(minX, maxX, y, row, 0);
+		BufferPool.releaseBytes(row);
+	}
+	
+	/**
+	 * Runs an action that reads and then changes the pixels from (minX,minY) to (maxX,maxY), like blending a
+	 * color over them. The drawers use this for their read-modify-write operations, so that implementations
+	 * like ConcurrentTextureBuilder can prevent other threads from changing the same pixels in between. The
+	 * default implementation simply runs the action.
+	 * @param action The action to run, which should only change pixels inside the region
+	 */
+	default void modifyRegion(int minX, int minY, int maxX, int maxY, Runnable action) {
+		action.run();
+	}
+	
+	/**
+	 * @return True if different rows of this texture can be written by multiple threads at the same time, with
+	 * a result that doesn't depend on the order in which the rows are written. The drawers and filters write
+	 * the rows of textures that return false on the calling thread, from top to bottom, so that the same seed
+	 * always gives the same texture. The default implementation returns true.
+	 */
+	default boolean supportsParallelWrites() {
+		return true;
+	}
+	
 	BufferedImage createBufferedImage();
 	
 	byte[] createArrrayRGBA();
@@ -0,0 +1,28 @@
+package nl.knokko.texture.builder;
+
+/**
+ * The ways to map linear HDR intensities (which can be larger than 1) to the range 0 to 1, before they are
+ * encoded to bytes.
+ * @author knokko
+ *
+ */
+public enum ToneMapping {
+	
+	/** Intensities larger than 1 are simply clamped to 1 */
+	CLAMP,
+	/** The Reinhard operator x / (1 + x), which compresses bright intensities smoothly */
+	REINHARD,
+	/** A fit of the ACES filmic curve (by Krzysztof Narkowicz), which gives more contrast than REINHARD */
+	ACES;
+	
+	/**
+	 * Maps the given linear intensity to the range 0 to 1
+	 */
+	public float map(float value) {
+		switch (this) {
+		case REINHARD: return value / (1f + value);
+		case ACES: return Math.min(1f, (value * (2.51f * value + 0.03f)) / (value * (2.43f * value + 0.59f) + 0.14f));
+		default: return Math.min(1f, value);
+		}
+	}
+}
@@ -0,0 +1,386 @@
+package nl.knokko.texture.builder;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nl.knokko.texture.builder.drawing.*;
+import nl.knokko.texture.color.Color;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.CounterRandom;
+
+/**
+ * A read-only texture builder that can be much larger than the available memory. The texture is divided into
+ * square tiles that are generated on first access by a TileRecipe. Generated tiles are kept in a least
+ * recently used cache with a budget in bytes. When a tile is evicted and needed again later, it will simply
+ * be generated again. Every tile gets its own seed that is derived from the seed of the virtual texture and
+ * the position of the tile, so regenerated tiles are identical to the evicted ones (as long as the recipe only
+ * uses that seed as source of randomness).
+ * <p>
+ * Since tiles can be evicted at any time, virtual textures can't be drawn on: all drawing must be done by the
+ * recipe. The setPixel methods, the drawers and the auxiliary channels of this class throw an
+ * UnsupportedOperationException.
+ * <p>
+ * The prefetch method can be used to generate tiles in the background before they are needed. This class is
+ * thread-safe.
+ * @author knokko
+ *
+ */
+public class VirtualTextureBuilder implements TextureBuilder {
+	
+	protected final int width, height;
+	protected final boolean hasAlpha;
+	protected final int tileSize;
+	protected final long maxCacheBytes;
+	protected final long seed;
+	protected final TileRecipe recipe;
+	protected final Executor prefetchExecutor;
+	
+	/** Guarded by itself */
+	private final LinkedHashMap<Long, ByteArrayTextureBuilder> cache = new LinkedHashMap<>(16, 0.75f, true);
+	/** Guarded by cache */
+	private long cachedBytes;
+	
+	private final Map<Long, CompletableFuture<ByteArrayTextureBuilder>> pending = new ConcurrentHashMap<>();
+	private final AtomicLong generatedTiles = new AtomicLong();
+	
+	/** The most recently used tile, so that consecutive accesses to the same tile don't need the cache */
+	private volatile CachedTile lastTile;
+	
+	/**
+	 * @param width The width of the entire virtual texture
+	 * @param height The height of the entire virtual texture
+	 * @param useAlpha Whether the tiles should have an alpha channel
+	 * @param tileSize The width and height of the tiles (the tiles on the right and bottom edges can be smaller)
+	 * @param maxCacheBytes The maximum number of bytes that the cached tiles may use (at least 1 tile will
+	 * always be kept)
+	 * @param seed The seed from which the seeds of the tiles will be derived
+	 * @param recipe The recipe that generates the tiles
+	 * @param prefetchExecutor The executor that will generate the tiles requested by prefetch
+	 */
+	public VirtualTextureBuilder(int width, int height, boolean useAlpha, int tileSize, long maxCacheBytes,
+			long seed, TileRecipe recipe, Executor prefetchExecutor) {
+		if (tileSize <= 0)
+			throw new IllegalArgumentException("The tile size must be positive, but is " + tileSize);
+		this.width = width;
+		this.height = height;
+		this.hasAlpha = useAlpha;
+		this.tileSize = tileSize;
+		this.maxCacheBytes = maxCacheBytes;
+		this.seed = seed;
+		this.recipe = recipe;
+		this.prefetchExecutor = prefetchExecutor;
+	}
+	
+	/**
+	 * Constructs a virtual texture builder that prefetches tiles in the common fork join pool. See the other
+	 * constructor for the meaning of the parameters.
+	 */
+	public VirtualTextureBuilder(int width, int height, boolean useAlpha, int tileSize, long maxCacheBytes,
+			long seed, TileRecipe recipe) {
+		this(width, height, useAlpha, tileSize, maxCacheBytes, seed, recipe, ForkJoinPool.commonPool());
+	}
+	
+	@Override
+	public int width() {
+		return width;
+	}
+	
+	@Override
+	public int height() {
+		return height;
+	}
+	
+	@Override
+	public boolean useAlpha() {
+		return hasAlpha;
+	}
+	
+	public int tileSize() {
+		return tileSize;
+	}
+	
+	@Override
+	public GeometryDrawer geometry() {
+		throw readOnly();
+	}
+	
+	@Override
+	public MaterialDrawer materials() {
+		throw readOnly();
+	}
+	
+	@Override
+	public AverageDrawer average() {
+		throw readOnly();
+	}
+	
+	@Override
+	public DecayingDrawer decaying() {
+		throw readOnly();
+	}
+	
+	@Override
+	public AuxiliaryChannels auxiliary() {
+		throw readOnly();
+	}
+	
+	@Override
+	public void setPixel(int x, int y, byte red, byte green, byte blue, byte alpha) {
+		throw readOnly();
+	}
+	
+	@Override
+	public void setRowRGBA(int minX, int maxX, int y, byte[] source, int sourceIndex) {
+		throw readOnly();
+	}
+	
+	private static UnsupportedOperationException readOnly() {
+		return new UnsupportedOperationException("Virtual textures are read-only, draw in the TileRecipe instead");
+	}
+	
+	@Override
+	public byte getRed(int x, int y) {
+		return tileAt(x, y).getRed(x % tileSize, y % tileSize);
+	}
+	
+	@Override
+	public byte getGreen(int x, int y) {
+		return tileAt(x, y).getGreen(x % tileSize, y % tileSize);
+	}
+	
+	@Override
+	public byte getBlue(int x, int y) {
+		return tileAt(x, y).getBlue(x % tileSize, y % tileSize);
+	}
+	
+	@Override
+	public byte getAlpha(int x, int y) {
+		return tileAt(x, y).getAlpha(x % tileSize, y % tileSize);
+	}
+	
+	@Override
+	public Color getPixel(int x, int y) {
+		return tileAt(x, y).getPixel(x % tileSize, y % tileSize);
+	}
+	
+	@Override
+	public void getRowRGBA(int minX, int maxX, int y, byte[] dest, int destIndex) {
+		int tileY = y / tileSize;
+		int localY = y % tileSize;
+		
+		// Copy the row tile by tile
+		int x = minX;
+		while (x <= maxX) {
+			int tileX = x / tileSize;
+			int tileMaxX = Math.min(maxX, (tileX + 1) * tileSize - 1);
+			getTile(tileX, tileY).getRowRGBA(x - tileX * tileSize, tileMaxX - tileX * tileSize, localY, dest, destIndex);
+			destIndex += (tileMaxX - x + 1) * 4;
+			x = tileMaxX + 1;
+		}
+	}
+	
+	private TextureBuilder tileAt(int x, int y) {
+		return getTile(x / tileSize, y / tileSize);
+	}
+	
+	/**
+	 * Gets the tile at the given tile coordinates, generating it if it is not in the cache.
+	 * @param tileX The tile x-coordinate (the pixel x-coordinate divided by the tile size)
+	 * @param tileY The tile y-coordinate (the pixel y-coordinate divided by the tile size)
+	 * @return The tile
+	 */
+	public ByteArrayTextureBuilder getTile(int tileX, int tileY) {
+		long key = (long) tileX << 32 | (tileY & 0xFFFFFFFFL);
+		CachedTile last = lastTile;
+		if (last != null && last.key == key)
+			return last.tile;
+		
+		ByteArrayTextureBuilder tile = getCachedTile(key);
+		if (tile == null) {
+			CompletableFuture<ByteArrayTextureBuilder> future = new CompletableFuture<>();
+			CompletableFuture<ByteArrayTextureBuilder> existing = pending.putIfAbsent(key, future);
+			if (existing != null) {
+				
+				// Another thread is already generating this tile
+				tile = existing.join();
+			} else {
+				try {
+					
+					// The tile might have been finished right before it was added to pending
+					tile = getCachedTile(key);
+					if (tile == null)
+						tile = generateTile(tileX, tileY, key);
+					future.complete(tile);
+				} catch (RuntimeException | Error failure) {
+					future.completeExceptionally(failure);
+					throw failure;
+				} finally {
+					pending.remove(key);
+				}
+			}
+		}
+		lastTile = new CachedTile(key, tile);
+		return tile;
+	}
+	
+	private ByteArrayTextureBuilder getCachedTile(long key) {
+		synchronized (cache) {
+			return cache.get(key);
+		}
+	}
+	
+	private ByteArrayTextureBuilder generateTile(int tileX, int tileY, long key) {
+		Measurement measurement = Metrics.start("VirtualTextureBuilder.generateTile");
+		int tileWidth = Math.min(tileSize, width - tileX * tileSize);
+		int tileHeight = Math.min(tileSize, height - tileY * tileSize);
+		if (tileX < 0 || tileY < 0 || tileWidth <= 0 || tileHeight <= 0)
+			throw new IndexOutOfBoundsException("Tile (" + tileX + "," + tileY + ") is outside the texture");
+		ByteArrayTextureBuilder tile = new ByteArrayTextureBuilder(tileWidth, tileHeight, hasAlpha);
+		recipe.generate(tile, tileX, tileY, CounterRandom.hash(seed, tileX, tileY));
+		generatedTiles.incrementAndGet();
+		
+		long tileBytes = tileBytes(tile);
+		synchronized (cache) {
+			cache.put(key, tile);
+			cachedBytes += tileBytes;
+			Iterator<ByteArrayTextureBuilder> iterator = cache.values().iterator();
+			while (cachedBytes > maxCacheBytes && cache.size() > 1) {
+				ByteArrayTextureBuilder evicted = iterator.next();
+				iterator.remove();
+				cachedBytes -= tileBytes(evicted);
+			}
+		}
+		measurement.end((long) tileWidth * tileHeight);
+		return tile;
+	}
+	
+	private long tileBytes(ByteArrayTextureBuilder tile) {
+		return (long) tile.width() * tile.height() * (hasAlpha ? 4 : 3);
+	}
+	
+	/**
+	 * Starts generating all tiles that overlap the given region in the background (using the prefetch
+	 * executor), unless they are already cached or being generated. This method returns immediately.
+	 * Note that prefetching a region that is larger than the cache budget is pointless, since the first tiles
+	 * will be evicted before they are used.
+	 */
+	public void prefetch(int minX, int minY, int maxX, int maxY) {
+		int minTileX = Math.max(0, minX / tileSize);
+		int minTileY = Math.max(0, minY / tileSize);
+		int maxTileX = Math.min((width - 1) / tileSize, maxX / tileSize);
+		int maxTileY = Math.min((height - 1) / tileSize, maxY / tileSize);
+		for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+			for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+				long key = (long) tileX << 32 | (tileY & 0xFFFFFFFFL);
+				if (getCachedTile(key) == null && !pending.containsKey(key)) {
+					int finalTileX = tileX;
+					int finalTileY = tileY;
+					prefetchExecutor.execute(() -> getTile(finalTileX, finalTileY));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return The number of tiles that are currently in the cache
+	 */
+	public int getCachedTileCount() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+	
+	/**
+	 * @return The number of bytes used by the tiles that are currently in the cache
+	 */
+	public long getCachedBytes() {
+		synchronized (cache) {
+			return cachedBytes;
+		}
+	}
+	
+	/**
+	 * @return The number of times a tile has been generated (including regenerations after eviction)
+	 */
+	public long getGeneratedTileCount() {
+		return generatedTiles.get();
+	}
+	
+	/**
+	 * Creates a BufferedImage of the entire virtual texture. This generates all tiles, so it should only be
+	 * used for textures that fit in memory.
+	 */
+	@Override
+	public BufferedImage createBufferedImage() {
+		BufferedImage image = new BufferedImage(width, height,
+				hasAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+		byte[] row = new byte[width * 4];
+		int[] argbRow = new int[width];
+		for (int y = 0; y < height; y++) {
+			getRowRGBA(0, width - 1, y, row, 0);
+			for (int x = 0; x < width; x++) {
+				argbRow[x] = (row[4 * x + 3] & 0xFF) << 24 | (row[4 * x] & 0xFF) << 16
+						| (row[4 * x + 1] & 0xFF) << 8 | (row[4 * x + 2] & 0xFF);
+			}
+			image.setRGB(0, y, width, 1, argbRow, 0, width);
+		}
+		return image;
+	}
+	
+	/**
+	 * Creates an array with the pixels of the entire virtual texture, in the same layout as the array of a
+	 * ByteArrayTextureBuilder. This generates all tiles, so it should only be used for textures that fit in
+	 * memory.
+	 */
+	@Override
+	public byte[] createArrrayRGBA() {
+		int bytesPerPixel = hasAlpha ? 4 : 3;
+		byte[] result = new byte[width * height * bytesPerPixel];
+		byte[] row = new byte[width * 4];
+		for (int y = 0; y < height; y++) {
+			getRowRGBA(0, width - 1, y, row, 0);
+			int resultIndex = y * width * bytesPerPixel;
+			for (int x = 0; x < width; x++) {
+				System.arraycopy(row, 4 * x, result, resultIndex, bytesPerPixel);
+				resultIndex += bytesPerPixel;
+			}
+		}
+		return result;
+	}
+	
+	private static class CachedTile {
+		
+		final long key;
+		final ByteArrayTextureBuilder tile;
+		
+		CachedTile(long key, ByteArrayTextureBuilder tile) {
+			this.key = key;
+			this.tile = tile;
+		}
+	}
+	
+	@FunctionalInterface
+	public static interface TileRecipe {
+		
+		/**
+		 * Draws the content of a single tile. This method can be called from multiple threads at the same time
+		 * (for different tiles) and it can be called multiple times for the same tile (after eviction). To
+		 * make sure regenerated tiles are identical to the original ones, the seed should be the only source
+		 * of randomness. To make tiles fit together, the recipe can use tileX and tileY to compute the
+		 * position of the tile in the virtual texture.
+		 * @param tile The texture builder of the tile to draw on, initially all pixels are 0
+		 * @param tileX The tile x-coordinate, the left pixel of the tile has x-coordinate tileX * tileSize
+		 * @param tileY The tile y-coordinate, the upper pixel of the tile has y-coordinate tileY * tileSize
+		 * @param seed The seed of this tile
+		 */
+		void generate(TextureBuilder tile, int tileX, int tileY, long seed);
+	}
+}
@@ -4,8 +4,13 @@ import java.util.Random;
 
 import nl.knokko.texture.builder.TextureBuilder;
 import nl.knokko.texture.color.Color;
+import nl.knokko.texture.color.SRGB;
 import nl.knokko.texture.color.SimpleRGBAColor;
 import nl.knokko.texture.color.SimpleRGBColor;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.CounterRandom;
+import nl.knokko.texture.util.Parallel;
 
 public class AverageDrawer {
 	
@@ -13,6 +18,13 @@ public class AverageDrawer {
 		return getMultipliedColor(basic, 1.0 - maxDifference + random.nextDouble() * maxDifference * 2);
 	}
 
+	/**
+	 * Like getDifColor, but multiplies the linear light intensities of the color when linearLight is true
+	 */
+	public static Color getDifColor(Random random, Color basic, double maxDifference, boolean linearLight) {
+		return getMultipliedColor(basic, 1.0 - maxDifference + random.nextDouble() * maxDifference * 2, linearLight);
+	}
+
 	public static Color getMultipliedColor(Color basic, double factor) {
 		if (basic.getAlphaI() == 255)
 			return SimpleRGBColor.fromDoubles(basic.getRedD() * factor, basic.getGreenD() * factor, basic.getBlueD() * factor);
@@ -20,26 +32,149 @@ public class AverageDrawer {
 			return SimpleRGBAColor.fromDoubles(basic.getRedD() * factor, basic.getGreenD() * factor, basic.getBlueD() * factor, basic.getAlphaD());
 	}
 	
+	/**
+	 * Multiplies the color components by factor. If linearLight is true, the linear light intensities of the
+	 * components will be multiplied (using the lookup tables of SRGB) rather than the sRGB encoded values.
+	 */
+	public static Color getMultipliedColor(Color basic, double factor, boolean linearLight) {
+		if (!linearLight)
+			return getMultipliedColor(basic, factor);
+		float factorF = (float) factor;
+		byte red = SRGB.multiply(basic.getRed(), factorF);
+		byte green = SRGB.multiply(basic.getGreen(), factorF);
+		byte blue = SRGB.multiply(basic.getBlue(), factorF);
+		if (basic.getAlphaI() == 255)
+			return SimpleRGBColor.fromBytes(red, green, blue);
+		else
+			return SimpleRGBAColor.fromBytes(red, green, blue, basic.getAlpha());
+	}
+	
 	protected final TextureBuilder texture;
 	protected final int width, height;
 	
+	private VariationTable lastTable;
+	private boolean linearLight;
+	
 	public AverageDrawer(TextureBuilder textureBuilder) {
 		texture = textureBuilder;
 		width = texture.width();
 		height = texture.height();
 	}
 	
+	/**
+	 * Enables or disables the linear light mode of this drawer. In linear light mode, colors are varied by
+	 * multiplying their linear light intensities instead of their sRGB encoded values, which makes dark and
+	 * bright variations look equally strong. It is disabled by default.
+	 */
+	public void setLinearLight(boolean linearLight) {
+		this.linearLight = linearLight;
+	}
+	
+	public boolean isLinearLight() {
+		return linearLight;
+	}
+	
+	/**
+	 * Fills the rectangle from (minX,minY) to (maxX,maxY) with variations of the given color: every pixel
+	 * gets the color multiplied by a random factor between 1 - maxDifference and 1 + maxDifference (like
+	 * getDifColor). The rectangle is processed row by row, large rectangles are processed in parallel bands.
+	 * Only 1 long is taken from random, the factor of each pixel is derived from that long and the position
+	 * of the pixel.
+	 */
 	public void fillAverage(int minX, int minY, int maxX, int maxY, Color color, double maxDifference, Random random) {
-		for (int x = minX; x <= maxX; x++)
-			for (int y = minY; y <= maxY; y++)
-				texture.setPixel(x, y, getDifColor(random, color, maxDifference));
+		Measurement measurement = Metrics.start("AverageDrawer.fillAverage");
+		fillVariations(texture, minX, minY, maxX, maxY, getVariationTable(color, maxDifference), random.nextLong(), 1.0);
+		measurement.end((long) (maxX - minX + 1) * (maxY - minY + 1));
 	}
 
+	/**
+	 * Like fillAverage, but only changes each pixel with the given chance. The other pixels keep their color.
+	 */
 	public void fillAverageChance(int minX, int minY, int maxX, int maxY, Color color, double maxDifference,
 			Random random, double chance) {
-		for (int x = minX; x <= maxX; x++)
-			for (int y = minY; y <= maxY; y++)
-				if (random.nextDouble() < chance)
-					texture.setPixel(x, y, getDifColor(random, color, maxDifference));
+		Measurement measurement = Metrics.start("AverageDrawer.fillAverageChance");
+		fillVariations(texture, minX, minY, maxX, maxY, getVariationTable(color, maxDifference), random.nextLong(), chance);
+		measurement.end((long) ((long) (maxX - minX + 1) * (maxY - minY + 1) * chance));
+	}
+	
+	static void fillVariations(TextureBuilder texture, int minX, int minY, int maxX, int maxY, VariationTable table,
+			long seed, double chance) {
+		if (maxX < minX || maxY < minY)
+			return;
+		byte[] variations = table.variations;
+		int spanWidth = maxX - minX + 1;
+		
+		// Compare the random bits against this threshold instead of computing a double for every pixel
+		long chanceThreshold = chance >= 1.0 ? Long.MAX_VALUE : (long) (chance * (1L << 32));
+		boolean always = chance >= 1.0;
+		
+		Parallel.forEachBand(minY, maxY, spanWidth, texture.supportsParallelWrites(), (bandMinY, bandMaxY) -> {
+			byte[] row = new byte[spanWidth * 4];
+			for (int y = bandMinY; y <= bandMaxY; y++) {
+				long rowSeed = CounterRandom.hash(seed, y);
+				if (always) {
+					
+					// Every 64 random bits are enough to choose the variation of 8 pixels
+					long bits = 0;
+					for (int index = 0; index < spanWidth; index++) {
+						if ((index & 7) == 0)
+							bits = CounterRandom.hash(rowSeed, index >> 3);
+						int variationIndex = ((int) bits & 0xFF) * 4;
+						bits >>>= 8;
+						System.arraycopy(variations, variationIndex, row, index * 4, 4);
+					}
+					texture.setRowRGBA(minX, maxX, y, row, 0);
+				} else {
+					int rowY = y;
+					texture.modifyRegion(minX, y, maxX, y, () -> {
+						texture.getRowRGBA(minX, maxX, rowY, row, 0);
+						for (int index = 0; index < spanWidth; index++) {
+							long bits = CounterRandom.hash(rowSeed, index);
+							if ((bits >>> 32) < chanceThreshold)
+								System.arraycopy(variations, ((int) bits & 0xFF) * 4, row, index * 4, 4);
+						}
+						texture.setRowRGBA(minX, maxX, rowY, row, 0);
+					});
+				}
+			}
+		});
+	}
+	
+	private VariationTable getVariationTable(Color color, double maxDifference) {
+		
+		// Patterns like fillBrickPattern use the same color many times in a row, so remember the last table
+		VariationTable last = lastTable;
+		int rgba = color.getRedI() << 24 | color.getGreenI() << 16 | color.getBlueI() << 8 | color.getAlphaI();
+		if (last != null && last.rgba == rgba && last.maxDifference == maxDifference && last.linearLight == linearLight)
+			return last;
+		VariationTable table = new VariationTable(color, rgba, maxDifference, linearLight);
+		lastTable = table;
+		return table;
+	}
+	
+	/**
+	 * The 256 possible variations of a color that fillAverage can choose from, as RGBA bytes. Variation i
+	 * is the color multiplied by 1 - maxDifference + 2 * maxDifference * (i + 0.5) / 256.
+	 */
+	static class VariationTable {
+		
+		final int rgba;
+		final double maxDifference;
+		final boolean linearLight;
+		final byte[] variations = new byte[256 * 4];
+		
+		VariationTable(Color color, int rgba, double maxDifference, boolean linearLight) {
+			this.rgba = rgba;
+			this.maxDifference = maxDifference;
+			this.linearLight = linearLight;
+			for (int index = 0; index < 256; index++) {
+				double factor = 1.0 - maxDifference + maxDifference * 2 * (index + 0.5) / 256.0;
+				Color variation = getMultipliedColor(color, factor, linearLight);
+				variations[4 * index] = variation.getRed();
+				variations[4 * index + 1] = variation.getGreen();
+				variations[4 * index + 2] = variation.getBlue();
+				variations[4 * index + 3] = variation.getAlpha();
+			}
+		}
 	}
 }
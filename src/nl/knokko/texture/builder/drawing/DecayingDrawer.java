@@ -2,22 +2,44 @@ package nl.knokko.texture.builder.drawing;
 
 import java.util.Random;
 
+import nl.knokko.texture.builder.FloatTextureBuilder;
 import nl.knokko.texture.builder.TextureBuilder;
 import nl.knokko.texture.color.Color;
+import nl.knokko.texture.color.SRGB;
 import nl.knokko.texture.color.SimpleRGBColor;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
 
 public class DecayingDrawer {
 	
 	protected final TextureBuilder texture;
 	protected final int width, height;
 	
+	private boolean linearLight;
+	
 	public DecayingDrawer(TextureBuilder texture) {
 		this.texture = texture;
 		this.width = texture.width();
 		this.height = texture.height();
 	}
 	
+	/**
+	 * Enables or disables the linear light mode of this drawer. In linear light mode, the colors of the
+	 * circles are blended on linear light intensities (using the lookup tables of SRGB) instead of on sRGB
+	 * encoded values, and the color variations are made like AverageDrawer does in linear light mode. It is
+	 * disabled by default. Float textures always blend in their own float representation.
+	 */
+	public void setLinearLight(boolean linearLight) {
+		this.linearLight = linearLight;
+	}
+	
+	public boolean isLinearLight() {
+		return linearLight;
+	}
+	
 	public void fillDecayingCircle(int centerX, int centerY, double radius, Color color) {
+		Measurement measurement = Metrics.start("DecayingDrawer.fillDecayingCircle");
+		
 		int minX = (int) (centerX - radius);
 		int minY = (int) (centerY - radius);
 
@@ -51,6 +73,24 @@ public class DecayingDrawer {
 		if (maxY >= height) {
 			maxY = height - 1;
 		}
+		
+		// The blending reads the current colors, so other threads must not change them in between
+		int circleMinX = minX;
+		int circleMinY = minY;
+		int circleMaxX = maxX;
+		int circleMaxY = maxY;
+		texture.modifyRegion(minX, minY, maxX, maxY, () -> measurement.end(
+				blendCircle(circleMinX, circleMinY, circleMaxX, circleMaxY, centerX, centerY, radiusSQ, color)));
+	}
+	
+	private long blendCircle(int minX, int minY, int maxX, int maxY, int centerX, int centerY, double radiusSQ, Color color) {
+		long pixels = 0;
+
+		// Float textures can blend without rounding to bytes after every circle
+		FloatTextureBuilder floatTexture = texture instanceof FloatTextureBuilder ? (FloatTextureBuilder) texture : null;
+		float red = floatTexture != null ? floatTexture.componentToFloat(color.getRed()) : 0f;
+		float green = floatTexture != null ? floatTexture.componentToFloat(color.getGreen()) : 0f;
+		float blue = floatTexture != null ? floatTexture.componentToFloat(color.getBlue()) : 0f;
 
 		// Now the actual work
 		for (int x = minX; x <= maxX; x++) {
@@ -66,18 +106,35 @@ public class DecayingDrawer {
 					double currentWeight = distanceSQ / radiusSQ;
 					double colorWeight = 1.0 - currentWeight;
 
-					Color current = texture.getPixel(x, y);
-					texture.setPixel(x, y,
-							SimpleRGBColor.fromDoubles(currentWeight * current.getRedD() + colorWeight * color.getRedD(),
-									currentWeight * current.getGreenD() + colorWeight * color.getGreenD(),
-									currentWeight * current.getBlueD() + colorWeight * color.getBlueD()));
+					if (floatTexture != null) {
+						float current = (float) currentWeight;
+						float weight = (float) colorWeight;
+						floatTexture.setPixelF(x, y, current * floatTexture.getRedF(x, y) + weight * red,
+								current * floatTexture.getGreenF(x, y) + weight * green,
+								current * floatTexture.getBlueF(x, y) + weight * blue, 1f);
+					} else if (linearLight) {
+						float current = (float) currentWeight;
+						float weight = (float) colorWeight;
+						texture.setPixel(x, y, SRGB.mix(texture.getRed(x, y), current, color.getRed(), weight),
+								SRGB.mix(texture.getGreen(x, y), current, color.getGreen(), weight),
+								SRGB.mix(texture.getBlue(x, y), current, color.getBlue(), weight));
+					} else {
+						Color current = texture.getPixel(x, y);
+						texture.setPixel(x, y,
+								SimpleRGBColor.fromDoubles(currentWeight * current.getRedD() + colorWeight * color.getRedD(),
+										currentWeight * current.getGreenD() + colorWeight * color.getGreenD(),
+										currentWeight * current.getBlueD() + colorWeight * color.getBlueD()));
+					}
+					pixels++;
 				}
 			}
 		}
+		return pixels;
 	}
 
 	public void addDecayingCirclePattern(int minX, int minY, int maxX, int maxY, Color color, double maxColorDifference,
 			double minRadius, double maxRadius, double density, Random random) {
+		Measurement measurement = Metrics.start("DecayingDrawer.addDecayingCirclePattern");
 		int width = maxX - minX + 1;
 		int height = maxY - minY + 1;
 		int area = width * height;
@@ -85,14 +142,14 @@ public class DecayingDrawer {
 		double radiusDifference = maxRadius - minRadius;
 
 		int amount = (int) (density * area);
-		System.out.println("amount is " + amount);
 
 		for (int counter = 0; counter < amount; counter++) {
 			int x = minX + random.nextInt(width);
 			int y = minY + random.nextInt(height);
 			fillDecayingCircle(x, y, minRadius + radiusDifference * random.nextDouble(),
-					AverageDrawer.getDifColor(random, color, maxColorDifference));
+					AverageDrawer.getDifColor(random, color, maxColorDifference, linearLight));
 		}
+		measurement.end(area);
 	}
 
 	public void addDecayingCirclePattern(Color color, double maxColorDifference, double minRadius, double maxRadius,
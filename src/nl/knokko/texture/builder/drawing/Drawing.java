@@ -0,0 +1,110 @@
+package nl.knokko.texture.builder.drawing;
+
+import java.util.Random;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.Color;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.BufferPool;
+
+/**
+ * Static versions of the most common drawing operations, which take the texture builder to draw on as
+ * parameter. Unlike the drawers, they don't have any state (every method uses the default settings of the
+ * drawers, so no linear light), and they don't use the drawers of the texture builder. Texture builders like
+ * ByteArrayTextureBuilder create their drawers when they are first needed, so textures that only need a few
+ * simple operations (like scratch textures and copy targets) never create drawers.
+ * @author knokko
+ *
+ */
+public class Drawing {
+	
+	private Drawing() {}
+	
+	/**
+	 * Fills the rectangle from (minX,minY) to (maxX,maxY) with the given color, like GeometryDrawer.fillRect
+	 */
+	public static void fillRect(TextureBuilder texture, int minX, int minY, int maxX, int maxY, byte red, byte green,
+			byte blue, byte alpha) {
+		Measurement measurement = Metrics.start("Drawing.fillRect");
+		for (int y = minY; y <= maxY; y++)
+			texture.fillSpan(minX, maxX, y, red, green, blue, alpha);
+		measurement.end((long) (maxX - minX + 1) * (maxY - minY + 1));
+	}
+	
+	public static void fillRect(TextureBuilder texture, int minX, int minY, int maxX, int maxY, Color color) {
+		fillRect(texture, minX, minY, maxX, maxY, color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha());
+	}
+	
+	/**
+	 * Draws a horizontal line from (minX,y) to (maxX,y), like GeometryDrawer.drawHorizontalLine. Transparent
+	 * colors are blended on the sRGB encoded values.
+	 */
+	public static void drawHorizontalLine(TextureBuilder texture, int minX, int maxX, int y, byte red, byte green,
+			byte blue, byte alpha) {
+		if (alpha == 0)
+			return;
+		Measurement measurement = Metrics.start("Drawing.drawHorizontalLine");
+		if (alpha == -1)
+			texture.fillSpan(minX, maxX, y, red, green, blue, alpha);
+		else
+			texture.blendSpan(minX, maxX, y, red, green, blue, alpha);
+		measurement.end(maxX - minX + 1);
+	}
+	
+	public static void drawHorizontalLine(TextureBuilder texture, int minX, int maxX, int y, Color color) {
+		drawHorizontalLine(texture, minX, maxX, y, color.getRed(), color.getGreen(), color.getBlue(), color.getAlpha());
+	}
+	
+	/**
+	 * Sets all pixels from (x,minY) to (x,maxY) to the given color, like GeometryDrawer.drawVerticalLine
+	 */
+	public static void drawVerticalLine(TextureBuilder texture, int minY, int maxY, int x, Color color) {
+		Measurement measurement = Metrics.start("Drawing.drawVerticalLine");
+		for (int y = minY; y <= maxY; y++)
+			texture.setPixel(x, y, color);
+		measurement.end(maxY - minY + 1);
+	}
+	
+	/**
+	 * Fills the rectangle from (minX,minY) to (maxX,maxY) with variations of the given color, like
+	 * AverageDrawer.fillAverage. Only 1 long is taken from random.
+	 */
+	public static void fillAverage(TextureBuilder texture, int minX, int minY, int maxX, int maxY, Color color,
+			double maxDifference, Random random) {
+		fillAverageChance(texture, minX, minY, maxX, maxY, color, maxDifference, random, 1.0);
+	}
+	
+	/**
+	 * Like fillAverage, but only changes each pixel with the given chance, like AverageDrawer.fillAverageChance
+	 */
+	public static void fillAverageChance(TextureBuilder texture, int minX, int minY, int maxX, int maxY, Color color,
+			double maxDifference, Random random, double chance) {
+		Measurement measurement = Metrics.start("Drawing.fillAverage");
+		
+		// There is no drawer to remember the table in, so it has to be computed every time
+		AverageDrawer.VariationTable table = new AverageDrawer.VariationTable(color, 0, maxDifference, false);
+		AverageDrawer.fillVariations(texture, minX, minY, maxX, maxY, table, random.nextLong(), chance);
+		measurement.end((long) ((long) (maxX - minX + 1) * (maxY - minY + 1) * Math.min(chance, 1.0)));
+	}
+	
+	/**
+	 * Copies the rectangle of the given width and height with (sourceX,sourceY) as top-left corner from source
+	 * to the rectangle with (destX,destY) as top-left corner in dest. The pixels are replaced rather than
+	 * blended. If dest doesn't use alpha, the alpha of the source will be ignored. The source and dest must not
+	 * be the same texture builder, unless the rectangles don't overlap.
+	 */
+	public static void copy(TextureBuilder source, int sourceX, int sourceY, TextureBuilder dest, int destX, int destY,
+			int width, int height) {
+		if (width <= 0 || height <= 0)
+			return;
+		Measurement measurement = Metrics.start("Drawing.copy");
+		byte[] row = BufferPool.borrowBytes(4 * width);
+		for (int y = 0; y < height; y++) {
+			source.getRowRGBA(sourceX, sourceX + width - 1, sourceY + y, row, 0);
+			dest.setRowRGBA(destX, destX + width - 1, destY + y, row, 0);
+		}
+		BufferPool.releaseBytes(row);
+		measurement.end((long) width * height);
+	}
+}
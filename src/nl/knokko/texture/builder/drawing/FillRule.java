@@ -0,0 +1,29 @@
+package nl.knokko.texture.builder.drawing;
+
+/**
+ * Determines which points are inside a polygon or path whose edges cross each other or itself.
+ * @author knokko
+ *
+ */
+public enum FillRule {
+	
+	/**
+	 * A point is inside if the edges wind around it at least once (in either direction)
+	 */
+	NON_ZERO,
+	
+	/**
+	 * A point is inside if a ray from that point crosses the edges an odd number of times
+	 */
+	EVEN_ODD;
+	
+	/**
+	 * @param winding The sum of the directions of the edges on the left side of a point
+	 * @return true if a point with the given winding number is inside according to this rule
+	 */
+	public boolean isInside(int winding) {
+		if (this == NON_ZERO)
+			return winding != 0;
+		return (winding & 1) != 0;
+	}
+}
@@ -1,8 +1,16 @@
 package nl.knokko.texture.builder.drawing;
 
+import nl.knokko.texture.builder.FloatTextureBuilder;
 import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.builder.drawing.path.Path;
+import nl.knokko.texture.builder.drawing.path.PathRasterizer;
+import nl.knokko.texture.builder.drawing.path.Stroke;
 import nl.knokko.texture.color.Color;
+import nl.knokko.texture.color.SRGB;
 import nl.knokko.texture.color.SimpleRGBAColor;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.BufferPool;
 
 /**
  * Instances of this class can be used to draw simple geometrical shapes on texture builders.
@@ -17,6 +25,8 @@ public class GeometryDrawer {
 	
 	protected final int width, height;
 	
+	private boolean linearLight;
+	
 	/**
 	 * Constructs a new GeometryDrawer. Only one instance of GeometryDrawer should be created per instance
 	 * of TextureBuilder (preferable within the constructor of the TextureBuilder). It can then be accessed
@@ -29,6 +39,24 @@ public class GeometryDrawer {
 		this.height = texture.height();
 	}
 	
+	/**
+	 * Enables or disables the linear light mode of this drawer. In linear light mode, transparent colors (and
+	 * the edges of circles) are blended on linear light intensities (using the lookup tables of SRGB) instead
+	 * of on sRGB encoded values. It is disabled by default. Float textures always blend in their own float
+	 * representation.
+	 */
+	public void setLinearLight(boolean linearLight) {
+		this.linearLight = linearLight;
+	}
+	
+	public boolean isLinearLight() {
+		return linearLight;
+	}
+	
+	private boolean blendLinear() {
+		return linearLight && !(texture instanceof FloatTextureBuilder);
+	}
+	
 	/**
 	 * Draws a horizontal line between the points (minX,y) and (maxX,y) with the given color.
 	 * @param minX The minimum x-coordinate where the line should be drawn (should be smaller than maxX)
@@ -45,32 +73,26 @@ public class GeometryDrawer {
 		if (alpha == 0)
 			return;
 		
+		Measurement measurement = Metrics.start("GeometryDrawer.drawHorizontalLine");
+		
 		// If the color is not transparent, do it the quick and easy way
 		if (alpha == -1) {
-			for (int x = minX; x <= maxX; x++)
-				texture.setPixel(x, y, red, green, blue, alpha);
+			texture.fillSpan(minX, maxX, y, red, green, blue, alpha);
+		} else if (blendLinear()) {
+			int pixels = maxX - minX + 1;
+			byte[] row = BufferPool.borrowBytes(4 * pixels);
+			float lineFactor = (alpha & 0xFF) / 255f;
+			texture.modifyRegion(minX, y, maxX, y, () -> {
+				texture.getRowRGBA(minX, maxX, y, row, 0);
+				for (int index = 0; index < 4 * pixels; index += 4)
+					blendLinear(row, index, lineFactor, red, green, blue);
+				texture.setRowRGBA(minX, maxX, y, row, 0);
+			});
+			BufferPool.releaseBytes(row);
 		} else {
-			
-			// The color is transparent, so do it the hard way...
-			double lineFactor = (alpha & 0xFF) / 255.0;
-			
-			double lineRed = (red & 0xFF) * lineFactor / 255.0;
-			double lineGreen = (green & 0xFF) * lineFactor / 255.0;
-			double lineBlue = (blue & 0xFF) * lineFactor / 255.0;
-			
-			for (int x = minX; x <= maxX; x++) {
-				Color oldColor = texture.getPixel(x, y);
-				
-				// Let's hope its the easy way
-				if (oldColor.getAlpha() == 0) {
-					texture.setPixel(x, y, red, green, blue, alpha);
-				} else {
-					
-					// Or do it the hard way...
-					texture.setPixel(x, y, mixColors(lineFactor, lineRed, lineGreen, lineBlue, texture.getPixel(x, y)));
-				}
-			}
+			texture.blendSpan(minX, maxX, y, red, green, blue, alpha);
 		}
+		measurement.end(maxX - minX + 1);
 	}
 	
 	private Color mixColors(double lineFactor, double lineRed, double lineGreen, double lineBlue, Color old) {
@@ -83,6 +105,21 @@ public class GeometryDrawer {
 				(lineBlue + old.getBlueD() * oldFactor) * finalFactor, factorSum);
 	}
 	
+	/**
+	 * Blends a color with the given alpha (lineFactor) over the RGBA pixel at the given index in row, using
+	 * the same weights as mixColors, but on linear light intensities.
+	 */
+	private static void blendLinear(byte[] row, int index, float lineFactor, byte red, byte green, byte blue) {
+		float oldFactor = (row[index + 3] & 0xFF) / 255f;
+		float factorSum = lineFactor + oldFactor;
+		float lineWeight = lineFactor / factorSum;
+		float oldWeight = oldFactor / factorSum;
+		row[index] = SRGB.mix(red, lineWeight, row[index], oldWeight);
+		row[index + 1] = SRGB.mix(green, lineWeight, row[index + 1], oldWeight);
+		row[index + 2] = SRGB.mix(blue, lineWeight, row[index + 2], oldWeight);
+		row[index + 3] = (byte) (Math.min(factorSum, 1f) * 255f + 0.5f);
+	}
+	
 	/**
 	 * Draws a horizontal line between the points (minX,y) and (maxX,y) with the given color.
 	 * @param minX The minimum x-coordinate where the line should be drawn (should be smaller than maxX)
@@ -95,8 +132,10 @@ public class GeometryDrawer {
 	}
 	
 	public void drawVerticalLine(int minY, int maxY, int x, byte red, byte green, byte blue, byte alpha) {
+		Measurement measurement = Metrics.start("GeometryDrawer.drawVerticalLine");
 		for (int y = minY; y <= maxY; y++)
 			texture.setPixel(x, y, red, green, blue, alpha);
+		measurement.end(maxY - minY + 1);
 	}
 
 	public void drawVerticalLine(int minY, int maxY, int x, Color color) {
@@ -104,6 +143,7 @@ public class GeometryDrawer {
 	}
 
 	public void drawLine(int startX, int startY, int endX, int endY, Color color) {
+		Measurement measurement = Metrics.start("GeometryDrawer.drawLine");
 
 		// This case can be dealt with quicker than the usual case
 		if (startX == endX) {
@@ -174,6 +214,7 @@ public class GeometryDrawer {
 				if (roundedY >= 0 && roundedY < height)
 					texture.setPixel(x, roundedY, color);
 			}
+			measurement.end(maxX - minX + 1);
 		} else {
 
 			/*
@@ -204,13 +245,17 @@ public class GeometryDrawer {
 				if (roundedX >= 0 && roundedX < width)
 					texture.setPixel(roundedX, y, color);
 			}
+			measurement.end(maxY - minY + 1);
 		}
 	}
 
 	public void fillRect(int minX, int minY, int maxX, int maxY, byte red, byte green, byte blue, byte alpha) {
-		for (int x = minX; x <= maxX; x++)
-			for (int y = minY; y <= maxY; y++)
-				texture.setPixel(x, y, red, green, blue, alpha);
+		Measurement measurement = Metrics.start("GeometryDrawer.fillRect");
+		
+		// Go row by row because that is how the pixels are stored
+		for (int y = minY; y <= maxY; y++)
+			texture.fillSpan(minX, maxX, y, red, green, blue, alpha);
+		measurement.end((long) (maxX - minX + 1) * (maxY - minY + 1));
 	}
 
 	public void fillRect(int minX, int minY, int maxX, int maxY, Color color) {
@@ -218,9 +263,12 @@ public class GeometryDrawer {
 	}
 
 	public void fillCircle(double centerX, double centerY, double radius, Color color) {
+		Measurement measurement = Metrics.start("GeometryDrawer.fillCircle");
+		long pixels = 0;
 		int minX = Math.max((int) Math.floor(centerX - radius), 0);
 		int maxX = Math.min((int) Math.floor(centerX + radius), width - 1);
 		double radiusSQ = radius * radius;
+		byte[] edgePixel = new byte[4];
 		for (int x = minX; x <= maxX; x++) {
 			
 			/*
@@ -237,7 +285,7 @@ public class GeometryDrawer {
 			double minYD = centerY - maxDistY - 0.5;
 			double minYDF = Math.floor(minYD);
 			int minY = (int) minYDF;
-			texture.setPixel(x, minY, mixColors((float) (1 - (minYD - minYDF)), color.getRedD(), color.getGreenD(), color.getBlueD(), texture.getPixel(x, minY)));
+			mixEdge(x, minY, (float) (1 - (minYD - minYDF)), color, edgePixel);
 			
 			double maxYD = centerY + maxDistY - 0.5;
 			double maxYDF = Math.floor(maxYD);
@@ -245,16 +293,33 @@ public class GeometryDrawer {
 			// TODO Finetune this someday
 			int maxY = (int) maxYDF;
 			if (maxY != minY) {
-				texture.setPixel(x, maxY, mixColors((float) (1 - (maxYD - maxYDF)), color.getRedD(), color.getGreenD(), color.getBlueD(), texture.getPixel(x, maxY)));
+				mixEdge(x, maxY, (float) (1 - (maxYD - maxYDF)), color, edgePixel);
 			
 				if (maxY > minY + 1) {
 					drawVerticalLine(minY + 1, maxY - 1, x, color);
 				}
 			}
+			pixels += maxY - minY + 1;
 		}
+		measurement.end(pixels);
+	}
+
+	private void mixEdge(int x, int y, float coverage, Color color, byte[] pixel) {
+		boolean linear = blendLinear();
+		texture.modifyRegion(x, y, x, y, () -> {
+			if (linear) {
+				texture.getRowRGBA(x, x, y, pixel, 0);
+				blendLinear(pixel, 0, coverage, color.getRed(), color.getGreen(), color.getBlue());
+				texture.setRowRGBA(x, x, y, pixel, 0);
+			} else {
+				texture.setPixel(x, y, mixColors(coverage, color.getRedD(), color.getGreenD(), color.getBlueD(), texture.getPixel(x, y)));
+			}
+		});
 	}
 
 	public void fillOval(int centreX, int centreY, double radiusX, double radiusY, Color color) {
+		Measurement measurement = Metrics.start("GeometryDrawer.fillOval");
+		long pixels = 0;
 		int minX = (int) (centreX - radiusX);
 		int minY = (int) (centreY - radiusY);
 		int maxX = (int) (centreX + radiusX + 1);
@@ -262,9 +327,106 @@ public class GeometryDrawer {
 		for (int x = minX; x <= maxX; x++) {
 			for (int y = minY; y <= maxY; y++) {
 				double distance = Math.hypot((x - centreX) / radiusX, (y - centreY) / radiusY);
-				if (distance <= 1)
+				if (distance <= 1) {
 					texture.setPixel(x, y, color);
+					pixels++;
+				}
 			}
 		}
+		measurement.end(pixels);
+	}
+	
+	/**
+	 * Fills a polygon with the given color. A pixel will be filled if its center is inside the polygon
+	 * according to the non-zero fill rule.
+	 * @param xs The x-coordinates of the vertices of the polygon
+	 * @param ys The y-coordinates of the vertices of the polygon (must have the same length as xs)
+	 * @param color The color to fill the polygon with
+	 */
+	public void fillPolygon(double[] xs, double[] ys, Color color) {
+		fillPolygon(xs, ys, FillRule.NON_ZERO, false, color);
+	}
+	
+	/**
+	 * Fills a polygon with the given color, using the ScanlineRasterizer.
+	 * @param xs The x-coordinates of the vertices of the polygon
+	 * @param ys The y-coordinates of the vertices of the polygon (must have the same length as xs)
+	 * @param rule The rule that determines which pixels are inside self-intersecting polygons
+	 * @param antiAlias If true, pixels on the edges of the polygon will be blended with the color based on
+	 * how much of them is covered by the polygon
+	 * @param color The color to fill the polygon with
+	 */
+	public void fillPolygon(double[] xs, double[] ys, FillRule rule, boolean antiAlias, Color color) {
+		if (xs.length != ys.length)
+			throw new IllegalArgumentException("There are " + xs.length + " x-coordinates, but " + ys.length + " y-coordinates");
+		Measurement measurement = Metrics.start("GeometryDrawer.fillPolygon");
+		byte red = color.getRed();
+		byte green = color.getGreen();
+		byte blue = color.getBlue();
+		int alpha = color.getAlphaI();
+		long[] pixels = { 0 };
+		ScanlineRasterizer.fillPolygon(xs, ys, xs.length, rule, antiAlias, 0, 0, width - 1, height - 1,
+				(y, minX, maxX, coverage) -> {
+			drawHorizontalLine(minX, maxX, y, red, green, blue, (byte) (int) (alpha * coverage + 0.5f));
+			pixels[0] += maxX - minX + 1;
+		});
+		measurement.end(pixels[0]);
+	}
+	
+	/**
+	 * Fills the triangle with the given corners with the given color.
+	 * @param antiAlias If true, pixels on the edges of the triangle will be blended with the color based on
+	 * how much of them is covered by the triangle
+	 */
+	public void fillTriangle(double x1, double y1, double x2, double y2, double x3, double y3, boolean antiAlias,
+			Color color) {
+		fillPolygon(new double[] { x1, x2, x3 }, new double[] { y1, y2, y3 }, FillRule.NON_ZERO, antiAlias, color);
+	}
+	
+	public void fillTriangle(double x1, double y1, double x2, double y2, double x3, double y3, Color color) {
+		fillTriangle(x1, y1, x2, y2, x3, y3, false, color);
+	}
+	
+	/**
+	 * Fills the interior of the given path with the given color. All subpaths are closed implicitly. The
+	 * edges are anti-aliased.
+	 * @param path The path to fill
+	 * @param rule The rule that determines which parts of self-intersecting paths are inside
+	 * @param color The color to fill the path with
+	 */
+	public void fillPath(Path path, FillRule rule, Color color) {
+		Measurement measurement = Metrics.start("GeometryDrawer.fillPath");
+		
+		// The rasterizer only stores the rows that the path touches, so it is cheap to create one for every
+		// call, which allows multiple threads to use this drawer at the same time
+		PathRasterizer rasterizer = new PathRasterizer(width, height);
+		rasterizer.addPath(path);
+		measurement.end(renderPath(rasterizer, rule, color));
+	}
+	
+	/**
+	 * Draws the outline of the given path with the given color. The edges are anti-aliased.
+	 * @param path The path to draw the outline of
+	 * @param stroke The width, caps and joins of the outline
+	 * @param color The color of the outline
+	 */
+	public void strokePath(Path path, Stroke stroke, Color color) {
+		Measurement measurement = Metrics.start("GeometryDrawer.strokePath");
+		PathRasterizer rasterizer = new PathRasterizer(width, height);
+		rasterizer.addStroke(path, stroke);
+		measurement.end(renderPath(rasterizer, FillRule.NON_ZERO, color));
+	}
+	
+	private long renderPath(PathRasterizer rasterizer, FillRule rule, Color color) {
+		byte red = color.getRed();
+		byte green = color.getGreen();
+		byte blue = color.getBlue();
+		int alpha = color.getAlphaI();
+		long[] pixels = { 0 };
+		rasterizer.render(rule, (y, minX, maxX, coverage) -> {
+			drawHorizontalLine(minX, maxX, y, red, green, blue, (byte) (int) (alpha * coverage + 0.5f));
+			pixels[0] += maxX - minX + 1;
+		});
+		return pixels[0];
 	}
 }
@@ -1,12 +1,22 @@
 package nl.knokko.texture.builder.drawing;
 
+import java.util.Arrays;
 import java.util.Random;
 
+import nl.knokko.texture.builder.AuxiliaryChannels;
 import nl.knokko.texture.builder.TextureBuilder;
 import nl.knokko.texture.color.Color;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.BufferPool;
+import nl.knokko.texture.util.CounterRandom;
 import nl.knokko.texture.util.Maths;
+import nl.knokko.texture.util.Parallel;
 
 public class MaterialDrawer {
+	
+	/** The number of line segments per side of the polygons that drawGrassPolygons uses as grass blades */
+	public static final int GRASS_BLADE_SEGMENTS = 8;
 
 	protected final TextureBuilder texture;
 	protected final int width, height;
@@ -19,7 +29,37 @@ public class MaterialDrawer {
 
 	public void drawGrass(int minX, int minY, int maxX, int maxY, Color grassColor, Color brightGrassColor,
 			Color groundColor, Random random) {
-		long startTime = System.currentTimeMillis();
+		int drawWidth = maxX - minX + 1;
+		int drawHeight = maxY - minY + 1;
+		byte[] heightMap = BufferPool.borrowBytes(drawWidth * drawHeight);
+		drawGrass(minX, minY, maxX, maxY, grassColor, brightGrassColor, groundColor, random, heightMap, 0, drawWidth);
+		BufferPool.releaseBytes(heightMap);
+	}
+	
+	/**
+	 * Draws grass like the other drawGrass method, but also stores the height of the grass in the auxiliary
+	 * height channel (AuxiliaryChannels.HEIGHT) of the texture. This height map can for instance be used to
+	 * create a normal map with NormalMapFilter.writeNormalMap.
+	 */
+	public void drawGrassWithHeightChannel(int minX, int minY, int maxX, int maxY, Color grassColor,
+			Color brightGrassColor, Color groundColor, Random random) {
+		byte[] heightChannel = texture.auxiliary().bytes(AuxiliaryChannels.HEIGHT);
+		drawGrass(minX, minY, maxX, maxY, grassColor, brightGrassColor, groundColor, random, heightChannel,
+				minY * width + minX, width);
+	}
+	
+	/**
+	 * Draws grass like the other drawGrass method, but stores the height of the grass in the given height map.
+	 * The height of pixel (x,y) will be stored at index heightMapOffset + (y - minY) * heightMapStride + x - minX
+	 * of the height map. Heights are between 0 and 80 (pixels without grass have height 0). The entries for
+	 * the region will be cleared before drawing.
+	 * @param heightMap The array to store the heights in
+	 * @param heightMapOffset The index in heightMap where the height of (minX,minY) should be stored
+	 * @param heightMapStride The difference between the indices of 2 vertically adjacent pixels in heightMap
+	 */
+	public void drawGrass(int minX, int minY, int maxX, int maxY, Color grassColor, Color brightGrassColor,
+			Color groundColor, Random random, byte[] heightMap, int heightMapOffset, int heightMapStride) {
+		Measurement measurement = Metrics.start("MaterialDrawer.drawGrass");
 
 		// Calculate and define the most used variables before starting the actual stuff
 		int drawWidth = maxX - minX + 1;
@@ -41,7 +81,10 @@ public class MaterialDrawer {
 		texture.geometry().fillRect(minX, minY, maxX, maxY, redGround, greenGround, blueGround, (byte) 255);
 
 		// Use the height map to make sure the highest grass is always shown
-		byte[] heightMap = new byte[drawWidth * drawHeight];
+		for (int y = 0; y < drawHeight; y++) {
+			int rowIndex = heightMapOffset + y * heightMapStride;
+			Arrays.fill(heightMap, rowIndex, rowIndex + drawWidth, (byte) 0);
+		}
 
 		// Draw that many grass 'lines'
 		int numGrassLines = drawWidth * drawHeight / 70;
@@ -131,7 +174,7 @@ public class MaterialDrawer {
 
 							// Finally test if we are not 'below' some other grass 'line'
 							byte realHeight = (byte) (cosVertAngleTimesLength * progress);
-							int heightMapIndex = heightMapX + drawWidth * (realY - minY);
+							int heightMapIndex = heightMapOffset + heightMapX + heightMapStride * (realY - minY);
 							if (realHeight >= heightMap[heightMapIndex]) {
 								heightMap[heightMapIndex] = realHeight;
 								
@@ -146,12 +189,130 @@ public class MaterialDrawer {
 				}
 			}
 		}
-		long endTime = System.currentTimeMillis();
-		System.out.println("Creating big grass texture took " + (endTime - startTime) + " ms");
+		measurement.end((long) drawWidth * drawHeight);
+	}
+	
+	/**
+	 * Draws the same kind of grass as drawGrass (and uses the random the same way), but rasterizes every
+	 * grass blade as a polygon with the ScanlineRasterizer, so only the pixels that are covered by the blades
+	 * are visited. The edges of the blades are approximated with GRASS_BLADE_SEGMENTS line segments per side,
+	 * so the result is nearly identical to the result of drawGrass.
+	 */
+	public void drawGrassPolygons(int minX, int minY, int maxX, int maxY, Color grassColor, Color brightGrassColor,
+			Color groundColor, Random random) {
+		int drawWidth = maxX - minX + 1;
+		int drawHeight = maxY - minY + 1;
+		byte[] heightMap = BufferPool.borrowBytes(drawWidth * drawHeight);
+		drawGrassPolygons(minX, minY, maxX, maxY, grassColor, brightGrassColor, groundColor, random, heightMap, 0,
+				drawWidth);
+		BufferPool.releaseBytes(heightMap);
+	}
+	
+	/**
+	 * The polygon variant of the drawGrass method with a height map. See the documentation of drawGrass and
+	 * drawGrassPolygons for more information.
+	 */
+	public void drawGrassPolygons(int minX, int minY, int maxX, int maxY, Color grassColor, Color brightGrassColor,
+			Color groundColor, Random random, byte[] heightMap, int heightMapOffset, int heightMapStride) {
+		Measurement measurement = Metrics.start("MaterialDrawer.drawGrassPolygons");
+		int drawWidth = maxX - minX + 1;
+		int drawHeight = maxY - minY + 1;
+
+		int redBase = grassColor.getRedI();
+		int greenBase = grassColor.getGreenI();
+		int blueBase = grassColor.getBlueI();
+
+		int redLeft = brightGrassColor.getRedI() - redBase;
+		int greenLeft = brightGrassColor.getGreenI() - greenBase;
+		int blueLeft = brightGrassColor.getBlueI() - blueBase;
+
+		texture.geometry().fillRect(minX, minY, maxX, maxY, groundColor.getRed(), groundColor.getGreen(),
+				groundColor.getBlue(), (byte) 255);
+		for (int y = 0; y < drawHeight; y++) {
+			int rowIndex = heightMapOffset + y * heightMapStride;
+			Arrays.fill(heightMap, rowIndex, rowIndex + drawWidth, (byte) 0);
+		}
+		
+		int numVertices = 2 * GRASS_BLADE_SEGMENTS + 2;
+		double[] xs = new double[numVertices];
+		double[] ys = new double[numVertices];
+
+		int numGrassLines = drawWidth * drawHeight / 70;
+		for (int counter = 0; counter < numGrassLines; counter++) {
+			
+			// Use the random exactly like drawGrass does
+			int startX = minX + random.nextInt(drawWidth);
+			int startY = minY + random.nextInt(drawHeight);
+			double angle = random.nextDouble() * 360.0;
+			double vertAngle = random.nextDouble() * 70.0;
+			double sinVertAngle = Maths.sinDegrees(vertAngle);
+			double length = (50.0 + 30.0 * random.nextDouble()) * sinVertAngle;
+			double invLength = 1.0 / length;
+			double cosVertAngleTimesLength = Maths.cosDegrees(vertAngle) * length;
+			double sinAngle = Maths.sinDegrees(angle);
+			double cosAngle = Maths.cosDegrees(angle);
+			double width = 4.0 + 3 * random.nextDouble();
+			
+			/*
+			 * In the coordinate system of the blade, the blade contains the points (bladeX,bladeY) with
+			 * 0 <= bladeY < length and |bladeX| <= sqrt(1 - bladeY / length) * width. Choosing
+			 * bladeY = (1 - (1 - t)^2) * length gives |bladeX| <= (1 - t) * width, so the vertices are placed at
+			 * evenly spaced values of t. The rotation back to the texture is
+			 * dx = sinAngle * bladeX + cosAngle * bladeY and dy = sinAngle * bladeY - cosAngle * bladeX, and
+			 * 0.5 is added because the rasterizer tests the centers of the pixels.
+			 */
+			double minBladeX = Double.POSITIVE_INFINITY, maxBladeX = Double.NEGATIVE_INFINITY;
+			double minBladeY = Double.POSITIVE_INFINITY, maxBladeY = Double.NEGATIVE_INFINITY;
+			for (int segment = 0; segment <= GRASS_BLADE_SEGMENTS; segment++) {
+				double t = (double) segment / GRASS_BLADE_SEGMENTS;
+				double bladeX = (1 - t) * width;
+				double bladeY = (1 - (1 - t) * (1 - t)) * length;
+				int left = segment;
+				int right = numVertices - 1 - segment;
+				xs[left] = startX + 0.5 - sinAngle * bladeX + cosAngle * bladeY;
+				ys[left] = startY + 0.5 + sinAngle * bladeY + cosAngle * bladeX;
+				xs[right] = startX + 0.5 + sinAngle * bladeX + cosAngle * bladeY;
+				ys[right] = startY + 0.5 + sinAngle * bladeY - cosAngle * bladeX;
+				minBladeX = Math.min(minBladeX, Math.min(xs[left], xs[right]));
+				maxBladeX = Math.max(maxBladeX, Math.max(xs[left], xs[right]));
+				minBladeY = Math.min(minBladeY, Math.min(ys[left], ys[right]));
+				maxBladeY = Math.max(maxBladeY, Math.max(ys[left], ys[right]));
+			}
+			
+			// Blades can stick out of the region, those pixels will wrap around to the other side
+			ScanlineRasterizer.fillPolygon(xs, ys, numVertices, FillRule.NON_ZERO, false, (int) Math.floor(minBladeX),
+					(int) Math.floor(minBladeY), (int) Math.ceil(maxBladeX), (int) Math.ceil(maxBladeY),
+					(y, spanMinX, spanMaxX, coverage) -> {
+				int realY = y;
+				if (realY < minY || realY > maxY)
+					realY = minY + Math.floorMod(y - minY, drawHeight);
+				int heightMapRow = heightMapOffset + heightMapStride * (realY - minY);
+				double dy = y - startY;
+				for (int x = spanMinX; x <= spanMaxX; x++) {
+					double progress = (sinAngle * dy + cosAngle * (x - startX)) * invLength;
+					if (progress < 0)
+						progress = 0;
+					int realX = x;
+					if (realX < minX || realX > maxX)
+						realX = minX + Math.floorMod(x - minX, drawWidth);
+					byte realHeight = (byte) (cosVertAngleTimesLength * progress);
+					int heightMapIndex = heightMapRow + realX - minX;
+					if (realHeight >= heightMap[heightMapIndex]) {
+						heightMap[heightMapIndex] = realHeight;
+						double extraColor = sinVertAngle * progress * progress;
+						texture.setPixel(realX, realY, (byte) (redBase + extraColor * redLeft),
+								(byte) (greenBase + extraColor * greenLeft), (byte) (blueBase + extraColor * blueLeft),
+								(byte) 255);
+					}
+				}
+			});
+		}
+		measurement.end((long) drawWidth * drawHeight);
 	}
 	
 	public void fillWoodPlanksPattern(int minX, int minY, int maxX, int maxY, int plankLength, int plankHeight,
 			int plankShift, Color plankColor, Color edgeColor, float maxDifference, Random random) {
+		Measurement measurement = Metrics.start("MaterialDrawer.fillWoodPlanksPattern");
 		
 		// TODO Recall why the next line was commented out
 		// fillWoodPattern(minX, minY, maxX, maxY, plankColor, random);
@@ -180,9 +341,11 @@ public class MaterialDrawer {
 		geometry.drawHorizontalLine(minX, maxX, maxY, edgeColor);
 		geometry.drawVerticalLine(minY, maxY, minX, edgeColor);
 		geometry.drawVerticalLine(minY, maxY, maxX, edgeColor);
+		measurement.end((long) (maxX - minX + 1) * (maxY - minY + 1));
 	}
 
 	public void fillWoodPattern(int minX, int minY, int maxX, int maxY, Color averageColor, Random random) {
+		Measurement measurement = Metrics.start("MaterialDrawer.fillWoodPattern");
 		
 		// TODO Recall what the next line is for
 		Color color = AverageDrawer.getDifColor(random, averageColor, 0.3f);
@@ -198,10 +361,12 @@ public class MaterialDrawer {
 					y--;
 			}
 		}
+		measurement.end((long) (maxX - minX + 1) * (maxY - minY + 1));
 	}
 	
 	public void fillBrickPattern(int minX, int minY, int maxX, int maxY, int brickLength, int brickHeight,
 			Color brickColor, Color edgeColor, float maxDifference, Random random) {
+		Measurement measurement = Metrics.start("MaterialDrawer.fillBrickPattern");
 		AverageDrawer average = texture.average();
 		average.fillAverage(minX, minY, maxX, maxY, brickColor, maxDifference, random);
 		for (int y = minY; y <= maxY; y += brickHeight)
@@ -212,5 +377,144 @@ public class MaterialDrawer {
 				average.fillAverage(x, y, x, Math.min(y + brickHeight, maxY), edgeColor, maxDifference, random);
 			flipper = !flipper;
 		}
+		measurement.end((long) (maxX - minX + 1) * (maxY - minY + 1));
+	}
+	
+	/**
+	 * Fills the region with a pattern of irregular cells (a Voronoi diagram), like stone tiles or
+	 * cobblestone. Every cell of a grid of cellSize by cellSize pixels gets 1 site at a random position
+	 * in the middle 60% of it, and every pixel belongs to the cell of the nearest site. Because of that margin,
+	 * the nearest site is always in the grid cell of the pixel or in 1 of its 8 neighbours, so the cost per
+	 * pixel doesn't depend on the number of cells. The rows are computed in parallel.
+	 * <p>
+	 * If the width and height of the region are multiples of cellSize, the pattern tiles seamlessly.
+	 * @param cellSize The average distance between the sites
+	 * @param cellColor The average color of the cells. Every cell gets its own color, which is chosen like
+	 * AverageDrawer.getDifColor(random, cellColor, maxDifference) does.
+	 * @param mortarColor The color between the cells
+	 * @param mortarWidth The width of the mortar between 2 cells, in pixels (0 for cells that touch)
+	 * @param edgeWidth The width of the band along the border of each cell in which the cell color gradually
+	 * blends halfway towards the mortar color, which makes the cells look rounded
+	 * @param maxDifference The maximum color difference between the cells
+	 * @param random The random to choose the positions and colors of the cells with
+	 */
+	public void fillCellPattern(int minX, int minY, int maxX, int maxY, int cellSize, Color cellColor,
+			Color mortarColor, double mortarWidth, double edgeWidth, double maxDifference, Random random) {
+		if (cellSize <= 0)
+			throw new IllegalArgumentException("The cell size must be positive, but is " + cellSize);
+		Measurement measurement = Metrics.start("MaterialDrawer.fillCellPattern");
+		int drawWidth = maxX - minX + 1;
+		int drawHeight = maxY - minY + 1;
+		int gridWidth = Math.max(1, (drawWidth + cellSize - 1) / cellSize);
+		int gridHeight = Math.max(1, (drawHeight + cellSize - 1) / cellSize);
+		
+		// The site positions and colors of all cells, relative to (minX,minY)
+		long seed = random.nextLong();
+		float[] siteX = new float[gridWidth * gridHeight];
+		float[] siteY = new float[gridWidth * gridHeight];
+		byte[] cellColors = new byte[3 * gridWidth * gridHeight];
+		for (int gridY = 0; gridY < gridHeight; gridY++) {
+			for (int gridX = 0; gridX < gridWidth; gridX++) {
+				int cell = gridY * gridWidth + gridX;
+				long bits = CounterRandom.hash(seed, gridX, gridY);
+				siteX[cell] = (gridX + 0.2f + 0.6f * (bits & 0xFFFF) / 65536f) * cellSize;
+				siteY[cell] = (gridY + 0.2f + 0.6f * (bits >>> 16 & 0xFFFF) / 65536f) * cellSize;
+				Color color = AverageDrawer.getDifColor(random, cellColor, maxDifference);
+				cellColors[3 * cell] = color.getRed();
+				cellColors[3 * cell + 1] = color.getGreen();
+				cellColors[3 * cell + 2] = color.getBlue();
+			}
+		}
+		
+		int mortarRed = mortarColor.getRedI();
+		int mortarGreen = mortarColor.getGreenI();
+		int mortarBlue = mortarColor.getBlueI();
+		float halfMortar = (float) mortarWidth / 2f;
+		float edge = (float) edgeWidth;
+		float patternWidth = gridWidth * cellSize;
+		float patternHeight = gridHeight * cellSize;
+		
+		Parallel.forEachBand(minY, maxY, drawWidth, texture.supportsParallelWrites(), (bandMinY, bandMaxY) -> {
+			byte[] row = BufferPool.borrowBytes(4 * drawWidth);
+			float[] neighbourX = new float[9];
+			float[] neighbourY = new float[9];
+			for (int y = bandMinY; y <= bandMaxY; y++) {
+				float pixelY = y - minY + 0.5f;
+				int gridY = (y - minY) / cellSize;
+				for (int x = 0; x < drawWidth; x++) {
+					float pixelX = x + 0.5f;
+					int gridX = x / cellSize;
+					
+					// Find the nearest site among the sites of the 3x3 neighbouring grid cells. The grid wraps
+					// around, so the sites beyond the edges are shifted by the size of the pattern.
+					int nearest = 0;
+					int nearestCell = 0;
+					float nearestDistanceSQ = Float.POSITIVE_INFINITY;
+					for (int neighbour = 0; neighbour < 9; neighbour++) {
+						int cellX = gridX + neighbour % 3 - 1;
+						int cellY = gridY + neighbour / 3 - 1;
+						float offsetX = cellX < 0 ? -patternWidth : cellX >= gridWidth ? patternWidth : 0f;
+						float offsetY = cellY < 0 ? -patternHeight : cellY >= gridHeight ? patternHeight : 0f;
+						int cell = Math.floorMod(cellY, gridHeight) * gridWidth + Math.floorMod(cellX, gridWidth);
+						neighbourX[neighbour] = siteX[cell] + offsetX;
+						neighbourY[neighbour] = siteY[cell] + offsetY;
+						float dx = neighbourX[neighbour] - pixelX;
+						float dy = neighbourY[neighbour] - pixelY;
+						float distanceSQ = dx * dx + dy * dy;
+						if (distanceSQ < nearestDistanceSQ) {
+							nearestDistanceSQ = distanceSQ;
+							nearest = neighbour;
+							nearestCell = cell;
+						}
+					}
+					
+					// The distance to the border of the cell is the distance to the nearest bisector between the
+					// nearest site and another site
+					float borderDistance = Float.POSITIVE_INFINITY;
+					for (int neighbour = 0; neighbour < 9; neighbour++) {
+						if (neighbour == nearest)
+							continue;
+						float dx = neighbourX[neighbour] - pixelX;
+						float dy = neighbourY[neighbour] - pixelY;
+						float betweenX = neighbourX[neighbour] - neighbourX[nearest];
+						float betweenY = neighbourY[neighbour] - neighbourY[nearest];
+						float betweenLength = (float) Math.sqrt(betweenX * betweenX + betweenY * betweenY);
+						if (betweenLength > 0f) {
+							float distance = (dx * dx + dy * dy - nearestDistanceSQ) / (2f * betweenLength);
+							if (distance < borderDistance)
+								borderDistance = distance;
+						}
+					}
+					
+					// Anti-alias the border of the mortar, and shade the edge band of the cell
+					float mortarWeight = 0f;
+					if (halfMortar > 0f)
+						mortarWeight = Math.min(1f, Math.max(0f, halfMortar + 0.5f - borderDistance));
+					if (edge > 0f && borderDistance < halfMortar + edge) {
+						float edgeWeight = 0.5f * (1f - Math.max(0f, borderDistance - halfMortar) / edge);
+						mortarWeight = Math.max(mortarWeight, edgeWeight);
+					}
+					float cellWeight = 1f - mortarWeight;
+					int index = 4 * x;
+					row[index] = (byte) (cellWeight * (cellColors[3 * nearestCell] & 0xFF) + mortarWeight * mortarRed + 0.5f);
+					row[index + 1] = (byte) (cellWeight * (cellColors[3 * nearestCell + 1] & 0xFF) + mortarWeight * mortarGreen + 0.5f);
+					row[index + 2] = (byte) (cellWeight * (cellColors[3 * nearestCell + 2] & 0xFF) + mortarWeight * mortarBlue + 0.5f);
+					row[index + 3] = (byte) 255;
+				}
+				texture.setRowRGBA(minX, maxX, y, row, 0);
+			}
+			BufferPool.releaseBytes(row);
+		});
+		measurement.end((long) drawWidth * drawHeight);
+	}
+	
+	/**
+	 * Fills the region with cobblestone: rounded stones with the given average color, separated by mortar.
+	 * This is fillCellPattern with settings that look like cobblestone.
+	 */
+	public void fillCobblestonePattern(int minX, int minY, int maxX, int maxY, int stoneSize, Color stoneColor,
+			Color mortarColor, Random random) {
+		fillCellPattern(minX, minY, maxX, maxY, stoneSize, stoneColor, mortarColor, 
+				Math.max(1.0, stoneSize / 10.0), stoneSize / 6.0, 0.15, random);
 	}
 }
@@ -0,0 +1,214 @@
+package nl.knokko.texture.builder.drawing;
+
+import java.util.Arrays;
+
+/**
+ * Rasterizes polygons with a scanline algorithm. The edges of the polygon are sorted in an edge table by
+ * their top y-coordinate and moved into the active edge list when the scanline reaches them, so only the
+ * pixels that are actually covered by the polygon are visited. The vertex coordinates are doubles, so
+ * polygons are positioned with sub-pixel precision: without anti-aliasing, a pixel is covered if its
+ * center (x + 0.5, y + 0.5) is inside the polygon. With anti-aliasing, every row is sampled with
+ * SUBSAMPLES scanlines and the horizontal coverage on each of them is computed exactly.
+ * @author knokko
+ *
+ */
+public class ScanlineRasterizer {
+	
+	/** The number of scanlines per row of pixels when anti-aliasing is enabled */
+	public static final int SUBSAMPLES = 4;
+	
+	/**
+	 * Rasterizes a polygon and passes its spans to consumer. The spans of each row are passed from left to
+	 * right and the rows are passed from top to bottom.
+	 * @param xs The x-coordinates of the vertices of the polygon
+	 * @param ys The y-coordinates of the vertices of the polygon
+	 * @param numVertices The number of vertices of the polygon (the first numVertices elements of xs and ys
+	 * will be used). The last vertex will be connected to the first vertex.
+	 * @param rule The fill rule to use
+	 * @param antiAlias True to compute the coverage of pixels on the edges of the polygon, false to only
+	 * pass pixels whose center is inside the polygon
+	 * @param clipMinX The smallest x-coordinate that may be passed to the consumer
+	 * @param clipMinY The smallest y-coordinate that may be passed to the consumer
+	 * @param clipMaxX The largest x-coordinate that may be passed to the consumer
+	 * @param clipMaxY The largest y-coordinate that may be passed to the consumer
+	 * @param consumer The consumer of the spans
+	 */
+	public static void fillPolygon(double[] xs, double[] ys, int numVertices, FillRule rule, boolean antiAlias,
+			int clipMinX, int clipMinY, int clipMaxX, int clipMaxY, SpanConsumer consumer) {
+		if (numVertices < 3 || clipMaxX < clipMinX || clipMaxY < clipMinY)
+			return;
+		
+		// Build the edge table, skipping horizontal edges since they never cross a scanline
+		double[] edgeTopY = new double[numVertices];
+		double[] edgeBottomY = new double[numVertices];
+		double[] edgeTopX = new double[numVertices];
+		double[] edgeSlope = new double[numVertices];
+		int[] edgeWinding = new int[numVertices];
+		int[] order = new int[numVertices];
+		int numEdges = 0;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (int index = 0; index < numVertices; index++) {
+			int next = index + 1 == numVertices ? 0 : index + 1;
+			double x1 = xs[index], y1 = ys[index], x2 = xs[next], y2 = ys[next];
+			if (y1 == y2)
+				continue;
+			int winding = 1;
+			if (y1 > y2) {
+				double swap = x1; x1 = x2; x2 = swap;
+				swap = y1; y1 = y2; y2 = swap;
+				winding = -1;
+			}
+			edgeTopY[numEdges] = y1;
+			edgeBottomY[numEdges] = y2;
+			edgeTopX[numEdges] = x1;
+			edgeSlope[numEdges] = (x2 - x1) / (y2 - y1);
+			edgeWinding[numEdges] = winding;
+			order[numEdges] = numEdges;
+			numEdges++;
+			minY = Math.min(minY, y1);
+			maxY = Math.max(maxY, y2);
+		}
+		if (numEdges == 0)
+			return;
+		sortEdges(order, numEdges, edgeTopY);
+		
+		int firstRow = Math.max(clipMinY, (int) Math.floor(minY));
+		int lastRow = Math.min(clipMaxY, (int) Math.ceil(maxY));
+		
+		int[] active = new int[numEdges];
+		int numActive = 0;
+		int nextEdge = 0;
+		double[] crossings = new double[numEdges];
+		int[] crossingWindings = new int[numEdges];
+		
+		int subsamples = antiAlias ? SUBSAMPLES : 1;
+		float sampleWeight = 1f / subsamples;
+		
+		// Only needed for anti-aliasing: the exact coverage of the pixels on the edges and the difference
+		// in coverage of the interior pixels (relative to clipMinX)
+		int clipWidth = clipMaxX - clipMinX + 1;
+		float[] partial = antiAlias ? new float[clipWidth + 1] : null;
+		float[] delta = antiAlias ? new float[clipWidth + 2] : null;
+		
+		for (int y = firstRow; y <= lastRow; y++) {
+			int rowMinX = Integer.MAX_VALUE;
+			int rowMaxX = Integer.MIN_VALUE;
+			for (int sample = 0; sample < subsamples; sample++) {
+				double sampleY = y + (sample + 0.5) / subsamples;
+				
+				// Update the active edge list
+				while (nextEdge < numEdges && edgeTopY[order[nextEdge]] <= sampleY)
+					active[numActive++] = order[nextEdge++];
+				int numCrossings = 0;
+				for (int activeIndex = 0; activeIndex < numActive; activeIndex++) {
+					int edge = active[activeIndex];
+					if (edgeBottomY[edge] <= sampleY) {
+						active[activeIndex--] = active[--numActive];
+						continue;
+					}
+					if (edgeTopY[edge] > sampleY)
+						continue;
+					
+					// Insertion sort on the x-coordinate of the crossing
+					double crossing = edgeTopX[edge] + (sampleY - edgeTopY[edge]) * edgeSlope[edge];
+					int insertIndex = numCrossings++;
+					while (insertIndex > 0 && crossings[insertIndex - 1] > crossing) {
+						crossings[insertIndex] = crossings[insertIndex - 1];
+						crossingWindings[insertIndex] = crossingWindings[insertIndex - 1];
+						insertIndex--;
+					}
+					crossings[insertIndex] = crossing;
+					crossingWindings[insertIndex] = edgeWinding[edge];
+				}
+				
+				// Walk over the crossings to find the intervals that are inside
+				int winding = 0;
+				for (int index = 0; index < numCrossings - 1; index++) {
+					winding += crossingWindings[index];
+					if (!rule.isInside(winding))
+						continue;
+					double left = crossings[index];
+					double right = crossings[index + 1];
+					if (antiAlias) {
+						left = Math.max(left, clipMinX);
+						right = Math.min(right, clipMaxX + 1);
+						if (left >= right)
+							continue;
+						int leftPixel = (int) Math.floor(left);
+						int rightPixel = (int) Math.floor(right);
+						if (leftPixel == rightPixel) {
+							partial[leftPixel - clipMinX] += (float) (right - left) * sampleWeight;
+						} else {
+							partial[leftPixel - clipMinX] += (float) (leftPixel + 1 - left) * sampleWeight;
+							delta[leftPixel + 1 - clipMinX] += sampleWeight;
+							delta[rightPixel - clipMinX] -= sampleWeight;
+							partial[rightPixel - clipMinX] += (float) (right - rightPixel) * sampleWeight;
+						}
+						rowMinX = Math.min(rowMinX, leftPixel);
+						rowMaxX = Math.max(rowMaxX, Math.min(rightPixel, clipMaxX));
+					} else {
+						int minX = Math.max(clipMinX, (int) Math.ceil(left - 0.5));
+						int maxX = Math.min(clipMaxX, (int) Math.ceil(right - 0.5) - 1);
+						if (minX <= maxX)
+							consumer.span(y, minX, maxX, 1f);
+					}
+				}
+			}
+			
+			if (antiAlias && rowMinX <= rowMaxX)
+				emitCoverage(y, rowMinX, rowMaxX, clipMinX, partial, delta, consumer);
+		}
+	}
+	
+	private static void sortEdges(int[] order, int numEdges, double[] edgeTopY) {
+		if (numEdges <= 32) {
+			
+			// Most polygons have few edges, so avoid the overhead of boxing
+			for (int index = 1; index < numEdges; index++) {
+				int edge = order[index];
+				int insertIndex = index;
+				while (insertIndex > 0 && edgeTopY[order[insertIndex - 1]] > edgeTopY[edge]) {
+					order[insertIndex] = order[insertIndex - 1];
+					insertIndex--;
+				}
+				order[insertIndex] = edge;
+			}
+		} else {
+			Integer[] boxed = new Integer[numEdges];
+			for (int index = 0; index < numEdges; index++)
+				boxed[index] = order[index];
+			Arrays.sort(boxed, (a, b) -> Double.compare(edgeTopY[a], edgeTopY[b]));
+			for (int index = 0; index < numEdges; index++)
+				order[index] = boxed[index];
+		}
+	}
+	
+	private static void emitCoverage(int y, int rowMinX, int rowMaxX, int clipMinX, float[] partial, float[] delta,
+			SpanConsumer consumer) {
+		float interior = 0f;
+		int runStart = -1;
+		float runCoverage = 0f;
+		for (int x = rowMinX; x <= rowMaxX; x++) {
+			int index = x - clipMinX;
+			interior += delta[index];
+			float coverage = Math.min(1f, interior + partial[index]);
+			delta[index] = 0f;
+			partial[index] = 0f;
+			
+			// Merge pixels with the same coverage into a single span
+			if (runStart != -1 && coverage != runCoverage) {
+				if (runCoverage > 0.001f)
+					consumer.span(y, runStart, x - 1, runCoverage);
+				runStart = -1;
+			}
+			if (runStart == -1) {
+				runStart = x;
+				runCoverage = coverage;
+			}
+		}
+		if (runStart != -1 && runCoverage > 0.001f)
+			consumer.span(y, runStart, rowMaxX, runCoverage);
+		delta[rowMaxX + 1 - clipMinX] = 0f;
+	}
+}
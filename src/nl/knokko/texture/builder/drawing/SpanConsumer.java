@@ -0,0 +1,21 @@
+package nl.knokko.texture.builder.drawing;
+
+/**
+ * Receives the output of the ScanlineRasterizer: runs of horizontally adjacent pixels that are covered by
+ * the shape that is being rasterized.
+ * @author knokko
+ *
+ */
+@FunctionalInterface
+public interface SpanConsumer {
+	
+	/**
+	 * Called for every run of pixels from (minX,y) to (maxX,y) that all have the same coverage
+	 * @param y The y-coordinate of the row of the span
+	 * @param minX The x-coordinate of the first pixel of the span
+	 * @param maxX The x-coordinate of the last pixel of the span
+	 * @param coverage The fraction of each pixel that is covered by the shape, greater than 0 and at most 1.
+	 * Without anti-aliasing, this is always 1.
+	 */
+	void span(int y, int minX, int maxX, float coverage);
+}
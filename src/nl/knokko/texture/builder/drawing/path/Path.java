@@ -0,0 +1,193 @@
+package nl.knokko.texture.builder.drawing.path;
+
+import java.util.Arrays;
+
+/**
+ * A vector path that consists of subpaths of straight lines, quadratic Bezier curves and cubic Bezier
+ * curves. Paths can be filled with GeometryDrawer.fillPath and stroked with GeometryDrawer.strokePath. All
+ * methods that add to the path return the path itself, so calls can be chained:
+ * <pre>
+ * Path arrow = new Path().moveTo(10, 10).lineTo(50, 30).quadTo(60, 40, 50, 50).close();
+ * </pre>
+ * Coordinates are in pixels, where pixel (x,y) covers the square from (x,y) to (x + 1,y + 1).
+ * @author knokko
+ *
+ */
+public class Path {
+	
+	static final byte MOVE = 0, LINE = 1, QUAD = 2, CUBIC = 3, CLOSE = 4;
+	
+	private byte[] commands = new byte[8];
+	private int numCommands;
+	
+	private double[] coords = new double[16];
+	private int numCoords;
+	
+	private boolean hasCurrentPoint;
+	
+	/**
+	 * Starts a new subpath at the given point
+	 */
+	public Path moveTo(double x, double y) {
+		add(MOVE, x, y);
+		hasCurrentPoint = true;
+		return this;
+	}
+	
+	/**
+	 * Adds a straight line from the current point to the given point
+	 */
+	public Path lineTo(double x, double y) {
+		checkCurrentPoint();
+		add(LINE, x, y);
+		return this;
+	}
+	
+	/**
+	 * Adds a quadratic Bezier curve from the current point to (x,y) with control point (controlX,controlY)
+	 */
+	public Path quadTo(double controlX, double controlY, double x, double y) {
+		checkCurrentPoint();
+		add(QUAD, controlX, controlY, x, y);
+		return this;
+	}
+	
+	/**
+	 * Adds a cubic Bezier curve from the current point to (x,y) with control points (controlX1,controlY1)
+	 * and (controlX2,controlY2)
+	 */
+	public Path cubicTo(double controlX1, double controlY1, double controlX2, double controlY2, double x, double y) {
+		checkCurrentPoint();
+		add(CUBIC, controlX1, controlY1, controlX2, controlY2, x, y);
+		return this;
+	}
+	
+	/**
+	 * Closes the current subpath by connecting its last point to its first point
+	 */
+	public Path close() {
+		checkCurrentPoint();
+		add(CLOSE);
+		hasCurrentPoint = false;
+		return this;
+	}
+	
+	private void checkCurrentPoint() {
+		if (!hasCurrentPoint)
+			throw new IllegalStateException("Use moveTo to start a subpath first");
+	}
+	
+	private void add(byte command, double... newCoords) {
+		if (numCommands == commands.length)
+			commands = Arrays.copyOf(commands, numCommands * 2);
+		commands[numCommands++] = command;
+		if (numCoords + newCoords.length > coords.length)
+			coords = Arrays.copyOf(coords, Math.max(coords.length * 2, numCoords + newCoords.length));
+		System.arraycopy(newCoords, 0, coords, numCoords, newCoords.length);
+		numCoords += newCoords.length;
+	}
+	
+	/**
+	 * Approximates all subpaths of this path with polylines and passes them to the consumer.
+	 * @param tolerance The maximum distance (in pixels) between the curves and the polylines
+	 * @param consumer The consumer of the polylines
+	 */
+	public void flatten(double tolerance, PolylineConsumer consumer) {
+		Polyline polyline = new Polyline();
+		int coordIndex = 0;
+		for (int commandIndex = 0; commandIndex < numCommands; commandIndex++) {
+			byte command = commands[commandIndex];
+			if (command == MOVE) {
+				polyline.flush(consumer, false);
+				polyline.add(coords[coordIndex], coords[coordIndex + 1]);
+				coordIndex += 2;
+			} else if (command == LINE) {
+				polyline.add(coords[coordIndex], coords[coordIndex + 1]);
+				coordIndex += 2;
+			} else if (command == QUAD) {
+				double x0 = polyline.lastX(), y0 = polyline.lastY();
+				double x1 = coords[coordIndex], y1 = coords[coordIndex + 1];
+				double x2 = coords[coordIndex + 2], y2 = coords[coordIndex + 3];
+				double deviation = Math.hypot(x0 - 2 * x1 + x2, y0 - 2 * y1 + y2);
+				int segments = numSegments(deviation * 0.25, tolerance);
+				for (int segment = 1; segment <= segments; segment++) {
+					double t = (double) segment / segments;
+					double u = 1 - t;
+					polyline.add(u * u * x0 + 2 * u * t * x1 + t * t * x2, u * u * y0 + 2 * u * t * y1 + t * t * y2);
+				}
+				coordIndex += 4;
+			} else if (command == CUBIC) {
+				double x0 = polyline.lastX(), y0 = polyline.lastY();
+				double x1 = coords[coordIndex], y1 = coords[coordIndex + 1];
+				double x2 = coords[coordIndex + 2], y2 = coords[coordIndex + 3];
+				double x3 = coords[coordIndex + 4], y3 = coords[coordIndex + 5];
+				double deviation = Math.max(Math.hypot(x0 - 2 * x1 + x2, y0 - 2 * y1 + y2),
+						Math.hypot(x1 - 2 * x2 + x3, y1 - 2 * y2 + y3));
+				int segments = numSegments(deviation * 0.75, tolerance);
+				for (int segment = 1; segment <= segments; segment++) {
+					double t = (double) segment / segments;
+					double u = 1 - t;
+					double a = u * u * u, b = 3 * u * u * t, c = 3 * u * t * t, d = t * t * t;
+					polyline.add(a * x0 + b * x1 + c * x2 + d * x3, a * y0 + b * y1 + c * y2 + d * y3);
+				}
+				coordIndex += 6;
+			} else {
+				polyline.flush(consumer, true);
+			}
+		}
+		polyline.flush(consumer, false);
+	}
+	
+	/**
+	 * The number of line segments needed to approximate a curve with the given (scaled) second difference
+	 * such that the distance to the curve is at most tolerance
+	 */
+	private static int numSegments(double deviation, double tolerance) {
+		return Math.max(1, Math.min(1000, (int) Math.ceil(Math.sqrt(deviation / tolerance))));
+	}
+	
+	private static class Polyline {
+		
+		double[] xs = new double[16];
+		double[] ys = new double[16];
+		int size;
+		
+		void add(double x, double y) {
+			if (size == xs.length) {
+				xs = Arrays.copyOf(xs, size * 2);
+				ys = Arrays.copyOf(ys, size * 2);
+			}
+			xs[size] = x;
+			ys[size] = y;
+			size++;
+		}
+		
+		double lastX() {
+			return xs[size - 1];
+		}
+		
+		double lastY() {
+			return ys[size - 1];
+		}
+		
+		void flush(PolylineConsumer consumer, boolean closed) {
+			if (size > 0)
+				consumer.polyline(xs, ys, size, closed);
+			size = 0;
+		}
+	}
+	
+	@FunctionalInterface
+	public static interface PolylineConsumer {
+		
+		/**
+		 * Receives a flattened subpath. The arrays may be reused after this method returns, so they must not
+		 * be stored.
+		 * @param xs The x-coordinates of the points of the polyline
+		 * @param ys The y-coordinates of the points of the polyline
+		 * @param numPoints The number of points of the polyline
+		 * @param closed True if the last point should be connected to the first point
+		 */
+		void polyline(double[] xs, double[] ys, int numPoints, boolean closed);
+	}
+}
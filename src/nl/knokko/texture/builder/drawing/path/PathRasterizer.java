@@ -0,0 +1,315 @@
+package nl.knokko.texture.builder.drawing.path;
+
+import java.util.Arrays;
+
+import nl.knokko.texture.builder.drawing.FillRule;
+import nl.knokko.texture.builder.drawing.SpanConsumer;
+
+/**
+ * Rasterizes paths with signed area accumulation, like many font rasterizers do. Every line segment adds
+ * its signed area contribution to the cells it crosses, and the coverage of a pixel is the running sum of
+ * the contributions of the cells on its left. Only the cells that are crossed by an edge are stored and
+ * visited: the pixels between them have the same coverage, so they are passed to the consumer as a single
+ * span. The cost of rasterizing a path is therefore proportional to the length of its edges rather than to
+ * the area of its bounding box.
+ * <p>
+ * The contributions are stored per row as a list of (cell, area) entries that is only allocated for rows
+ * that are crossed by an edge, so the memory usage is also proportional to the length of the edges rather
+ * than to the size of the texture. Instances can be reused for multiple paths: add lines, polygons, paths
+ * or strokes, and then call render to pass the result to a SpanConsumer and clear the rasterizer for the
+ * next shape. Render releases the entry lists of all rows. Instances are not thread-safe.
+ * @author knokko
+ *
+ */
+public class PathRasterizer {
+	
+	/** The maximum distance (in pixels) between curves and the lines that approximate them */
+	public static final double FLATTEN_TOLERANCE = 0.2;
+	
+	private final int width, height;
+	
+	/**
+	 * The area contributions of each row, or null for rows without contributions. Every entry has the cell
+	 * x-coordinate in its upper 32 bits and the float bits of the area in its lower 32 bits, so sorting the
+	 * entries sorts them by cell. A cell can have multiple entries.
+	 */
+	private long[][] rowEntries;
+	private int[] rowEntryCounts;
+	
+	private int minTouchedRow = Integer.MAX_VALUE;
+	private int maxTouchedRow = Integer.MIN_VALUE;
+	
+	/**
+	 * @param width The width of the texture to rasterize for
+	 * @param height The height of the texture to rasterize for
+	 */
+	public PathRasterizer(int width, int height) {
+		this.width = width;
+		this.height = height;
+	}
+	
+	private void ensureBuffers() {
+		if (rowEntries == null) {
+			rowEntries = new long[height][];
+			rowEntryCounts = new int[height];
+		}
+	}
+	
+	/**
+	 * Adds the area contributions of the line from (x0,y0) to (x1,y1). Lines going down add positive winding
+	 * and lines going up add negative winding.
+	 */
+	public void addLine(double x0, double y0, double x1, double y1) {
+		if (y0 == y1 || Double.isNaN(x0 + y0 + x1 + y1))
+			return;
+		
+		// Parts of the line that are left of the texture count as if they were on the left edge, and parts
+		// right of the texture don't matter, so split the line at x = 0 and at x = width
+		if ((x0 < 0) != (x1 < 0) && x0 != 0 && x1 != 0) {
+			double splitY = y0 + (y1 - y0) * (0 - x0) / (x1 - x0);
+			addLine(x0, y0, 0, splitY);
+			addLine(0, splitY, x1, y1);
+			return;
+		}
+		if ((x0 > width) != (x1 > width) && x0 != width && x1 != width) {
+			double splitY = y0 + (y1 - y0) * (width - x0) / (x1 - x0);
+			addLine(x0, y0, width, splitY);
+			addLine(width, splitY, x1, y1);
+			return;
+		}
+		addClampedLine(Math.max(0, Math.min(width, x0)), y0, Math.max(0, Math.min(width, x1)), y1);
+	}
+	
+	private void addClampedLine(double startX, double startY, double endX, double endY) {
+		ensureBuffers();
+		double direction = 1.0;
+		if (startY > endY) {
+			direction = -1.0;
+			double swap = startX; startX = endX; endX = swap;
+			swap = startY; startY = endY; endY = swap;
+		}
+		if (endY <= 0 || startY >= height)
+			return;
+		double slope = (endX - startX) / (endY - startY);
+		double x = startX;
+		if (startY < 0) {
+			x -= startY * slope;
+			startY = 0;
+		}
+		int firstRow = (int) startY;
+		int lastRow = Math.min(height - 1, (int) Math.ceil(endY) - 1);
+		
+		for (int row = firstRow; row <= lastRow; row++) {
+			double dy = Math.min(row + 1, endY) - Math.max(row, startY);
+			double nextX = x + slope * dy;
+			double d = dy * direction;
+			double left = Math.min(x, nextX);
+			double right = Math.max(x, nextX);
+			double leftFloor = Math.floor(left);
+			int leftCell = (int) leftFloor;
+			double rightCeil = Math.ceil(right);
+			int rightCell = (int) rightCeil;
+			
+			if (rightCell <= leftCell + 1) {
+				
+				// The line stays within a single cell on this row
+				double middle = 0.5 * (x + nextX) - leftFloor;
+				add(row, leftCell, d - d * middle);
+				add(row, leftCell + 1, d * middle);
+			} else {
+				double inverseWidth = 1.0 / (right - left);
+				double leftFraction = left - leftFloor;
+				double firstArea = 0.5 * inverseWidth * (1.0 - leftFraction) * (1.0 - leftFraction);
+				double rightFraction = right - rightCeil + 1.0;
+				double lastArea = 0.5 * inverseWidth * rightFraction * rightFraction;
+				add(row, leftCell, d * firstArea);
+				if (rightCell == leftCell + 2) {
+					add(row, leftCell + 1, d * (1.0 - firstArea - lastArea));
+				} else {
+					double secondArea = inverseWidth * (1.5 - leftFraction);
+					add(row, leftCell + 1, d * (secondArea - firstArea));
+					for (int cell = leftCell + 2; cell < rightCell - 1; cell++)
+						add(row, cell, d * inverseWidth);
+					double beforeLastArea = secondArea + (rightCell - leftCell - 3) * inverseWidth;
+					add(row, rightCell - 1, d * (1.0 - beforeLastArea - lastArea));
+				}
+				add(row, rightCell, d * lastArea);
+			}
+			x = nextX;
+		}
+	}
+	
+	private void add(int row, int cell, double value) {
+		long[] entries = rowEntries[row];
+		int count = rowEntryCounts[row];
+		if (entries == null) {
+			entries = new long[8];
+			rowEntries[row] = entries;
+			if (row < minTouchedRow)
+				minTouchedRow = row;
+			if (row > maxTouchedRow)
+				maxTouchedRow = row;
+		} else if (count > 0 && (int) (entries[count - 1] >>> 32) == cell) {
+			
+			// Consecutive contributions to the same cell are common, so merge them right away
+			entries[count - 1] = entry(cell, Float.intBitsToFloat((int) entries[count - 1]) + (float) value);
+			return;
+		} else if (count == entries.length) {
+			entries = Arrays.copyOf(entries, count * 2);
+			rowEntries[row] = entries;
+		}
+		entries[count] = entry(cell, (float) value);
+		rowEntryCounts[row] = count + 1;
+	}
+	
+	private static long entry(int cell, float value) {
+		return (long) cell << 32 | (Float.floatToRawIntBits(value) & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Adds the edges of a polygon
+	 * @param xs The x-coordinates of the vertices
+	 * @param ys The y-coordinates of the vertices
+	 * @param numVertices The number of vertices
+	 * @param positive If true, the polygon will be reversed if needed to make sure its interior gets a
+	 * positive winding number. This is needed when overlapping polygons should be merged with the NON_ZERO
+	 * fill rule.
+	 */
+	public void addPolygon(double[] xs, double[] ys, int numVertices, boolean positive) {
+		if (numVertices < 3)
+			return;
+		boolean reverse = false;
+		if (positive) {
+			double doubleArea = 0;
+			for (int index = 0; index < numVertices; index++) {
+				int next = index + 1 == numVertices ? 0 : index + 1;
+				doubleArea += xs[index] * ys[next] - xs[next] * ys[index];
+			}
+			
+			// Lines going down add positive winding, so the interior of clockwise (in a y-down coordinate
+			// system) polygons gets negative winding
+			reverse = doubleArea > 0;
+		}
+		for (int index = 0; index < numVertices; index++) {
+			int next = index + 1 == numVertices ? 0 : index + 1;
+			if (reverse)
+				addLine(xs[next], ys[next], xs[index], ys[index]);
+			else
+				addLine(xs[index], ys[index], xs[next], ys[next]);
+		}
+	}
+	
+	/**
+	 * Adds the interior of the given path. All subpaths are closed implicitly.
+	 */
+	public void addPath(Path path) {
+		path.flatten(FLATTEN_TOLERANCE, (xs, ys, numPoints, closed) -> addPolygon(xs, ys, numPoints, false));
+	}
+	
+	/**
+	 * Adds the outline of the given path, as described by the stroke. The outline is built from polygons
+	 * with positive winding, so it should be rendered with the NON_ZERO fill rule.
+	 */
+	public void addStroke(Path path, Stroke stroke) {
+		Stroker stroker = new Stroker(this, stroke);
+		path.flatten(FLATTEN_TOLERANCE, stroker::stroke);
+	}
+	
+	/**
+	 * Passes the coverage of all pixels that were touched by the shapes that were added since the last call
+	 * to render to the consumer, and then clears this rasterizer. The spans are passed row by row, from left
+	 * to right.
+	 * @param rule The fill rule that determines how the accumulated winding is converted to coverage
+	 * @param consumer The consumer of the spans
+	 */
+	public void render(FillRule rule, SpanConsumer consumer) {
+		RunEmitter emitter = new RunEmitter(consumer);
+		for (int row = minTouchedRow; row <= maxTouchedRow; row++) {
+			long[] entries = rowEntries[row];
+			if (entries == null)
+				continue;
+			int count = rowEntryCounts[row];
+			Arrays.sort(entries, 0, count);
+			emitter.row = row;
+			
+			double accumulated = 0;
+			int previousCell = -1;
+			int entryIndex = 0;
+			while (entryIndex < count) {
+				int cell = (int) (entries[entryIndex] >>> 32);
+				
+				// The pixels between 2 touched cells have the same coverage as the left one of them
+				if (cell > previousCell + 1 && previousCell + 1 < width)
+					emitter.extend(previousCell + 1, Math.min(cell, width) - 1, coverage(accumulated, rule));
+				
+				float area = 0f;
+				while (entryIndex < count && (int) (entries[entryIndex] >>> 32) == cell)
+					area += Float.intBitsToFloat((int) entries[entryIndex++]);
+				accumulated += area;
+				
+				if (cell < width)
+					emitter.extend(cell, cell, coverage(accumulated, rule));
+				previousCell = cell;
+			}
+			emitter.flush();
+			rowEntries[row] = null;
+			rowEntryCounts[row] = 0;
+		}
+		minTouchedRow = Integer.MAX_VALUE;
+		maxTouchedRow = Integer.MIN_VALUE;
+	}
+	
+	/**
+	 * Merges adjacent pixels with the same coverage into a single span
+	 */
+	private static class RunEmitter {
+		
+		final SpanConsumer consumer;
+		
+		int row;
+		int start = -1;
+		int end;
+		float coverage;
+		
+		RunEmitter(SpanConsumer consumer) {
+			this.consumer = consumer;
+		}
+		
+		void extend(int from, int to, float newCoverage) {
+			if (start != -1 && newCoverage == coverage && from == end + 1) {
+				end = to;
+			} else {
+				flush();
+				start = from;
+				end = to;
+				coverage = newCoverage;
+			}
+		}
+		
+		void flush() {
+			if (start != -1 && coverage > 0f)
+				consumer.span(row, start, end, coverage);
+			start = -1;
+		}
+	}
+	
+	private static float coverage(double accumulated, FillRule rule) {
+		double winding = Math.abs(accumulated);
+		double coverage;
+		if (rule == FillRule.NON_ZERO) {
+			coverage = Math.min(1.0, winding);
+		} else {
+			
+			// Fold the winding into a triangle wave, so 1 is inside, 2 is outside, 3 is inside again, ...
+			double folded = winding % 2.0;
+			coverage = folded > 1.0 ? 2.0 - folded : folded;
+		}
+		
+		// Ignore tiny rounding errors
+		if (coverage < 1.0 / 512)
+			return 0f;
+		if (coverage > 1.0 - 1.0 / 512)
+			return 1f;
+		return (float) coverage;
+	}
+}
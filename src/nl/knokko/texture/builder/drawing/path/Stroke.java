@@ -0,0 +1,79 @@
+package nl.knokko.texture.builder.drawing.path;
+
+/**
+ * Describes how the outline of a path should be drawn by GeometryDrawer.strokePath: the width of the lines,
+ * the shape of the ends of open subpaths (caps) and the shape of the corners (joins).
+ * @author knokko
+ *
+ */
+public class Stroke {
+	
+	public static enum Cap {
+		
+		/** The stroke ends exactly at the end of the subpath */
+		BUTT,
+		
+		/** The stroke ends with a half circle around the end of the subpath */
+		ROUND,
+		
+		/** The stroke continues half the stroke width after the end of the subpath */
+		SQUARE
+	}
+	
+	public static enum Join {
+		
+		/** The outer edges are extended until they meet, unless that would exceed the miter limit */
+		MITER,
+		
+		/** Corners are rounded with a circle around the corner */
+		ROUND,
+		
+		/** The outer edges are connected with a straight line */
+		BEVEL
+	}
+	
+	private final double width;
+	private final Cap cap;
+	private final Join join;
+	private final double miterLimit;
+	
+	/**
+	 * @param width The width of the stroke, in pixels
+	 * @param cap The shape of the ends of open subpaths
+	 * @param join The shape of the corners
+	 * @param miterLimit The maximum ratio between the length of a miter and the stroke width. Miter joins
+	 * that would be longer are drawn as bevel joins.
+	 */
+	public Stroke(double width, Cap cap, Join join, double miterLimit) {
+		if (width <= 0)
+			throw new IllegalArgumentException("The width must be positive, but is " + width);
+		this.width = width;
+		this.cap = cap;
+		this.join = join;
+		this.miterLimit = miterLimit;
+	}
+	
+	public Stroke(double width, Cap cap, Join join) {
+		this(width, cap, join, 4.0);
+	}
+	
+	public Stroke(double width) {
+		this(width, Cap.BUTT, Join.MITER);
+	}
+	
+	public double getWidth() {
+		return width;
+	}
+	
+	public Cap getCap() {
+		return cap;
+	}
+	
+	public Join getJoin() {
+		return join;
+	}
+	
+	public double getMiterLimit() {
+		return miterLimit;
+	}
+}
@@ -0,0 +1,262 @@
+package nl.knokko.texture.builder.drawing.path;
+
+/**
+ * Converts flattened subpaths to the polygons that form their outline: a polygon for every line segment,
+ * plus polygons for the joins and caps. The rasterizer adds up the coverage of all polygons, so pieces that
+ * overlap would make the pixels they share too dark. The pieces are therefore made to only touch each other:
+ * <ul>
+ * <li>At every join, the inner sides of both segments end at the point where their inner edges intersect,
+ * so the segments share an edge instead of overlapping.</li>
+ * <li>A join only fills the wedge between the outer edges of both segments.</li>
+ * <li>A cap only covers the part beyond the end of its segment.</li>
+ * </ul>
+ * Only strokes that really overlap themselves (for instance when a subpath crosses itself or turns sharper
+ * than its width allows) still have overlapping pieces. All polygons are added with positive winding, so
+ * they should be rendered with the NON_ZERO fill rule.
+ * @author knokko
+ *
+ */
+class Stroker {
+	
+	/**
+	 * The maximum distance (in pixels) between round caps and joins and the polygons that approximate them. This
+	 * is smaller than the flatten tolerance of curves because the edges of round caps and joins are always
+	 * visible and always bend, so a larger error would make their edge pixels noticeably too light.
+	 */
+	private static final double ARC_TOLERANCE = PathRasterizer.FLATTEN_TOLERANCE / 4;
+	
+	private final PathRasterizer rasterizer;
+	private final Stroke stroke;
+	private final double halfWidth;
+	
+	private double[] polygonX = new double[6];
+	private double[] polygonY = new double[6];
+	
+	/** The angle between consecutive vertices of round caps and joins */
+	private final double arcStep;
+	
+	/** The unit direction and length of every segment of the current subpath */
+	private double[] directionX = new double[0], directionY = new double[0], lengths = new double[0];
+	
+	/** The point where the inner edges meet at every vertex, and the side (1 for left, -1 for right, 0 for none) */
+	private double[] innerX = new double[0], innerY = new double[0];
+	private int[] innerSides = new int[0];
+	
+	Stroker(PathRasterizer rasterizer, Stroke stroke) {
+		this.rasterizer = rasterizer;
+		this.stroke = stroke;
+		this.halfWidth = stroke.getWidth() * 0.5;
+		
+		// Choose the number of vertices such that the error is at most the arc tolerance
+		double maxAngle = 2 * Math.acos(Math.max(0, 1 - ARC_TOLERANCE / halfWidth));
+		int numCircleVertices = Math.max(8, Math.min(256, (int) Math.ceil(2 * Math.PI / maxAngle)));
+		this.arcStep = 2 * Math.PI / numCircleVertices;
+	}
+	
+	void stroke(double[] xs, double[] ys, int numPoints, boolean closed) {
+		
+		// Remove consecutive duplicate points since they don't have a direction
+		int size = 0;
+		for (int index = 0; index < numPoints; index++) {
+			if (size == 0 || xs[index] != xs[size - 1] || ys[index] != ys[size - 1]) {
+				xs[size] = xs[index];
+				ys[size] = ys[index];
+				size++;
+			}
+		}
+		if (closed && size > 1 && xs[0] == xs[size - 1] && ys[0] == ys[size - 1])
+			size--;
+		
+		if (size == 1) {
+			
+			// A single point only gets its caps
+			if (stroke.getCap() == Stroke.Cap.ROUND) {
+				addArc(xs[0], ys[0], halfWidth, 0, 2 * Math.PI, false);
+			} else if (stroke.getCap() == Stroke.Cap.SQUARE) {
+				addQuad(xs[0] - halfWidth, ys[0] - halfWidth, xs[0] + halfWidth, ys[0] - halfWidth,
+						xs[0] + halfWidth, ys[0] + halfWidth, xs[0] - halfWidth, ys[0] + halfWidth);
+			}
+			return;
+		}
+		if (size < 2)
+			return;
+		if (size == 2)
+			closed = false;
+		
+		int numSegments = closed ? size : size - 1;
+		if (lengths.length < size) {
+			directionX = new double[size];
+			directionY = new double[size];
+			lengths = new double[size];
+			innerX = new double[size];
+			innerY = new double[size];
+			innerSides = new int[size];
+		}
+		for (int segment = 0; segment < numSegments; segment++) {
+			int next = segment + 1 == size ? 0 : segment + 1;
+			lengths[segment] = Math.hypot(xs[next] - xs[segment], ys[next] - ys[segment]);
+			directionX[segment] = (xs[next] - xs[segment]) / lengths[segment];
+			directionY[segment] = (ys[next] - ys[segment]) / lengths[segment];
+		}
+		
+		// Joins between consecutive segments, which also determine where the inner sides of the segments end
+		for (int vertex = 0; vertex < size; vertex++) {
+			innerSides[vertex] = 0;
+			if (closed || (vertex > 0 && vertex < size - 1)) {
+				int previous = vertex == 0 ? size - 1 : vertex - 1;
+				addJoin(previous, vertex, xs[vertex], ys[vertex]);
+			}
+		}
+		
+		for (int segment = 0; segment < numSegments; segment++) {
+			int next = segment + 1 == size ? 0 : segment + 1;
+			double normalX = -directionY[segment] * halfWidth;
+			double normalY = directionX[segment] * halfWidth;
+			
+			// The segment polygon goes from the start point along the left side to the end point, and back along
+			// the right side. A side that is on the inside of a join ends at the inner intersection point.
+			polygonX[0] = xs[segment];
+			polygonY[0] = ys[segment];
+			setSideVertex(1, segment, xs[segment], ys[segment], normalX, normalY, 1);
+			setSideVertex(2, next, xs[next], ys[next], normalX, normalY, 1);
+			polygonX[3] = xs[next];
+			polygonY[3] = ys[next];
+			setSideVertex(4, next, xs[next], ys[next], normalX, normalY, -1);
+			setSideVertex(5, segment, xs[segment], ys[segment], normalX, normalY, -1);
+			rasterizer.addPolygon(polygonX, polygonY, 6, true);
+		}
+		
+		if (!closed) {
+			int last = numSegments - 1;
+			addCap(xs[0], ys[0], -directionX[0], -directionY[0]);
+			addCap(xs[size - 1], ys[size - 1], directionX[last], directionY[last]);
+		}
+	}
+	
+	private void setSideVertex(int index, int vertex, double x, double y, double normalX, double normalY, int side) {
+		if (innerSides[vertex] == side) {
+			polygonX[index] = innerX[vertex];
+			polygonY[index] = innerY[vertex];
+		} else {
+			polygonX[index] = x + side * normalX;
+			polygonY[index] = y + side * normalY;
+		}
+	}
+	
+	/**
+	 * Adds the join at (x, y), which is the vertex at the start of segmentOut and therefore has the same index
+	 */
+	private void addJoin(int segmentIn, int segmentOut, double x, double y) {
+		double inX = directionX[segmentIn], inY = directionY[segmentIn];
+		double outX = directionX[segmentOut], outY = directionY[segmentOut];
+		double cross = inX * outY - inY * outX;
+		double dot = inX * outX + inY * outY;
+		if (cross == 0) {
+			
+			// When the path turns back, the segments overlap anyway, and only a round join adds something
+			if (dot < 0 && stroke.getJoin() == Stroke.Join.ROUND)
+				addCap(x, y, inX, inY);
+			return;
+		}
+		
+		// The path turns towards the left side when cross > 0, so that side is the inner side
+		int innerSide = cross > 0 ? 1 : -1;
+		
+		// The inner edges intersect at distance halfWidth * tan(angle / 2) before and after the vertex. When
+		// that is further than half a segment, the segments overlap each other, and they are left as they are.
+		double cut = halfWidth * Math.abs(cross) / (1 + dot);
+		if (cut <= 0.5 * lengths[segmentIn] && cut <= 0.5 * lengths[segmentOut]) {
+			innerSides[segmentOut] = innerSide;
+			innerX[segmentOut] = x - innerSide * inY * halfWidth - inX * cut;
+			innerY[segmentOut] = y + innerSide * inX * halfWidth - inY * cut;
+		}
+		
+		// The unit normals of both segments, on the outer side of the corner
+		double normalInX = inY * innerSide, normalInY = -inX * innerSide;
+		double normalOutX = outY * innerSide, normalOutY = -outX * innerSide;
+		double cornerInX = x + normalInX * halfWidth, cornerInY = y + normalInY * halfWidth;
+		double cornerOutX = x + normalOutX * halfWidth, cornerOutY = y + normalOutY * halfWidth;
+		
+		if (stroke.getJoin() == Stroke.Join.ROUND) {
+			
+			// The outer wedge turns in the same direction as the path
+			addArc(x, y, halfWidth, Math.atan2(normalInY, normalInX), Math.atan2(cross, dot), true);
+			return;
+		}
+		if (stroke.getJoin() == Stroke.Join.MITER && dot > -1) {
+			
+			// The distance from the corner to the miter point, relative to halfWidth, is 1 / cos(angle / 2)
+			double miterRatio = Math.sqrt(2 / (1 + dot));
+			if (miterRatio <= stroke.getMiterLimit()) {
+				double miterX = x + (normalInX + normalOutX) * halfWidth / (1 + dot);
+				double miterY = y + (normalInY + normalOutY) * halfWidth / (1 + dot);
+				addQuad(x, y, cornerInX, cornerInY, miterX, miterY, cornerOutX, cornerOutY);
+				return;
+			}
+		}
+		
+		// Bevel join (also used when the miter limit is exceeded)
+		polygonX[0] = x;
+		polygonY[0] = y;
+		polygonX[1] = cornerInX;
+		polygonY[1] = cornerInY;
+		polygonX[2] = cornerOutX;
+		polygonY[2] = cornerOutY;
+		rasterizer.addPolygon(polygonX, polygonY, 3, true);
+	}
+	
+	/**
+	 * Adds the cap at the end point (x, y) of a segment, in the given outward unit direction
+	 */
+	private void addCap(double x, double y, double directionX, double directionY) {
+		double normalX = -directionY * halfWidth, normalY = directionX * halfWidth;
+		if (stroke.getCap() == Stroke.Cap.ROUND) {
+			
+			// A half circle from the left side, around the end, to the right side
+			addArc(x, y, halfWidth, Math.atan2(normalY, normalX), -Math.PI, true);
+		} else if (stroke.getCap() == Stroke.Cap.SQUARE) {
+			double extendX = directionX * halfWidth, extendY = directionY * halfWidth;
+			addQuad(x + normalX, y + normalY, x + normalX + extendX, y + normalY + extendY,
+					x - normalX + extendX, y - normalY + extendY, x - normalX, y - normalY);
+		}
+	}
+	
+	/**
+	 * Adds a circle sector, or a full circle when withCenter is false
+	 */
+	private void addArc(double centerX, double centerY, double radius, double startAngle, double sweep,
+			boolean withCenter) {
+		int numSteps = Math.max(1, (int) Math.ceil(Math.abs(sweep) / arcStep - 1e-9));
+		int numVertices = withCenter ? numSteps + 2 : numSteps;
+		if (polygonX.length < numVertices) {
+			polygonX = new double[numVertices];
+			polygonY = new double[numVertices];
+		}
+		int index = 0;
+		if (withCenter) {
+			polygonX[index] = centerX;
+			polygonY[index] = centerY;
+			index++;
+		}
+		int lastStep = withCenter ? numSteps : numSteps - 1;
+		for (int step = 0; step <= lastStep; step++) {
+			double angle = startAngle + sweep * step / numSteps;
+			polygonX[index] = centerX + radius * Math.cos(angle);
+			polygonY[index] = centerY + radius * Math.sin(angle);
+			index++;
+		}
+		rasterizer.addPolygon(polygonX, polygonY, numVertices, true);
+	}
+	
+	private void addQuad(double x1, double y1, double x2, double y2, double x3, double y3, double x4, double y4) {
+		polygonX[0] = x1;
+		polygonY[0] = y1;
+		polygonX[1] = x2;
+		polygonY[1] = y2;
+		polygonX[2] = x3;
+		polygonY[2] = y3;
+		polygonX[3] = x4;
+		polygonY[3] = y4;
+		rasterizer.addPolygon(polygonX, polygonY, 4, true);
+	}
+}
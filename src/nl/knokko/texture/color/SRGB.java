@@ -0,0 +1,84 @@
+package nl.knokko.texture.color;
+
+/**
+ * Lookup tables to convert between sRGB encoded color components (as stored in bytes) and linear light
+ * intensities. Blending and averaging colors should be done on linear intensities, but doing the exact
+ * conversion (a pow call) for every pixel is slow, so these tables should be used instead.
+ * @author knokko
+ *
+ */
+public class SRGB {
+	
+	/** The number of entries in the encoding table, the linear values are rounded to multiples of 1/4095 */
+	public static final int ENCODE_SIZE = 4096;
+	
+	private static final float[] DECODE = new float[256];
+	private static final byte[] ENCODE = new byte[ENCODE_SIZE];
+	
+	static {
+		for (int value = 0; value < 256; value++)
+			DECODE[value] = (float) exactToLinear(value / 255.0);
+		for (int index = 0; index < ENCODE_SIZE; index++)
+			ENCODE[index] = (byte) (int) (exactFromLinear(index / (ENCODE_SIZE - 1.0)) * 255.0 + 0.5);
+		
+		// Make sure every byte survives a round trip through the tables
+		for (int value = 0; value < 256; value++)
+			ENCODE[(int) (DECODE[value] * (ENCODE_SIZE - 1) + 0.5f)] = (byte) value;
+	}
+	
+	/**
+	 * Converts an sRGB encoded component in the range 0 to 1 to linear light, using the exact formula
+	 */
+	public static double exactToLinear(double encoded) {
+		if (encoded <= 0.04045)
+			return encoded / 12.92;
+		return Math.pow((encoded + 0.055) / 1.055, 2.4);
+	}
+	
+	/**
+	 * Converts a linear light intensity in the range 0 to 1 to an sRGB encoded component, using the exact
+	 * formula
+	 */
+	public static double exactFromLinear(double linear) {
+		if (linear <= 0.0031308)
+			return linear * 12.92;
+		return 1.055 * Math.pow(linear, 1 / 2.4) - 0.055;
+	}
+	
+	/**
+	 * @param encoded An sRGB encoded color component, like the components of Color
+	 * @return The linear intensity of the component, between 0 and 1
+	 */
+	public static float toLinear(byte encoded) {
+		return DECODE[encoded & 0xFF];
+	}
+	
+	/**
+	 * Converts a linear intensity to an sRGB encoded byte. Values outside the range 0 to 1 are clamped.
+	 * @param linear The linear intensity
+	 * @return The sRGB encoded color component
+	 */
+	public static byte fromLinear(float linear) {
+		if (linear <= 0f)
+			return 0;
+		if (linear >= 1f)
+			return (byte) 255;
+		return ENCODE[(int) (linear * (ENCODE_SIZE - 1) + 0.5f)];
+	}
+	
+	/**
+	 * Multiplies the linear intensity of the given sRGB encoded component by factor
+	 * @return The sRGB encoded result
+	 */
+	public static byte multiply(byte encoded, float factor) {
+		return fromLinear(toLinear(encoded) * factor);
+	}
+	
+	/**
+	 * Computes the weighted sum of the linear intensities of 2 sRGB encoded components
+	 * @return The sRGB encoded result
+	 */
+	public static byte mix(byte first, float firstWeight, byte second, float secondWeight) {
+		return fromLinear(toLinear(first) * firstWeight + toLinear(second) * secondWeight);
+	}
+}
@@ -0,0 +1,181 @@
+package nl.knokko.texture.compare;
+
+import java.util.Arrays;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.BufferPool;
+import nl.knokko.texture.util.Parallel;
+
+/**
+ * The difference between 2 textures of the same size, as computed by the compare method. The textures are
+ * compared on their RGBA bytes (as given by getRowRGBA), so textures without alpha are compared as if their
+ * alpha were 255. The comparison is split into tiles, which are compared in parallel, and the tiles that
+ * contain at least 1 different pixel are remembered. This is useful for regression tests of texture
+ * generators: a failing test can report where the textures differ instead of only that they differ.
+ * @author knokko
+ *
+ */
+public class TextureDiff {
+	
+	/**
+	 * Compares 2 textures that have the same width and height, using tiles of 64 by 64 pixels
+	 */
+	public static TextureDiff compare(TextureBuilder expected, TextureBuilder actual) {
+		return compare(expected, actual, TextureHash.DEFAULT_TILE_SIZE);
+	}
+	
+	/**
+	 * Compares 2 textures that have the same width and height.
+	 * @param expected The first texture
+	 * @param actual The second texture
+	 * @param tileSize The width and height of the tiles in which the differences will be tracked
+	 * @return The difference between the textures
+	 */
+	public static TextureDiff compare(TextureBuilder expected, TextureBuilder actual, int tileSize) {
+		if (expected.width() != actual.width() || expected.height() != actual.height())
+			throw new IllegalArgumentException("Can't compare a " + expected.width() + "x" + expected.height() + 
+					" texture with a " + actual.width() + "x" + actual.height() + " texture");
+		if (tileSize <= 0)
+			throw new IllegalArgumentException("The tile size must be positive, but is " + tileSize);
+		Measurement measurement = Metrics.start("TextureDiff.compare");
+		int width = expected.width();
+		int height = expected.height();
+		int tilesX = (width + tileSize - 1) / tileSize;
+		int tilesY = (height + tileSize - 1) / tileSize;
+		
+		// Each band handles complete rows of tiles, so no tile is shared between threads
+		long[] tileSquaredErrors = new long[tilesX * tilesY];
+		int[] tileMaxErrors = new int[tilesX * tilesY];
+		Parallel.forEachBand(0, tilesY - 1, width * tileSize, (minTileY, maxTileY) -> {
+			byte[] expectedRow = BufferPool.borrowBytes(4 * width);
+			byte[] actualRow = BufferPool.borrowBytes(4 * width);
+			for (int y = minTileY * tileSize; y < Math.min(height, (maxTileY + 1) * tileSize); y++) {
+				expected.getRowRGBA(0, width - 1, y, expectedRow, 0);
+				actual.getRowRGBA(0, width - 1, y, actualRow, 0);
+				int tileRowIndex = (y / tileSize) * tilesX;
+				for (int tileX = 0; tileX < tilesX; tileX++) {
+					int boundIndex = 4 * Math.min(width, (tileX + 1) * tileSize);
+					long squaredError = 0;
+					int maxError = 0;
+					for (int index = 4 * tileX * tileSize; index < boundIndex; index++) {
+						int error = Math.abs((expectedRow[index] & 0xFF) - (actualRow[index] & 0xFF));
+						squaredError += error * error;
+						if (error > maxError)
+							maxError = error;
+					}
+					tileSquaredErrors[tileRowIndex + tileX] += squaredError;
+					if (maxError > tileMaxErrors[tileRowIndex + tileX])
+						tileMaxErrors[tileRowIndex + tileX] = maxError;
+				}
+			}
+			BufferPool.releaseBytes(expectedRow);
+			BufferPool.releaseBytes(actualRow);
+		});
+		
+		long squaredError = 0;
+		int maxError = 0;
+		int numDifferingTiles = 0;
+		for (int tile = 0; tile < tileMaxErrors.length; tile++) {
+			squaredError += tileSquaredErrors[tile];
+			maxError = Math.max(maxError, tileMaxErrors[tile]);
+			if (tileMaxErrors[tile] != 0)
+				numDifferingTiles++;
+		}
+		int[] differingTiles = new int[numDifferingTiles];
+		int differingIndex = 0;
+		for (int tile = 0; tile < tileMaxErrors.length; tile++)
+			if (tileMaxErrors[tile] != 0)
+				differingTiles[differingIndex++] = tile;
+		
+		measurement.end((long) width * height);
+		return new TextureDiff(width, height, tileSize, tilesX, tilesY, squaredError, maxError, differingTiles);
+	}
+	
+	private final int width, height;
+	private final int tileSize, tilesX, tilesY;
+	private final long squaredError;
+	private final int maxChannelError;
+	private final int[] differingTiles;
+	
+	private TextureDiff(int width, int height, int tileSize, int tilesX, int tilesY, long squaredError, 
+			int maxChannelError, int[] differingTiles) {
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.tilesX = tilesX;
+		this.tilesY = tilesY;
+		this.squaredError = squaredError;
+		this.maxChannelError = maxChannelError;
+		this.differingTiles = differingTiles;
+	}
+	
+	/**
+	 * @return True if all pixels of both textures are equal
+	 */
+	public boolean isIdentical() {
+		return maxChannelError == 0;
+	}
+	
+	/**
+	 * @return The mean of the squared differences of all channels of all pixels (including alpha)
+	 */
+	public double getMeanSquaredError() {
+		if (width == 0 || height == 0)
+			return 0.0;
+		return squaredError / (4.0 * width * height);
+	}
+	
+	/**
+	 * @return The peak signal-to-noise ratio in decibels, or positive infinity if the textures are identical
+	 */
+	public double getPSNR() {
+		if (squaredError == 0)
+			return Double.POSITIVE_INFINITY;
+		return 10.0 * Math.log10(255.0 * 255.0 / getMeanSquaredError());
+	}
+	
+	/**
+	 * @return The largest difference between a channel of a pixel in the first texture and the same channel of
+	 * the same pixel in the second texture, between 0 and 255
+	 */
+	public int getMaxChannelError() {
+		return maxChannelError;
+	}
+	
+	public int getTileSize() {
+		return tileSize;
+	}
+	
+	public int getTilesX() {
+		return tilesX;
+	}
+	
+	public int getTilesY() {
+		return tilesY;
+	}
+	
+	/**
+	 * @return The indices of the tiles that contain at least 1 different pixel, in ascending order. Tile
+	 * (tileX, tileY) has index tileY * getTilesX() + tileX, just like in TextureHash.hashTiles.
+	 */
+	public int[] getDifferingTiles() {
+		return differingTiles.clone();
+	}
+	
+	/**
+	 * @return True if the tile at (tileX, tileY) contains at least 1 different pixel
+	 */
+	public boolean isTileDifferent(int tileX, int tileY) {
+		return Arrays.binarySearch(differingTiles, tileY * tilesX + tileX) >= 0;
+	}
+	
+	@Override
+	public String toString() {
+		if (isIdentical())
+			return "TextureDiff(identical)";
+		return "TextureDiff(PSNR=" + getPSNR() + "dB, maxChannelError=" + maxChannelError + ", differingTiles=" + 
+				differingTiles.length + "/" + (tilesX * tilesY) + ")";
+	}
+}
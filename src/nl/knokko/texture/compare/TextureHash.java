@@ -0,0 +1,72 @@
+package nl.knokko.texture.compare;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.BufferPool;
+import nl.knokko.texture.util.Parallel;
+
+/**
+ * Computes content hashes of texture builders, for instance to check that a texture generator still gives
+ * the same result after a change, or to validate cached textures. The hashes are computed over the RGBA
+ * bytes given by getRowRGBA, so textures with the same pixels have the same hash, regardless of their
+ * TextureBuilder implementation. The texture is divided into tiles that are hashed in parallel.
+ * @author knokko
+ *
+ */
+public class TextureHash {
+	
+	/** The tile size that is used by hash(TextureBuilder) */
+	public static final int DEFAULT_TILE_SIZE = 64;
+	
+	/**
+	 * Computes the hash of the entire texture, including its width, height and whether it uses alpha.
+	 */
+	public static long hash(TextureBuilder texture) {
+		long[] tileHashes = hashTiles(texture, DEFAULT_TILE_SIZE);
+		long hash = XXHash64.combine(0, texture.width());
+		hash = XXHash64.combine(hash, texture.height());
+		hash = XXHash64.combine(hash, texture.useAlpha() ? 1 : 0);
+		for (long tileHash : tileHashes)
+			hash = XXHash64.combine(hash, tileHash);
+		return hash;
+	}
+	
+	/**
+	 * Computes the hash of every tile of the texture. The tiles on the right and bottom edge are smaller if
+	 * the width or height is not a multiple of tileSize.
+	 * @param texture The texture to hash
+	 * @param tileSize The width and height of the tiles
+	 * @return The hashes of the tiles, row by row: the hash of tile (tileX, tileY) is at index
+	 * tileY * tilesX + tileX, where tilesX is the number of tiles per row
+	 */
+	public static long[] hashTiles(TextureBuilder texture, int tileSize) {
+		if (tileSize <= 0)
+			throw new IllegalArgumentException("The tile size must be positive, but is " + tileSize);
+		Measurement measurement = Metrics.start("TextureHash.hashTiles");
+		int width = texture.width();
+		int height = texture.height();
+		int tilesX = (width + tileSize - 1) / tileSize;
+		int tilesY = (height + tileSize - 1) / tileSize;
+		long[] hashes = new long[tilesX * tilesY];
+		
+		Parallel.forEachBand(0, tilesY - 1, width * tileSize, (minTileY, maxTileY) -> {
+			byte[] tile = BufferPool.borrowBytes(4 * tileSize * tileSize);
+			for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+				int minY = tileY * tileSize;
+				int maxY = Math.min(height, minY + tileSize) - 1;
+				for (int tileX = 0; tileX < tilesX; tileX++) {
+					int minX = tileX * tileSize;
+					int maxX = Math.min(width, minX + tileSize) - 1;
+					int rowLength = 4 * (maxX - minX + 1);
+					for (int y = minY; y <= maxY; y++)
+						texture.getRowRGBA(minX, maxX, y, tile, (y - minY) * rowLength);
+					hashes[tileY * tilesX + tileX] = XXHash64.hash(tile, 0, rowLength * (maxY - minY + 1), 0);
+				}
+			}
+			BufferPool.releaseBytes(tile);
+		});
+		measurement.end((long) width * height);
+		return hashes;
+	}
+}
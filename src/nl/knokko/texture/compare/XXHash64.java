@@ -0,0 +1,106 @@
+package nl.knokko.texture.compare;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * An implementation of the 64-bit xxHash algorithm (XXH64) for byte arrays. It is much faster than
+ * cryptographic hashes, while still being good enough to detect (accidental) changes in textures.
+ * @author knokko
+ *
+ */
+public class XXHash64 {
+	
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+	
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	
+	private static long getLong(byte[] data, int index) {
+		return (long) LONGS.get(data, index);
+	}
+	
+	private static long getInt(byte[] data, int index) {
+		return (int) INTS.get(data, index) & 0xFFFFFFFFL;
+	}
+	
+	private static long round(long accumulator, long input) {
+		accumulator += input * PRIME2;
+		accumulator = Long.rotateLeft(accumulator, 31);
+		return accumulator * PRIME1;
+	}
+	
+	private static long mergeRound(long accumulator, long value) {
+		accumulator ^= round(0, value);
+		return accumulator * PRIME1 + PRIME4;
+	}
+	
+	/**
+	 * Computes the XXH64 hash of length bytes of data, starting at offset
+	 */
+	public static long hash(byte[] data, int offset, int length, long seed) {
+		int index = offset;
+		int end = offset + length;
+		long hash;
+		
+		if (length >= 32) {
+			long v1 = seed + PRIME1 + PRIME2;
+			long v2 = seed + PRIME2;
+			long v3 = seed;
+			long v4 = seed - PRIME1;
+			int limit = end - 32;
+			do {
+				v1 = round(v1, getLong(data, index));
+				v2 = round(v2, getLong(data, index + 8));
+				v3 = round(v3, getLong(data, index + 16));
+				v4 = round(v4, getLong(data, index + 24));
+				index += 32;
+			} while (index <= limit);
+			
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			hash = mergeRound(hash, v1);
+			hash = mergeRound(hash, v2);
+			hash = mergeRound(hash, v3);
+			hash = mergeRound(hash, v4);
+		} else {
+			hash = seed + PRIME5;
+		}
+		
+		hash += length;
+		
+		while (index + 8 <= end) {
+			hash ^= round(0, getLong(data, index));
+			hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+			index += 8;
+		}
+		if (index + 4 <= end) {
+			hash ^= getInt(data, index) * PRIME1;
+			hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+			index += 4;
+		}
+		while (index < end) {
+			hash ^= (data[index] & 0xFF) * PRIME5;
+			hash = Long.rotateLeft(hash, 11) * PRIME1;
+			index++;
+		}
+		
+		hash ^= hash >>> 33;
+		hash *= PRIME2;
+		hash ^= hash >>> 29;
+		hash *= PRIME3;
+		hash ^= hash >>> 32;
+		return hash;
+	}
+	
+	/**
+	 * Mixes a single long into the given hash, used to combine multiple hashes into 1
+	 */
+	public static long combine(long hash, long value) {
+		return Long.rotateLeft(hash ^ round(0, value), 27) * PRIME1 + PRIME4;
+	}
+}
@@ -0,0 +1,96 @@
+package nl.knokko.texture.filter;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.Parallel;
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * Replaces every pixel with the average of the (2 * radius + 1) x (2 * radius + 1) square around it. Both
+ * passes use running sums, so the cost per pixel doesn't depend on the radius. Pixels outside the texture
+ * are treated like the nearest pixel on the edge.
+ * @author knokko
+ *
+ */
+public class BoxBlurFilter implements TextureFilter {
+	
+	private final int radius;
+	
+	public BoxBlurFilter(int radius) {
+		if (radius < 0)
+			throw new IllegalArgumentException("radius must not be negative, but is " + radius);
+		this.radius = radius;
+	}
+
+	@Override
+	public void apply(TextureBuilder texture) {
+		Measurement measurement = Metrics.start("BoxBlurFilter.apply");
+		int width = texture.width();
+		int height = texture.height();
+		boolean alpha = texture.useAlpha();
+		int rowLength = width * 4;
+		float inverseSize = 1f / (2 * radius + 1);
+		
+		// The result of the horizontal pass
+		float[] between = new float[width * height * 4];
+		
+		Parallel.forEachBand(0, height - 1, width, (minY, maxY) -> {
+			byte[] row = new byte[rowLength];
+			float[] premultiplied = new float[rowLength];
+			double[] sums = new double[4];
+			for (int y = minY; y <= maxY; y++) {
+				texture.getRowRGBA(0, width - 1, y, row, 0);
+				PixelRows.premultiply(row, premultiplied, alpha);
+				
+				for (int channel = 0; channel < 4; channel++) {
+					sums[channel] = 0;
+					for (int x = -radius; x <= radius; x++)
+						sums[channel] += premultiplied[clamp(x, width) * 4 + channel];
+				}
+				int betweenIndex = y * rowLength;
+				for (int x = 0; x < width; x++) {
+					int leavingIndex = clamp(x - radius, width) * 4;
+					int enteringIndex = clamp(x + radius + 1, width) * 4;
+					for (int channel = 0; channel < 4; channel++) {
+						between[betweenIndex++] = (float) sums[channel] * inverseSize;
+						sums[channel] += premultiplied[enteringIndex + channel] - premultiplied[leavingIndex + channel];
+					}
+				}
+			}
+		});
+		
+		Parallel.forEachBand(0, height - 1, width, texture.supportsParallelWrites(), (minY, maxY) -> {
+			double[] sums = new double[rowLength];
+			float[] filtered = new float[rowLength];
+			byte[] result = new byte[rowLength];
+			
+			// Initialize the column sums for the first row of this band
+			for (int y = minY - radius; y <= minY + radius; y++) {
+				int betweenIndex = clamp(y, height) * rowLength;
+				for (int index = 0; index < rowLength; index++)
+					sums[index] += between[betweenIndex + index];
+			}
+			
+			for (int y = minY; y <= maxY; y++) {
+				int leavingIndex = clamp(y - radius, height) * rowLength;
+				int enteringIndex = clamp(y + radius + 1, height) * rowLength;
+				for (int index = 0; index < rowLength; index++) {
+					filtered[index] = (float) sums[index] * inverseSize;
+					sums[index] += between[enteringIndex + index] - between[leavingIndex + index];
+				}
+				PixelRows.unpremultiply(filtered, result, alpha);
+				texture.setRowRGBA(0, width - 1, y, result, 0);
+			}
+		});
+		measurement.end((long) width * height);
+	}
+	
+	private static int clamp(int coordinate, int size) {
+		if (coordinate < 0)
+			return 0;
+		if (coordinate >= size)
+			return size - 1;
+		return coordinate;
+	}
+}
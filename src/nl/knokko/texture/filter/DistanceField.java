@@ -0,0 +1,220 @@
+package nl.knokko.texture.filter;
+
+import nl.knokko.texture.builder.AuxiliaryChannels;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.BufferPool;
+import nl.knokko.texture.util.Parallel;
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * Computes signed distance fields of masks, for instance of shapes drawn with fillCircle or fillPolygon.
+ * The distances are exact Euclidean distances, computed with the linear time algorithm of Felzenszwalb and
+ * Huttenlocher: a 1-dimensional transform of every row, followed by a 1-dimensional transform of every
+ * column. The rows (and then the columns) are transformed in parallel.
+ * <p>
+ * The signed distance of a pixel outside the mask is the distance to the nearest pixel inside the mask minus
+ * 0.5, and the signed distance of a pixel inside the mask is minus the distance to the nearest pixel outside
+ * the mask plus 0.5. So the edge of the shape is at distance 0, halfway between the 2 pixels.
+ * @author knokko
+ *
+ */
+public class DistanceField {
+	
+	/** Used instead of infinity for pixels without a nearest pixel, because infinity - infinity is NaN */
+	private static final double FAR = 1e20;
+	
+	/**
+	 * @return A mask that contains the pixels whose alpha is at least threshold (from 0 to 255). If the texture
+	 * doesn't use alpha, all pixels will be in the mask.
+	 */
+	public static boolean[] alphaMask(TextureBuilder texture, int threshold) {
+		int width = texture.width();
+		boolean[] mask = new boolean[width * texture.height()];
+		Parallel.forEachBand(0, texture.height() - 1, width, (minY, maxY) -> {
+			byte[] row = BufferPool.borrowBytes(4 * width);
+			for (int y = minY; y <= maxY; y++) {
+				texture.getRowRGBA(0, width - 1, y, row, 0);
+				for (int x = 0; x < width; x++)
+					mask[y * width + x] = (row[4 * x + 3] & 0xFF) >= threshold;
+			}
+			BufferPool.releaseBytes(row);
+		});
+		return mask;
+	}
+	
+	/**
+	 * @return A mask that contains the pixels whose luminance is at least threshold (from 0 to 255)
+	 */
+	public static boolean[] luminanceMask(TextureBuilder texture, float threshold) {
+		float[] luminance = Planes.luminance(texture);
+		boolean[] mask = new boolean[luminance.length];
+		for (int index = 0; index < mask.length; index++)
+			mask[index] = luminance[index] >= threshold;
+		return mask;
+	}
+	
+	/**
+	 * Computes the signed distance field of the given mask
+	 * @param mask Whether each pixel is inside the shape, in row-major order
+	 * @param width The width of the mask
+	 * @param height The height of the mask
+	 * @return The signed distance of every pixel (negative inside the shape), in row-major order. If the mask
+	 * is empty or full, the distances are very large.
+	 */
+	public static float[] compute(boolean[] mask, int width, int height) {
+		if (mask.length != width * height)
+			throw new IllegalArgumentException("The mask has " + mask.length + " pixels, but should have " + width * height);
+		Measurement measurement = Metrics.start("DistanceField.compute");
+		
+		// The squared horizontal distances to the nearest pixel inside and outside the mask
+		float[] toInside = new float[mask.length];
+		float[] toOutside = new float[mask.length];
+		Parallel.forEachBand(0, height - 1, width, (minY, maxY) -> {
+			Transform1D inside = new Transform1D(width);
+			Transform1D outside = new Transform1D(width);
+			for (int y = minY; y <= maxY; y++) {
+				int rowStart = y * width;
+				for (int x = 0; x < width; x++) {
+					inside.input[x] = mask[rowStart + x] ? 0 : FAR;
+					outside.input[x] = mask[rowStart + x] ? FAR : 0;
+				}
+				inside.transform(width);
+				outside.transform(width);
+				for (int x = 0; x < width; x++) {
+					toInside[rowStart + x] = (float) inside.output[x];
+					toOutside[rowStart + x] = (float) outside.output[x];
+				}
+			}
+		});
+		
+		// Transform the columns, which are handled like the rows of the transposed mask
+		float[] result = new float[mask.length];
+		Parallel.forEachBand(0, width - 1, height, (minX, maxX) -> {
+			Transform1D inside = new Transform1D(height);
+			Transform1D outside = new Transform1D(height);
+			for (int x = minX; x <= maxX; x++) {
+				for (int y = 0; y < height; y++) {
+					inside.input[y] = toInside[y * width + x];
+					outside.input[y] = toOutside[y * width + x];
+				}
+				inside.transform(height);
+				outside.transform(height);
+				for (int y = 0; y < height; y++) {
+					int index = y * width + x;
+					if (mask[index])
+						result[index] = 0.5f - (float) Math.sqrt(outside.output[y]);
+					else
+						result[index] = (float) Math.sqrt(inside.output[y]) - 0.5f;
+				}
+			}
+		});
+		measurement.end((long) width * height);
+		return result;
+	}
+	
+	/**
+	 * Computes the signed distance field of the mask and stores it in the SDF channel
+	 * (AuxiliaryChannels.SDF) of the texture
+	 * @return The SDF channel of the texture
+	 */
+	public static float[] writeChannel(TextureBuilder texture, boolean[] mask) {
+		float[] distances = compute(mask, texture.width(), texture.height());
+		float[] channel = texture.auxiliary().floats(AuxiliaryChannels.SDF);
+		System.arraycopy(distances, 0, channel, 0, distances.length);
+		return channel;
+	}
+	
+	/**
+	 * Stores the signed distance field of the pixels whose alpha is at least 128 in the SDF channel of the
+	 * texture
+	 * @return The SDF channel of the texture
+	 */
+	public static float[] writeChannel(TextureBuilder texture) {
+		return writeChannel(texture, alphaMask(texture, 128));
+	}
+	
+	/**
+	 * Encodes a signed distance field as gray values in dest, the usual format of distance field decals: the
+	 * edge becomes 128, distance -spread (inside) becomes 255 and distance spread (outside) becomes 0. When
+	 * dest uses alpha, the alpha gets the same value as the color components.
+	 * @param distances The signed distances, as computed by compute
+	 * @param spread The distance at which the values are clamped
+	 * @param dest The texture to write to, which must have the same size as the distance field
+	 */
+	public static void encode(float[] distances, float spread, TextureBuilder dest) {
+		int width = dest.width();
+		float factor = -127.5f / spread;
+		Parallel.forEachBand(0, dest.height() - 1, width, dest.supportsParallelWrites(), (minY, maxY) -> {
+			byte[] row = BufferPool.borrowBytes(4 * width);
+			for (int y = minY; y <= maxY; y++) {
+				for (int x = 0; x < width; x++) {
+					byte value = PixelRows.toByte(127.5f + distances[y * width + x] * factor);
+					row[4 * x] = value;
+					row[4 * x + 1] = value;
+					row[4 * x + 2] = value;
+					row[4 * x + 3] = value;
+				}
+				dest.setRowRGBA(0, width - 1, y, row, 0);
+			}
+			BufferPool.releaseBytes(row);
+		});
+	}
+	
+	/**
+	 * The 1-dimensional squared distance transform of Felzenszwalb and Huttenlocher: output[q] becomes the
+	 * minimum of (q - p)^2 + input[p] over all p. It computes the lower envelope of the parabolas rooted at
+	 * every p, and then reads the envelope from left to right.
+	 */
+	private static class Transform1D {
+		
+		final double[] input, output;
+		
+		/** The roots of the parabolas in the lower envelope */
+		final int[] roots;
+		
+		/** The boundaries between the parabolas in the lower envelope */
+		final double[] boundaries;
+		
+		Transform1D(int size) {
+			input = new double[size];
+			output = new double[size];
+			roots = new int[size];
+			boundaries = new double[size + 1];
+		}
+		
+		void transform(int size) {
+			int k = 0;
+			roots[0] = 0;
+			boundaries[0] = Double.NEGATIVE_INFINITY;
+			boundaries[1] = Double.POSITIVE_INFINITY;
+			for (int q = 1; q < size; q++) {
+				double s = intersection(q, roots[k]);
+				while (s <= boundaries[k]) {
+					k--;
+					s = intersection(q, roots[k]);
+				}
+				k++;
+				roots[k] = q;
+				boundaries[k] = s;
+				boundaries[k + 1] = Double.POSITIVE_INFINITY;
+			}
+			
+			k = 0;
+			for (int q = 0; q < size; q++) {
+				while (boundaries[k + 1] < q)
+					k++;
+				int root = roots[k];
+				output[q] = (double) (q - root) * (q - root) + input[root];
+			}
+		}
+		
+		/**
+		 * @return The x-coordinate where the parabolas rooted at q and p intersect
+		 */
+		private double intersection(int q, int p) {
+			return ((input[q] + (double) q * q) - (input[p] + (double) p * p)) / (2.0 * (q - p));
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package nl.knokko.texture.filter;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.Parallel;
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * Replaces every pixel with a grey relief of the luminance of the texture, lit from the upper left corner.
+ * Flat regions become grey (128). The alpha values are kept.
+ * @author knokko
+ *
+ */
+public class EmbossFilter implements TextureFilter {
+	
+	private final float strength;
+	
+	public EmbossFilter(double strength) {
+		this.strength = (float) strength;
+	}
+	
+	public EmbossFilter() {
+		this(1.0);
+	}
+
+	@Override
+	public void apply(TextureBuilder texture) {
+		Measurement measurement = Metrics.start("EmbossFilter.apply");
+		int width = texture.width();
+		int height = texture.height();
+		float[] plane = Planes.luminance(texture);
+		int[] left = Planes.neighbours(width, -1, false);
+		int[] right = Planes.neighbours(width, 1, false);
+		int[] up = Planes.neighbours(height, -1, false);
+		int[] down = Planes.neighbours(height, 1, false);
+		
+		Parallel.forEachBand(0, height - 1, width, texture.supportsParallelWrites(), (minY, maxY) -> {
+			byte[] row = new byte[width * 4];
+			for (int y = minY; y <= maxY; y++) {
+				int above = up[y] * width;
+				int middle = y * width;
+				int below = down[y] * width;
+				texture.getRowRGBA(0, width - 1, y, row, 0);
+				for (int x = 0; x < width; x++) {
+					int l = left[x];
+					int r = right[x];
+					float relief = 2 * plane[below + r] + plane[below + x] + plane[middle + r]
+							- plane[middle + l] - plane[above + x] - 2 * plane[above + l];
+					byte grey = PixelRows.toByte(128f + strength * relief);
+					row[4 * x] = grey;
+					row[4 * x + 1] = grey;
+					row[4 * x + 2] = grey;
+				}
+				texture.setRowRGBA(0, width - 1, y, row, 0);
+			}
+		});
+		measurement.end((long) width * height);
+	}
+}
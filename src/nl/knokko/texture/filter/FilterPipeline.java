@@ -0,0 +1,32 @@
+package nl.knokko.texture.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import nl.knokko.texture.builder.TextureBuilder;
+
+/**
+ * A sequence of filters that will be applied one after another.
+ * @author knokko
+ *
+ */
+public class FilterPipeline implements TextureFilter {
+	
+	private final List<TextureFilter> filters = new ArrayList<>();
+	
+	/**
+	 * Adds a filter to the end of this pipeline
+	 * @param filter The filter to add
+	 * @return this, to allow chaining
+	 */
+	public FilterPipeline then(TextureFilter filter) {
+		filters.add(filter);
+		return this;
+	}
+
+	@Override
+	public void apply(TextureBuilder texture) {
+		for (TextureFilter filter : filters)
+			filter.apply(texture);
+	}
+}
@@ -0,0 +1,37 @@
+package nl.knokko.texture.filter;
+
+/**
+ * Blurs the texture with a gaussian kernel. The kernel extends 3 standard deviations from its center.
+ * @author knokko
+ *
+ */
+public class GaussianBlurFilter extends SeparableFilter {
+	
+	/**
+	 * Computes a normalized 1-dimensional gaussian kernel
+	 * @param sigma The standard deviation, in pixels
+	 * @return The kernel, its length will be 2 * ceil(3 * sigma) + 1
+	 */
+	public static float[] gaussianKernel(double sigma) {
+		if (sigma <= 0)
+			throw new IllegalArgumentException("sigma must be positive, but is " + sigma);
+		int radius = (int) Math.ceil(3 * sigma);
+		float[] kernel = new float[2 * radius + 1];
+		double total = 0;
+		for (int offset = -radius; offset <= radius; offset++) {
+			double weight = Math.exp(-offset * offset / (2 * sigma * sigma));
+			kernel[offset + radius] = (float) weight;
+			total += weight;
+		}
+		for (int index = 0; index < kernel.length; index++)
+			kernel[index] /= total;
+		return kernel;
+	}
+	
+	/**
+	 * @param sigma The standard deviation of the gaussian kernel, in pixels
+	 */
+	public GaussianBlurFilter(double sigma) {
+		super(gaussianKernel(sigma));
+	}
+}
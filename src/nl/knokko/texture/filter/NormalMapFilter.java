@@ -0,0 +1,101 @@
+package nl.knokko.texture.filter;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.Parallel;
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * Converts a height map to a tangent space normal map. The apply method uses the luminance of the texture
+ * as height (where white is 1 and black is 0) and replaces the texture with its normal map. The static
+ * writeNormalMap methods can be used to create a normal map from a separate height map, for instance the
+ * one that MaterialDrawer.drawGrass creates.
+ * <p>
+ * The normals are encoded the usual way: red, green and blue are 255 * (0.5 + 0.5 * normal.xyz), and the
+ * gradients are computed with the Sobel operator.
+ * @author knokko
+ *
+ */
+public class NormalMapFilter implements TextureFilter {
+	
+	/**
+	 * Writes the normal map of the given height map to dest
+	 * @param heights The height of every pixel, in row-major order
+	 * @param width The width of the height map (and of the region of dest that will be written)
+	 * @param height The height of the height map (and of the region of dest that will be written)
+	 * @param strength The gradients will be multiplied by this value, larger values give steeper normals
+	 * @param wrap True if the height map should be treated as tiling, false to repeat the edge pixels
+	 * @param dest The texture to write the normal map to, starting at (0,0)
+	 */
+	public static void writeNormalMap(float[] heights, int width, int height, double strength, boolean wrap,
+			TextureBuilder dest) {
+		Measurement measurement = Metrics.start("NormalMapFilter.writeNormalMap");
+		int[] left = Planes.neighbours(width, -1, wrap);
+		int[] right = Planes.neighbours(width, 1, wrap);
+		int[] up = Planes.neighbours(height, -1, wrap);
+		int[] down = Planes.neighbours(height, 1, wrap);
+		
+		// The Sobel operator sums 8 differences
+		float factor = (float) strength / 8f;
+		
+		Parallel.forEachBand(0, height - 1, width, dest.supportsParallelWrites(), (minY, maxY) -> {
+			byte[] row = new byte[width * 4];
+			for (int y = minY; y <= maxY; y++) {
+				int above = up[y] * width;
+				int middle = y * width;
+				int below = down[y] * width;
+				for (int x = 0; x < width; x++) {
+					int l = left[x];
+					int r = right[x];
+					float gradientX = heights[above + r] + 2 * heights[middle + r] + heights[below + r]
+							- heights[above + l] - 2 * heights[middle + l] - heights[below + l];
+					float gradientY = heights[below + l] + 2 * heights[below + x] + heights[below + r]
+							- heights[above + l] - 2 * heights[above + x] - heights[above + r];
+					float normalX = -gradientX * factor;
+					float normalY = -gradientY * factor;
+					float inverseLength = 1f / (float) Math.sqrt(normalX * normalX + normalY * normalY + 1f);
+					row[4 * x] = PixelRows.toByte(127.5f + 127.5f * normalX * inverseLength);
+					row[4 * x + 1] = PixelRows.toByte(127.5f + 127.5f * normalY * inverseLength);
+					row[4 * x + 2] = PixelRows.toByte(127.5f + 127.5f * inverseLength);
+					row[4 * x + 3] = (byte) 255;
+				}
+				dest.setRowRGBA(0, width - 1, y, row, 0);
+			}
+		});
+		measurement.end((long) width * height);
+	}
+	
+	/**
+	 * Writes the normal map of the given height map to dest. The heights are interpreted as signed bytes,
+	 * like the height map of MaterialDrawer.drawGrass.
+	 */
+	public static void writeNormalMap(byte[] heights, int width, int height, double strength, boolean wrap,
+			TextureBuilder dest) {
+		float[] heightsF = new float[width * height];
+		for (int index = 0; index < heightsF.length; index++)
+			heightsF[index] = heights[index];
+		writeNormalMap(heightsF, width, height, strength, wrap, dest);
+	}
+	
+	private final double strength;
+	private final boolean wrap;
+	
+	/**
+	 * @param strength The gradients will be multiplied by this value. Since the luminance is scaled to the
+	 * range 0 to 1, values around 5 are reasonable.
+	 * @param wrap True if the texture should be treated as tiling, false to repeat the edge pixels
+	 */
+	public NormalMapFilter(double strength, boolean wrap) {
+		this.strength = strength;
+		this.wrap = wrap;
+	}
+
+	@Override
+	public void apply(TextureBuilder texture) {
+		float[] heights = Planes.luminance(texture);
+		for (int index = 0; index < heights.length; index++)
+			heights[index] /= 255f;
+		writeNormalMap(heights, texture.width(), texture.height(), strength, wrap, texture);
+	}
+}
@@ -0,0 +1,55 @@
+package nl.knokko.texture.filter;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.util.Parallel;
+
+/**
+ * Helper methods for the filters that work on a single channel rather than on the RGBA values.
+ * @author knokko
+ *
+ */
+class Planes {
+	
+	/**
+	 * Computes the (Rec. 601) luminance of every pixel of the texture
+	 * @param texture The texture to compute the luminance of
+	 * @return An array of width * height floats in the range 0 to 255, in row-major order
+	 */
+	static float[] luminance(TextureBuilder texture) {
+		int width = texture.width();
+		int height = texture.height();
+		float[] plane = new float[width * height];
+		Parallel.forEachBand(0, height - 1, width, (minY, maxY) -> {
+			byte[] row = new byte[width * 4];
+			for (int y = minY; y <= maxY; y++) {
+				texture.getRowRGBA(0, width - 1, y, row, 0);
+				int planeIndex = y * width;
+				for (int index = 0; index < row.length; index += 4) {
+					plane[planeIndex++] = 0.299f * (row[index] & 0xFF) + 0.587f * (row[index + 1] & 0xFF)
+							+ 0.114f * (row[index + 2] & 0xFF);
+				}
+			}
+		});
+		return plane;
+	}
+	
+	/**
+	 * Computes the neighbour indices that the 3x3 filters use in 1 dimension
+	 * @param size The width or height of the plane
+	 * @param offset -1 for the left/upper neighbours, 1 for the right/lower neighbours
+	 * @param wrap True if the plane should wrap around, false if the edge pixels should be repeated
+	 * @return An array with the neighbour coordinate of every coordinate
+	 */
+	static int[] neighbours(int size, int offset, boolean wrap) {
+		int[] result = new int[size];
+		for (int coordinate = 0; coordinate < size; coordinate++) {
+			int neighbour = coordinate + offset;
+			if (neighbour < 0)
+				neighbour = wrap ? size - 1 : 0;
+			if (neighbour >= size)
+				neighbour = wrap ? 0 : size - 1;
+			result[coordinate] = neighbour;
+		}
+		return result;
+	}
+}
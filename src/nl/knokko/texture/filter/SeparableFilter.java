@@ -0,0 +1,120 @@
+package nl.knokko.texture.filter;
+
+import java.util.Arrays;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.Parallel;
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * A filter that convolves the texture with a symmetric kernel, first horizontally and then vertically. Both
+ * passes are done in parallel bands of rows on premultiplied float rows. Pixels outside the texture are
+ * treated like the nearest pixel on the edge.
+ * <p>
+ * Subclasses can override combine to do something else than simply storing the filtered result.
+ * @author knokko
+ *
+ */
+public abstract class SeparableFilter implements TextureFilter {
+	
+	protected final float[] kernel;
+	
+	/**
+	 * @param kernel The (normalized) kernel to convolve with. Its length must be odd, the middle element is
+	 * the weight of the pixel itself.
+	 */
+	protected SeparableFilter(float[] kernel) {
+		if (kernel.length % 2 == 0)
+			throw new IllegalArgumentException("The kernel length must be odd, but is " + kernel.length);
+		this.kernel = kernel;
+	}
+	
+	@Override
+	public void apply(TextureBuilder texture) {
+		Measurement measurement = Metrics.start(getClass().getSimpleName() + ".apply");
+		int width = texture.width();
+		int height = texture.height();
+		boolean alpha = texture.useAlpha();
+		int radius = kernel.length / 2;
+		
+		// The result of the horizontal pass
+		float[] between = new float[width * height * 4];
+		
+		Parallel.forEachBand(0, height - 1, width, (minY, maxY) -> {
+			byte[] row = new byte[width * 4];
+			float[] premultiplied = new float[width * 4];
+			for (int y = minY; y <= maxY; y++) {
+				texture.getRowRGBA(0, width - 1, y, row, 0);
+				PixelRows.premultiply(row, premultiplied, alpha);
+				convolveRow(premultiplied, between, y * width * 4, width);
+			}
+		});
+		
+		// The texture can be modified in place because every row is read right before it is written
+		Parallel.forEachBand(0, height - 1, width, texture.supportsParallelWrites(), (minY, maxY) -> {
+			float[] filtered = new float[width * 4];
+			byte[] original = new byte[width * 4];
+			byte[] result = new byte[width * 4];
+			int rowLength = width * 4;
+			for (int y = minY; y <= maxY; y++) {
+				Arrays.fill(filtered, 0f);
+				for (int offset = -radius; offset <= radius; offset++) {
+					float weight = kernel[offset + radius];
+					int betweenIndex = Math.max(0, Math.min(height - 1, y + offset)) * rowLength;
+					for (int index = 0; index < rowLength; index++)
+						filtered[index] += weight * between[betweenIndex + index];
+				}
+				texture.getRowRGBA(0, width - 1, y, original, 0);
+				combine(original, filtered, result, alpha);
+				texture.setRowRGBA(0, width - 1, y, result, 0);
+			}
+		});
+		measurement.end((long) width * height);
+	}
+	
+	private void convolveRow(float[] row, float[] dest, int destIndex, int width) {
+		int radius = kernel.length / 2;
+		for (int x = 0; x < width; x++) {
+			float red = 0f, green = 0f, blue = 0f, alpha = 0f;
+			if (x >= radius && x + radius < width) {
+				int sourceIndex = (x - radius) * 4;
+				for (float weight : kernel) {
+					red += weight * row[sourceIndex];
+					green += weight * row[sourceIndex + 1];
+					blue += weight * row[sourceIndex + 2];
+					alpha += weight * row[sourceIndex + 3];
+					sourceIndex += 4;
+				}
+			} else {
+				
+				// Near the edges, clamp the coordinates
+				for (int offset = -radius; offset <= radius; offset++) {
+					float weight = kernel[offset + radius];
+					int sourceIndex = Math.max(0, Math.min(width - 1, x + offset)) * 4;
+					red += weight * row[sourceIndex];
+					green += weight * row[sourceIndex + 1];
+					blue += weight * row[sourceIndex + 2];
+					alpha += weight * row[sourceIndex + 3];
+				}
+			}
+			dest[destIndex++] = red;
+			dest[destIndex++] = green;
+			dest[destIndex++] = blue;
+			dest[destIndex++] = alpha;
+		}
+	}
+	
+	/**
+	 * Computes the new value of a row of the texture. The default implementation simply stores the filtered
+	 * row.
+	 * @param original The original RGBA bytes of the row
+	 * @param filtered The premultiplied result of the convolution, may be modified by this method
+	 * @param result The array to store the new RGBA bytes of the row in
+	 * @param alpha Whether the texture uses alpha
+	 */
+	protected void combine(byte[] original, float[] filtered, byte[] result, boolean alpha) {
+		PixelRows.unpremultiply(filtered, result, alpha);
+	}
+}
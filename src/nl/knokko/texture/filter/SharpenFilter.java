@@ -0,0 +1,42 @@
+package nl.knokko.texture.filter;
+
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * Sharpens the texture with an unsharp mask: the difference between the texture and a blurred version of the
+ * texture is added to the texture.
+ * @author knokko
+ *
+ */
+public class SharpenFilter extends SeparableFilter {
+	
+	private final float amount;
+	
+	/**
+	 * @param amount How much of the difference should be added, 1 is a reasonable value
+	 * @param sigma The standard deviation of the gaussian blur, in pixels
+	 */
+	public SharpenFilter(double amount, double sigma) {
+		super(GaussianBlurFilter.gaussianKernel(sigma));
+		this.amount = (float) amount;
+	}
+	
+	public SharpenFilter() {
+		this(1.0, 1.0);
+	}
+	
+	@Override
+	protected void combine(byte[] original, float[] filtered, byte[] result, boolean alpha) {
+		for (int index = 0; index < original.length; index += 4) {
+			float factor = alpha ? (original[index + 3] & 0xFF) / 255f : 1f;
+			for (int channel = 0; channel < 3; channel++) {
+				float value = (original[index + channel] & 0xFF) * factor;
+				filtered[index + channel] = value + amount * (value - filtered[index + channel]);
+			}
+			
+			// Sharpening the alpha channel would create halos, so keep it
+			filtered[index + 3] = alpha ? original[index + 3] & 0xFF : 255f;
+		}
+		PixelRows.unpremultiply(filtered, result, alpha);
+	}
+}
@@ -0,0 +1,66 @@
+package nl.knokko.texture.filter;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.Parallel;
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * Replaces every pixel with a grey value that indicates the strength of the edge at that pixel, computed
+ * with the Sobel operator on the luminance of the texture. The alpha values are kept.
+ * @author knokko
+ *
+ */
+public class SobelFilter implements TextureFilter {
+	
+	private final float scale;
+	
+	/**
+	 * @param scale The gradient magnitude is multiplied by this value to get the grey value. Since the
+	 * magnitude can be as large as 1020 * sqrt(2), 0.25 is a reasonable value.
+	 */
+	public SobelFilter(double scale) {
+		this.scale = (float) scale;
+	}
+	
+	public SobelFilter() {
+		this(0.25);
+	}
+
+	@Override
+	public void apply(TextureBuilder texture) {
+		Measurement measurement = Metrics.start("SobelFilter.apply");
+		int width = texture.width();
+		int height = texture.height();
+		float[] plane = Planes.luminance(texture);
+		int[] left = Planes.neighbours(width, -1, false);
+		int[] right = Planes.neighbours(width, 1, false);
+		int[] up = Planes.neighbours(height, -1, false);
+		int[] down = Planes.neighbours(height, 1, false);
+		
+		Parallel.forEachBand(0, height - 1, width, texture.supportsParallelWrites(), (minY, maxY) -> {
+			byte[] row = new byte[width * 4];
+			for (int y = minY; y <= maxY; y++) {
+				int above = up[y] * width;
+				int middle = y * width;
+				int below = down[y] * width;
+				texture.getRowRGBA(0, width - 1, y, row, 0);
+				for (int x = 0; x < width; x++) {
+					int l = left[x];
+					int r = right[x];
+					float gradientX = plane[above + r] + 2 * plane[middle + r] + plane[below + r]
+							- plane[above + l] - 2 * plane[middle + l] - plane[below + l];
+					float gradientY = plane[below + l] + 2 * plane[below + x] + plane[below + r]
+							- plane[above + l] - 2 * plane[above + x] - plane[above + r];
+					byte grey = PixelRows.toByte((float) Math.sqrt(gradientX * gradientX + gradientY * gradientY) * scale);
+					row[4 * x] = grey;
+					row[4 * x + 1] = grey;
+					row[4 * x + 2] = grey;
+				}
+				texture.setRowRGBA(0, width - 1, y, row, 0);
+			}
+		});
+		measurement.end((long) width * height);
+	}
+}
@@ -0,0 +1,19 @@
+package nl.knokko.texture.filter;
+
+import nl.knokko.texture.builder.TextureBuilder;
+
+/**
+ * A post-processing step that can be applied to any texture builder. Filters modify the texture builder in
+ * place, so no copy of the texture is needed. Multiple filters can be combined with a FilterPipeline.
+ * @author knokko
+ *
+ */
+@FunctionalInterface
+public interface TextureFilter {
+	
+	/**
+	 * Applies this filter to the entire texture
+	 * @param texture The texture builder to modify
+	 */
+	void apply(TextureBuilder texture);
+}
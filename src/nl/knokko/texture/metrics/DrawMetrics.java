@@ -0,0 +1,29 @@
+package nl.knokko.texture.metrics;
+
+/**
+ * A DrawMetrics receives a measurement for every drawing operation that is performed by the drawers of the
+ * texture builders (GeometryDrawer, AverageDrawer, DecayingDrawer and MaterialDrawer). The metrics that are
+ * currently in use can be changed with Metrics.setDrawMetrics. By default, a NoDrawMetrics is used, which
+ * ignores all measurements.
+ * @author knokko
+ *
+ */
+public interface DrawMetrics {
+	
+	/**
+	 * Checks whether this DrawMetrics wants to receive measurements. When this returns false, the drawers
+	 * will skip all timing work, so disabled metrics cost almost nothing.
+	 * @return true if the record method should be called for drawing operations, false if not
+	 */
+	boolean isEnabled();
+	
+	/**
+	 * Records a single drawing operation.
+	 * @param operation The name of the operation, for instance "GeometryDrawer.fillRect"
+	 * @param nanos The number of nanoseconds the operation took
+	 * @param pixels The number of pixels that were affected by the operation
+	 * @param allocatedBytes The number of bytes that were allocated by the current thread during the operation,
+	 * or -1 if the JVM doesn't support measuring that
+	 */
+	void record(String operation, long nanos, long pixels, long allocatedBytes);
+}
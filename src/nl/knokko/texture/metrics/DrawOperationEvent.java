@@ -0,0 +1,39 @@
+package nl.knokko.texture.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder event that is committed by JfrDrawMetrics for every drawing operation.
+ * @author knokko
+ *
+ */
+@Name("nl.knokko.texture.DrawOperation")
+@Label("Texture Draw Operation")
+@Category("Texture Building")
+@Description("A single operation of one of the drawers of a texture builder")
+@StackTrace(false)
+class DrawOperationEvent extends jdk.jfr.Event {
+	
+	@Label("Operation")
+	String operation;
+	
+	@Label("Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long nanos;
+	
+	@Label("Pixels")
+	long pixels;
+	
+	@Label("Pixels Per Second")
+	double pixelsPerSecond;
+	
+	@Label("Allocated")
+	@DataAmount(DataAmount.BYTES)
+	long allocatedBytes;
+}
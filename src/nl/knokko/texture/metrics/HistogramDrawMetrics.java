@@ -0,0 +1,150 @@
+package nl.knokko.texture.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A DrawMetrics that keeps its measurements in memory. For every operation, it keeps track of the number of
+ * calls, the total time, the total number of pixels, the total number of allocated bytes and a histogram of
+ * the durations. The histogram uses a bucket for every power of 2 nanoseconds, so percentiles are only
+ * accurate up to a factor 2.
+ * @author knokko
+ *
+ */
+public class HistogramDrawMetrics implements DrawMetrics {
+	
+	private final Map<String, OperationStats> operations = new ConcurrentHashMap<>();
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void record(String operation, long nanos, long pixels, long allocatedBytes) {
+		operations.computeIfAbsent(operation, OperationStats::new).add(nanos, pixels, allocatedBytes);
+	}
+	
+	/**
+	 * @param operation The name of the operation
+	 * @return The statistics of the given operation, or null if it hasn't been recorded yet
+	 */
+	public OperationStats getStats(String operation) {
+		return operations.get(operation);
+	}
+	
+	/**
+	 * @return The names of all operations that have been recorded so far, in alphabetical order
+	 */
+	public List<String> getOperations() {
+		List<String> result = new ArrayList<>(operations.keySet());
+		Collections.sort(result);
+		return result;
+	}
+	
+	public void reset() {
+		operations.clear();
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (String operation : getOperations())
+			result.append(operations.get(operation)).append('\n');
+		return result.toString();
+	}
+	
+	public static class OperationStats {
+		
+		private static final int NUM_BUCKETS = 64;
+		
+		private final String operation;
+		
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAdder totalPixels = new LongAdder();
+		private final LongAdder totalAllocated = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		
+		/** buckets.get(i) is the number of measurements that took at least 2^(i-1) and less than 2^i ns */
+		private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+		
+		OperationStats(String operation) {
+			this.operation = operation;
+		}
+		
+		void add(long nanos, long pixels, long allocatedBytes) {
+			count.increment();
+			totalNanos.add(nanos);
+			totalPixels.add(pixels);
+			if (allocatedBytes > 0)
+				totalAllocated.add(allocatedBytes);
+			maxNanos.accumulate(nanos);
+			buckets.incrementAndGet(NUM_BUCKETS - Long.numberOfLeadingZeros(Math.max(nanos, 0)));
+		}
+		
+		public String getOperation() {
+			return operation;
+		}
+		
+		public long getCount() {
+			return count.sum();
+		}
+		
+		public long getTotalNanos() {
+			return totalNanos.sum();
+		}
+		
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+		
+		public long getTotalPixels() {
+			return totalPixels.sum();
+		}
+		
+		public long getTotalAllocatedBytes() {
+			return totalAllocated.sum();
+		}
+		
+		public double getPixelsPerSecond() {
+			long nanos = getTotalNanos();
+			if (nanos == 0)
+				return 0;
+			return getTotalPixels() * 1_000_000_000.0 / nanos;
+		}
+		
+		/**
+		 * Estimates the given percentile of the durations of this operation.
+		 * @param percentile The percentile, between 0 and 100
+		 * @return The upper bound (in nanoseconds) of the histogram bucket that contains the percentile
+		 */
+		public long getPercentileNanos(double percentile) {
+			long total = 0;
+			for (int index = 0; index < NUM_BUCKETS; index++)
+				total += buckets.get(index);
+			long threshold = (long) Math.ceil(total * percentile / 100.0);
+			long sum = 0;
+			for (int index = 0; index < NUM_BUCKETS; index++) {
+				sum += buckets.get(index);
+				if (sum >= threshold && sum > 0)
+					return index == 0 ? 0 : Math.min(1L << index, getMaxNanos());
+			}
+			return getMaxNanos();
+		}
+		
+		@Override
+		public String toString() {
+			return operation + ": " + getCount() + " calls, " + getTotalNanos() / 1_000_000 + " ms total, p50 "
+					+ getPercentileNanos(50) + " ns, p99 " + getPercentileNanos(99) + " ns, max " + getMaxNanos()
+					+ " ns, " + getTotalPixels() + " pixels (" + (long) getPixelsPerSecond() + " pixels/s), "
+					+ getTotalAllocatedBytes() + " bytes allocated";
+		}
+	}
+}
@@ -0,0 +1,33 @@
+package nl.knokko.texture.metrics;
+
+import jdk.jfr.EventType;
+
+/**
+ * A DrawMetrics that commits a Java Flight Recorder event (nl.knokko.texture.DrawOperation) for every drawing
+ * operation. It is only enabled while a flight recording with that event enabled is running, so it can
+ * stay installed in production.
+ * @author knokko
+ *
+ */
+public class JfrDrawMetrics implements DrawMetrics {
+	
+	private final EventType eventType = EventType.getEventType(DrawOperationEvent.class);
+
+	@Override
+	public boolean isEnabled() {
+		return eventType.isEnabled();
+	}
+
+	@Override
+	public void record(String operation, long nanos, long pixels, long allocatedBytes) {
+		DrawOperationEvent event = new DrawOperationEvent();
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.nanos = nanos;
+			event.pixels = pixels;
+			event.pixelsPerSecond = nanos == 0 ? 0 : pixels * 1_000_000_000.0 / nanos;
+			event.allocatedBytes = allocatedBytes;
+			event.commit();
+		}
+	}
+}
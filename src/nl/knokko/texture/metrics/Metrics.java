@@ -0,0 +1,97 @@
+package nl.knokko.texture.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * This class holds the DrawMetrics that is currently in use and is the entry point that the drawers use
+ * to measure their operations. A typical drawing method looks like this:
+ * <pre>
+ * Measurement measurement = Metrics.start("GeometryDrawer.fillRect");
+ * ... the actual drawing ...
+ * measurement.end(numPixels);
+ * </pre>
+ * When the current DrawMetrics is disabled, start will return a shared Measurement that does nothing, so
+ * no timing work or allocations will be done.
+ * @author knokko
+ *
+ */
+public final class Metrics {
+	
+	private static volatile DrawMetrics current = NoDrawMetrics.INSTANCE;
+	
+	private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN;
+	
+	static {
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		com.sun.management.ThreadMXBean allocationBean = null;
+		if (threadBean instanceof com.sun.management.ThreadMXBean) {
+			allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+			if (!allocationBean.isThreadAllocatedMemorySupported() || !allocationBean.isThreadAllocatedMemoryEnabled())
+				allocationBean = null;
+		}
+		ALLOCATION_BEAN = allocationBean;
+	}
+	
+	private Metrics() {}
+	
+	/**
+	 * Changes the DrawMetrics that will receive all measurements of all drawers.
+	 * @param metrics The new DrawMetrics, or null to go back to the default NoDrawMetrics
+	 */
+	public static void setDrawMetrics(DrawMetrics metrics) {
+		current = metrics == null ? NoDrawMetrics.INSTANCE : metrics;
+	}
+	
+	public static DrawMetrics getDrawMetrics() {
+		return current;
+	}
+	
+	/**
+	 * Starts measuring a drawing operation. The end method of the returned Measurement should be called once
+	 * the operation has finished.
+	 * @param operation The name of the operation
+	 * @return A new Measurement if the current DrawMetrics is enabled, or Measurement.NONE if it is not
+	 */
+	public static Measurement start(String operation) {
+		DrawMetrics metrics = current;
+		if (!metrics.isEnabled())
+			return Measurement.NONE;
+		return new Measurement(metrics, operation, allocatedBytes(), System.nanoTime());
+	}
+	
+	static long allocatedBytes() {
+		if (ALLOCATION_BEAN == null)
+			return -1;
+		return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	public static class Measurement {
+		
+		public static final Measurement NONE = new Measurement(null, null, 0, 0);
+		
+		private final DrawMetrics metrics;
+		private final String operation;
+		private final long startAllocated;
+		private final long startTime;
+		
+		private Measurement(DrawMetrics metrics, String operation, long startAllocated, long startTime) {
+			this.metrics = metrics;
+			this.operation = operation;
+			this.startAllocated = startAllocated;
+			this.startTime = startTime;
+		}
+		
+		/**
+		 * Finishes this measurement and passes it to the DrawMetrics that was in use when it was started.
+		 * @param pixels The number of pixels that were affected by the operation
+		 */
+		public void end(long pixels) {
+			if (metrics == null)
+				return;
+			long endTime = System.nanoTime();
+			long allocated = startAllocated == -1 ? -1 : allocatedBytes() - startAllocated;
+			metrics.record(operation, endTime - startTime, pixels, allocated);
+		}
+	}
+}
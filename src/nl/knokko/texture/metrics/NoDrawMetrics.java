@@ -0,0 +1,21 @@
+package nl.knokko.texture.metrics;
+
+/**
+ * The default DrawMetrics, which simply ignores all measurements.
+ * @author knokko
+ *
+ */
+public class NoDrawMetrics implements DrawMetrics {
+	
+	public static final NoDrawMetrics INSTANCE = new NoDrawMetrics();
+	
+	private NoDrawMetrics() {}
+
+	@Override
+	public boolean isEnabled() {
+		return false;
+	}
+
+	@Override
+	public void record(String operation, long nanos, long pixels, long allocatedBytes) {}
+}
@@ -0,0 +1,75 @@
+package nl.knokko.texture.quantize;
+
+import java.util.Arrays;
+
+/**
+ * Counts the distinct colors (packed as RGBA ints) of a texture. It is an open addressing hash table from
+ * color to color id, where the ids are assigned in the order in which the colors are added.
+ * @author knokko
+ *
+ */
+class ColorHistogram {
+	
+	private int[] tableColors = new int[1024];
+	/** The color id + 1, or 0 for empty slots */
+	private int[] tableIds = new int[1024];
+	
+	int[] colors = new int[256];
+	int[] counts = new int[256];
+	int size;
+	
+	private static int hash(int rgba) {
+		int hash = rgba * 0x9E3779B1;
+		return hash ^ hash >>> 16;
+	}
+	
+	void add(int rgba) {
+		int mask = tableIds.length - 1;
+		int slot = hash(rgba) & mask;
+		while (tableIds[slot] != 0) {
+			if (tableColors[slot] == rgba) {
+				counts[tableIds[slot] - 1]++;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		if (size == colors.length) {
+			colors = Arrays.copyOf(colors, 2 * size);
+			counts = Arrays.copyOf(counts, 2 * size);
+		}
+		colors[size] = rgba;
+		counts[size] = 1;
+		tableColors[slot] = rgba;
+		tableIds[slot] = ++size;
+		if (2 * size > tableIds.length)
+			grow();
+	}
+	
+	private void grow() {
+		tableColors = new int[2 * tableColors.length];
+		tableIds = new int[2 * tableIds.length];
+		int mask = tableIds.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hash(colors[id]) & mask;
+			while (tableIds[slot] != 0)
+				slot = (slot + 1) & mask;
+			tableColors[slot] = colors[id];
+			tableIds[slot] = id + 1;
+		}
+	}
+	
+	/**
+	 * @return The id of the given color, or -1 if it hasn't been added
+	 */
+	int idOf(int rgba) {
+		int mask = tableIds.length - 1;
+		int slot = hash(rgba) & mask;
+		while (tableIds[slot] != 0) {
+			if (tableColors[slot] == rgba)
+				return tableIds[slot] - 1;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+}
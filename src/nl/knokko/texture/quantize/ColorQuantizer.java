@@ -0,0 +1,339 @@
+package nl.knokko.texture.quantize;
+
+import java.util.Arrays;
+
+import nl.knokko.texture.builder.PaletteTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.BufferPool;
+import nl.knokko.texture.util.Parallel;
+
+/**
+ * Converts texture builders to PaletteTextureBuilders. If the texture has at most maxColors distinct colors,
+ * the palette will contain exactly those colors. Otherwise, the palette is chosen with the median cut
+ * algorithm: the set of colors is repeatedly split at the (weighted) median of the channel with the largest
+ * range, and every palette color is the weighted average of the colors in one part.
+ * @author knokko
+ *
+ */
+public class ColorQuantizer {
+	
+	/** The 4x4 Bayer matrix, used for ordered dithering */
+	private static final int[] BAYER = { 0, 8, 2, 10, 12, 4, 14, 6, 3, 11, 1, 9, 15, 7, 13, 5 };
+	
+	/**
+	 * Converts the given texture to a palette texture with at most 256 colors, without dithering.
+	 */
+	public static PaletteTextureBuilder quantize(TextureBuilder source) {
+		return quantize(source, PaletteTextureBuilder.MAX_PALETTE_SIZE, Dithering.NONE);
+	}
+	
+	/**
+	 * Converts the given texture to a palette texture.
+	 * @param source The texture to convert, it won't be modified
+	 * @param maxColors The maximum number of colors in the palette, between 1 and 256
+	 * @param dithering The dithering to use when the texture has more than maxColors colors
+	 * @return The palette texture
+	 */
+	public static PaletteTextureBuilder quantize(TextureBuilder source, int maxColors, Dithering dithering) {
+		if (maxColors < 1 || maxColors > PaletteTextureBuilder.MAX_PALETTE_SIZE)
+			throw new IllegalArgumentException("maxColors must be between 1 and 256, but is " + maxColors);
+		Measurement measurement = Metrics.start("ColorQuantizer.quantize");
+		int width = source.width();
+		int height = source.height();
+		boolean alpha = source.useAlpha();
+		
+		ColorHistogram histogram = new ColorHistogram();
+		byte[] row = new byte[4 * width];
+		for (int y = 0; y < height; y++) {
+			source.getRowRGBA(0, width - 1, y, row, 0);
+			for (int x = 0; x < width; x++)
+				histogram.add(pack(row, 4 * x, alpha));
+		}
+		
+		byte[] indices = new byte[width * height];
+		int[] palette;
+		if (histogram.size <= maxColors) {
+			
+			// There are few enough colors, so the ids of the histogram can be used as palette indices
+			palette = histogram.colors;
+			mapExact(source, histogram, identity(histogram.size), indices, alpha);
+		} else {
+			palette = medianCut(histogram, maxColors, alpha);
+			if (dithering == Dithering.NONE) {
+				int[] nearest = new int[histogram.size];
+				Parallel.forEachBand(0, histogram.size - 1, palette.length, (minId, maxId) -> {
+					for (int id = minId; id <= maxId; id++)
+						nearest[id] = nearestIndex(palette, histogram.colors[id]);
+				});
+				mapExact(source, histogram, nearest, indices, alpha);
+			} else if (dithering == Dithering.ORDERED) {
+				mapOrdered(source, palette, indices, alpha);
+			} else {
+				mapFloydSteinberg(source, palette, indices, alpha);
+			}
+		}
+		
+		PaletteTextureBuilder result = new PaletteTextureBuilder(width, height, alpha, indices, palette,
+				Math.max(1, Math.min(histogram.size, maxColors)));
+		measurement.end((long) width * height);
+		return result;
+	}
+	
+	private static int pack(byte[] row, int index, boolean alpha) {
+		return (row[index] & 0xFF) << 24 | (row[index + 1] & 0xFF) << 16 | (row[index + 2] & 0xFF) << 8
+				| (alpha ? row[index + 3] & 0xFF : 255);
+	}
+	
+	private static int[] identity(int size) {
+		int[] result = new int[size];
+		for (int index = 0; index < size; index++)
+			result[index] = index;
+		return result;
+	}
+	
+	private static void mapExact(TextureBuilder source, ColorHistogram histogram, int[] paletteIndices,
+			byte[] indices, boolean alpha) {
+		int width = source.width();
+		Parallel.forEachBand(0, source.height() - 1, width, (minY, maxY) -> {
+			byte[] row = BufferPool.borrowBytes(4 * width);
+			for (int y = minY; y <= maxY; y++) {
+				source.getRowRGBA(0, width - 1, y, row, 0);
+				for (int x = 0; x < width; x++)
+					indices[y * width + x] = (byte) paletteIndices[histogram.idOf(pack(row, 4 * x, alpha))];
+			}
+			BufferPool.releaseBytes(row);
+		});
+	}
+	
+	private static void mapOrdered(TextureBuilder source, int[] palette, byte[] indices, boolean alpha) {
+		int width = source.width();
+		NearestCache nearest = new NearestCache(palette, alpha);
+		
+		// The spread is roughly the distance between 2 palette colors, assuming they are evenly distributed
+		float spread = 255f / (float) Math.cbrt(palette.length);
+		Parallel.forEachBand(0, source.height() - 1, width, (minY, maxY) -> {
+			byte[] row = BufferPool.borrowBytes(4 * width);
+			for (int y = minY; y <= maxY; y++) {
+				source.getRowRGBA(0, width - 1, y, row, 0);
+				for (int x = 0; x < width; x++) {
+					float offset = ((BAYER[(y & 3) * 4 + (x & 3)] + 0.5f) / 16f - 0.5f) * spread;
+					int index = 4 * x;
+					indices[y * width + x] = (byte) nearest.get(
+							clamp((row[index] & 0xFF) + offset), clamp((row[index + 1] & 0xFF) + offset),
+							clamp((row[index + 2] & 0xFF) + offset), row[index + 3] & 0xFF
+					);
+				}
+			}
+			BufferPool.releaseBytes(row);
+		});
+	}
+	
+	private static void mapFloydSteinberg(TextureBuilder source, int[] palette, byte[] indices, boolean alpha) {
+		int width = source.width();
+		NearestCache nearest = new NearestCache(palette, alpha);
+		byte[] row = new byte[4 * width];
+		
+		// The errors that should be added to the pixels of the current and next row, with a margin of 1 pixel
+		float[] errors = new float[4 * (width + 2)];
+		float[] nextErrors = new float[4 * (width + 2)];
+		int channels = alpha ? 4 : 3;
+		int[] values = new int[4];
+		
+		// Errors can only be diffused to the next row, so this can't be done in parallel
+		for (int y = 0; y < source.height(); y++) {
+			source.getRowRGBA(0, width - 1, y, row, 0);
+			for (int x = 0; x < width; x++) {
+				int errorIndex = 4 * (x + 1);
+				for (int channel = 0; channel < 4; channel++) {
+					values[channel] = channel < channels
+							? clamp((row[4 * x + channel] & 0xFF) + errors[errorIndex + channel]) : 255;
+				}
+				int paletteIndex = nearest.get(values[0], values[1], values[2], values[3]);
+				indices[y * width + x] = (byte) paletteIndex;
+				
+				int paletteColor = palette[paletteIndex];
+				for (int channel = 0; channel < channels; channel++) {
+					float error = values[channel] - (paletteColor >>> (24 - 8 * channel) & 0xFF);
+					errors[errorIndex + 4 + channel] += error * 7f / 16f;
+					nextErrors[errorIndex - 4 + channel] += error * 3f / 16f;
+					nextErrors[errorIndex + channel] += error * 5f / 16f;
+					nextErrors[errorIndex + 4 + channel] += error / 16f;
+				}
+			}
+			
+			float[] oldErrors = errors;
+			errors = nextErrors;
+			nextErrors = oldErrors;
+			Arrays.fill(nextErrors, 0f);
+		}
+	}
+	
+	private static int clamp(float value) {
+		if (value <= 0f)
+			return 0;
+		if (value >= 255f)
+			return 255;
+		return (int) (value + 0.5f);
+	}
+	
+	static int nearestIndex(int[] palette, int rgba) {
+		int bestIndex = 0;
+		int bestDistance = Integer.MAX_VALUE;
+		for (int index = 0; index < palette.length; index++) {
+			int distance = 0;
+			for (int shift = 0; shift < 32; shift += 8) {
+				int difference = (rgba >>> shift & 0xFF) - (palette[index] >>> shift & 0xFF);
+				distance += difference * difference;
+			}
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				bestIndex = index;
+			}
+		}
+		return bestIndex;
+	}
+	
+	/**
+	 * Chooses at most maxColors palette colors for the colors in the histogram, using median cut.
+	 */
+	static int[] medianCut(ColorHistogram histogram, int maxColors, boolean alpha) {
+		int size = histogram.size;
+		int[] colors = Arrays.copyOf(histogram.colors, size);
+		int[] counts = Arrays.copyOf(histogram.counts, size);
+		int[] sortedColors = new int[size];
+		int[] sortedCounts = new int[size];
+		int channels = alpha ? 4 : 3;
+		
+		// Box i contains the colors from boxStarts[i] (inclusive) to boxEnds[i] (exclusive)
+		int[] boxStarts = new int[maxColors];
+		int[] boxEnds = new int[maxColors];
+		boxEnds[0] = size;
+		int numBoxes = 1;
+		
+		while (numBoxes < maxColors) {
+			
+			// Split the box with the largest range multiplied by its population
+			int bestBox = -1;
+			int bestShift = 0;
+			long bestScore = 0;
+			for (int box = 0; box < numBoxes; box++) {
+				if (boxEnds[box] - boxStarts[box] < 2)
+					continue;
+				long population = 0;
+				for (int index = boxStarts[box]; index < boxEnds[box]; index++)
+					population += counts[index];
+				for (int channel = 0; channel < channels; channel++) {
+					int shift = 24 - 8 * channel;
+					int min = 255, max = 0;
+					for (int index = boxStarts[box]; index < boxEnds[box]; index++) {
+						int value = colors[index] >>> shift & 0xFF;
+						min = Math.min(min, value);
+						max = Math.max(max, value);
+					}
+					long score = (max - min) * population;
+					if (score > bestScore) {
+						bestScore = score;
+						bestBox = box;
+						bestShift = shift;
+					}
+				}
+			}
+			if (bestBox == -1)
+				break;
+			
+			// Counting sort the box by the chosen channel
+			int start = boxStarts[bestBox];
+			int end = boxEnds[bestBox];
+			int[] offsets = new int[257];
+			long population = 0;
+			for (int index = start; index < end; index++) {
+				offsets[(colors[index] >>> bestShift & 0xFF) + 1]++;
+				population += counts[index];
+			}
+			for (int value = 0; value < 256; value++)
+				offsets[value + 1] += offsets[value];
+			for (int index = start; index < end; index++) {
+				int destIndex = start + offsets[colors[index] >>> bestShift & 0xFF]++;
+				sortedColors[destIndex] = colors[index];
+				sortedCounts[destIndex] = counts[index];
+			}
+			System.arraycopy(sortedColors, start, colors, start, end - start);
+			System.arraycopy(sortedCounts, start, counts, start, end - start);
+			
+			// Split at the weighted median, but make sure both boxes get at least 1 color
+			int split = start + 1;
+			long cumulative = counts[start];
+			while (split < end - 1 && 2 * cumulative < population) {
+				cumulative += counts[split];
+				split++;
+			}
+			boxStarts[numBoxes] = split;
+			boxEnds[numBoxes] = end;
+			boxEnds[bestBox] = split;
+			numBoxes++;
+		}
+		
+		int[] palette = new int[numBoxes];
+		for (int box = 0; box < numBoxes; box++) {
+			long[] sums = new long[4];
+			long population = 0;
+			for (int index = boxStarts[box]; index < boxEnds[box]; index++) {
+				for (int channel = 0; channel < 4; channel++)
+					sums[channel] += (long) (colors[index] >>> (24 - 8 * channel) & 0xFF) * counts[index];
+				population += counts[index];
+			}
+			int color = 0;
+			for (int channel = 0; channel < 4; channel++)
+				color |= (int) ((sums[channel] + population / 2) / population) << (24 - 8 * channel);
+			palette[box] = color;
+		}
+		return palette;
+	}
+	
+	/**
+	 * Remembers the nearest palette color of colors with 5 bits per color channel (and 4 alpha bits), so that
+	 * dithering doesn't need to search the entire palette for every pixel. The nearest palette color is
+	 * computed for the center of each cell, so the result doesn't depend on the order of the lookups.
+	 */
+	private static class NearestCache {
+		
+		final int[] palette;
+		final boolean alpha;
+		/** The palette index + 1, or 0 if it hasn't been computed yet */
+		final short[] cache;
+		
+		NearestCache(int[] palette, boolean alpha) {
+			this.palette = palette;
+			this.alpha = alpha;
+			this.cache = new short[alpha ? 1 << 19 : 1 << 15];
+		}
+		
+		int get(int red, int green, int blue, int alphaValue) {
+			int key = (red >> 3) << 10 | (green >> 3) << 5 | blue >> 3;
+			if (alpha)
+				key |= (alphaValue >> 4) << 15;
+			
+			// Concurrent lookups may both compute the same entry, which is harmless
+			int entry = cache[key];
+			if (entry == 0) {
+				int center = ((red >> 3) << 3 | 4) << 24 | ((green >> 3) << 3 | 4) << 16 | ((blue >> 3) << 3 | 4) << 8
+						| (alpha ? (alphaValue >> 4) << 4 | 8 : 255);
+				entry = nearestIndex(palette, center) + 1;
+				cache[key] = (short) entry;
+			}
+			return entry - 1;
+		}
+	}
+	
+	public static enum Dithering {
+		
+		/** Every pixel gets the nearest palette color */
+		NONE,
+		/** Adds a 4x4 Bayer pattern to the colors before choosing the nearest palette color */
+		ORDERED,
+		/** Diffuses the error of every pixel to its right and lower neighbours (Floyd-Steinberg) */
+		FLOYD_STEINBERG
+	}
+}
@@ -0,0 +1,162 @@
+package nl.knokko.texture.recipe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.BufferPool;
+import nl.knokko.texture.util.Parallel;
+
+/**
+ * A compiled recipe, created by RecipePlanner.plan. The plan consists of levels of steps: the steps of a level
+ * are executed in parallel, and a level starts when the previous level has finished. Every step draws on 1 of
+ * the buffers of the plan, and buffers are reused when their content is no longer needed. The auxiliary
+ * channels of reused buffers are not cleared, so operations shouldn't rely on them.
+ * <p>
+ * A plan can be executed multiple times, and every execution gives the same texture.
+ * @author knokko
+ *
+ */
+public class ExecutionPlan {
+	
+	private final int width, height;
+	private final boolean useAlpha;
+	private final List<List<Step>> levels;
+	private final int numBuffers;
+	private final int outputBuffer;
+	private final int mergedNodes;
+	
+	ExecutionPlan(int width, int height, boolean useAlpha, List<List<Step>> levels, int numBuffers, 
+			int outputBuffer, int mergedNodes) {
+		this.width = width;
+		this.height = height;
+		this.useAlpha = useAlpha;
+		this.levels = levels;
+		this.numBuffers = numBuffers;
+		this.outputBuffer = outputBuffer;
+		this.mergedNodes = mergedNodes;
+	}
+	
+	/**
+	 * Executes all steps of this plan
+	 * @return The result of the output node of the recipe
+	 */
+	public TextureBuilder execute() {
+		Measurement measurement = Metrics.start("ExecutionPlan.execute");
+		TextureBuilder[] buffers = new TextureBuilder[numBuffers];
+		for (List<Step> level : levels) {
+			
+			// Create the buffers before the steps start, so the steps don't need to synchronize
+			for (Step step : level)
+				if (buffers[step.buffer] == null)
+					buffers[step.buffer] = new ByteArrayTextureBuilder(width, height, useAlpha);
+			
+			if (level.size() == 1)
+				level.get(0).execute(buffers);
+			else
+				IntStream.range(0, level.size()).parallel().forEach(index -> level.get(index).execute(buffers));
+		}
+		measurement.end((long) width * height * levels.size());
+		return buffers[outputBuffer];
+	}
+	
+	/**
+	 * @return The ids of the nodes that are executed in each level
+	 */
+	public List<List<String>> getLevels() {
+		List<List<String>> result = new ArrayList<>(levels.size());
+		for (List<Step> level : levels) {
+			List<String> ids = new ArrayList<>(level.size());
+			for (Step step : level)
+				ids.add(step.node.getId());
+			result.add(Collections.unmodifiableList(ids));
+		}
+		return Collections.unmodifiableList(result);
+	}
+	
+	/**
+	 * @return The number of buffers (textures of the size of the recipe) that an execution needs
+	 */
+	public int getBufferCount() {
+		return numBuffers;
+	}
+	
+	/**
+	 * @return The number of nodes that were merged into an equivalent node
+	 */
+	public int getMergedNodeCount() {
+		return mergedNodes;
+	}
+	
+	/**
+	 * @return The number of steps that draw directly on the buffer of their first input
+	 */
+	public int getInPlaceStepCount() {
+		int count = 0;
+		for (List<Step> level : levels)
+			for (Step step : level)
+				if (step.inPlace)
+					count++;
+		return count;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (int level = 0; level < levels.size(); level++) {
+			result.append("level ").append(level).append(':');
+			for (Step step : levels.get(level)) {
+				result.append(' ').append(step.node.getId()).append("->buffer").append(step.buffer);
+				if (step.inPlace)
+					result.append("(in place)");
+			}
+			result.append('\n');
+		}
+		return result.toString();
+	}
+	
+	static class Step {
+		
+		final RecipeNode node;
+		final Operation operation;
+		final int buffer;
+		final int[] inputBuffers;
+		final boolean inPlace;
+		
+		Step(RecipeNode node, Operation operation, int buffer, int[] inputBuffers, boolean inPlace) {
+			this.node = node;
+			this.operation = operation;
+			this.buffer = buffer;
+			this.inputBuffers = inputBuffers;
+			this.inPlace = inPlace;
+		}
+		
+		void execute(TextureBuilder[] buffers) {
+			TextureBuilder canvas = buffers[buffer];
+			TextureBuilder[] inputs = new TextureBuilder[inputBuffers.length];
+			for (int index = 0; index < inputs.length; index++)
+				inputs[index] = buffers[inputBuffers[index]];
+			
+			if (inputs.length > 0 && !inPlace)
+				copy(inputs[0], canvas);
+			operation.apply(new OperationContext(node, canvas, inputs));
+		}
+		
+		private static void copy(TextureBuilder source, TextureBuilder dest) {
+			int width = source.width();
+			Parallel.forEachBand(0, source.height() - 1, width, dest.supportsParallelWrites(), (minY, maxY) -> {
+				byte[] row = BufferPool.borrowBytes(4 * width);
+				for (int y = minY; y <= maxY; y++) {
+					source.getRowRGBA(0, width - 1, y, row, 0);
+					dest.setRowRGBA(0, width - 1, y, row, 0);
+				}
+				BufferPool.releaseBytes(row);
+			});
+		}
+	}
+}
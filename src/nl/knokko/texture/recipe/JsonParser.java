@@ -0,0 +1,183 @@
+package nl.knokko.texture.recipe;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small JSON parser that is just enough for recipes, so that no JSON library is needed. Objects are parsed
+ * to LinkedHashMaps, arrays to ArrayLists, integer numbers to Long (if they fit), other numbers to Double,
+ * and true, false and null to Boolean.TRUE, Boolean.FALSE and null.
+ * @author knokko
+ *
+ */
+class JsonParser {
+	
+	static Object parse(String json) {
+		JsonParser parser = new JsonParser(json);
+		Object result = parser.parseValue();
+		parser.skipWhitespace();
+		if (parser.index != json.length())
+			throw parser.error("Unexpected content after the JSON value");
+		return result;
+	}
+	
+	private final String json;
+	private int index;
+	
+	private JsonParser(String json) {
+		this.json = json;
+	}
+	
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at position " + index);
+	}
+	
+	private void skipWhitespace() {
+		while (index < json.length() && Character.isWhitespace(json.charAt(index)))
+			index++;
+	}
+	
+	private char peek() {
+		skipWhitespace();
+		if (index >= json.length())
+			throw error("Unexpected end of JSON");
+		return json.charAt(index);
+	}
+	
+	private void expect(char expected) {
+		if (peek() != expected)
+			throw error("Expected " + expected + ", but found " + json.charAt(index));
+		index++;
+	}
+	
+	private Object parseValue() {
+		char next = peek();
+		if (next == '{')
+			return parseObject();
+		if (next == '[')
+			return parseArray();
+		if (next == '"')
+			return parseString();
+		if (next == '-' || (next >= '0' && next <= '9'))
+			return parseNumber();
+		if (json.startsWith("true", index)) {
+			index += 4;
+			return Boolean.TRUE;
+		}
+		if (json.startsWith("false", index)) {
+			index += 5;
+			return Boolean.FALSE;
+		}
+		if (json.startsWith("null", index)) {
+			index += 4;
+			return null;
+		}
+		throw error("Unexpected character " + next);
+	}
+	
+	private Map<String, Object> parseObject() {
+		expect('{');
+		Map<String, Object> result = new LinkedHashMap<>();
+		if (peek() == '}') {
+			index++;
+			return result;
+		}
+		while (true) {
+			if (peek() != '"')
+				throw error("Expected a property name");
+			String key = parseString();
+			expect(':');
+			if (result.put(key, parseValue()) != null)
+				throw error("Duplicate property " + key);
+			if (peek() == '}') {
+				index++;
+				return result;
+			}
+			expect(',');
+		}
+	}
+	
+	private List<Object> parseArray() {
+		expect('[');
+		List<Object> result = new ArrayList<>();
+		if (peek() == ']') {
+			index++;
+			return result;
+		}
+		while (true) {
+			result.add(parseValue());
+			if (peek() == ']') {
+				index++;
+				return result;
+			}
+			expect(',');
+		}
+	}
+	
+	private String parseString() {
+		expect('"');
+		StringBuilder result = new StringBuilder();
+		while (true) {
+			if (index >= json.length())
+				throw error("Unterminated string");
+			char current = json.charAt(index++);
+			if (current == '"')
+				return result.toString();
+			if (current != '\\') {
+				result.append(current);
+				continue;
+			}
+			if (index >= json.length())
+				throw error("Unterminated string");
+			char escaped = json.charAt(index++);
+			switch (escaped) {
+			case '"': case '\\': case '/': result.append(escaped); break;
+			case 'b': result.append('\b'); break;
+			case 'f': result.append('\f'); break;
+			case 'n': result.append('\n'); break;
+			case 'r': result.append('\r'); break;
+			case 't': result.append('\t'); break;
+			case 'u':
+				if (index + 4 > json.length())
+					throw error("Unterminated unicode escape");
+				try {
+					result.append((char) Integer.parseInt(json.substring(index, index + 4), 16));
+				} catch (NumberFormatException invalid) {
+					throw error("Invalid unicode escape");
+				}
+				index += 4;
+				break;
+			default: throw error("Invalid escape character " + escaped);
+			}
+		}
+	}
+	
+	private Object parseNumber() {
+		int start = index;
+		boolean integer = true;
+		while (index < json.length()) {
+			char current = json.charAt(index);
+			if (current == '.' || current == 'e' || current == 'E')
+				integer = false;
+			else if (!(current == '-' || current == '+' || (current >= '0' && current <= '9')))
+				break;
+			index++;
+		}
+		String number = json.substring(start, index);
+		try {
+			if (integer) {
+				try {
+					return Long.parseLong(number);
+				} catch (NumberFormatException tooLarge) {
+					// Fall back to a double
+				}
+			}
+			return Double.parseDouble(number);
+		} catch (NumberFormatException invalid) {
+			index = start;
+			throw error("Invalid number " + number);
+		}
+	}
+}
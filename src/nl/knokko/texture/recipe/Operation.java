@@ -0,0 +1,18 @@
+package nl.knokko.texture.recipe;
+
+/**
+ * An operation that can be used by the nodes of a recipe, for instance a drawer method or a filter.
+ * Operations are registered in an OperationRegistry under the name that the nodes use.
+ * @author knokko
+ *
+ */
+@FunctionalInterface
+public interface Operation {
+	
+	/**
+	 * Performs this operation on the canvas of the context. The inputs of the context must not be modified,
+	 * because they may be used by other operations at the same time.
+	 * @param context The canvas, inputs, parameters and random of the node that is being executed
+	 */
+	void apply(OperationContext context);
+}
@@ -0,0 +1,190 @@
+package nl.knokko.texture.recipe;
+
+import java.util.List;
+import java.util.Random;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.Color;
+import nl.knokko.texture.color.SimpleRGBAColor;
+import nl.knokko.texture.color.SimpleRGBColor;
+
+/**
+ * The information that an Operation gets when the node that uses it is executed: the canvas to draw on, the
+ * results of the inputs of the node, and typed access to the parameters of the node.
+ * @author knokko
+ *
+ */
+public class OperationContext {
+	
+	private final RecipeNode node;
+	private final TextureBuilder canvas;
+	private final TextureBuilder[] inputs;
+	private Random random;
+	
+	OperationContext(RecipeNode node, TextureBuilder canvas, TextureBuilder[] inputs) {
+		this.node = node;
+		this.canvas = canvas;
+		this.inputs = inputs;
+	}
+	
+	public RecipeNode getNode() {
+		return node;
+	}
+	
+	/**
+	 * @return The texture to draw on. If the node has inputs, it starts as a copy of the first input.
+	 */
+	public TextureBuilder canvas() {
+		return canvas;
+	}
+	
+	public int inputCount() {
+		return inputs.length;
+	}
+	
+	/**
+	 * @return The result of the input with the given index, which must not be modified. When the canvas is
+	 * drawn directly on the buffer of the first input, input(0) is the canvas itself.
+	 */
+	public TextureBuilder input(int index) {
+		if (index < 0 || index >= inputs.length)
+			throw new IllegalArgumentException("Node " + node.getId() + " doesn't have input " + index);
+		return inputs[index];
+	}
+	
+	/**
+	 * @return A Random with the seed of the node. It is created on the first call, so every execution of the
+	 * node gets the same random numbers.
+	 */
+	public Random random() {
+		if (random == null)
+			random = new Random(node.getSeed());
+		return random;
+	}
+	
+	public boolean has(String name) {
+		return node.getParameters().containsKey(name);
+	}
+	
+	private Object get(String name) {
+		Object value = node.getParameters().get(name);
+		if (value == null)
+			throw new IllegalArgumentException("Node " + node.getId() + " (" + node.getOperation() + ") needs parameter " + name);
+		return value;
+	}
+	
+	private IllegalArgumentException invalid(String name, String expected) {
+		return new IllegalArgumentException("Parameter " + name + " of node " + node.getId() + " should be " + expected + 
+				", but is " + node.getParameters().get(name));
+	}
+	
+	public double getDouble(String name) {
+		Object value = get(name);
+		if (!(value instanceof Double))
+			throw invalid(name, "a number");
+		return (Double) value;
+	}
+	
+	public double getDouble(String name, double defaultValue) {
+		return has(name) ? getDouble(name) : defaultValue;
+	}
+	
+	public float getFloat(String name) {
+		return (float) getDouble(name);
+	}
+	
+	public int getInt(String name) {
+		return (int) getDouble(name);
+	}
+	
+	public int getInt(String name, int defaultValue) {
+		return has(name) ? getInt(name) : defaultValue;
+	}
+	
+	public boolean getBoolean(String name, boolean defaultValue) {
+		if (!has(name))
+			return defaultValue;
+		Object value = get(name);
+		if (!(value instanceof Boolean))
+			throw invalid(name, "a boolean");
+		return (Boolean) value;
+	}
+	
+	public String getString(String name) {
+		Object value = get(name);
+		if (!(value instanceof String))
+			throw invalid(name, "a string");
+		return (String) value;
+	}
+	
+	public double[] getDoubles(String name) {
+		Object value = get(name);
+		if (!(value instanceof List<?>))
+			throw invalid(name, "an array of numbers");
+		List<?> list = (List<?>) value;
+		double[] result = new double[list.size()];
+		for (int index = 0; index < result.length; index++) {
+			if (!(list.get(index) instanceof Double))
+				throw invalid(name, "an array of numbers");
+			result[index] = (Double) list.get(index);
+		}
+		return result;
+	}
+	
+	/**
+	 * Gets a color parameter, which can be a string like "#RRGGBB" or "#RRGGBBAA", or an array of 3 or 4
+	 * numbers between 0 and 255.
+	 */
+	public Color getColor(String name) {
+		Object value = get(name);
+		if (value instanceof String) {
+			String hex = (String) value;
+			if (!hex.startsWith("#") || (hex.length() != 7 && hex.length() != 9))
+				throw invalid(name, "a color like #RRGGBB or #RRGGBBAA");
+			try {
+				int red = Integer.parseInt(hex.substring(1, 3), 16);
+				int green = Integer.parseInt(hex.substring(3, 5), 16);
+				int blue = Integer.parseInt(hex.substring(5, 7), 16);
+				if (hex.length() == 9)
+					return SimpleRGBAColor.fromInts(red, green, blue, Integer.parseInt(hex.substring(7, 9), 16));
+				return SimpleRGBColor.fromInts(red, green, blue);
+			} catch (NumberFormatException notHex) {
+				throw invalid(name, "a color like #RRGGBB or #RRGGBBAA");
+			}
+		}
+		double[] components = getDoubles(name);
+		if (components.length == 3)
+			return SimpleRGBColor.fromInts((int) components[0], (int) components[1], (int) components[2]);
+		if (components.length == 4)
+			return SimpleRGBAColor.fromInts((int) components[0], (int) components[1], (int) components[2], (int) components[3]);
+		throw invalid(name, "an array of 3 or 4 color components");
+	}
+	
+	/**
+	 * @return The minX parameter, or 0 if it is missing
+	 */
+	public int minX() {
+		return getInt("minX", 0);
+	}
+	
+	/**
+	 * @return The minY parameter, or 0 if it is missing
+	 */
+	public int minY() {
+		return getInt("minY", 0);
+	}
+	
+	/**
+	 * @return The maxX parameter, or the largest x-coordinate of the canvas if it is missing
+	 */
+	public int maxX() {
+		return getInt("maxX", canvas.width() - 1);
+	}
+	
+	/**
+	 * @return The maxY parameter, or the largest y-coordinate of the canvas if it is missing
+	 */
+	public int maxY() {
+		return getInt("maxY", canvas.height() - 1);
+	}
+}
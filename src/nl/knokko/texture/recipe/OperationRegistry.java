@@ -0,0 +1,147 @@
+package nl.knokko.texture.recipe;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.filter.BoxBlurFilter;
+import nl.knokko.texture.filter.GaussianBlurFilter;
+import nl.knokko.texture.filter.SharpenFilter;
+import nl.knokko.texture.util.BufferPool;
+import nl.knokko.texture.util.Parallel;
+
+/**
+ * Maps operation names to the Operations that recipe nodes can use. createDefault gives a registry with the
+ * drawer methods and filters of this library. The names of the parameters are the names of the parameters
+ * of the corresponding drawer methods, and regions are given by the optional minX, minY, maxX and maxY
+ * parameters (by default the entire canvas).
+ * @author knokko
+ *
+ */
+public class OperationRegistry {
+	
+	/**
+	 * @return A new registry with the default operations, to which custom operations can be added
+	 */
+	public static OperationRegistry createDefault() {
+		OperationRegistry registry = new OperationRegistry();
+		
+		registry.register("fillRect", context -> context.canvas().geometry().fillRect(
+				context.minX(), context.minY(), context.maxX(), context.maxY(), context.getColor("color")));
+		registry.register("fillCircle", context -> context.canvas().geometry().fillCircle(context.getDouble("centerX"), 
+				context.getDouble("centerY"), context.getDouble("radius"), context.getColor("color")));
+		registry.register("fillPolygon", context -> context.canvas().geometry().fillPolygon(
+				context.getDoubles("xs"), context.getDoubles("ys"), context.getColor("color")));
+		registry.register("drawLine", context -> context.canvas().geometry().drawLine(context.getInt("startX"), 
+				context.getInt("startY"), context.getInt("endX"), context.getInt("endY"), context.getColor("color")));
+		
+		registry.register("fillAverage", context -> context.canvas().average().fillAverage(context.minX(), 
+				context.minY(), context.maxX(), context.maxY(), context.getColor("color"), 
+				context.getDouble("maxDifference"), context.random()));
+		registry.register("fillAverageChance", context -> context.canvas().average().fillAverageChance(
+				context.minX(), context.minY(), context.maxX(), context.maxY(), context.getColor("color"), 
+				context.getDouble("maxDifference"), context.random(), context.getDouble("chance")));
+		
+		registry.register("fillDecayingCircle", context -> context.canvas().decaying().fillDecayingCircle(
+				context.getInt("centerX"), context.getInt("centerY"), context.getDouble("radius"), context.getColor("color")));
+		registry.register("decayingCirclePattern", context -> context.canvas().decaying().addDecayingCirclePattern(
+				context.minX(), context.minY(), context.maxX(), context.maxY(), context.getColor("color"), 
+				context.getDouble("maxColorDifference"), context.getDouble("minRadius"), 
+				context.getDouble("maxRadius"), context.getDouble("density"), context.random()));
+		
+		registry.register("brickPattern", context -> context.canvas().materials().fillBrickPattern(context.minX(), 
+				context.minY(), context.maxX(), context.maxY(), context.getInt("brickLength"), 
+				context.getInt("brickHeight"), context.getColor("brickColor"), context.getColor("edgeColor"), 
+				context.getFloat("maxDifference"), context.random()));
+		registry.register("woodPlanksPattern", context -> context.canvas().materials().fillWoodPlanksPattern(
+				context.minX(), context.minY(), context.maxX(), context.maxY(), context.getInt("plankLength"), 
+				context.getInt("plankHeight"), context.getInt("plankShift"), context.getColor("plankColor"), 
+				context.getColor("edgeColor"), context.getFloat("maxDifference"), context.random()));
+		registry.register("woodPattern", context -> context.canvas().materials().fillWoodPattern(context.minX(), 
+				context.minY(), context.maxX(), context.maxY(), context.getColor("averageColor"), context.random()));
+		registry.register("cellPattern", context -> context.canvas().materials().fillCellPattern(context.minX(), 
+				context.minY(), context.maxX(), context.maxY(), context.getInt("cellSize"), context.getColor("cellColor"), 
+				context.getColor("mortarColor"), context.getDouble("mortarWidth"), context.getDouble("edgeWidth"), 
+				context.getDouble("maxDifference"), context.random()));
+		registry.register("cobblestonePattern", context -> context.canvas().materials().fillCobblestonePattern(
+				context.minX(), context.minY(), context.maxX(), context.maxY(), context.getInt("stoneSize"), 
+				context.getColor("stoneColor"), context.getColor("mortarColor"), context.random()));
+		registry.register("grass", context -> context.canvas().materials().drawGrass(context.minX(), context.minY(), 
+				context.maxX(), context.maxY(), context.getColor("grassColor"), context.getColor("brightGrassColor"), 
+				context.getColor("groundColor"), context.random()));
+		
+		registry.register("gaussianBlur", context -> new GaussianBlurFilter(context.getDouble("sigma")).apply(context.canvas()));
+		registry.register("boxBlur", context -> new BoxBlurFilter(context.getInt("radius")).apply(context.canvas()));
+		registry.register("sharpen", context -> new SharpenFilter(context.getDouble("amount"), 
+				context.getDouble("sigma")).apply(context.canvas()));
+		
+		registry.register("overlay", OperationRegistry::overlay);
+		return registry;
+	}
+	
+	/**
+	 * Draws the region of the second input over the canvas, using the alpha of the second input
+	 */
+	private static void overlay(OperationContext context) {
+		TextureBuilder canvas = context.canvas();
+		TextureBuilder source = context.input(1);
+		int minX = context.minX();
+		int maxX = context.maxX();
+		int rowLength = 4 * (maxX - minX + 1);
+		Parallel.forEachBand(context.minY(), context.maxY(), maxX - minX + 1, canvas.supportsParallelWrites(), (minY, maxY) -> {
+			byte[] canvasRow = BufferPool.borrowBytes(rowLength);
+			byte[] sourceRow = BufferPool.borrowBytes(rowLength);
+			for (int y = minY; y <= maxY; y++) {
+				canvas.getRowRGBA(minX, maxX, y, canvasRow, 0);
+				source.getRowRGBA(minX, maxX, y, sourceRow, 0);
+				for (int index = 0; index < rowLength; index += 4) {
+					int alpha = sourceRow[index + 3] & 0xFF;
+					for (int channel = index; channel < index + 3; channel++) {
+						int blended = (sourceRow[channel] & 0xFF) * alpha + (canvasRow[channel] & 0xFF) * (255 - alpha);
+						canvasRow[channel] = (byte) ((blended + 127) / 255);
+					}
+					int canvasAlpha = canvasRow[index + 3] & 0xFF;
+					canvasRow[index + 3] = (byte) (alpha + (canvasAlpha * (255 - alpha) + 127) / 255);
+				}
+				canvas.setRowRGBA(minX, maxX, y, canvasRow, 0);
+			}
+			BufferPool.releaseBytes(canvasRow);
+			BufferPool.releaseBytes(sourceRow);
+		});
+	}
+	
+	private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+	
+	/**
+	 * Registers an operation, replacing the operation that was previously registered with the same name
+	 * @return this, to allow chaining
+	 */
+	public OperationRegistry register(String name, Operation operation) {
+		operations.put(name, operation);
+		return this;
+	}
+	
+	/**
+	 * @return The operation with the given name
+	 * @throws IllegalArgumentException If no operation with the given name is registered
+	 */
+	public Operation get(String name) {
+		Operation operation = operations.get(name);
+		if (operation == null)
+			throw new IllegalArgumentException("Unknown operation " + name);
+		return operation;
+	}
+	
+	public boolean has(String name) {
+		return operations.containsKey(name);
+	}
+	
+	/**
+	 * @return The names of all registered operations, in alphabetical order
+	 */
+	public Set<String> getNames() {
+		return new TreeSet<>(operations.keySet());
+	}
+}
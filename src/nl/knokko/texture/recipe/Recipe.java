@@ -0,0 +1,81 @@
+package nl.knokko.texture.recipe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A declarative description of a texture: a graph of RecipeNodes, where the result of the output node is the
+ * texture. Unlike a sequence of drawer calls, a recipe can be analyzed as a whole, stored as JSON (see
+ * RecipeJson) or in a compact binary form (see RecipeBinary), and compiled into an ExecutionPlan by the
+ * RecipePlanner.
+ * @author knokko
+ *
+ */
+public class Recipe {
+	
+	private final int width, height;
+	private final boolean useAlpha;
+	private final List<RecipeNode> nodes;
+	private final Map<String, RecipeNode> nodeMap;
+	private final String output;
+	
+	/**
+	 * @param width The width of the texture and all intermediate results
+	 * @param height The height of the texture and all intermediate results
+	 * @param useAlpha Whether the texture has an alpha channel
+	 * @param nodes The nodes of the recipe, in any order
+	 * @param output The id of the node whose result is the texture
+	 * @throws IllegalArgumentException If 2 nodes have the same id, or an input or the output doesn't exist
+	 */
+	public Recipe(int width, int height, boolean useAlpha, List<RecipeNode> nodes, String output) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+		this.width = width;
+		this.height = height;
+		this.useAlpha = useAlpha;
+		this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+		this.nodeMap = new HashMap<>();
+		for (RecipeNode node : nodes) {
+			if (nodeMap.put(node.getId(), node) != null)
+				throw new IllegalArgumentException("Duplicate node id " + node.getId());
+		}
+		for (RecipeNode node : nodes) {
+			for (String input : node.getInputs())
+				if (!nodeMap.containsKey(input))
+					throw new IllegalArgumentException("Node " + node.getId() + " uses unknown input " + input);
+		}
+		if (!nodeMap.containsKey(output))
+			throw new IllegalArgumentException("Unknown output node " + output);
+		this.output = output;
+	}
+	
+	public int width() {
+		return width;
+	}
+	
+	public int height() {
+		return height;
+	}
+	
+	public boolean useAlpha() {
+		return useAlpha;
+	}
+	
+	public List<RecipeNode> getNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * @return The node with the given id, or null if there is no such node
+	 */
+	public RecipeNode getNode(String id) {
+		return nodeMap.get(id);
+	}
+	
+	public String getOutput() {
+		return output;
+	}
+}
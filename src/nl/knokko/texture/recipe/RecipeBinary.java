@@ -0,0 +1,144 @@
+package nl.knokko.texture.recipe;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes recipes in a compact binary form, which is smaller and faster to load than JSON. Inputs
+ * are stored as indices into the node list rather than as node ids.
+ * @author knokko
+ *
+ */
+public class RecipeBinary {
+	
+	private static final int MAGIC = 0x4B545250;
+	private static final int VERSION = 1;
+	
+	private static final byte TYPE_NUMBER = 0;
+	private static final byte TYPE_STRING = 1;
+	private static final byte TYPE_BOOLEAN = 2;
+	private static final byte TYPE_LIST = 3;
+	
+	public static void write(Recipe recipe, DataOutput output) throws IOException {
+		output.writeInt(MAGIC);
+		output.writeByte(VERSION);
+		output.writeInt(recipe.width());
+		output.writeInt(recipe.height());
+		output.writeBoolean(recipe.useAlpha());
+		
+		List<RecipeNode> nodes = recipe.getNodes();
+		Map<String, Integer> indices = new HashMap<>();
+		for (int index = 0; index < nodes.size(); index++)
+			indices.put(nodes.get(index).getId(), index);
+		output.writeInt(nodes.size());
+		output.writeInt(indices.get(recipe.getOutput()));
+		for (RecipeNode node : nodes) {
+			output.writeUTF(node.getId());
+			output.writeUTF(node.getOperation());
+			output.writeLong(node.getSeed());
+			output.writeShort(node.getInputs().size());
+			for (String input : node.getInputs())
+				output.writeInt(indices.get(input));
+			output.writeShort(node.getParameters().size());
+			for (Map.Entry<String, Object> parameter : node.getParameters().entrySet()) {
+				output.writeUTF(parameter.getKey());
+				writeValue(parameter.getValue(), output);
+			}
+		}
+	}
+	
+	private static void writeValue(Object value, DataOutput output) throws IOException {
+		if (value instanceof Double) {
+			output.writeByte(TYPE_NUMBER);
+			output.writeDouble((Double) value);
+		} else if (value instanceof String) {
+			output.writeByte(TYPE_STRING);
+			output.writeUTF((String) value);
+		} else if (value instanceof Boolean) {
+			output.writeByte(TYPE_BOOLEAN);
+			output.writeBoolean((Boolean) value);
+		} else {
+			List<?> list = (List<?>) value;
+			output.writeByte(TYPE_LIST);
+			output.writeInt(list.size());
+			for (Object element : list)
+				writeValue(element, output);
+		}
+	}
+	
+	/**
+	 * Reads a recipe that was written by the write method
+	 * @throws IOException If the input doesn't contain a binary recipe (of a supported version), or reading
+	 * from it fails
+	 */
+	public static Recipe read(DataInput input) throws IOException {
+		if (input.readInt() != MAGIC)
+			throw new IOException("The input is not a binary recipe");
+		int version = input.readUnsignedByte();
+		if (version != VERSION)
+			throw new IOException("Unsupported binary recipe version " + version);
+		int width = input.readInt();
+		int height = input.readInt();
+		boolean useAlpha = input.readBoolean();
+		
+		int numNodes = input.readInt();
+		int outputIndex = input.readInt();
+		if (numNodes < 0 || outputIndex < 0 || outputIndex >= numNodes)
+			throw new IOException("Invalid node count " + numNodes + " or output index " + outputIndex);
+		String[] ids = new String[numNodes];
+		String[] operations = new String[numNodes];
+		long[] seeds = new long[numNodes];
+		int[][] inputs = new int[numNodes][];
+		List<Map<String, Object>> parameters = new ArrayList<>(numNodes);
+		for (int index = 0; index < numNodes; index++) {
+			ids[index] = input.readUTF();
+			operations[index] = input.readUTF();
+			seeds[index] = input.readLong();
+			inputs[index] = new int[input.readUnsignedShort()];
+			for (int inputIndex = 0; inputIndex < inputs[index].length; inputIndex++) {
+				inputs[index][inputIndex] = input.readInt();
+				if (inputs[index][inputIndex] < 0 || inputs[index][inputIndex] >= numNodes)
+					throw new IOException("Invalid input index " + inputs[index][inputIndex]);
+			}
+			int numParameters = input.readUnsignedShort();
+			Map<String, Object> nodeParameters = new LinkedHashMap<>();
+			for (int counter = 0; counter < numParameters; counter++)
+				nodeParameters.put(input.readUTF(), readValue(input));
+			parameters.add(nodeParameters);
+		}
+		
+		// The inputs can only be converted to ids after all ids have been read
+		List<RecipeNode> nodes = new ArrayList<>(numNodes);
+		for (int index = 0; index < numNodes; index++) {
+			List<String> inputIds = new ArrayList<>(inputs[index].length);
+			for (int inputIndex : inputs[index])
+				inputIds.add(ids[inputIndex]);
+			nodes.add(new RecipeNode(ids[index], operations[index], seeds[index], inputIds, parameters.get(index)));
+		}
+		return new Recipe(width, height, useAlpha, nodes, ids[outputIndex]);
+	}
+	
+	private static Object readValue(DataInput input) throws IOException {
+		byte type = input.readByte();
+		switch (type) {
+		case TYPE_NUMBER: return input.readDouble();
+		case TYPE_STRING: return input.readUTF();
+		case TYPE_BOOLEAN: return input.readBoolean();
+		case TYPE_LIST:
+			int size = input.readInt();
+			if (size < 0)
+				throw new IOException("Invalid list size " + size);
+			List<Object> list = new ArrayList<>();
+			for (int index = 0; index < size; index++)
+				list.add(readValue(input));
+			return list;
+		default: throw new IOException("Unknown value type " + type);
+		}
+	}
+}
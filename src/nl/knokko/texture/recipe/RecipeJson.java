@@ -0,0 +1,121 @@
+package nl.knokko.texture.recipe;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads recipes from JSON. A recipe looks like this:
+ * <pre>
+ * {
+ *   "width": 64, "height": 64, "alpha": false, "output": "bricks",
+ *   "nodes": [
+ *     { "id": "bricks", "op": "brickPattern", "seed": 5, "params": {
+ *       "brickLength": 16, "brickHeight": 8, "brickColor": "#96503c", "edgeColor": "#c8c8c8", "maxDifference": 0.1
+ *     } },
+ *     { "id": "blurred", "op": "gaussianBlur", "inputs": ["bricks"], "params": { "sigma": 1 } }
+ *   ]
+ * }
+ * </pre>
+ * The alpha, seed, inputs and params properties are optional. When the seed is omitted, the hash code of
+ * the node id is used as seed.
+ * @author knokko
+ *
+ */
+public class RecipeJson {
+	
+	/**
+	 * Parses a recipe from the given JSON text
+	 * @throws IllegalArgumentException If the JSON or the recipe is invalid
+	 */
+	public static Recipe parse(String json) {
+		Map<String, Object> root = asObject(JsonParser.parse(json), "recipe");
+		int width = asNumber(root.get("width"), "width").intValue();
+		int height = asNumber(root.get("height"), "height").intValue();
+		boolean useAlpha = root.containsKey("alpha") && asBoolean(root.get("alpha"), "alpha");
+		String output = asString(root.get("output"), "output");
+		
+		List<RecipeNode> nodes = new ArrayList<>();
+		for (Object element : asList(root.get("nodes"), "nodes")) {
+			Map<String, Object> node = asObject(element, "node");
+			String id = asString(node.get("id"), "id");
+			String operation = asString(node.get("op"), "op of node " + id);
+			long seed = node.containsKey("seed") ? asNumber(node.get("seed"), "seed of node " + id).longValue() : id.hashCode();
+			
+			List<String> inputs = new ArrayList<>();
+			if (node.containsKey("inputs")) {
+				for (Object input : asList(node.get("inputs"), "inputs of node " + id))
+					inputs.add(asString(input, "input of node " + id));
+			}
+			Map<String, Object> parameters = node.containsKey("params") ? 
+					asObject(node.get("params"), "params of node " + id) : Collections.emptyMap();
+			Map<String, Object> converted = new LinkedHashMap<>();
+			for (Map.Entry<String, Object> parameter : parameters.entrySet())
+				converted.put(parameter.getKey(), convertValue(parameter.getValue()));
+			nodes.add(new RecipeNode(id, operation, seed, inputs, converted));
+		}
+		return new Recipe(width, height, useAlpha, nodes, output);
+	}
+	
+	/**
+	 * Reads all characters from the reader and parses them like parse(String)
+	 */
+	public static Recipe read(Reader reader) throws IOException {
+		StringBuilder json = new StringBuilder();
+		char[] buffer = new char[4096];
+		int numRead;
+		while ((numRead = reader.read(buffer)) != -1)
+			json.append(buffer, 0, numRead);
+		return parse(json.toString());
+	}
+	
+	/**
+	 * Converts the numbers in a parsed parameter value to Double, since that is what RecipeNode expects
+	 */
+	private static Object convertValue(Object value) {
+		if (value instanceof Number)
+			return ((Number) value).doubleValue();
+		if (value instanceof List<?>) {
+			List<Object> converted = new ArrayList<>();
+			for (Object element : (List<?>) value)
+				converted.add(convertValue(element));
+			return converted;
+		}
+		return value;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> asObject(Object value, String description) {
+		if (!(value instanceof Map<?, ?>))
+			throw new IllegalArgumentException("Expected " + description + " to be an object, but it is " + value);
+		return (Map<String, Object>) value;
+	}
+	
+	private static List<?> asList(Object value, String description) {
+		if (!(value instanceof List<?>))
+			throw new IllegalArgumentException("Expected " + description + " to be an array, but it is " + value);
+		return (List<?>) value;
+	}
+	
+	private static Number asNumber(Object value, String description) {
+		if (!(value instanceof Number))
+			throw new IllegalArgumentException("Expected " + description + " to be a number, but it is " + value);
+		return (Number) value;
+	}
+	
+	private static String asString(Object value, String description) {
+		if (!(value instanceof String))
+			throw new IllegalArgumentException("Expected " + description + " to be a string, but it is " + value);
+		return (String) value;
+	}
+	
+	private static boolean asBoolean(Object value, String description) {
+		if (!(value instanceof Boolean))
+			throw new IllegalArgumentException("Expected " + description + " to be a boolean, but it is " + value);
+		return (Boolean) value;
+	}
+}
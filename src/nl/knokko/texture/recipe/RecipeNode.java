@@ -0,0 +1,77 @@
+package nl.knokko.texture.recipe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A node of a recipe: a single operation (like fillBrickPattern) with its parameters, its seed and the ids of
+ * the nodes whose results it uses as input. The operation draws on a canvas that starts as a copy of the
+ * result of the first input, or as an empty texture if the node has no inputs. The other inputs can only be
+ * read by the operation.
+ * <p>
+ * Parameter values must be Double, String, Boolean or a List of those values.
+ * @author knokko
+ *
+ */
+public class RecipeNode {
+	
+	private final String id;
+	private final String operation;
+	private final long seed;
+	private final List<String> inputs;
+	private final Map<String, Object> parameters;
+	
+	/**
+	 * @param id The unique id of this node within its recipe
+	 * @param operation The name of the operation in the OperationRegistry
+	 * @param seed The seed of the Random that will be passed to the operation
+	 * @param inputs The ids of the input nodes
+	 * @param parameters The parameters of the operation
+	 */
+	public RecipeNode(String id, String operation, long seed, List<String> inputs, Map<String, Object> parameters) {
+		this.id = id;
+		this.operation = operation;
+		this.seed = seed;
+		this.inputs = Collections.unmodifiableList(new ArrayList<>(inputs));
+		for (Map.Entry<String, Object> parameter : parameters.entrySet())
+			checkValue(parameter.getKey(), parameter.getValue());
+		this.parameters = Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+	}
+	
+	private void checkValue(String name, Object value) {
+		if (value instanceof List<?>) {
+			for (Object element : (List<?>) value)
+				checkValue(name, element);
+		} else if (!(value instanceof Double || value instanceof String || value instanceof Boolean)) {
+			throw new IllegalArgumentException("Parameter " + name + " of node " + id + " has unsupported value " + value);
+		}
+	}
+	
+	public String getId() {
+		return id;
+	}
+	
+	public String getOperation() {
+		return operation;
+	}
+	
+	public long getSeed() {
+		return seed;
+	}
+	
+	public List<String> getInputs() {
+		return inputs;
+	}
+	
+	public Map<String, Object> getParameters() {
+		return parameters;
+	}
+	
+	@Override
+	public String toString() {
+		return id + "=" + operation + inputs + parameters;
+	}
+}
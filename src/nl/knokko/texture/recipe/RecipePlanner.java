@@ -0,0 +1,157 @@
+package nl.knokko.texture.recipe;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles recipes into ExecutionPlans. The planner:
+ * <ul>
+ * <li>Drops the nodes that the output doesn't depend on.</li>
+ * <li>Memoizes shared subresults: nodes with the same operation, seed, parameters and (memoized) inputs are
+ * merged into 1 node, so their result is computed only once.</li>
+ * <li>Groups the nodes into levels: every node is 1 level higher than its highest input. The nodes of a level
+ * don't depend on each other, so they are executed in parallel.</li>
+ * <li>Assigns buffers using liveness analysis: the buffer of a result is reused as soon as the last level that
+ * reads it has finished. When a node is the only user of its first input, it draws directly on the buffer of
+ * that input instead of on a copy.</li>
+ * </ul>
+ * @author knokko
+ *
+ */
+public class RecipePlanner {
+	
+	/**
+	 * @param recipe The recipe to compile
+	 * @param registry The registry with the operations that the recipe uses
+	 * @return The execution plan of the recipe
+	 * @throws IllegalArgumentException If the recipe contains a cycle or uses an unknown operation
+	 */
+	public static ExecutionPlan plan(Recipe recipe, OperationRegistry registry) {
+		List<RecipeNode> order = topologicalOrder(recipe);
+		
+		// Merge equivalent nodes. The inputs of every node are already merged when the node is reached.
+		Map<String, String> canonicalIds = new HashMap<>();
+		Map<List<Object>, String> keys = new HashMap<>();
+		List<RecipeNode> unique = new ArrayList<>();
+		for (RecipeNode node : order) {
+			List<String> inputs = new ArrayList<>();
+			for (String input : node.getInputs())
+				inputs.add(canonicalIds.get(input));
+			List<Object> key = Arrays.asList(node.getOperation(), node.getSeed(), node.getParameters(), inputs);
+			String existing = keys.putIfAbsent(key, node.getId());
+			if (existing != null) {
+				canonicalIds.put(node.getId(), existing);
+			} else {
+				canonicalIds.put(node.getId(), node.getId());
+				unique.add(new RecipeNode(node.getId(), node.getOperation(), node.getSeed(), inputs, node.getParameters()));
+			}
+		}
+		String output = canonicalIds.get(recipe.getOutput());
+		
+		// Compute the level of every node, and how often and until which level its result is used
+		Map<String, Integer> indices = new HashMap<>();
+		int[] levels = new int[unique.size()];
+		int[] useCounts = new int[unique.size()];
+		int[] lastUseLevels = new int[unique.size()];
+		int numLevels = 0;
+		for (int index = 0; index < unique.size(); index++) {
+			RecipeNode node = unique.get(index);
+			indices.put(node.getId(), index);
+			for (String input : node.getInputs())
+				levels[index] = Math.max(levels[index], levels[indices.get(input)] + 1);
+			for (String input : node.getInputs()) {
+				int inputIndex = indices.get(input);
+				useCounts[inputIndex]++;
+				lastUseLevels[inputIndex] = Math.max(lastUseLevels[inputIndex], levels[index]);
+			}
+			numLevels = Math.max(numLevels, levels[index] + 1);
+		}
+		int outputIndex = indices.get(output);
+		
+		// Assign the buffers level by level
+		List<List<ExecutionPlan.Step>> stepLevels = new ArrayList<>();
+		int[] slots = new int[unique.size()];
+		boolean[] stolen = new boolean[unique.size()];
+		Deque<Integer> freeSlots = new ArrayDeque<>();
+		int numSlots = 0;
+		for (int level = 0; level < numLevels; level++) {
+			List<ExecutionPlan.Step> steps = new ArrayList<>();
+			for (int index = 0; index < unique.size(); index++) {
+				if (levels[index] != level)
+					continue;
+				RecipeNode node = unique.get(index);
+				List<String> inputs = node.getInputs();
+				int[] inputSlots = new int[inputs.size()];
+				for (int inputIndex = 0; inputIndex < inputSlots.length; inputIndex++)
+					inputSlots[inputIndex] = slots[indices.get(inputs.get(inputIndex))];
+				
+				boolean inPlace = false;
+				if (!inputs.isEmpty()) {
+					int first = indices.get(inputs.get(0));
+					inPlace = useCounts[first] == 1 && first != outputIndex;
+					if (inPlace)
+						stolen[first] = true;
+				}
+				
+				// Nodes without inputs are always in level 0, so reused buffers are always overwritten by a copy
+				if (inPlace)
+					slots[index] = inputSlots[0];
+				else
+					slots[index] = freeSlots.isEmpty() ? numSlots++ : freeSlots.pop();
+				steps.add(new ExecutionPlan.Step(node, registry.get(node.getOperation()), slots[index], inputSlots, inPlace));
+			}
+			
+			// The buffers whose last reader is in this level can be reused from the next level on
+			for (int index = 0; index < unique.size(); index++) {
+				if (useCounts[index] > 0 && lastUseLevels[index] == level && !stolen[index] && index != outputIndex)
+					freeSlots.push(slots[index]);
+			}
+			stepLevels.add(steps);
+		}
+		
+		return new ExecutionPlan(recipe.width(), recipe.height(), recipe.useAlpha(), stepLevels, numSlots, 
+				slots[outputIndex], order.size() - unique.size());
+	}
+	
+	/**
+	 * @return The nodes that the output depends on (including the output), in an order where every node comes
+	 * after its inputs
+	 */
+	private static List<RecipeNode> topologicalOrder(Recipe recipe) {
+		List<RecipeNode> order = new ArrayList<>();
+		Map<String, Boolean> finished = new HashMap<>();
+		
+		// Iterative depth-first search, so that long chains of nodes can't overflow the stack
+		Deque<RecipeNode> stack = new ArrayDeque<>();
+		Deque<Integer> nextInputs = new ArrayDeque<>();
+		stack.push(recipe.getNode(recipe.getOutput()));
+		nextInputs.push(0);
+		finished.put(recipe.getOutput(), false);
+		while (!stack.isEmpty()) {
+			RecipeNode node = stack.peek();
+			int nextInput = nextInputs.pop();
+			if (nextInput == node.getInputs().size()) {
+				stack.pop();
+				finished.put(node.getId(), true);
+				order.add(node);
+				continue;
+			}
+			nextInputs.push(nextInput + 1);
+			String input = node.getInputs().get(nextInput);
+			Boolean inputFinished = finished.get(input);
+			if (inputFinished == null) {
+				finished.put(input, false);
+				stack.push(recipe.getNode(input));
+				nextInputs.push(0);
+			} else if (!inputFinished) {
+				throw new IllegalArgumentException("The recipe contains a cycle through node " + input);
+			}
+		}
+		return order;
+	}
+}
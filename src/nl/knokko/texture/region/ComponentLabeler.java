@@ -0,0 +1,102 @@
+package nl.knokko.texture.region;
+
+import java.util.Arrays;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+
+/**
+ * Divides a texture into connected components: maximal groups of pixels that are connected horizontally and
+ * vertically by neighbours with similar colors. For instance, every brick of a texture made by
+ * MaterialDrawer.fillBrickPattern becomes a component, and all mortar together becomes another component.
+ * <p>
+ * The labeler makes 2 passes over the pixels. The first pass gives every pixel a provisional label and merges
+ * the labels of connected pixels with a union-find structure, and the second pass replaces every provisional
+ * label by the final label of its set. Both passes take linear time.
+ * @author knokko
+ *
+ */
+public class ComponentLabeler {
+	
+	/**
+	 * Labels the connected components of the texture. Two neighbouring pixels belong to the same component
+	 * when none of their RGBA components differ more than tolerance. Note that the colors within a component
+	 * can differ more than tolerance when they change gradually.
+	 * @param texture The texture to label
+	 * @param tolerance The maximum difference between neighbouring pixels, between 0 and 255
+	 * @return The labels, numbered in the order in which the components are first encountered when scanning
+	 * the texture row by row
+	 */
+	public static ComponentLabels label(TextureBuilder texture, int tolerance) {
+		RegionPixels.checkTolerance(tolerance);
+		Measurement measurement = Metrics.start("ComponentLabeler.label");
+		int width = texture.width();
+		int height = texture.height();
+		int[] pixels = RegionPixels.read(texture);
+		int[] labels = new int[pixels.length];
+		
+		// parent[label] is the parent of a provisional label. The root of every set is its smallest label.
+		int[] parent = new int[256];
+		int numProvisional = 0;
+		
+		for (int y = 0; y < height; y++) {
+			int rowStart = y * width;
+			for (int x = 0; x < width; x++) {
+				int index = rowStart + x;
+				int color = pixels[index];
+				boolean left = x > 0 && RegionPixels.similar(pixels[index - 1], color, tolerance);
+				boolean up = y > 0 && RegionPixels.similar(pixels[index - width], color, tolerance);
+				int label;
+				if (left) {
+					label = labels[index - 1];
+					if (up && labels[index - width] != label)
+						union(parent, label, labels[index - width]);
+				} else if (up) {
+					label = labels[index - width];
+				} else {
+					if (numProvisional == parent.length)
+						parent = Arrays.copyOf(parent, parent.length * 2);
+					label = numProvisional++;
+					parent[label] = label;
+				}
+				labels[index] = label;
+			}
+		}
+		
+		// Since the roots are the smallest labels, numbering the roots in order gives the scan order
+		int[] finalLabels = new int[numProvisional];
+		int count = 0;
+		for (int label = 0; label < numProvisional; label++) {
+			int root = find(parent, label);
+			finalLabels[label] = root == label ? count++ : finalLabels[root];
+		}
+		int[] sizes = new int[count];
+		for (int index = 0; index < labels.length; index++) {
+			int label = finalLabels[labels[index]];
+			labels[index] = label;
+			sizes[label]++;
+		}
+		
+		measurement.end(pixels.length);
+		return new ComponentLabels(width, height, labels, sizes);
+	}
+	
+	private static int find(int[] parent, int label) {
+		while (parent[label] != label) {
+			// Path halving keeps the trees shallow
+			parent[label] = parent[parent[label]];
+			label = parent[label];
+		}
+		return label;
+	}
+	
+	private static void union(int[] parent, int first, int second) {
+		int firstRoot = find(parent, first);
+		int secondRoot = find(parent, second);
+		if (firstRoot < secondRoot)
+			parent[secondRoot] = firstRoot;
+		else if (secondRoot < firstRoot)
+			parent[firstRoot] = secondRoot;
+	}
+}
@@ -0,0 +1,132 @@
+package nl.knokko.texture.region;
+
+import java.util.function.IntPredicate;
+
+import nl.knokko.texture.builder.AuxiliaryChannels;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.SRGB;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.BufferPool;
+import nl.knokko.texture.util.CounterRandom;
+import nl.knokko.texture.util.Parallel;
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * The result of ComponentLabeler.label: the component label of every pixel of a texture. The labels are
+ * between 0 (inclusive) and getCount() (exclusive).
+ * @author knokko
+ *
+ */
+public class ComponentLabels {
+	
+	private final int width, height;
+	private final int[] labels;
+	private final int[] sizes;
+	
+	ComponentLabels(int width, int height, int[] labels, int[] sizes) {
+		this.width = width;
+		this.height = height;
+		this.labels = labels;
+		this.sizes = sizes;
+	}
+	
+	public int width() {
+		return width;
+	}
+	
+	public int height() {
+		return height;
+	}
+	
+	/**
+	 * @return The number of components
+	 */
+	public int getCount() {
+		return sizes.length;
+	}
+	
+	/**
+	 * @return The label of every pixel, row by row. This is the array of this object, not a copy.
+	 */
+	public int[] getLabels() {
+		return labels;
+	}
+	
+	public int getLabel(int x, int y) {
+		return labels[y * width + x];
+	}
+	
+	/**
+	 * @return The number of pixels in the component with the given label
+	 */
+	public int getSize(int label) {
+		return sizes[label];
+	}
+	
+	/**
+	 * Copies the labels to the int channel with the given name of the auxiliary channels of the texture, for
+	 * instance AuxiliaryChannels.MATERIAL_ID.
+	 */
+	public void storeIn(TextureBuilder texture, String channelName) {
+		if (texture.width() != width || texture.height() != height)
+			throw new IllegalArgumentException("The texture must have the same size as the labels");
+		AuxiliaryChannels channels = texture.auxiliary();
+		System.arraycopy(labels, 0, channels.ints(channelName), 0, labels.length);
+	}
+	
+	/**
+	 * Multiplies the colors of each component by its own random factor between 1 - maxDifference and
+	 * 1 + maxDifference, for instance to give every brick of a brick pattern a slightly different color. This
+	 * takes linear time, regardless of the number of components.
+	 * @param texture The texture to change, must be the texture that was labeled (or have the same size)
+	 * @param maxDifference The maximum difference between the factors and 1
+	 * @param seed The seed that determines the factors, the factor of a component only depends on the seed
+	 * and the label
+	 * @param linearLight True to multiply the linear light intensities (like AverageDrawer in linear light
+	 * mode), false to multiply the sRGB encoded values
+	 * @param filter Only components whose label is accepted by this filter will be changed, which can be used
+	 * to skip the mortar
+	 */
+	public void varyColors(TextureBuilder texture, double maxDifference, long seed, boolean linearLight, IntPredicate filter) {
+		if (texture.width() != width || texture.height() != height)
+			throw new IllegalArgumentException("The texture must have the same size as the labels");
+		Measurement measurement = Metrics.start("ComponentLabels.varyColors");
+		float[] factors = new float[sizes.length];
+		for (int label = 0; label < factors.length; label++) {
+			if (filter.test(label))
+				factors[label] = (float) (1.0 - maxDifference + 2 * maxDifference * CounterRandom.toDouble(CounterRandom.hash(seed, label)));
+			else
+				factors[label] = 1f;
+		}
+		
+		Parallel.forEachBand(0, height - 1, width, texture.supportsParallelWrites(), (minY, maxY) -> {
+			byte[] row = BufferPool.borrowBytes(4 * width);
+			for (int y = minY; y <= maxY; y++) {
+				texture.getRowRGBA(0, width - 1, y, row, 0);
+				int labelIndex = y * width;
+				for (int index = 0; index < 4 * width; index += 4) {
+					float factor = factors[labels[labelIndex++]];
+					if (factor == 1f)
+						continue;
+					for (int channel = index; channel < index + 3; channel++) {
+						if (linearLight)
+							row[channel] = SRGB.multiply(row[channel], factor);
+						else
+							row[channel] = PixelRows.toByte((row[channel] & 0xFF) * factor);
+					}
+				}
+				texture.setRowRGBA(0, width - 1, y, row, 0);
+			}
+			BufferPool.releaseBytes(row);
+		});
+		measurement.end((long) width * height);
+	}
+	
+	/**
+	 * Like the other varyColors method, but changes all components
+	 */
+	public void varyColors(TextureBuilder texture, double maxDifference, long seed, boolean linearLight) {
+		varyColors(texture, maxDifference, seed, linearLight, label -> true);
+	}
+}
@@ -0,0 +1,179 @@
+package nl.knokko.texture.region;
+
+import java.util.Arrays;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.builder.drawing.SpanConsumer;
+import nl.knokko.texture.color.Color;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+
+/**
+ * A scanline flood fill. Starting from a seed pixel, it finds all pixels that can be reached by moving
+ * horizontally and vertically over pixels whose color is similar to the color of the seed pixel. Instead of
+ * recursing for every pixel, it uses an explicit stack of seed positions and processes a complete horizontal
+ * run of pixels for every seed, so large regions can't overflow the call stack and every pixel is checked only
+ * a few times.
+ * @author knokko
+ *
+ */
+public class FloodFill {
+	
+	/** The number of horizontally adjacent pixels that are read from the texture at once */
+	private static final int CHUNK_SIZE = 64;
+	
+	/**
+	 * Finds the region of the seed pixel at (x,y) and passes it to consumer as horizontal spans with coverage 1.
+	 * The spans are not sorted and every pixel of the region is in exactly 1 span. The pixels are read from the
+	 * texture when they are needed (in chunks of 64 pixels of a row), so the cost depends on the size of the
+	 * region rather than the size of the texture. Every pixel is tested only before it is visited, so the
+	 * consumer is allowed to change the pixels of the spans that it receives.
+	 * @param texture The texture to search in
+	 * @param x The x-coordinate of the seed pixel
+	 * @param y The y-coordinate of the seed pixel
+	 * @param tolerance The maximum difference between a RGBA component of a pixel in the region and the same
+	 * component of the seed pixel, between 0 and 255
+	 * @param consumer The consumer of the spans
+	 * @return The number of pixels in the region
+	 */
+	public static int findRegion(TextureBuilder texture, int x, int y, int tolerance, SpanConsumer consumer) {
+		RegionPixels.checkTolerance(tolerance);
+		int width = texture.width();
+		int height = texture.height();
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			throw new IllegalArgumentException("The seed (" + x + "," + y + ") is outside the texture");
+		Measurement measurement = Metrics.start("FloodFill.findRegion");
+		ChunkCache pixels = new ChunkCache(texture);
+		int seedColor = pixels.color(x, y);
+		
+		// Every entry of the stack is the x and y of a pixel that is in the region, but may not be visited yet
+		int[] stack = new int[64];
+		int stackSize = 0;
+		stack[stackSize++] = x;
+		stack[stackSize++] = y;
+		int regionSize = 0;
+		
+		while (stackSize > 0) {
+			int currentY = stack[--stackSize];
+			int currentX = stack[--stackSize];
+			if (pixels.isVisited(currentX, currentY))
+				continue;
+			
+			int minX = currentX;
+			while (minX > 0 && pixels.isUnvisitedMatch(minX - 1, currentY, seedColor, tolerance))
+				minX--;
+			int maxX = currentX;
+			while (maxX < width - 1 && pixels.isUnvisitedMatch(maxX + 1, currentY, seedColor, tolerance))
+				maxX++;
+			pixels.visit(minX, maxX, currentY);
+			regionSize += maxX - minX + 1;
+			consumer.span(currentY, minX, maxX, 1f);
+			
+			// Push the first pixel of every run of unvisited region pixels above and below the span
+			for (int neighbourY = currentY - 1; neighbourY <= currentY + 1; neighbourY += 2) {
+				if (neighbourY < 0 || neighbourY >= height)
+					continue;
+				boolean inRun = false;
+				for (int neighbourX = minX; neighbourX <= maxX; neighbourX++) {
+					boolean inRegion = pixels.isUnvisitedMatch(neighbourX, neighbourY, seedColor, tolerance);
+					if (inRegion && !inRun) {
+						if (stackSize + 2 > stack.length)
+							stack = Arrays.copyOf(stack, stack.length * 2);
+						stack[stackSize++] = neighbourX;
+						stack[stackSize++] = neighbourY;
+					}
+					inRun = inRegion;
+				}
+			}
+		}
+		measurement.end(regionSize);
+		return regionSize;
+	}
+	
+	/**
+	 * Replaces the color of all pixels in the region of the seed pixel at (x,y) by the given color, like the
+	 * bucket tool of image editors. See findRegion for the meaning of the region and the tolerance.
+	 * @return The number of pixels that got the new color
+	 */
+	public static int fill(TextureBuilder texture, int x, int y, Color color, int tolerance) {
+		byte red = color.getRed();
+		byte green = color.getGreen();
+		byte blue = color.getBlue();
+		byte alpha = color.getAlpha();
+		return findRegion(texture, x, y, tolerance, (spanY, minX, maxX, coverage) -> 
+				texture.fillSpan(minX, maxX, spanY, red, green, blue, alpha));
+	}
+	
+	/**
+	 * Reads the pixels of the texture in chunks of CHUNK_SIZE pixels of a row when they are first needed, and
+	 * remembers which pixels have been visited. Only the rows that are touched get an array of chunks.
+	 */
+	private static class ChunkCache {
+		
+		final TextureBuilder texture;
+		final int width;
+		final int chunksPerRow;
+		
+		/** The chunks of each row, or null for rows that haven't been touched */
+		final Chunk[][] rows;
+		final byte[] buffer = new byte[4 * CHUNK_SIZE];
+		
+		ChunkCache(TextureBuilder texture) {
+			this.texture = texture;
+			this.width = texture.width();
+			this.chunksPerRow = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			this.rows = new Chunk[texture.height()][];
+		}
+		
+		Chunk chunk(int x, int y) {
+			Chunk[] row = rows[y];
+			if (row == null) {
+				row = new Chunk[chunksPerRow];
+				rows[y] = row;
+			}
+			int chunkIndex = x / CHUNK_SIZE;
+			Chunk chunk = row[chunkIndex];
+			if (chunk == null) {
+				chunk = new Chunk();
+				int minX = chunkIndex * CHUNK_SIZE;
+				int maxX = Math.min(minX + CHUNK_SIZE, width) - 1;
+				texture.getRowRGBA(minX, maxX, y, buffer, 0);
+				for (int index = 0; index <= maxX - minX; index++) {
+					int byteIndex = 4 * index;
+					chunk.colors[index] = (buffer[byteIndex] & 0xFF) << 24 | (buffer[byteIndex + 1] & 0xFF) << 16
+							| (buffer[byteIndex + 2] & 0xFF) << 8 | (buffer[byteIndex + 3] & 0xFF);
+				}
+				row[chunkIndex] = chunk;
+			}
+			return chunk;
+		}
+		
+		int color(int x, int y) {
+			return chunk(x, y).colors[x % CHUNK_SIZE];
+		}
+		
+		boolean isVisited(int x, int y) {
+			return (chunk(x, y).visited & 1L << (x % CHUNK_SIZE)) != 0;
+		}
+		
+		/**
+		 * @return True if the pixel at (x,y) hasn't been visited yet and its color is similar to seedColor
+		 */
+		boolean isUnvisitedMatch(int x, int y, int seedColor, int tolerance) {
+			Chunk chunk = chunk(x, y);
+			int index = x % CHUNK_SIZE;
+			return (chunk.visited & 1L << index) == 0 && RegionPixels.similar(chunk.colors[index], seedColor, tolerance);
+		}
+		
+		void visit(int minX, int maxX, int y) {
+			for (int x = minX; x <= maxX; x++)
+				chunk(x, y).visited |= 1L << (x % CHUNK_SIZE);
+		}
+	}
+	
+	private static class Chunk {
+		
+		final int[] colors = new int[CHUNK_SIZE];
+		long visited;
+	}
+}
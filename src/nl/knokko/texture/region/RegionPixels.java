@@ -0,0 +1,56 @@
+package nl.knokko.texture.region;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.util.BufferPool;
+import nl.knokko.texture.util.Parallel;
+
+/**
+ * Helper methods for the region algorithms, which compare the colors of pixels many times. Reading the
+ * texture once into an array of packed RGBA ints is much faster than calling getPixel for every comparison.
+ * @author knokko
+ *
+ */
+class RegionPixels {
+	
+	/**
+	 * @return The colors of all pixels of the texture, row by row, packed as RGBA ints (red in the most
+	 * significant byte)
+	 */
+	static int[] read(TextureBuilder texture) {
+		int width = texture.width();
+		int[] pixels = new int[width * texture.height()];
+		Parallel.forEachBand(0, texture.height() - 1, width, (minY, maxY) -> {
+			byte[] row = BufferPool.borrowBytes(4 * width);
+			for (int y = minY; y <= maxY; y++) {
+				texture.getRowRGBA(0, width - 1, y, row, 0);
+				int pixelIndex = y * width;
+				for (int index = 0; index < 4 * width; index += 4) {
+					pixels[pixelIndex++] = (row[index] & 0xFF) << 24 | (row[index + 1] & 0xFF) << 16
+							| (row[index + 2] & 0xFF) << 8 | (row[index + 3] & 0xFF);
+				}
+			}
+			BufferPool.releaseBytes(row);
+		});
+		return pixels;
+	}
+	
+	/**
+	 * @return True if none of the RGBA components of the packed colors differ more than tolerance
+	 */
+	static boolean similar(int first, int second, int tolerance) {
+		if (first == second)
+			return true;
+		if (tolerance == 0)
+			return false;
+		for (int shift = 0; shift < 32; shift += 8) {
+			if (Math.abs((first >>> shift & 0xFF) - (second >>> shift & 0xFF)) > tolerance)
+				return false;
+		}
+		return true;
+	}
+	
+	static void checkTolerance(int tolerance) {
+		if (tolerance < 0 || tolerance > 255)
+			throw new IllegalArgumentException("The tolerance must be between 0 and 255, but is " + tolerance);
+	}
+}
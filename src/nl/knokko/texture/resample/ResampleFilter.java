@@ -0,0 +1,86 @@
+package nl.knokko.texture.resample;
+
+/**
+ * The filters that can be used by the Resampler. Every filter has a kernel function and the distance (in
+ * source pixels, when upscaling) after which that kernel becomes 0.
+ * @author knokko
+ *
+ */
+public enum ResampleFilter {
+	
+	/**
+	 * Every destination pixel gets the color of the source pixel closest to its center
+	 */
+	NEAREST(0.5) {
+		
+		@Override
+		public double weight(double x) {
+			return x >= -0.5 && x < 0.5 ? 1.0 : 0.0;
+		}
+	},
+	
+	/**
+	 * Linear interpolation between the 2 nearest source pixels in both directions (a tent kernel)
+	 */
+	BILINEAR(1.0) {
+		
+		@Override
+		public double weight(double x) {
+			x = Math.abs(x);
+			return x < 1.0 ? 1.0 - x : 0.0;
+		}
+	},
+	
+	/**
+	 * Cubic convolution with a = -0.5 (Catmull-Rom), which is sharper than bilinear
+	 */
+	BICUBIC(2.0) {
+		
+		@Override
+		public double weight(double x) {
+			final double a = -0.5;
+			x = Math.abs(x);
+			if (x < 1.0)
+				return ((a + 2.0) * x - (a + 3.0)) * x * x + 1.0;
+			if (x < 2.0)
+				return (((x - 5.0) * x + 8.0) * x - 4.0) * a;
+			return 0.0;
+		}
+	},
+	
+	/**
+	 * Windowed sinc filter with 3 lobes, which gives the sharpest results, but is also the slowest
+	 */
+	LANCZOS(3.0) {
+		
+		@Override
+		public double weight(double x) {
+			if (x == 0.0)
+				return 1.0;
+			if (x <= -3.0 || x >= 3.0)
+				return 0.0;
+			double piX = Math.PI * x;
+			return 3.0 * Math.sin(piX) * Math.sin(piX / 3.0) / (piX * piX);
+		}
+	};
+	
+	private final double support;
+	
+	ResampleFilter(double support) {
+		this.support = support;
+	}
+	
+	/**
+	 * @return The distance from the center after which the kernel of this filter is 0
+	 */
+	public double support() {
+		return support;
+	}
+	
+	/**
+	 * Evaluates the kernel of this filter
+	 * @param x The distance to the center of the kernel
+	 * @return The (unnormalized) weight at that distance
+	 */
+	public abstract double weight(double x);
+}
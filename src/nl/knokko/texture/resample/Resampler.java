@@ -0,0 +1,124 @@
+package nl.knokko.texture.resample;
+
+import java.util.Arrays;
+
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.metrics.Metrics.Measurement;
+import nl.knokko.texture.util.Parallel;
+import nl.knokko.texture.util.PixelRows;
+
+/**
+ * Scales the content of a texture builder into another texture builder. The resampling is done as 2
+ * separate passes (first horizontal, then vertical) with precomputed weight tables, and both passes are
+ * processed in parallel bands of rows.
+ * <p>
+ * The color components are multiplied by the alpha component before filtering and divided by it afterwards,
+ * so the colors of fully transparent pixels won't bleed into their neighbours. Bicubic and Lanczos can
+ * overshoot, so the results are clamped.
+ * @author knokko
+ *
+ */
+public class Resampler {
+	
+	/**
+	 * Creates a new ByteArrayTextureBuilder with the given size and resamples source into it.
+	 * @param source The texture to scale
+	 * @param newWidth The width of the new texture
+	 * @param newHeight The height of the new texture
+	 * @param filter The filter to use
+	 * @return The new (scaled) texture builder
+	 */
+	public static ByteArrayTextureBuilder scale(TextureBuilder source, int newWidth, int newHeight, ResampleFilter filter) {
+		ByteArrayTextureBuilder dest = new ByteArrayTextureBuilder(newWidth, newHeight, source.useAlpha());
+		resample(source, dest, filter);
+		return dest;
+	}
+	
+	/**
+	 * Resamples the entire source texture into the entire dest texture. The sizes of the textures determine
+	 * the scale factors.
+	 * @param source The texture to read from
+	 * @param dest The texture to write the result to (must not be the same as source)
+	 * @param filter The filter to use
+	 */
+	public static void resample(TextureBuilder source, TextureBuilder dest, ResampleFilter filter) {
+		if (source == dest)
+			throw new IllegalArgumentException("The source and destination must be different texture builders");
+		Measurement measurement = Metrics.start("Resampler.resample");
+		
+		int sourceWidth = source.width();
+		int sourceHeight = source.height();
+		int destWidth = dest.width();
+		int destHeight = dest.height();
+		boolean alpha = source.useAlpha();
+		
+		WeightTable horizontal = new WeightTable(filter, sourceWidth, destWidth);
+		WeightTable vertical = new WeightTable(filter, sourceHeight, destHeight);
+		
+		// The result of the horizontal pass: premultiplied RGBA floats of destWidth x sourceHeight pixels
+		float[] between = new float[destWidth * sourceHeight * 4];
+		
+		// Source rows that don't contribute to any destination row can be skipped (mostly for NEAREST)
+		boolean[] neededRows = new boolean[sourceHeight];
+		for (int y = 0; y < destHeight; y++)
+			for (int tap = 0; tap < vertical.counts[y]; tap++)
+				neededRows[vertical.starts[y] + tap] = true;
+		
+		Parallel.forEachBand(0, sourceHeight - 1, sourceWidth, (minY, maxY) -> {
+			byte[] sourceRow = new byte[sourceWidth * 4];
+			float[] premultipliedRow = new float[sourceWidth * 4];
+			for (int y = minY; y <= maxY; y++) {
+				if (!neededRows[y])
+					continue;
+				source.getRowRGBA(0, sourceWidth - 1, y, sourceRow, 0);
+				PixelRows.premultiply(sourceRow, premultipliedRow, alpha);
+				filterRow(premultipliedRow, horizontal, between, y * destWidth * 4);
+			}
+		});
+		
+		Parallel.forEachBand(0, destHeight - 1, destWidth, dest.supportsParallelWrites(), (minY, maxY) -> {
+			float[] destRowF = new float[destWidth * 4];
+			byte[] destRow = new byte[destWidth * 4];
+			int rowLength = destWidth * 4;
+			for (int y = minY; y <= maxY; y++) {
+				int start = vertical.starts[y];
+				int count = vertical.counts[y];
+				int weightIndex = y * vertical.taps;
+				Arrays.fill(destRowF, 0f);
+				for (int tap = 0; tap < count; tap++) {
+					float weight = vertical.weights[weightIndex + tap];
+					int betweenIndex = (start + tap) * rowLength;
+					for (int index = 0; index < rowLength; index++)
+						destRowF[index] += weight * between[betweenIndex + index];
+				}
+				PixelRows.unpremultiply(destRowF, destRow, alpha);
+				dest.setRowRGBA(0, destWidth - 1, y, destRow, 0);
+			}
+		});
+		measurement.end((long) destWidth * destHeight);
+	}
+	
+	private static void filterRow(float[] row, WeightTable table, float[] dest, int destIndex) {
+		int destWidth = table.starts.length;
+		for (int x = 0; x < destWidth; x++) {
+			int sourceIndex = table.starts[x] * 4;
+			int weightIndex = x * table.taps;
+			int boundWeightIndex = weightIndex + table.counts[x];
+			float red = 0f, green = 0f, blue = 0f, alpha = 0f;
+			for (; weightIndex < boundWeightIndex; weightIndex++) {
+				float weight = table.weights[weightIndex];
+				red += weight * row[sourceIndex];
+				green += weight * row[sourceIndex + 1];
+				blue += weight * row[sourceIndex + 2];
+				alpha += weight * row[sourceIndex + 3];
+				sourceIndex += 4;
+			}
+			dest[destIndex++] = red;
+			dest[destIndex++] = green;
+			dest[destIndex++] = blue;
+			dest[destIndex++] = alpha;
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package nl.knokko.texture.resample;
+
+/**
+ * Precomputed weights to resample a single dimension. For every destination coordinate, it stores the first
+ * source coordinate that contributes to it and the normalized weights of all contributing source coordinates.
+ * @author knokko
+ *
+ */
+class WeightTable {
+	
+	/** The maximum number of source coordinates that contribute to a single destination coordinate */
+	final int taps;
+	
+	/** starts[dest] is the first source coordinate that contributes to destination coordinate dest */
+	final int[] starts;
+	
+	/** counts[dest] is the number of source coordinates that contribute to destination coordinate dest */
+	final int[] counts;
+	
+	/** The weight of source coordinate starts[dest] + i for destination dest is at index dest * taps + i */
+	final float[] weights;
+	
+	WeightTable(ResampleFilter filter, int sourceSize, int destSize) {
+		double scale = (double) sourceSize / destSize;
+		starts = new int[destSize];
+		counts = new int[destSize];
+		
+		if (filter == ResampleFilter.NEAREST) {
+			taps = 1;
+			weights = new float[destSize];
+			for (int dest = 0; dest < destSize; dest++) {
+				starts[dest] = Math.min((int) ((dest + 0.5) * scale), sourceSize - 1);
+				counts[dest] = 1;
+				weights[dest] = 1f;
+			}
+			return;
+		}
+		
+		// When downscaling, the kernel must be stretched to cover all source pixels
+		double filterScale = Math.max(scale, 1.0);
+		double support = filter.support() * filterScale;
+		taps = (int) Math.ceil(support) * 2 + 1;
+		weights = new float[destSize * taps];
+		
+		for (int dest = 0; dest < destSize; dest++) {
+			double center = (dest + 0.5) * scale;
+			int min = Math.max((int) (center - support + 0.5), 0);
+			int max = Math.min((int) (center + support + 0.5), sourceSize);
+			if (max - min > taps)
+				max = min + taps;
+			
+			double totalWeight = 0.0;
+			int weightIndex = dest * taps;
+			for (int source = min; source < max; source++) {
+				double weight = filter.weight((source - center + 0.5) / filterScale);
+				weights[weightIndex + source - min] = (float) weight;
+				totalWeight += weight;
+			}
+			
+			// Normalize the weights so that flat regions keep their color
+			if (totalWeight != 0.0) {
+				float factor = (float) (1.0 / totalWeight);
+				for (int index = 0; index < max - min; index++)
+					weights[weightIndex + index] *= factor;
+			}
+			starts[dest] = min;
+			counts[dest] = max - min;
+		}
+	}
+}
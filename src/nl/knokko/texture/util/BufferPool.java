@@ -0,0 +1,44 @@
+package nl.knokko.texture.util;
+
+import java.lang.ref.SoftReference;
+
+/**
+ * A small per-thread pool of scratch byte arrays, so that methods that need a large temporary buffer don't
+ * have to allocate a new one every time they are called. The pooled arrays are only softly reachable, so
+ * they can be reclaimed when memory gets low.
+ * @author knokko
+ *
+ */
+public class BufferPool {
+	
+	private static final ThreadLocal<SoftReference<byte[]>> BYTES = new ThreadLocal<>();
+	
+	/**
+	 * Borrows a byte array of at least the given length. The content of the array is undefined, so callers
+	 * should clear the part they need. The array should be given back with releaseBytes when it is no longer
+	 * needed.
+	 * @param length The minimum length of the array
+	 * @return The borrowed array
+	 */
+	public static byte[] borrowBytes(int length) {
+		SoftReference<byte[]> reference = BYTES.get();
+		byte[] result = reference == null ? null : reference.get();
+		if (result == null || result.length < length)
+			return new byte[length];
+		
+		// Make sure nested calls won't get the same array
+		BYTES.set(null);
+		return result;
+	}
+	
+	/**
+	 * Gives an array that was borrowed with borrowBytes back to the pool of the current thread.
+	 * @param array The array to give back
+	 */
+	public static void releaseBytes(byte[] array) {
+		SoftReference<byte[]> reference = BYTES.get();
+		byte[] current = reference == null ? null : reference.get();
+		if (current == null || current.length < array.length)
+			BYTES.set(new SoftReference<>(array));
+	}
+}
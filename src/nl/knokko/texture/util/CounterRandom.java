@@ -0,0 +1,55 @@
+package nl.knokko.texture.util;
+
+/**
+ * Counter-based random numbers: instead of advancing a shared state like java.util.Random, the random bits
+ * are computed from a seed and the coordinates where they are needed. This makes the results independent
+ * of the order (and the thread) in which the pixels are processed, so regions can be generated in parallel
+ * and regenerated deterministically.
+ * @author knokko
+ *
+ */
+public class CounterRandom {
+	
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+	
+	/**
+	 * Scrambles the bits of the given value (the finalizer of SplitMix64). Consecutive inputs give
+	 * unrelated outputs.
+	 * @param value The value to scramble
+	 * @return The scrambled value
+	 */
+	public static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+		value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+		return value ^ (value >>> 31);
+	}
+	
+	/**
+	 * @param seed The seed
+	 * @param a The first coordinate
+	 * @return 64 random bits that only depend on seed and a
+	 */
+	public static long hash(long seed, long a) {
+		return mix(seed + (a + 1) * GOLDEN_GAMMA);
+	}
+	
+	/**
+	 * @param seed The seed
+	 * @param a The first coordinate
+	 * @param b The second coordinate
+	 * @return 64 random bits that only depend on seed, a and b
+	 */
+	public static long hash(long seed, long a, long b) {
+		return hash(hash(seed, a), b);
+	}
+	
+	/**
+	 * Converts 53 of the given random bits to a double between 0 (inclusive) and 1 (exclusive), just like
+	 * Random.nextDouble does
+	 * @param bits The random bits, for instance the result of hash
+	 * @return A double in the range [0, 1)
+	 */
+	public static double toDouble(long bits) {
+		return (bits >>> 11) * 0x1.0p-53;
+	}
+}
@@ -0,0 +1,91 @@
+package nl.knokko.texture.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Helper class to split work on a texture into bands of rows that can be processed in parallel by the
+ * common fork join pool. Small amounts of work will simply be done on the calling thread, and so will all
+ * work that is started inside runSequentially.
+ * @author knokko
+ *
+ */
+public class Parallel {
+	
+	/**
+	 * Regions with less pixels than this will be processed on the calling thread because the overhead of
+	 * splitting the work would be larger than the gain.
+	 */
+	public static final int MIN_PARALLEL_PIXELS = 1 << 16;
+	
+	/** The number of runSequentially calls that the current thread is in */
+	private static final ThreadLocal<int[]> SEQUENTIAL_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+	
+	/**
+	 * Runs the action on the calling thread, and makes sure that all forEachBand calls during the action also
+	 * process all their bands on the calling thread. This is needed when the calling thread holds locks that
+	 * the tasks need: worker threads would block on those locks while the calling thread waits for them.
+	 * @param action The action to run
+	 */
+	public static void runSequentially(Runnable action) {
+		int[] depth = SEQUENTIAL_DEPTH.get();
+		depth[0]++;
+		try {
+			action.run();
+		} finally {
+			depth[0]--;
+		}
+	}
+	
+	/**
+	 * Calls task.process for bands of rows that together cover all rows from minY to maxY. If the region is
+	 * large enough, the bands will be processed in parallel, so the task must be able to handle multiple
+	 * bands at the same time. The bands will never overlap.
+	 * @param minY The first row to process
+	 * @param maxY The last row to process
+	 * @param width The number of pixels per row, used to decide whether parallelism is worth it
+	 * @param task The task that should process the bands
+	 */
+	public static void forEachBand(int minY, int maxY, int width, BandTask task) {
+		int numRows = maxY - minY + 1;
+		if (numRows <= 0)
+			return;
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		if (parallelism <= 1 || numRows < 2 || (long) numRows * width < MIN_PARALLEL_PIXELS
+				|| SEQUENTIAL_DEPTH.get()[0] > 0) {
+			task.process(minY, maxY);
+			return;
+		}
+		
+		// Use more bands than threads so that a slow band doesn't keep the other threads waiting
+		int numBands = Math.min(numRows, parallelism * 4);
+		IntStream.range(0, numBands).parallel().forEach(band -> {
+			int bandMinY = minY + (int) ((long) numRows * band / numBands);
+			int bandMaxY = minY + (int) ((long) numRows * (band + 1) / numBands) - 1;
+			task.process(bandMinY, bandMaxY);
+		});
+	}
+	
+	/**
+	 * Like forEachBand, but processes all rows on the calling thread (from minY to maxY) if allowParallel is
+	 * false. This is meant for tasks that write to textures whose result depends on the order of the writes.
+	 * @param allowParallel Whether the bands may be processed in parallel
+	 */
+	public static void forEachBand(int minY, int maxY, int width, boolean allowParallel, BandTask task) {
+		if (allowParallel)
+			forEachBand(minY, maxY, width, task);
+		else if (maxY >= minY)
+			task.process(minY, maxY);
+	}
+	
+	@FunctionalInterface
+	public static interface BandTask {
+		
+		/**
+		 * Processes the rows from minY to maxY (both inclusive)
+		 * @param minY The first row of the band
+		 * @param maxY The last row of the band
+		 */
+		void process(int minY, int maxY);
+	}
+}
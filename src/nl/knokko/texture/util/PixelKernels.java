@@ -0,0 +1,109 @@
+package nl.knokko.texture.util;
+
+/**
+ * Bulk operations on spans of pixels. The default implementation (PixelKernels.get()) uses the incubating
+ * JDK Vector API when VectorPixelKernels is on the class path and the jdk.incubator.vector module is available
+ * (add it with --add-modules jdk.incubator.vector), and falls back to plain scalar loops otherwise. Both
+ * implementations give exactly the same results. The scalar implementation can be forced by setting the
+ * system property nl.knokko.texture.kernels to scalar.
+ * <p>
+ * VectorPixelKernels lives in the optional src-vector source root, so that src can be compiled without the
+ * incubator module. To use it, compile src-vector with --add-modules jdk.incubator.vector and the classes of
+ * src on the class path.
+ * <p>
+ * The spans are stored interleaved: 3 (RGB) or 4 (RGBA) bytes per pixel.
+ * @author knokko
+ *
+ */
+public abstract class PixelKernels {
+	
+	private static final PixelKernels INSTANCE = load();
+	
+	private static PixelKernels load() {
+		if (!"scalar".equals(System.getProperty("nl.knokko.texture.kernels"))) {
+			try {
+				return (PixelKernels) Class.forName("nl.knokko.texture.util.VectorPixelKernels")
+						.getDeclaredConstructor().newInstance();
+			} catch (Exception | LinkageError unavailable) {
+				
+				// VectorPixelKernels or the jdk.incubator.vector module is not available, so use the scalar kernels
+			}
+		}
+		return new ScalarPixelKernels();
+	}
+	
+	/**
+	 * @return The fastest available kernels
+	 */
+	public static PixelKernels get() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * @return A short name of this implementation, for instance "scalar"
+	 */
+	public abstract String name();
+	
+	/**
+	 * Sets all pixels in the span to the given color.
+	 * @param data The array containing the pixels
+	 * @param index The index of the red component of the first pixel in the span
+	 * @param pixels The number of pixels in the span
+	 * @param bytesPerPixel 4 if the pixels have an alpha component, 3 if not
+	 */
+	public abstract void fillSpan(byte[] data, int index, int pixels, int bytesPerPixel,
+			byte red, byte green, byte blue, byte alpha);
+	
+	/**
+	 * Blends the given (transparent) color over all pixels in the span, the same way as
+	 * GeometryDrawer.drawHorizontalLine does: the new color components are the average of the line color and
+	 * the old color, weighted by their alpha, and the new alpha is the sum of both alphas (at most 255). If
+	 * bytesPerPixel is 3, all old pixels are treated as opaque.
+	 * @param data The array containing the pixels
+	 * @param index The index of the red component of the first pixel in the span
+	 * @param pixels The number of pixels in the span
+	 * @param bytesPerPixel 4 if the pixels have an alpha component, 3 if not
+	 * @param alpha The alpha of the color to blend, must not be 0
+	 */
+	public abstract void blendSpan(byte[] data, int index, int pixels, int bytesPerPixel,
+			byte red, byte green, byte blue, byte alpha);
+	
+	/**
+	 * Converts a span of RGBA bytes to RGBA floats in the range 0 to 255, where the red, green and blue
+	 * components are multiplied by the alpha component (see PixelRows.premultiply).
+	 * @param source The array containing the RGBA bytes, 4 per pixel
+	 * @param sourceIndex The index of the red component of the first pixel
+	 * @param dest The array to store the floats in, 4 per pixel
+	 * @param destIndex The index in dest where the red component of the first pixel should be stored
+	 * @param pixels The number of pixels to convert
+	 * @param alpha Whether the alpha bytes should be used. If false, all pixels are treated as opaque
+	 */
+	public abstract void multiplyChannels(byte[] source, int sourceIndex, float[] dest, int destIndex,
+			int pixels, boolean alpha);
+	
+	/**
+	 * Packs a span of RGB or RGBA bytes into ARGB ints, like those used by BufferedImage.TYPE_INT_ARGB. If
+	 * bytesPerPixel is 3, the alpha of all ints will be 255.
+	 * @param source The array containing the pixels
+	 * @param sourceIndex The index of the red component of the first pixel
+	 * @param bytesPerPixel 4 if the pixels have an alpha component, 3 if not
+	 * @param dest The array to store the ARGB ints in
+	 * @param destIndex The index in dest where the first pixel should be stored
+	 * @param pixels The number of pixels to pack
+	 */
+	public abstract void packARGB(byte[] source, int sourceIndex, int bytesPerPixel, int[] dest, int destIndex,
+			int pixels);
+	
+	/**
+	 * The inverse of packARGB: unpacks ARGB ints into RGB or RGBA bytes. If bytesPerPixel is 3, the alpha
+	 * of the ints will be ignored.
+	 * @param source The array containing the ARGB ints
+	 * @param sourceIndex The index of the first pixel in source
+	 * @param dest The array to store the pixels in
+	 * @param destIndex The index in dest where the red component of the first pixel should be stored
+	 * @param bytesPerPixel 4 if the pixels should get an alpha component, 3 if not
+	 * @param pixels The number of pixels to unpack
+	 */
+	public abstract void unpackARGB(int[] source, int sourceIndex, byte[] dest, int destIndex, int bytesPerPixel,
+			int pixels);
+}
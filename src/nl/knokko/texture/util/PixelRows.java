@@ -0,0 +1,67 @@
+package nl.knokko.texture.util;
+
+/**
+ * Helper methods to convert rows of RGBA bytes (as obtained from TextureBuilder.getRowRGBA) to rows of
+ * premultiplied floats and back. Filtering premultiplied colors prevents the colors of transparent pixels
+ * from bleeding into their neighbours.
+ * @author knokko
+ *
+ */
+public class PixelRows {
+	
+	/**
+	 * Converts a row of RGBA bytes to a row of RGBA floats in the range 0 to 255, where the red, green and
+	 * blue components are multiplied by the alpha component.
+	 * @param row The bytes to convert, 4 per pixel
+	 * @param dest The array to store the floats in, must be at least as long as row
+	 * @param alpha Whether the alpha bytes should be used. If false, all pixels are treated as opaque
+	 */
+	public static void premultiply(byte[] row, float[] dest, boolean alpha) {
+		PixelKernels.get().multiplyChannels(row, 0, dest, 0, row.length / 4, alpha);
+	}
+	
+	/**
+	 * The inverse of premultiply: converts a row of premultiplied RGBA floats back to a row of RGBA bytes.
+	 * Values outside the range 0 to 255 will be clamped.
+	 * @param row The premultiplied floats to convert, 4 per pixel
+	 * @param dest The array to store the bytes in, must be at least as long as row
+	 * @param alpha Whether the alpha components are meaningful. If false, all pixels become opaque
+	 */
+	public static void unpremultiply(float[] row, byte[] dest, boolean alpha) {
+		for (int index = 0; index < row.length; index += 4) {
+			float a = row[index + 3];
+			if (alpha && a < 254.5f) {
+				if (a < 0.5f) {
+					dest[index] = 0;
+					dest[index + 1] = 0;
+					dest[index + 2] = 0;
+					dest[index + 3] = 0;
+					continue;
+				}
+				float factor = 255f / a;
+				dest[index] = toByte(row[index] * factor);
+				dest[index + 1] = toByte(row[index + 1] * factor);
+				dest[index + 2] = toByte(row[index + 2] * factor);
+				dest[index + 3] = toByte(a);
+			} else {
+				dest[index] = toByte(row[index]);
+				dest[index + 1] = toByte(row[index + 1]);
+				dest[index + 2] = toByte(row[index + 2]);
+				dest[index + 3] = (byte) 255;
+			}
+		}
+	}
+	
+	/**
+	 * Rounds the given value to the nearest integer between 0 and 255 and casts it to byte
+	 * @param value The value to round
+	 * @return The rounded value, casted to byte
+	 */
+	public static byte toByte(float value) {
+		if (value <= 0f)
+			return 0;
+		if (value >= 255f)
+			return (byte) 255;
+		return (byte) (value + 0.5f);
+	}
+}
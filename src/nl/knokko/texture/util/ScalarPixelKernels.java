@@ -0,0 +1,112 @@
+package nl.knokko.texture.util;
+
+/**
+ * The PixelKernels implementation that uses plain loops. It is used when the Vector API is not available,
+ * and by the vectorized kernels to handle the pixels that don't fill an entire vector.
+ * @author knokko
+ *
+ */
+public class ScalarPixelKernels extends PixelKernels {
+	
+	@Override
+	public String name() {
+		return "scalar";
+	}
+
+	@Override
+	public void fillSpan(byte[] data, int index, int pixels, int bytesPerPixel,
+			byte red, byte green, byte blue, byte alpha) {
+		int boundIndex = index + pixels * bytesPerPixel;
+		if (bytesPerPixel == 4) {
+			for (; index < boundIndex; index += 4) {
+				data[index] = red;
+				data[index + 1] = green;
+				data[index + 2] = blue;
+				data[index + 3] = alpha;
+			}
+		} else {
+			for (; index < boundIndex; index += 3) {
+				data[index] = red;
+				data[index + 1] = green;
+				data[index + 2] = blue;
+			}
+		}
+	}
+
+	@Override
+	public void blendSpan(byte[] data, int index, int pixels, int bytesPerPixel,
+			byte red, byte green, byte blue, byte alpha) {
+		float lineFactor = (alpha & 0xFF) / 255f;
+		float lineRed = (red & 0xFF) * lineFactor;
+		float lineGreen = (green & 0xFF) * lineFactor;
+		float lineBlue = (blue & 0xFF) * lineFactor;
+		
+		int boundIndex = index + pixels * bytesPerPixel;
+		for (; index < boundIndex; index += bytesPerPixel) {
+			float oldFactor = bytesPerPixel == 4 ? (data[index + 3] & 0xFF) / 255f : 1f;
+			float factorSum = lineFactor + oldFactor;
+			data[index] = round((lineRed + (data[index] & 0xFF) * oldFactor) / factorSum);
+			data[index + 1] = round((lineGreen + (data[index + 1] & 0xFF) * oldFactor) / factorSum);
+			data[index + 2] = round((lineBlue + (data[index + 2] & 0xFF) * oldFactor) / factorSum);
+			if (bytesPerPixel == 4)
+				data[index + 3] = round(Math.min(factorSum * 255f, 255f));
+		}
+	}
+
+	/**
+	 * Rounds a value in the range 0 to 255 to the nearest integer (ties to even) and casts it to byte. Adding
+	 * 2^23 moves the rounded integer into the lowest bits of the float, which the vector kernels can do
+	 * without the (slow) float to int conversion.
+	 */
+	static byte round(float value) {
+		return (byte) Float.floatToRawIntBits(value + ROUND_MAGIC);
+	}
+	
+	static final float ROUND_MAGIC = 8388608f;
+
+	@Override
+	public void multiplyChannels(byte[] source, int sourceIndex, float[] dest, int destIndex,
+			int pixels, boolean alpha) {
+		int boundSourceIndex = sourceIndex + 4 * pixels;
+		for (; sourceIndex < boundSourceIndex; sourceIndex += 4, destIndex += 4) {
+			if (alpha) {
+				int a = source[sourceIndex + 3] & 0xFF;
+				float factor = a / 255f;
+				dest[destIndex] = (source[sourceIndex] & 0xFF) * factor;
+				dest[destIndex + 1] = (source[sourceIndex + 1] & 0xFF) * factor;
+				dest[destIndex + 2] = (source[sourceIndex + 2] & 0xFF) * factor;
+				dest[destIndex + 3] = a;
+			} else {
+				dest[destIndex] = source[sourceIndex] & 0xFF;
+				dest[destIndex + 1] = source[sourceIndex + 1] & 0xFF;
+				dest[destIndex + 2] = source[sourceIndex + 2] & 0xFF;
+				dest[destIndex + 3] = 255f;
+			}
+		}
+	}
+
+	@Override
+	public void packARGB(byte[] source, int sourceIndex, int bytesPerPixel, int[] dest, int destIndex,
+			int pixels) {
+		int boundDestIndex = destIndex + pixels;
+		for (; destIndex < boundDestIndex; destIndex++, sourceIndex += bytesPerPixel) {
+			int alpha = bytesPerPixel == 4 ? source[sourceIndex + 3] & 0xFF : 255;
+			dest[destIndex] = alpha << 24 | (source[sourceIndex] & 0xFF) << 16
+					| (source[sourceIndex + 1] & 0xFF) << 8 | (source[sourceIndex + 2] & 0xFF);
+		}
+	}
+
+	@Override
+	public void unpackARGB(int[] source, int sourceIndex, byte[] dest, int destIndex, int bytesPerPixel,
+			int pixels) {
+		int boundSourceIndex = sourceIndex + pixels;
+		for (; sourceIndex < boundSourceIndex; sourceIndex++, destIndex += bytesPerPixel) {
+			int argb = source[sourceIndex];
+			dest[destIndex] = (byte) (argb >> 16);
+			dest[destIndex + 1] = (byte) (argb >> 8);
+			dest[destIndex + 2] = (byte) argb;
+			if (bytesPerPixel == 4)
+				dest[destIndex + 3] = (byte) (argb >>> 24);
+		}
+	}
+}
@@ -1,14 +1,87 @@
 package nl.knokko.test;
 
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import nl.knokko.texture.builder.AuxiliaryChannels;
 import nl.knokko.texture.builder.ByteArrayTextureBuilder;
 import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.builder.drawing.Drawing;
+import nl.knokko.texture.builder.drawing.FillRule;
+import nl.knokko.texture.builder.drawing.path.Path;
+import nl.knokko.texture.builder.drawing.path.PathRasterizer;
+import nl.knokko.texture.builder.drawing.path.Stroke;
 import nl.knokko.texture.color.Color;
+import nl.knokko.texture.color.SimpleRGBAColor;
 import nl.knokko.texture.color.SimpleRGBColor;
+import nl.knokko.texture.metrics.HistogramDrawMetrics;
+import nl.knokko.texture.metrics.Metrics;
+import nl.knokko.texture.region.ComponentLabeler;
+import nl.knokko.texture.util.PixelKernels;
+import nl.knokko.texture.util.ScalarPixelKernels;
 
 public class BasicTextureTester {
 
 	public static void main(String[] args) {
 		testByteArrayTextureBuilder();
+		testMetrics();
+		testGrassHeight();
+		testAverage();
+		testPolygons();
+		testPaths();
+		testKernels();
+		testCells();
+		testDrawing();
+	}
+	
+	static class LazyTextureBuilder extends ByteArrayTextureBuilder {
+		
+		LazyTextureBuilder(int width, int height, boolean useAlpha) {
+			super(width, height, useAlpha);
+		}
+		
+		boolean hasCreatedDrawers() {
+			return geometry != null;
+		}
+	}
+	
+	static void testDrawing() {
+		
+		// The static drawing methods shouldn't create the drawers of the texture
+		LazyTextureBuilder plain = new LazyTextureBuilder(16, 16, true);
+		assert !plain.hasCreatedDrawers();
+		
+		// They should give the same results as the drawers
+		LazyTextureBuilder normal = new LazyTextureBuilder(16, 16, true);
+		assert normal.geometry() == normal.geometry();
+		assert normal.hasCreatedDrawers();
+		
+		Color color = SimpleRGBAColor.fromInts(200, 100, 50, 255);
+		Color transparent = SimpleRGBAColor.fromInts(10, 20, 250, 100);
+		Drawing.fillRect(plain, 0, 0, 15, 15, color);
+		normal.geometry().fillRect(0, 0, 15, 15, color);
+		Drawing.drawHorizontalLine(plain, 2, 12, 4, transparent);
+		normal.geometry().drawHorizontalLine(2, 12, 4, transparent);
+		Drawing.drawVerticalLine(plain, 1, 9, 14, transparent);
+		normal.geometry().drawVerticalLine(1, 9, 14, transparent);
+		Drawing.fillAverage(plain, 3, 6, 13, 15, color, 0.3, new Random(5));
+		normal.average().fillAverage(3, 6, 13, 15, color, 0.3, new Random(5));
+		Drawing.fillAverageChance(plain, 0, 0, 15, 3, transparent, 0.2, new Random(8), 0.5);
+		normal.average().fillAverageChance(0, 0, 15, 3, transparent, 0.2, new Random(8), 0.5);
+		assert Arrays.equals(plain.createArrrayRGBA(), normal.createArrrayRGBA());
+		assert !plain.hasCreatedDrawers();
+		
+		// Copy a part of the texture into a texture without alpha
+		LazyTextureBuilder target = new LazyTextureBuilder(8, 8, false);
+		Drawing.copy(plain, 4, 5, target, 1, 2, 6, 5);
+		assert !target.hasCreatedDrawers();
+		assert target.getRed(0, 0) == 0 && target.getRed(7, 7) == 0;
+		for (int y = 0; y < 5; y++)
+			for (int x = 0; x < 6; x++)
+				assert target.getRed(1 + x, 2 + y) == plain.getRed(4 + x, 5 + y) && target.getBlue(1 + x, 2 + y) == plain.getBlue(4 + x, 5 + y);
 	}
 	
 	static void testByteArrayTextureBuilder() {
@@ -69,4 +142,297 @@ public class BasicTextureTester {
 		// Now the graphical test which needs to be done by hand
 		texture.saveTestImage("byteArray");
 	}
+	
+	static void testMetrics() {
+		HistogramDrawMetrics metrics = new HistogramDrawMetrics();
+		Metrics.setDrawMetrics(metrics);
+		try {
+			TextureBuilder texture = new ByteArrayTextureBuilder(50, 40, false);
+			texture.geometry().fillRect(0, 0, 49, 39, SimpleRGBColor.fromInts(10, 20, 30));
+			texture.geometry().fillRect(5, 5, 14, 14, SimpleRGBColor.fromInts(10, 20, 30));
+			
+			HistogramDrawMetrics.OperationStats stats = metrics.getStats("GeometryDrawer.fillRect");
+			assert stats.getCount() == 2;
+			assert stats.getTotalPixels() == 50 * 40 + 10 * 10;
+			assert stats.getMaxNanos() >= stats.getPercentileNanos(50);
+			assert metrics.getStats("GeometryDrawer.fillCircle") == null;
+		} finally {
+			Metrics.setDrawMetrics(null);
+		}
+		
+		// Make sure the default metrics doesn't record anything
+		assert !Metrics.getDrawMetrics().isEnabled();
+		assert Metrics.start("test") == Metrics.Measurement.NONE;
+	}
+	
+	static void testGrassHeight() {
+		Color grass = SimpleRGBColor.fromInts(20, 150, 30);
+		Color brightGrass = SimpleRGBColor.fromInts(60, 200, 50);
+		Color ground = SimpleRGBColor.fromInts(100, 70, 20);
+		
+		TextureBuilder texture = new ByteArrayTextureBuilder(140, 130, false);
+		texture.materials().drawGrassWithHeightChannel(10, 5, 129, 124, grass, brightGrass, ground, new Random(12));
+		byte[] heightChannel = texture.auxiliary().bytes(AuxiliaryChannels.HEIGHT);
+		
+		TextureBuilder other = new ByteArrayTextureBuilder(140, 130, false);
+		byte[] heightMap = new byte[120 * 120];
+		Arrays.fill(heightMap, (byte) 100);
+		other.materials().drawGrass(10, 5, 129, 124, grass, brightGrass, ground, new Random(12), heightMap, 0, 120);
+		
+		boolean hasGrass = false;
+		for (int x = 0; x < 140; x++) {
+			for (int y = 0; y < 130; y++) {
+				boolean inside = x >= 10 && x < 130 && y >= 5 && y < 125;
+				byte height = heightChannel[x + 140 * y];
+				if (inside) {
+					assert height == heightMap[x - 10 + 120 * (y - 5)];
+					if (height > 0)
+						hasGrass = true;
+				} else {
+					assert height == 0;
+				}
+				assert texture.getPixel(x, y).getRedI() == other.getPixel(x, y).getRedI();
+			}
+		}
+		assert hasGrass;
+	}
+	
+	static void testAverage() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(50, 30, true);
+		texture.average().fillAverage(5, 5, 44, 24, SimpleRGBColor.fromInts(100, 200, 50), 0.1, new Random(5));
+		texture.average().fillAverageChance(0, 0, 49, 29, SimpleRGBColor.fromInts(0, 0, 255), 0.1, new Random(5), 0.0);
+		
+		TextureBuilder same = new ByteArrayTextureBuilder(50, 30, true);
+		same.average().fillAverage(5, 5, 44, 24, SimpleRGBColor.fromInts(100, 200, 50), 0.1, new Random(5));
+		
+		for (int x = 0; x < 50; x++) {
+			for (int y = 0; y < 30; y++) {
+				Color color = texture.getPixel(x, y);
+				if (x >= 5 && x < 45 && y >= 5 && y < 25) {
+					assert color.getRedI() >= 90 && color.getRedI() <= 110;
+					assert color.getGreenI() >= 180 && color.getGreenI() <= 220;
+					assert color.getBlueI() >= 45 && color.getBlueI() <= 55;
+					assert color.getAlphaI() == 255;
+				} else {
+					assert color.getAlphaI() == 0;
+				}
+				
+				// The same seed should give the same result
+				assert texture.getRed(x, y) == same.getRed(x, y);
+			}
+		}
+	}
+	
+	static void testPolygons() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(20, 20, false);
+		Color white = SimpleRGBColor.fromInts(255, 255, 255);
+		texture.geometry().fillPolygon(new double[] { 2, 6, 6, 2 }, new double[] { 2, 2, 6, 6 }, white);
+		for (int x = 0; x < 10; x++)
+			for (int y = 0; y < 10; y++)
+				assert (texture.getRed(x, y) == -1) == (x >= 2 && x < 6 && y >= 2 && y < 6);
+		
+		// The right column of this square is only half covered, so it should be mixed with the black background
+		texture.geometry().fillPolygon(new double[] { 10, 13.5, 13.5, 10 }, new double[] { 10, 10, 14, 14 },
+				FillRule.NON_ZERO, true, white);
+		assert texture.getRed(12, 12) == -1;
+		assert texture.getPixel(13, 12).getRedI() > 50 && texture.getPixel(13, 12).getRedI() < 200;
+		assert texture.getRed(14, 12) == 0;
+		
+		// Only the centers of the pixels in the upper row are inside the triangle (10,0), (11,2), (12,0)
+		texture.geometry().fillTriangle(10, 0, 11, 2, 12, 0, white);
+		assert texture.getRed(10, 0) == -1;
+		assert texture.getRed(11, 0) == -1;
+		assert texture.getRed(10, 1) == 0;
+		assert texture.getRed(11, 1) == 0;
+	}
+	
+	static void testPaths() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(60, 60, false);
+		Color white = SimpleRGBColor.fromInts(255, 255, 255);
+		
+		// A horizontal stroke of width 4 around y = 10 covers the rows 8 to 11
+		texture.geometry().strokePath(new Path().moveTo(10, 10).lineTo(30, 10), new Stroke(4), white);
+		for (int y = 6; y < 14; y++)
+			assert (texture.getRed(20, y) == -1) == (y >= 8 && y < 12);
+		assert texture.getRed(9, 10) == 0;
+		assert texture.getRed(30, 10) == 0;
+		
+		// With the even-odd rule, the inner square of 2 nested squares should stay empty
+		Path nested = new Path().moveTo(10, 20).lineTo(50, 20).lineTo(50, 58).lineTo(10, 58).close()
+				.moveTo(20, 30).lineTo(40, 30).lineTo(40, 48).lineTo(20, 48).close();
+		texture.geometry().fillPath(nested, FillRule.EVEN_ODD, white);
+		assert texture.getRed(15, 40) == -1;
+		assert texture.getRed(30, 40) == 0;
+		assert texture.getRed(45, 25) == -1;
+		assert texture.getRed(55, 40) == 0;
+		
+		// With the non-zero rule, it should be filled because both squares have the same direction
+		texture.geometry().fillPath(nested, FillRule.NON_ZERO, white);
+		assert texture.getRed(30, 40) == -1;
+		
+		// The edge pixels of round caps and joins must get the coverage of the union of the stroke pieces, rather
+		// than the sum of the coverage of all pieces
+		Random random = new Random(32);
+		for (int counter = 0; counter < 100; counter++)
+			testRoundStroke(random);
+	}
+	
+	private static void testRoundStroke(Random random) {
+		double halfWidth = 0.5 + 5.5 * random.nextDouble();
+		int numPoints = 2 + random.nextInt(2);
+		double[] xs = new double[numPoints];
+		double[] ys = new double[numPoints];
+		xs[0] = 24 + 16 * random.nextDouble();
+		ys[0] = 24 + 16 * random.nextDouble();
+		double angle = 2 * Math.PI * random.nextDouble();
+		for (int index = 1; index < numPoints; index++) {
+			
+			// Keep the segments long and the turns at most 90 degrees, so the stroke doesn't overlap itself
+			double length = 2 * halfWidth + 12 * random.nextDouble();
+			xs[index] = xs[index - 1] + length * Math.cos(angle);
+			ys[index] = ys[index - 1] + length * Math.sin(angle);
+			angle += (random.nextDouble() - 0.5) * Math.PI;
+		}
+		Path path = new Path().moveTo(xs[0], ys[0]);
+		for (int index = 1; index < numPoints; index++)
+			path.lineTo(xs[index], ys[index]);
+		
+		PathRasterizer rasterizer = new PathRasterizer(64, 64);
+		rasterizer.addStroke(path, new Stroke(2 * halfWidth, Stroke.Cap.ROUND, Stroke.Join.ROUND));
+		float[] coverage = new float[64 * 64];
+		rasterizer.render(FillRule.NON_ZERO, (y, minX, maxX, spanCoverage) -> {
+			for (int x = minX; x <= maxX; x++)
+				coverage[x + 64 * y] = spanCoverage;
+		});
+		
+		// Compare every pixel with a 16x16 supersampled reference: the points within halfWidth of the polyline
+		for (int y = 0; y < 64; y++) {
+			for (int x = 0; x < 64; x++) {
+				int inside = 0;
+				for (int sampleY = 0; sampleY < 16; sampleY++) {
+					for (int sampleX = 0; sampleX < 16; sampleX++) {
+						double px = x + (sampleX + 0.5) / 16, py = y + (sampleY + 0.5) / 16;
+						for (int index = 1; index < numPoints; index++) {
+							if (segmentDistance(px, py, xs[index - 1], ys[index - 1], xs[index], ys[index]) <= halfWidth) {
+								inside++;
+								break;
+							}
+						}
+					}
+				}
+				assert Math.abs(coverage[x + 64 * y] - inside / 256.0) <= 0.1;
+			}
+		}
+	}
+	
+	private static double segmentDistance(double x, double y, double x1, double y1, double x2, double y2) {
+		double dx = x2 - x1, dy = y2 - y1;
+		double t = Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / (dx * dx + dy * dy)));
+		return Math.hypot(x - x1 - t * dx, y - y1 - t * dy);
+	}
+	
+	static void testKernels() {
+		
+		// The default kernels (probably the vectorized ones) must give exactly the same results as the scalar ones
+		PixelKernels kernels = PixelKernels.get();
+		PixelKernels scalar = new ScalarPixelKernels();
+		Random random = new Random(34);
+		for (int bytesPerPixel = 3; bytesPerPixel <= 4; bytesPerPixel++) {
+			for (int pixels : new int[] { 0, 1, 7, 8, 33, 100 }) {
+				byte[] original = new byte[pixels * bytesPerPixel + 50];
+				random.nextBytes(original);
+				byte red = (byte) random.nextInt(), green = (byte) random.nextInt(), blue = (byte) random.nextInt();
+				byte alpha = (byte) (1 + random.nextInt(254));
+				
+				byte[] expected = original.clone();
+				byte[] actual = original.clone();
+				scalar.fillSpan(expected, 5, pixels, bytesPerPixel, red, green, blue, alpha);
+				kernels.fillSpan(actual, 5, pixels, bytesPerPixel, red, green, blue, alpha);
+				assert Arrays.equals(expected, actual);
+				
+				expected = original.clone();
+				actual = original.clone();
+				scalar.blendSpan(expected, 5, pixels, bytesPerPixel, red, green, blue, alpha);
+				kernels.blendSpan(actual, 5, pixels, bytesPerPixel, red, green, blue, alpha);
+				assert Arrays.equals(expected, actual);
+				
+				int[] expectedARGB = new int[pixels + 3];
+				int[] actualARGB = new int[pixels + 3];
+				scalar.packARGB(original, 5, bytesPerPixel, expectedARGB, 2, pixels);
+				kernels.packARGB(original, 5, bytesPerPixel, actualARGB, 2, pixels);
+				assert Arrays.equals(expectedARGB, actualARGB);
+				
+				expected = new byte[original.length];
+				actual = new byte[original.length];
+				scalar.unpackARGB(expectedARGB, 2, expected, 1, bytesPerPixel, pixels);
+				kernels.unpackARGB(expectedARGB, 2, actual, 1, bytesPerPixel, pixels);
+				assert Arrays.equals(expected, actual);
+				assert Arrays.equals(original, 5, 5 + pixels * bytesPerPixel, actual, 1, 1 + pixels * bytesPerPixel);
+				
+				if (bytesPerPixel == 4) {
+					for (boolean useAlpha : new boolean[] { false, true }) {
+						float[] expectedFloats = new float[pixels * 4 + 2];
+						float[] actualFloats = new float[pixels * 4 + 2];
+						scalar.multiplyChannels(original, 5, expectedFloats, 1, pixels, useAlpha);
+						kernels.multiplyChannels(original, 5, actualFloats, 1, pixels, useAlpha);
+						assert Arrays.equals(expectedFloats, actualFloats);
+					}
+				}
+			}
+		}
+		
+		// A half transparent line over an opaque pixel
+		TextureBuilder texture = new ByteArrayTextureBuilder(40, 20, true);
+		texture.geometry().fillRect(0, 0, 39, 19, SimpleRGBColor.fromInts(0, 0, 200));
+		texture.geometry().drawHorizontalLine(0, 39, 3, SimpleRGBAColor.fromInts(255, 0, 0, 255 / 3));
+		assert texture.getPixel(20, 3).getRedI() == 64 && texture.getPixel(20, 3).getBlueI() == 150;
+		assert texture.getAlpha(20, 3) == -1;
+		
+		// Converting to a BufferedImage and back shouldn't change anything
+		BufferedImage image = texture.createBufferedImage();
+		assert image.getRGB(5, 3) == (255 << 24 | 64 << 16 | 150);
+		TextureBuilder copy = ByteArrayTextureBuilder.fromImage(image, true);
+		assert Arrays.equals(texture.createArrrayRGBA(), copy.createArrrayRGBA());
+	}
+	
+	static void testCells() {
+		Color stone = SimpleRGBColor.fromInts(150, 150, 150);
+		Color mortar = SimpleRGBColor.fromInts(60, 50, 40);
+		
+		// Without mortar and edges, every cell has a single color (but some cells may get the same color).
+		// The cells on the edges wrap around, so there are more components than cells.
+		TextureBuilder cells = new ByteArrayTextureBuilder(96, 64, false);
+		cells.materials().fillCellPattern(0, 0, 95, 63, 16, stone, mortar, 0, 0, 0.2, new Random(8));
+		Set<Integer> cellColors = new HashSet<>();
+		for (int y = 0; y < 64; y++)
+			for (int x = 0; x < 96; x++)
+				cellColors.add(cells.getPixel(x, y).getRedI() << 16 | cells.getPixel(x, y).getGreenI() << 8 | cells.getPixel(x, y).getBlueI());
+		assert cellColors.size() >= 16 && cellColors.size() <= 24 : cellColors.size();
+		assert ComponentLabeler.label(cells, 0).getCount() > cellColors.size();
+		
+		TextureBuilder cobble = new ByteArrayTextureBuilder(96, 64, false);
+		cobble.materials().fillCobblestonePattern(0, 0, 95, 63, 16, stone, mortar, new Random(8));
+		int mortarPixels = 0;
+		for (int y = 0; y < 64; y++) {
+			for (int x = 0; x < 96; x++) {
+				if (cobble.getRed(x, y) == 60 && cobble.getGreen(x, y) == 50)
+					mortarPixels++;
+			}
+		}
+		assert mortarPixels > 96 * 64 / 20 && mortarPixels < 96 * 64 / 3 : mortarPixels;
+		
+		// The positions of the cells only depend on the random, and the colors of the cells are between the
+		// colors given by getDifColor
+		TextureBuilder same = new ByteArrayTextureBuilder(96, 64, false);
+		same.materials().fillCobblestonePattern(0, 0, 95, 63, 16, stone, mortar, new Random(8));
+		assert Arrays.equals(cobble.createArrrayRGBA(), same.createArrrayRGBA());
+		for (int y = 0; y < 64; y++)
+			for (int x = 0; x < 96; x++)
+				assert (cells.getRed(x, y) & 0xFF) >= 120 && (cells.getRed(x, y) & 0xFF) <= 180;
+		
+		try {
+			cells.materials().fillCellPattern(0, 0, 95, 63, 0, stone, mortar, 0, 0, 0.2, new Random(8));
+			assert false;
+		} catch (IllegalArgumentException expected) {}
+	}
 }
@@ -0,0 +1,91 @@
+package nl.knokko.test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.PlanarTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.SimpleRGBColor;
+import nl.knokko.texture.compare.TextureDiff;
+import nl.knokko.texture.compare.TextureHash;
+import nl.knokko.texture.compare.XXHash64;
+
+public class CompareTester {
+	
+	public static void main(String[] args) {
+		testXXHash64();
+		testHash();
+		testDiff();
+	}
+	
+	static long xxHash(String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+		return XXHash64.hash(bytes, 0, bytes.length, 0);
+	}
+	
+	static void testXXHash64() {
+		// Reference values of the XXH64 algorithm
+		assert xxHash("") == 0xEF46DB3751D8E999L;
+		assert xxHash("abc") == 0x44BC2CF5AD770999L;
+		
+		// The offset should be respected
+		byte[] padded = " abc".getBytes(StandardCharsets.US_ASCII);
+		assert XXHash64.hash(padded, 1, 3, 0) == xxHash("abc");
+		
+		// Inputs of at least 32 bytes use another code path
+		assert xxHash("0123456789abcdef0123456789abcdef0") != xxHash("0123456789abcdef0123456789abcdef1");
+	}
+	
+	static TextureBuilder createTexture() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(150, 100, false);
+		texture.geometry().fillRect(0, 0, 149, 99, SimpleRGBColor.fromInts(100, 150, 50));
+		texture.average().fillAverage(0, 0, 149, 99, SimpleRGBColor.fromInts(100, 150, 50), 0.1, new Random(7));
+		return texture;
+	}
+	
+	static void testHash() {
+		TextureBuilder texture = createTexture();
+		long hash = TextureHash.hash(texture);
+		assert hash == TextureHash.hash(createTexture());
+		
+		// The hash depends on the pixels, not on the way they are stored
+		assert hash == TextureHash.hash(PlanarTextureBuilder.fromTexture(texture));
+		
+		long[] tiles = TextureHash.hashTiles(texture, 64);
+		assert tiles.length == 3 * 2;
+		texture.setPixel(130, 70, (byte) 1, (byte) 2, (byte) 3);
+		long[] changedTiles = TextureHash.hashTiles(texture, 64);
+		assert hash != TextureHash.hash(texture);
+		for (int tile = 0; tile < tiles.length; tile++)
+			assert (tiles[tile] == changedTiles[tile]) == (tile != 5);
+	}
+	
+	static void testDiff() {
+		TextureBuilder expected = createTexture();
+		TextureBuilder actual = createTexture();
+		TextureDiff same = TextureDiff.compare(expected, actual, 32);
+		assert same.isIdentical();
+		assert same.getPSNR() == Double.POSITIVE_INFINITY;
+		assert same.getDifferingTiles().length == 0;
+		
+		actual.setPixel(5, 5, (byte) 0, (byte) 150, (byte) 50);
+		actual.setPixel(140, 99, (byte) 100, (byte) 150, (byte) 50);
+		int redError = Math.abs((expected.getRed(5, 5) & 0xFF) - 0);
+		TextureDiff diff = TextureDiff.compare(expected, actual, 32);
+		assert !diff.isIdentical();
+		assert diff.getMaxChannelError() == redError;
+		assert diff.getTilesX() == 5 && diff.getTilesY() == 4;
+		assert Arrays.equals(new int[] { 0, 19 }, diff.getDifferingTiles()) : Arrays.toString(diff.getDifferingTiles());
+		assert diff.isTileDifferent(4, 3) && !diff.isTileDifferent(1, 0);
+		assert diff.getPSNR() > 30 && diff.getPSNR() < 100;
+		
+		try {
+			TextureDiff.compare(expected, new ByteArrayTextureBuilder(10, 10, false));
+			assert false;
+		} catch (IllegalArgumentException expectedException) {
+			// The textures have different sizes
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package nl.knokko.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.ConcurrentTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.builder.drawing.FillRule;
+import nl.knokko.texture.builder.drawing.path.Path;
+import nl.knokko.texture.builder.drawing.path.Stroke;
+import nl.knokko.texture.color.SimpleRGBAColor;
+import nl.knokko.texture.color.SimpleRGBColor;
+import nl.knokko.texture.compare.TextureDiff;
+
+public class ConcurrentTextureTester {
+	
+	public static void main(String[] args) throws InterruptedException {
+		
+		// Make sure the drawers split large regions over multiple threads, even on machines with 1 core
+		System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "4");
+		testNoLostUpdates();
+		testIndependentPasses();
+		testPaths();
+		testParallelWorkInRegion();
+	}
+	
+	static void runThreads(int numThreads, Runnable task) throws InterruptedException {
+		List<Thread> threads = new ArrayList<>();
+		for (int counter = 0; counter < numThreads; counter++)
+			threads.add(new Thread(task));
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+	}
+	
+	static void testNoLostUpdates() throws InterruptedException {
+		ConcurrentTextureBuilder texture = new ConcurrentTextureBuilder(new ByteArrayTextureBuilder(100, 100, false), 16);
+		
+		// Every thread increments the red component of the same pixels, so updates would be lost without locks
+		runThreads(4, () -> {
+			for (int counter = 0; counter < 60; counter++) {
+				texture.modifyRegion(10, 10, 40, 20, () -> {
+					for (int y = 10; y <= 20; y++) {
+						for (int x = 10; x <= 40; x++) {
+							byte red = texture.getRed(x, y);
+							Thread.yield();
+							texture.setPixel(x, y, (byte) (red + 1), (byte) 0, (byte) 0);
+						}
+					}
+				});
+			}
+		});
+		for (int y = 10; y <= 20; y++)
+			for (int x = 10; x <= 40; x++)
+				assert texture.getRed(x, y) == (byte) 240;
+		assert texture.getRed(9, 10) == 0;
+	}
+	
+	static void drawPasses(TextureBuilder texture, boolean parallel) throws InterruptedException {
+		Runnable bricks = () -> texture.materials().fillBrickPattern(0, 0, 127, 255, 16, 8, 
+				SimpleRGBColor.fromInts(150, 60, 40), SimpleRGBColor.fromInts(200, 200, 200), 0.1f, new Random(1));
+		// The circles have a radius of at most 8, so they stay out of the region of the bricks
+		Runnable circles = () -> texture.decaying().addDecayingCirclePattern(136, 0, 255, 255, 
+				SimpleRGBColor.fromInts(50, 120, 50), 0.2, 3, 8, 0.01, new Random(2));
+		Runnable lines = () -> {
+			for (int y = 0; y < 256; y += 3)
+				texture.geometry().drawHorizontalLine(0, 255, y, SimpleRGBAColor.fromInts(0, 0, 255, 60));
+		};
+		if (parallel) {
+			Thread[] threads = { new Thread(bricks), new Thread(circles) };
+			for (Thread thread : threads)
+				thread.start();
+			for (Thread thread : threads)
+				thread.join();
+		} else {
+			bricks.run();
+			circles.run();
+		}
+		lines.run();
+	}
+	
+	static void testIndependentPasses() throws InterruptedException {
+		TextureBuilder sequential = new ByteArrayTextureBuilder(256, 256, false);
+		drawPasses(sequential, false);
+		TextureBuilder concurrent = new ConcurrentTextureBuilder(new ByteArrayTextureBuilder(256, 256, false));
+		drawPasses(concurrent, true);
+		TextureDiff diff = TextureDiff.compare(sequential, concurrent);
+		assert diff.isIdentical() : diff;
+		
+		// Blending lines from several threads at the same time shouldn't lose any of them
+		TextureBuilder blended = new ConcurrentTextureBuilder(new ByteArrayTextureBuilder(64, 64, true), 8);
+		runThreads(4, () -> {
+			for (int counter = 0; counter < 10; counter++)
+				blended.geometry().drawHorizontalLine(0, 63, 5, SimpleRGBAColor.fromInts(255, 255, 255, 20));
+		});
+		TextureBuilder expected = new ByteArrayTextureBuilder(64, 64, true);
+		for (int counter = 0; counter < 40; counter++)
+			expected.geometry().drawHorizontalLine(0, 63, 5, SimpleRGBAColor.fromInts(255, 255, 255, 20));
+		assert TextureDiff.compare(expected, blended).isIdentical();
+	}
+	
+	static void drawStars(TextureBuilder texture, int column) {
+		Random random = new Random(column);
+		for (int counter = 0; counter < 40; counter++) {
+			
+			// A 5-pointed star that stays within the column of 64 pixels wide
+			double centerX = 64 * column + 16 + 32 * random.nextDouble();
+			double centerY = 16 + 224 * random.nextDouble();
+			double radius = 4 + 10 * random.nextDouble();
+			Path star = new Path();
+			for (int point = 0; point < 5; point++) {
+				double angle = point * 4 * Math.PI / 5;
+				double x = centerX + radius * Math.cos(angle);
+				double y = centerY + radius * Math.sin(angle);
+				if (point == 0)
+					star.moveTo(x, y);
+				else
+					star.lineTo(x, y);
+			}
+			star.close();
+			texture.geometry().fillPath(star, FillRule.EVEN_ODD, SimpleRGBAColor.fromInts(
+					random.nextInt(256), random.nextInt(256), random.nextInt(256), 150));
+			texture.geometry().strokePath(star, new Stroke(1.5), SimpleRGBAColor.fromInts(0, 0, 0, 100));
+		}
+	}
+	
+	static void testPaths() throws InterruptedException {
+		TextureBuilder sequential = new ByteArrayTextureBuilder(256, 256, true);
+		for (int column = 0; column < 4; column++)
+			drawStars(sequential, column);
+		
+		// All threads share the drawers of the concurrent texture, but draw in different columns
+		TextureBuilder concurrent = new ConcurrentTextureBuilder(new ByteArrayTextureBuilder(256, 256, true), 16);
+		Thread[] threads = new Thread[4];
+		for (int column = 0; column < 4; column++) {
+			int threadColumn = column;
+			threads[column] = new Thread(() -> drawStars(concurrent, threadColumn));
+		}
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		TextureDiff diff = TextureDiff.compare(sequential, concurrent);
+		assert diff.isIdentical() : diff;
+	}
+	
+	static void testParallelWorkInRegion() throws InterruptedException {
+		assert ForkJoinPool.getCommonPoolParallelism() > 1;
+		TextureBuilder expected = new ByteArrayTextureBuilder(512, 512, false);
+		expected.average().fillAverageChance(0, 0, 511, 511, SimpleRGBColor.fromInts(100, 150, 200), 0.2, new Random(4), 0.5);
+		
+		// fillAverageChance splits the region over multiple threads, which need the locks of the region
+		TextureBuilder texture = new ConcurrentTextureBuilder(new ByteArrayTextureBuilder(512, 512, false));
+		Thread thread = new Thread(() -> texture.modifyRegion(0, 0, 511, 511, () -> texture.average().fillAverageChance(
+				0, 0, 511, 511, SimpleRGBColor.fromInts(100, 150, 200), 0.2, new Random(4), 0.5)));
+		thread.setDaemon(true);
+		thread.start();
+		thread.join(20000);
+		assert !thread.isAlive() : "modifyRegion deadlocked";
+		assert TextureDiff.compare(expected, texture).isIdentical();
+	}
+}
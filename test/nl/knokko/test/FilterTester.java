@@ -0,0 +1,106 @@
+package nl.knokko.test;
+
+import java.util.Random;
+
+import nl.knokko.texture.builder.AuxiliaryChannels;
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.SimpleRGBColor;
+import nl.knokko.texture.color.SimpleRGBAColor;
+import nl.knokko.texture.filter.BoxBlurFilter;
+import nl.knokko.texture.filter.DistanceField;
+import nl.knokko.texture.filter.FilterPipeline;
+import nl.knokko.texture.filter.GaussianBlurFilter;
+import nl.knokko.texture.filter.NormalMapFilter;
+import nl.knokko.texture.filter.SharpenFilter;
+import nl.knokko.texture.filter.SobelFilter;
+
+public class FilterTester {
+
+	public static void main(String[] args) {
+		testBlur();
+		testEdges();
+		testDistanceField();
+	}
+	
+	static void testBlur() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(30, 20, true);
+		texture.setPixel(10, 10, (byte) 255, (byte) 255, (byte) 255, (byte) 255);
+		new BoxBlurFilter(1).apply(texture);
+		
+		// The white pixel should be spread evenly over the 3x3 square around it
+		for (int x = 9; x <= 11; x++) {
+			for (int y = 9; y <= 11; y++) {
+				assert Math.abs((texture.getAlpha(x, y) & 0xFF) - 28) <= 1;
+				assert texture.getRed(x, y) == (byte) 255;
+			}
+		}
+		assert texture.getAlpha(12, 10) == 0;
+		assert texture.getAlpha(10, 8) == 0;
+		
+		// Flat textures should stay flat
+		TextureBuilder flat = new ByteArrayTextureBuilder(40, 40, false);
+		flat.geometry().fillRect(0, 0, 39, 39, SimpleRGBColor.fromInts(100, 150, 200));
+		new FilterPipeline().then(new BoxBlurFilter(5)).then(new GaussianBlurFilter(2.0))
+				.then(new SharpenFilter()).apply(flat);
+		for (int x = 0; x < 40; x++) {
+			for (int y = 0; y < 40; y++) {
+				assert flat.getRed(x, y) == 100;
+				assert flat.getGreen(x, y) == (byte) 150;
+				assert flat.getBlue(x, y) == (byte) 200;
+			}
+		}
+	}
+	
+	static void testEdges() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(20, 20, false);
+		texture.geometry().fillRect(10, 0, 19, 19, SimpleRGBColor.fromInts(255, 255, 255));
+		TextureBuilder normals = new ByteArrayTextureBuilder(20, 20, false);
+		normals.geometry().fillRect(0, 0, 19, 19, SimpleRGBColor.fromInts(255, 255, 255));
+		
+		new SobelFilter().apply(texture);
+		assert texture.getRed(2, 5) == 0;
+		assert texture.getRed(10, 5) == (byte) 255;
+		
+		new NormalMapFilter(5.0, false).apply(normals);
+		assert normals.getRed(5, 5) == (byte) 128;
+		assert normals.getGreen(5, 5) == (byte) 128;
+		assert normals.getBlue(5, 5) == (byte) 255;
+	}
+	
+	static void testDistanceField() {
+		// Compare with a brute force search on a random mask
+		int width = 37;
+		int height = 23;
+		boolean[] mask = new boolean[width * height];
+		Random random = new Random(42);
+		for (int index = 0; index < mask.length; index++)
+			mask[index] = random.nextInt(10) == 0;
+		float[] distances = DistanceField.compute(mask, width, height);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				double nearest = Double.POSITIVE_INFINITY;
+				for (int otherY = 0; otherY < height; otherY++)
+					for (int otherX = 0; otherX < width; otherX++)
+						if (mask[otherY * width + otherX] != mask[y * width + x])
+							nearest = Math.min(nearest, Math.hypot(otherX - x, otherY - y));
+				double expected = mask[y * width + x] ? 0.5 - nearest : nearest - 0.5;
+				assert Math.abs(distances[y * width + x] - expected) < 1e-4 : x + "," + y;
+			}
+		}
+		
+		// The distances of a square from (30,20) to (69,59)
+		TextureBuilder texture = new ByteArrayTextureBuilder(100, 80, true);
+		texture.geometry().fillRect(30, 20, 69, 59, SimpleRGBAColor.fromInts(255, 255, 255, 255));
+		float[] channel = DistanceField.writeChannel(texture);
+		assert channel == texture.auxiliary().floats(AuxiliaryChannels.SDF);
+		assert channel[40 * 100 + 50] == -19.5f;
+		assert channel[40 * 100 + 90] == 20.5f;
+		assert Math.abs(channel[10 * 100 + 20] - (Math.sqrt(200) - 0.5)) < 1e-5;
+		
+		DistanceField.encode(channel, 10f, texture);
+		assert texture.getRed(50, 40) == -1 && texture.getRed(0, 0) == 0;
+		int edge = texture.getRed(70, 40) & 0xFF;
+		assert edge > 64 && edge < 192 : edge;
+	}
+}
@@ -0,0 +1,91 @@
+package nl.knokko.test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.HdrTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.builder.ToneMapping;
+import nl.knokko.texture.color.SRGB;
+import nl.knokko.texture.color.SimpleRGBAColor;
+import nl.knokko.texture.color.SimpleRGBColor;
+
+public class HdrTextureTester {
+
+	public static void main(String[] args) {
+		testSRGB();
+		testHdr();
+		testLinearLight();
+	}
+	
+	static void testSRGB() {
+		for (int value = 0; value < 256; value++) {
+			assert SRGB.fromLinear(SRGB.toLinear((byte) value)) == (byte) value;
+			assert Math.abs(SRGB.toLinear((byte) value) - SRGB.exactToLinear(value / 255.0)) < 1e-6;
+		}
+		assert SRGB.fromLinear(0.5f) == (byte) 188;
+		assert SRGB.fromLinear(-1f) == 0;
+		assert SRGB.fromLinear(3f) == -1;
+	}
+	
+	static void testHdr() {
+		HdrTextureBuilder texture = new HdrTextureBuilder(30, 20, false);
+		texture.geometry().fillRect(0, 0, 29, 19, SimpleRGBColor.fromInts(255, 0, 0));
+		assert texture.getRed(5, 5) == -1 && texture.getGreen(5, 5) == 0;
+		
+		// Blending half red with half green should give half of both intensities, which is 188 in sRGB
+		texture.geometry().fillRect(0, 5, 29, 5, SimpleRGBColor.fromInts(0, 255, 0));
+		texture.setPixelF(3, 5, 0.5f, 0.5f, 0f, 1f);
+		assert texture.getRed(3, 5) == (byte) 188 && texture.getGreen(3, 5) == (byte) 188;
+		
+		// Intensities above 1 should be kept and tone mapped on export
+		texture.setPixelF(4, 4, 4f, 1f, 0f, 1f);
+		BufferedImage clamped = texture.createBufferedImage();
+		assert (clamped.getRGB(4, 4) & 0xFFFFFF) == 0xFFFF00;
+		BufferedImage reinhard = texture.createBufferedImage(ToneMapping.REINHARD, 1f);
+		int red = reinhard.getRGB(4, 4) >> 16 & 0xFF;
+		int green = reinhard.getRGB(4, 4) >> 8 & 0xFF;
+		assert red == (SRGB.fromLinear(0.8f) & 0xFF) && green == (SRGB.fromLinear(0.5f) & 0xFF);
+		
+		ByteArrayTextureBuilder bytes = texture.toByteArrayTextureBuilder(ToneMapping.ACES, 0.5f);
+		assert bytes.getRed(4, 4) != 0 && (bytes.getRed(4, 4) & 0xFF) > (bytes.getGreen(4, 4) & 0xFF);
+		assert bytes.getRed(0, 0) == texture.toByteArrayTextureBuilder(ToneMapping.ACES, 0.5f).getRed(0, 0);
+		
+		// The decaying drawer should blend in linear light
+		HdrTextureBuilder black = new HdrTextureBuilder(21, 21, false);
+		black.decaying().fillDecayingCircle(10, 10, 10, SimpleRGBColor.fromInts(255, 255, 255));
+		assert Math.abs(black.getRedF(10, 10) - 1f) < 1e-6;
+		assert Math.abs(black.getRedF(15, 10) - 0.75f) < 1e-6;
+	}
+	
+	static void testLinearLight() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(40, 20, false);
+		texture.geometry().setLinearLight(true);
+		texture.average().setLinearLight(true);
+		texture.decaying().setLinearLight(true);
+		
+		// Blending white over black should be done on the linear intensities
+		texture.geometry().drawHorizontalLine(0, 39, 0, SimpleRGBAColor.fromInts(255, 255, 255, 128));
+		float lineFactor = 128 / 255f;
+		assert texture.getRed(10, 0) == SRGB.fromLinear(lineFactor / (lineFactor + 1f));
+		
+		// The variations should multiply the linear intensity
+		texture.average().fillAverage(0, 1, 39, 10, SimpleRGBColor.fromInts(100, 150, 200), 0.5, new Random(3));
+		float linear = SRGB.toLinear((byte) 100);
+		for (int x = 0; x < 40; x++) {
+			for (int y = 1; y <= 10; y++) {
+				int red = texture.getPixel(x, y).getRedI();
+				assert red >= (SRGB.fromLinear(0.5f * linear) & 0xFF) && red <= (SRGB.fromLinear(1.5f * linear) & 0xFF);
+			}
+		}
+		
+		// Without variation, the color shouldn't change at all
+		texture.average().fillAverage(0, 11, 39, 19, SimpleRGBColor.fromInts(100, 150, 200), 0, new Random(3));
+		assert texture.getPixel(7, 15).getGreenI() == 150;
+		
+		texture.decaying().fillDecayingCircle(20, 15, 4, SimpleRGBColor.fromInts(0, 0, 0));
+		assert texture.getRed(20, 15) == 0;
+		assert texture.getRed(22, 15) == SRGB.mix((byte) 100, 0.25f, (byte) 0, 0.75f);
+	}
+}
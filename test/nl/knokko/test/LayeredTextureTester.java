@@ -0,0 +1,61 @@
+package nl.knokko.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.LayeredTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.SimpleRGBColor;
+
+public class LayeredTextureTester {
+	
+	public static void main(String[] args) {
+		testLayers();
+		testDeltaEncoding();
+	}
+	
+	static void drawFrame(TextureBuilder frame, int index) {
+		frame.geometry().fillRect(0, 0, frame.width() - 1, frame.height() - 1, SimpleRGBColor.fromInts(20, 60, 200));
+		frame.average().fillAverage(0, 0, frame.width() - 1, 7, SimpleRGBColor.fromInts(50, 90, 220), 0.1, new Random(index));
+		frame.geometry().fillCircle(4 + index, 20, 3, SimpleRGBColor.fromInts(255, 255, 255));
+	}
+	
+	static void testLayers() {
+		LayeredTextureBuilder frames = new LayeredTextureBuilder(32, 24, true, 6);
+		frames.generate(LayeredTextureTester::drawFrame);
+		
+		// Every layer should be the same as a separately drawn texture
+		for (int index = 0; index < 6; index++) {
+			TextureBuilder expected = new ByteArrayTextureBuilder(32, 24, true);
+			drawFrame(expected, index);
+			assert Arrays.equals(expected.createArrrayRGBA(), frames.layer(index).createArrrayRGBA());
+			assert Arrays.equals(expected.createArrrayRGBA(), frames.createLayerArray(index));
+		}
+		
+		// The layers share the data, and the strip shows them below each other
+		assert frames.getData().length == 6 * frames.getLayerSize();
+		TextureBuilder strip = frames.asStrip();
+		assert strip.width() == 32 && strip.height() == 6 * 24;
+		assert strip.getPixel(7, 3 * 24 + 20).getRedI() == 255;
+		strip.setPixel(0, 2 * 24 + 1, (byte) 1, (byte) 2, (byte) 3, (byte) 4);
+		assert frames.layer(2).getBlue(0, 1) == 3;
+		assert frames.layer(1).getBlue(0, 1) != 3;
+	}
+	
+	static void testDeltaEncoding() {
+		LayeredTextureBuilder frames = new LayeredTextureBuilder(40, 30, false, 5);
+		frames.generate(LayeredTextureTester::drawFrame);
+		byte[] deltas = frames.createDeltaEncoding();
+		
+		// The frames only differ in the rows with random colors and near the circle
+		int zeros = 0;
+		for (int index = frames.getLayerSize(); index < deltas.length; index++)
+			if (deltas[index] == 0)
+				zeros++;
+		assert zeros > (deltas.length - frames.getLayerSize()) / 2;
+		
+		LayeredTextureBuilder decoded = LayeredTextureBuilder.fromDeltaEncoding(40, 30, false, 5, deltas);
+		assert Arrays.equals(frames.getData(), decoded.getData());
+	}
+}
@@ -0,0 +1,63 @@
+package nl.knokko.test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.FloatPlanarTextureBuilder;
+import nl.knokko.texture.builder.PlanarTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.SimpleRGBAColor;
+import nl.knokko.texture.color.SimpleRGBColor;
+
+public class PlanarTextureTester {
+
+	public static void main(String[] args) {
+		testPlanar();
+		testFloatPlanar();
+	}
+	
+	static void testPlanar() {
+		TextureBuilder interleaved = new ByteArrayTextureBuilder(40, 30, true);
+		interleaved.geometry().fillRect(0, 0, 39, 29, SimpleRGBAColor.fromInts(10, 20, 30, 40));
+		interleaved.average().fillAverage(5, 5, 30, 20, SimpleRGBColor.fromInts(200, 100, 50), 0.1, new Random(1));
+		
+		// Converting to planar and back shouldn't change anything
+		PlanarTextureBuilder planar = PlanarTextureBuilder.fromTexture(interleaved);
+		assert Arrays.equals(interleaved.createArrrayRGBA(), planar.createArrrayRGBA());
+		assert Arrays.equals(interleaved.createArrrayRGBA(), planar.toByteArrayTextureBuilder().createArrrayRGBA());
+		
+		// Drawing on both textures should give the same result
+		interleaved.geometry().drawHorizontalLine(0, 39, 7, SimpleRGBAColor.fromInts(255, 0, 0, 100));
+		planar.geometry().drawHorizontalLine(0, 39, 7, SimpleRGBAColor.fromInts(255, 0, 0, 100));
+		assert Arrays.equals(interleaved.createArrrayRGBA(), planar.createArrrayRGBA());
+		
+		// The planes should be the actual data of the texture
+		assert planar.alphaPlane()[0] == 40;
+		planar.plane(PlanarTextureBuilder.GREEN)[1] = 123;
+		assert planar.getGreen(1, 0) == 123;
+		assert new PlanarTextureBuilder(3, 3, false).alphaPlane() == null;
+	}
+	
+	static void testFloatPlanar() {
+		FloatPlanarTextureBuilder texture = new FloatPlanarTextureBuilder(20, 20, false);
+		texture.geometry().fillRect(0, 0, 19, 19, SimpleRGBColor.fromInts(0, 0, 0));
+		ByteArrayTextureBuilder bytes = new ByteArrayTextureBuilder(20, 20, false);
+		
+		// Blending a dark color many times with a small weight converges to that color, but rounding to bytes
+		// after every step gets stuck before reaching it
+		for (int counter = 0; counter < 200; counter++) {
+			texture.decaying().fillDecayingCircle(10, 10, 10, SimpleRGBColor.fromInts(3, 3, 3));
+			bytes.decaying().fillDecayingCircle(10, 10, 10, SimpleRGBColor.fromInts(3, 3, 3));
+		}
+		assert texture.getRedF(10, 19) > 2.5f / 255f;
+		assert texture.getRed(10, 19) == 3;
+		assert bytes.getRed(10, 19) == 1;
+		
+		// Values above 1 should be kept, but clamped when converted to bytes
+		texture.setPixelF(1, 1, 2f, 0.5f, 0f, 1f);
+		assert texture.getRedF(1, 1) == 2f;
+		assert texture.getRed(1, 1) == -1;
+		assert texture.toByteArrayTextureBuilder().getGreen(1, 1) == (byte) 128;
+	}
+}
@@ -0,0 +1,116 @@
+package nl.knokko.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.PaletteTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.SimpleRGBAColor;
+import nl.knokko.texture.color.SimpleRGBColor;
+import nl.knokko.texture.quantize.ColorQuantizer;
+import nl.knokko.texture.quantize.ColorQuantizer.Dithering;
+
+public class QuantizeTester {
+
+	public static void main(String[] args) throws IOException {
+		
+		// Make sure the drawers split large regions over multiple threads, even on machines with 1 core
+		System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", "8");
+		testPaletteTextureBuilder();
+		testDeterministicPalette();
+		testExactQuantize();
+		testMedianCut();
+	}
+	
+	static void testPaletteTextureBuilder() throws IOException {
+		PaletteTextureBuilder texture = new PaletteTextureBuilder(30, 20, true);
+		assert texture.getAlpha(5, 5) == 0;
+		texture.geometry().fillRect(0, 0, 9, 19, SimpleRGBColor.fromInts(200, 100, 50));
+		texture.geometry().fillRect(10, 0, 29, 19, SimpleRGBAColor.fromInts(10, 20, 30, 40));
+		texture.setPixel(3, 4, SimpleRGBColor.fromInts(1, 2, 3));
+		
+		assert texture.paletteSize() == 4;
+		assert texture.getPixel(5, 5).getRedI() == 200;
+		assert texture.getPixel(20, 5).getAlphaI() == 40;
+		assert texture.getGreen(3, 4) == 2;
+		
+		// The PNG should be indexed and contain the same colors
+		BufferedImage image = texture.createBufferedImage();
+		assert image.getType() == BufferedImage.TYPE_BYTE_INDEXED;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assert ImageIO.write(image, "PNG", output);
+		BufferedImage loaded = ImageIO.read(new ByteArrayInputStream(output.toByteArray()));
+		for (int x = 0; x < 30; x++)
+			for (int y = 0; y < 20; y++)
+				assert loaded.getRGB(x, y) == image.getRGB(x, y);
+	}
+	
+	static PaletteTextureBuilder drawManyColors() {
+		PaletteTextureBuilder texture = new PaletteTextureBuilder(512, 512, false);
+		texture.average().fillAverage(0, 0, 511, 255, SimpleRGBColor.fromInts(100, 150, 200), 0.4, new Random(3));
+		texture.materials().fillCellPattern(0, 256, 511, 511, 32, SimpleRGBColor.fromInts(150, 150, 150),
+				SimpleRGBColor.fromInts(60, 50, 40), 2, 3, 0.3, new Random(4));
+		return texture;
+	}
+	
+	static void testDeterministicPalette() {
+		
+		// The palette is full long before the texture is finished, so the order of the writes matters
+		PaletteTextureBuilder first = drawManyColors();
+		assert first.paletteSize() == PaletteTextureBuilder.MAX_PALETTE_SIZE;
+		for (int counter = 0; counter < 4; counter++) {
+			PaletteTextureBuilder other = drawManyColors();
+			assert Arrays.equals(first.getPalette(), other.getPalette());
+			assert Arrays.equals(first.getIndices(), other.getIndices());
+		}
+	}
+	
+	static void testExactQuantize() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(64, 64, false);
+		texture.geometry().fillRect(0, 0, 63, 63, SimpleRGBColor.fromInts(150, 60, 40));
+		for (int y = 0; y < 64; y += 8)
+			texture.geometry().drawHorizontalLine(0, 63, y, SimpleRGBColor.fromInts(200, 200, 190));
+		texture.geometry().fillCircle(30, 30, 10, SimpleRGBAColor.fromInts(0, 0, 255, 100));
+		
+		// A texture with few colors should be converted without any loss
+		PaletteTextureBuilder palette = ColorQuantizer.quantize(texture);
+		assert palette.paletteSize() < 32;
+		assert Arrays.equals(texture.createArrrayRGBA(), palette.createArrrayRGBA());
+	}
+	
+	static void testMedianCut() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(128, 64, true);
+		for (int x = 0; x < 128; x++)
+			for (int y = 0; y < 64; y++)
+				texture.setPixel(x, y, SimpleRGBAColor.fromInts(2 * x, 4 * y, 255 - x, 255 - y));
+		
+		for (Dithering dithering : Dithering.values()) {
+			PaletteTextureBuilder palette = ColorQuantizer.quantize(texture, 16, dithering);
+			assert palette.paletteSize() == 16;
+			
+			// Every pixel should be reasonably close, and the average color should be nearly preserved
+			long totalError = 0;
+			long redSum = 0, quantizedRedSum = 0;
+			for (int x = 0; x < 128; x++) {
+				for (int y = 0; y < 64; y++) {
+					int error = Math.abs(texture.getPixel(x, y).getRedI() - palette.getPixel(x, y).getRedI())
+							+ Math.abs(texture.getPixel(x, y).getGreenI() - palette.getPixel(x, y).getGreenI())
+							+ Math.abs(texture.getPixel(x, y).getAlphaI() - palette.getPixel(x, y).getAlphaI());
+					assert error < 300;
+					totalError += error;
+					redSum += texture.getPixel(x, y).getRedI();
+					quantizedRedSum += palette.getPixel(x, y).getRedI();
+				}
+			}
+			assert totalError / (128 * 64) < 80;
+			assert Math.abs(redSum - quantizedRedSum) / (128 * 64) < 10;
+		}
+	}
+}
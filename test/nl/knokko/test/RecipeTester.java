@@ -0,0 +1,174 @@
+package nl.knokko.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.SimpleRGBAColor;
+import nl.knokko.texture.color.SimpleRGBColor;
+import nl.knokko.texture.compare.TextureDiff;
+import nl.knokko.texture.compare.TextureHash;
+import nl.knokko.texture.recipe.ExecutionPlan;
+import nl.knokko.texture.recipe.OperationRegistry;
+import nl.knokko.texture.recipe.Recipe;
+import nl.knokko.texture.recipe.RecipeBinary;
+import nl.knokko.texture.recipe.RecipeJson;
+import nl.knokko.texture.recipe.RecipePlanner;
+
+public class RecipeTester {
+	
+	static final String WALL = "{ \"width\": 64, \"height\": 48, \"alpha\": true, \"output\": \"wall\", \"nodes\": [\n"
+			+ "  { \"id\": \"bricks\", \"op\": \"brickPattern\", \"seed\": 5, \"params\": {\n"
+			+ "    \"brickLength\": 16, \"brickHeight\": 8, \"brickColor\": \"#96503c\", \"edgeColor\": [200, 200, 200],\n"
+			+ "    \"maxDifference\": 0.1 } },\n"
+			+ "  { \"id\": \"moss\", \"op\": \"fillCircle\", \"params\": {\n"
+			+ "    \"centerX\": 20, \"centerY\": 30, \"radius\": 10.5, \"color\": \"#20802080\" } },\n"
+			+ "  { \"id\": \"unused\", \"op\": \"fillRect\", \"params\": { \"color\": \"#ffffff\" } },\n"
+			+ "  { \"id\": \"wall\", \"op\": \"overlay\", \"inputs\": [\"bricks\", \"moss\"], \"params\": { \"maxY\": 40 } }\n"
+			+ "] }";
+	
+	public static void main(String[] args) throws IOException {
+		testJson();
+		testBinary();
+		testPlanning();
+		testErrors();
+	}
+	
+	static TextureBuilder executeJson(String json) {
+		return RecipePlanner.plan(RecipeJson.parse(json), OperationRegistry.createDefault()).execute();
+	}
+	
+	static void testJson() {
+		TextureBuilder fromRecipe = executeJson(WALL);
+		
+		TextureBuilder expected = new ByteArrayTextureBuilder(64, 48, true);
+		expected.materials().fillBrickPattern(0, 0, 63, 47, 16, 8, SimpleRGBColor.fromInts(150, 80, 60), 
+				SimpleRGBColor.fromInts(200, 200, 200), 0.1f, new Random(5));
+		TextureBuilder moss = new ByteArrayTextureBuilder(64, 48, true);
+		moss.geometry().fillCircle(20, 30, 10.5, SimpleRGBAColor.fromInts(32, 128, 32, 128));
+		for (int y = 0; y <= 40; y++) {
+			for (int x = 0; x < 64; x++) {
+				int alpha = moss.getAlpha(x, y) & 0xFF;
+				if (alpha == 0)
+					continue;
+				int red = ((moss.getRed(x, y) & 0xFF) * alpha + (expected.getRed(x, y) & 0xFF) * (255 - alpha) + 127) / 255;
+				int green = ((moss.getGreen(x, y) & 0xFF) * alpha + (expected.getGreen(x, y) & 0xFF) * (255 - alpha) + 127) / 255;
+				int blue = ((moss.getBlue(x, y) & 0xFF) * alpha + (expected.getBlue(x, y) & 0xFF) * (255 - alpha) + 127) / 255;
+				expected.setPixel(x, y, (byte) red, (byte) green, (byte) blue, (byte) 255);
+			}
+		}
+		TextureDiff diff = TextureDiff.compare(expected, fromRecipe);
+		assert diff.isIdentical() : diff;
+		assert fromRecipe.getGreen(20, 45) != (byte) 128;
+	}
+	
+	static void testBinary() throws IOException {
+		Recipe recipe = RecipeJson.parse(WALL);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		RecipeBinary.write(recipe, new DataOutputStream(bytes));
+		assert bytes.size() < WALL.length();
+		Recipe loaded = RecipeBinary.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		
+		assert loaded.getNodes().size() == 4 && loaded.getOutput().equals("wall");
+		assert loaded.getNode("moss").getSeed() == "moss".hashCode();
+		assert loaded.getNode("wall").getInputs().equals(Arrays.asList("bricks", "moss"));
+		OperationRegistry registry = OperationRegistry.createDefault();
+		assert TextureHash.hash(RecipePlanner.plan(loaded, registry).execute()) == 
+				TextureHash.hash(RecipePlanner.plan(recipe, registry).execute());
+		
+		try {
+			RecipeBinary.read(new DataInputStream(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 })));
+			assert false;
+		} catch (IOException expected) {
+			// The input is not a binary recipe
+		}
+	}
+	
+	static String node(String id, String op, String inputs, String params) {
+		return "{ \"id\": \"" + id + "\", \"op\": \"" + op + "\", \"inputs\": [" + inputs + "], \"params\": {" + params + "} }";
+	}
+	
+	static String node(String id, String op, long seed, String inputs, String params) {
+		return "{ \"id\": \"" + id + "\", \"op\": \"" + op + "\", \"seed\": " + seed + ", \"inputs\": [" + inputs + 
+				"], \"params\": {" + params + "} }";
+	}
+	
+	static void testPlanning() {
+		OperationRegistry registry = OperationRegistry.createDefault();
+		String red = "\"color\": \"#ff0000\", ";
+		
+		// A chain of nodes only needs 1 buffer, since every node can draw on the buffer of its input
+		String chain = "{ \"width\": 32, \"height\": 32, \"output\": \"d\", \"nodes\": ["
+				+ node("a", "fillRect", "", red + "\"maxX\": 10") + ","
+				+ node("b", "fillRect", "\"a\"", red + "\"minX\": 20") + ","
+				+ node("c", "boxBlur", "\"b\"", "\"radius\": 1") + ","
+				+ node("d", "fillRect", "\"c\"", "\"color\": \"#00ff00\", \"maxY\": 3") + "] }";
+		ExecutionPlan chainPlan = RecipePlanner.plan(RecipeJson.parse(chain), registry);
+		assert chainPlan.getBufferCount() == 1;
+		assert chainPlan.getInPlaceStepCount() == 3;
+		assert chainPlan.getLevels().size() == 4;
+		TextureBuilder chainResult = chainPlan.execute();
+		assert chainResult.getGreen(0, 0) == -1 && chainResult.getRed(0, 10) == -1 && chainResult.getRed(15, 10) == 0;
+		
+		// The right branches are equal (including their seeds), so they are merged
+		String diamond = "{ \"width\": 32, \"height\": 32, \"output\": \"final\", \"nodes\": ["
+				+ node("base", "fillRect", "", red + "\"maxY\": 15") + ","
+				+ node("left", "fillAverage", "\"base\"", "\"color\": \"#808080\", \"maxDifference\": 0.2, \"maxX\": 15") + ","
+				+ node("right", "fillRect", 1, "\"base\"", "\"color\": \"#0000ff80\", \"minX\": 16") + ","
+				+ node("right2", "fillRect", 1, "\"base\"", "\"color\": \"#0000ff80\", \"minX\": 16") + ","
+				+ node("result", "overlay", "\"left\", \"right\"", "") + ","
+				+ node("final", "overlay", "\"result\", \"right2\"", "") + "] }";
+		ExecutionPlan diamondPlan = RecipePlanner.plan(RecipeJson.parse(diamond), registry);
+		assert diamondPlan.getMergedNodeCount() == 1;
+		assert diamondPlan.getLevels().get(1).size() == 2 : diamondPlan;
+		
+		// Base is used twice, so left and right need copies. Result and final can draw on the buffer of left.
+		assert diamondPlan.getBufferCount() == 3 : diamondPlan;
+		assert diamondPlan.getInPlaceStepCount() == 2 : diamondPlan;
+		TextureBuilder first = diamondPlan.execute();
+		TextureBuilder second = diamondPlan.execute();
+		assert TextureDiff.compare(first, second).isIdentical();
+		assert first.getBlue(20, 20) == -1 && first.getRed(20, 5) == 0 && first.getRed(5, 5) != 0;
+		
+		// The buffer of a can be reused by g, since a isn't needed after level 1
+		String reuse = "{ \"width\": 16, \"height\": 16, \"output\": \"d\", \"nodes\": ["
+				+ node("a", "fillRect", "", "\"color\": \"#ff0000\"") + ","
+				+ node("b", "boxBlur", "\"a\"", "\"radius\": 1") + ","
+				+ node("c", "boxBlur", "\"a\"", "\"radius\": 2") + ","
+				+ node("g", "overlay", "\"b\", \"c\"", "") + ","
+				+ node("h", "fillRect", "\"b\"", "\"color\": \"#00ff00\", \"maxX\": 3") + ","
+				+ node("d", "overlay", "\"g\", \"h\"", "") + "] }";
+		ExecutionPlan reusePlan = RecipePlanner.plan(RecipeJson.parse(reuse), registry);
+		assert reusePlan.getBufferCount() == 4 : reusePlan;
+		TextureBuilder reuseResult = reusePlan.execute();
+		assert reuseResult.getRed(12, 12) == -1 && reuseResult.getGreen(1, 1) == -1 && reuseResult.getRed(1, 1) == 0;
+	}
+	
+	static void testErrors() {
+		OperationRegistry registry = OperationRegistry.createDefault();
+		String cycle = "{ \"width\": 8, \"height\": 8, \"output\": \"a\", \"nodes\": ["
+				+ node("a", "boxBlur", "\"b\"", "\"radius\": 1") + ","
+				+ node("b", "boxBlur", "\"a\"", "\"radius\": 1") + "] }";
+		String unknown = "{ \"width\": 8, \"height\": 8, \"output\": \"a\", \"nodes\": [" + node("a", "explode", "", "") + "] }";
+		for (String invalid : new String[] { cycle, unknown, "{ \"width\": 8 ", "{ \"width\": \"8\" }" }) {
+			try {
+				RecipePlanner.plan(RecipeJson.parse(invalid), registry);
+				assert false : invalid;
+			} catch (IllegalArgumentException expected) {
+				// The recipe is invalid
+			}
+		}
+		try {
+			executeJson("{ \"width\": 8, \"height\": 8, \"output\": \"a\", \"nodes\": [" + node("a", "fillRect", "", "") + "] }");
+			assert false;
+		} catch (IllegalArgumentException expected) {
+			assert expected.getMessage().contains("color");
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package nl.knokko.test;
+
+import java.util.Random;
+
+import nl.knokko.texture.builder.AuxiliaryChannels;
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.SimpleRGBColor;
+import nl.knokko.texture.region.ComponentLabeler;
+import nl.knokko.texture.region.ComponentLabels;
+import nl.knokko.texture.region.FloodFill;
+
+public class RegionTester {
+	
+	public static void main(String[] args) {
+		testFloodFill();
+		testLargeFloodFill();
+		testLocalFloodFill();
+		testLabels();
+		testBricks();
+	}
+	
+	static void testFloodFill() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(20, 20, false);
+		texture.geometry().fillRect(0, 0, 19, 19, SimpleRGBColor.fromInts(100, 100, 100));
+		
+		// A closed square outline with a slightly different color inside
+		texture.geometry().fillRect(5, 5, 14, 14, SimpleRGBColor.fromInts(0, 0, 0));
+		texture.geometry().fillRect(6, 6, 13, 13, SimpleRGBColor.fromInts(200, 0, 0));
+		texture.setPixel(8, 8, (byte) 205, (byte) 0, (byte) 0);
+		
+		// Without tolerance, the different pixel is not filled
+		assert FloodFill.fill(texture, 7, 7, SimpleRGBColor.fromInts(0, 255, 0), 0) == 63;
+		assert texture.getGreen(13, 13) == -1 && texture.getRed(8, 8) == (byte) 205;
+		assert texture.getGreen(4, 4) == 100 && texture.getGreen(5, 5) == 0;
+		
+		// With tolerance, it is
+		texture.geometry().fillRect(6, 6, 13, 13, SimpleRGBColor.fromInts(200, 0, 0));
+		texture.setPixel(8, 8, (byte) 205, (byte) 0, (byte) 0);
+		assert FloodFill.fill(texture, 13, 6, SimpleRGBColor.fromInts(0, 255, 0), 5) == 64;
+		
+		// The outside region goes around the square
+		assert FloodFill.fill(texture, 0, 0, SimpleRGBColor.fromInts(1, 2, 3), 0) == 400 - 100;
+	}
+	
+	static void testLargeFloodFill() {
+		// A maze of vertical walls with gaps at alternating ends, which would overflow a recursive flood fill
+		int size = 1000;
+		TextureBuilder texture = new ByteArrayTextureBuilder(size, size, false);
+		for (int x = 1; x < size; x += 2) {
+			int gapY = (x / 2) % 2 == 0 ? size - 1 : 0;
+			texture.geometry().fillRect(x, 0, x, size - 1, SimpleRGBColor.fromInts(255, 255, 255));
+			texture.setPixel(x, gapY, (byte) 0, (byte) 0, (byte) 0);
+		}
+		int[] spans = { 0 };
+		int pixels = FloodFill.findRegion(texture, 0, 0, 0, (y, minX, maxX, coverage) -> spans[0]++);
+		assert pixels == size * size / 2 + size / 2 : pixels;
+		assert spans[0] > size;
+	}
+	
+	static void testLocalFloodFill() {
+		long[] pixelsRead = { 0 };
+		TextureBuilder texture = new ByteArrayTextureBuilder(2048, 2048, false) {
+			
+			@Override
+			public void getRowRGBA(int minX, int maxX, int y, byte[] dest, int destIndex) {
+				pixelsRead[0] += maxX - minX + 1;
+				super.getRowRGBA(minX, maxX, y, dest, destIndex);
+			}
+		};
+		texture.geometry().fillRect(1000, 1000, 1009, 1004, SimpleRGBColor.fromInts(255, 0, 0));
+		
+		// Filling a small region should only read the pixels around it, not the whole texture
+		assert FloodFill.fill(texture, 1005, 1002, SimpleRGBColor.fromInts(0, 0, 255), 0) == 50;
+		assert pixelsRead[0] <= 7 * 128 : pixelsRead[0];
+		assert texture.getBlue(1000, 1000) == -1 && texture.getBlue(1009, 1004) == -1;
+		assert texture.getBlue(999, 1000) == 0 && texture.getBlue(1005, 1005) == 0;
+	}
+	
+	static void testLabels() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(10, 10, false);
+		texture.geometry().fillRect(1, 1, 3, 3, SimpleRGBColor.fromInts(50, 50, 50));
+		texture.geometry().fillRect(6, 1, 8, 8, SimpleRGBColor.fromInts(50, 50, 50));
+		
+		// A U shape, which needs the union-find merge
+		texture.geometry().fillRect(1, 5, 1, 8, SimpleRGBColor.fromInts(80, 80, 80));
+		texture.geometry().fillRect(4, 5, 4, 8, SimpleRGBColor.fromInts(80, 80, 80));
+		texture.geometry().fillRect(1, 8, 4, 8, SimpleRGBColor.fromInts(80, 80, 80));
+		
+		ComponentLabels labels = ComponentLabeler.label(texture, 0);
+		assert labels.getCount() == 4 : labels.getCount();
+		assert labels.getLabel(0, 0) == 0;
+		assert labels.getLabel(1, 1) == 1 && labels.getSize(1) == 9;
+		assert labels.getLabel(6, 1) == 2 && labels.getSize(2) == 24;
+		assert labels.getLabel(1, 5) == 3 && labels.getLabel(4, 5) == 3 && labels.getSize(3) == 10;
+		assert labels.getLabel(2, 5) == 0;
+		
+		// The gray components don't touch each other, so they only merge through the black background
+		assert ComponentLabeler.label(texture, 49).getCount() == 4;
+		assert ComponentLabeler.label(texture, 50).getCount() == 2;
+		assert ComponentLabeler.label(texture, 80).getCount() == 1;
+		
+		labels.storeIn(texture, AuxiliaryChannels.MATERIAL_ID);
+		assert texture.auxiliary().ints(AuxiliaryChannels.MATERIAL_ID)[5 * 10 + 4] == 3;
+	}
+	
+	static void testBricks() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(64, 64, false);
+		texture.materials().fillBrickPattern(0, 0, 63, 63, 16, 8, SimpleRGBColor.fromInts(150, 60, 40), 
+				SimpleRGBColor.fromInts(200, 200, 200), 0f, new Random(3));
+		ComponentLabels labels = ComponentLabeler.label(texture, 0);
+		int mortar = labels.getLabel(0, 0);
+		
+		// The mortar is 1 component, and the other components are the bricks
+		assert labels.getCount() > 30;
+		for (int label = 0; label < labels.getCount(); label++)
+			assert label == mortar || labels.getSize(label) <= 15 * 7;
+		
+		labels.varyColors(texture, 0.2, 12, false, label -> label != mortar);
+		assert texture.getRed(0, 0) == (byte) 200;
+		int brick = labels.getLabel(5, 3);
+		for (int y = 0; y < 64; y++) {
+			for (int x = 0; x < 64; x++) {
+				if (labels.getLabel(x, y) == brick)
+					assert texture.getRed(x, y) == texture.getRed(5, 3);
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package nl.knokko.test;
+
+import nl.knokko.texture.builder.ByteArrayTextureBuilder;
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.color.SimpleRGBAColor;
+import nl.knokko.texture.color.SimpleRGBColor;
+import nl.knokko.texture.resample.ResampleFilter;
+import nl.knokko.texture.resample.Resampler;
+
+public class ResampleTester {
+
+	public static void main(String[] args) {
+		testFlatColor();
+		testAlpha();
+		testNearest();
+	}
+	
+	static void testFlatColor() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(64, 48, false);
+		texture.geometry().fillRect(0, 0, 63, 47, SimpleRGBColor.fromInts(120, 30, 250));
+		for (ResampleFilter filter : ResampleFilter.values()) {
+			
+			// A flat color should stay the same, both when downscaling and when upscaling
+			for (TextureBuilder scaled : new TextureBuilder[] { Resampler.scale(texture, 13, 7, filter),
+					Resampler.scale(texture, 150, 100, filter) }) {
+				for (int x = 0; x < scaled.width(); x++) {
+					for (int y = 0; y < scaled.height(); y++) {
+						assert scaled.getRed(x, y) == 120;
+						assert scaled.getGreen(x, y) == 30;
+						assert scaled.getBlue(x, y) == (byte) 250;
+					}
+				}
+			}
+		}
+	}
+	
+	static void testAlpha() {
+		
+		// The left half is transparent black and the right half is opaque white
+		TextureBuilder texture = new ByteArrayTextureBuilder(8, 8, true);
+		texture.geometry().fillRect(4, 0, 7, 7, SimpleRGBAColor.fromInts(255, 255, 255, 255));
+		TextureBuilder scaled = Resampler.scale(texture, 2, 1, ResampleFilter.BILINEAR);
+		
+		// The transparent black must not darken the white
+		assert scaled.getRed(0, 0) == (byte) 255;
+		assert scaled.getRed(1, 0) == (byte) 255;
+		assert (scaled.getAlpha(0, 0) & 0xFF) < (scaled.getAlpha(1, 0) & 0xFF);
+		
+		TextureBuilder halves = Resampler.scale(texture, 1, 1, ResampleFilter.BILINEAR);
+		assert halves.getRed(0, 0) == (byte) 255;
+		assert Math.abs((halves.getAlpha(0, 0) & 0xFF) - 128) <= 1;
+	}
+	
+	static void testNearest() {
+		TextureBuilder texture = new ByteArrayTextureBuilder(4, 4, false);
+		texture.setPixel(1, 2, SimpleRGBColor.fromInts(10, 20, 30));
+		TextureBuilder scaled = Resampler.scale(texture, 8, 8, ResampleFilter.NEAREST);
+		assert scaled.getRed(2, 4) == 10;
+		assert scaled.getGreen(3, 5) == 20;
+		assert scaled.getBlue(2, 5) == 30;
+		assert scaled.getRed(4, 4) == 0;
+	}
+}
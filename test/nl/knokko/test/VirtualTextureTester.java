@@ -0,0 +1,58 @@
+package nl.knokko.test;
+
+import java.util.Random;
+
+import nl.knokko.texture.builder.TextureBuilder;
+import nl.knokko.texture.builder.VirtualTextureBuilder;
+import nl.knokko.texture.color.SimpleRGBColor;
+
+public class VirtualTextureTester {
+
+	public static void main(String[] args) {
+		testVirtualTexture();
+	}
+	
+	static void testVirtualTexture() {
+		
+		// A texture of 100000 x 100000 pixels, but with room for only 4 tiles of 64 x 64
+		VirtualTextureBuilder texture = new VirtualTextureBuilder(100_000, 100_000, false, 64, 4 * 64 * 64 * 3, 123,
+				(tile, tileX, tileY, seed) -> {
+			tile.geometry().fillRect(0, 0, tile.width() - 1, tile.height() - 1, SimpleRGBColor.fromInts(tileX & 0xFF, tileY & 0xFF, 0));
+			tile.average().fillAverage(10, 10, 20, 20, SimpleRGBColor.fromInts(200, 100, 50), 0.2, new Random(seed));
+		}, Runnable::run);
+		
+		assert texture.getRed(64 * 5 + 3, 64 * 7 + 60) == 5;
+		assert texture.getGreen(64 * 5 + 3, 64 * 7 + 60) == 7;
+		assert texture.getRed(99_999, 99_999) == (byte) (99_999 / 64 & 0xFF);
+		
+		byte noise = texture.getRed(15, 15);
+		for (int tileX = 1; tileX <= 10; tileX++)
+			assert texture.getRed(64 * tileX, 0) == tileX;
+		assert texture.getCachedTileCount() == 4;
+		assert texture.getCachedBytes() <= 4 * 64 * 64 * 3;
+		
+		// The first tile was evicted, so it will be generated again, with the same result
+		long generated = texture.getGeneratedTileCount();
+		assert texture.getRed(15, 15) == noise;
+		assert texture.getGeneratedTileCount() == generated + 1;
+		
+		// The row should be copied from multiple tiles
+		byte[] row = new byte[200 * 4];
+		texture.getRowRGBA(100, 299, 5, row, 0);
+		assert row[0] == 1 && row[4 * 199] == 4;
+		
+		// With a direct executor, prefetch generates the tiles immediately
+		texture.prefetch(64 * 100, 0, 64 * 101, 10);
+		generated = texture.getGeneratedTileCount();
+		assert texture.getRed(64 * 101, 0) == 101;
+		assert texture.getGeneratedTileCount() == generated;
+		
+		try {
+			texture.setPixel(0, 0, SimpleRGBColor.fromInts(1, 2, 3));
+			assert false;
+		} catch (UnsupportedOperationException expected) {}
+		
+		TextureBuilder tile = texture.getTile(3, 3);
+		assert tile.width() == 64 && tile.getRed(0, 0) == 3;
+	}
+}